@@ -16,102 +16,138 @@ import java.util.*;
  * SymTable: symbol-table data structure implementation
  * 
  * <p>
- * each HashMap in the list stores symbols corresponding to specific scope in
- * the compiled program.
+ * a single hash table serves all scopes (LeBlanc-Cook): each identifier name
+ * maps to the chain of its visible declarations, innermost first, and every
+ * declaration is also recorded in a log grouped by scope. Lookups are one hash
+ * lookup however deep the nesting, and removing a scope undoes only the
+ * declarations made in it.
  * </p>
  */
 public class SymTable {
-	// stores symbols by scope, mapping identifier name to its associated
-	// information
-	private List<HashMap<String, Sym>> table;
+	/**
+	 * Entry: a declaration, linked to the declaration of the same name that
+	 * it shadows
+	 */
+	private static class Entry {
+		String name;
+		Sym sym;
+		int scope; // depth of the declaring scope, 1 for the outermost
+		Entry shadowed;
+
+		Entry(String name, Sym sym, int scope, Entry shadowed) {
+			this.name = name;
+			this.sym = sym;
+			this.scope = scope;
+			this.shadowed = shadowed;
+		}
+	}
+
+	// innermost visible declaration of each identifier name
+	private HashMap<String, Entry> table;
+	// declarations, in order of their scopes (undo log)
+	private ArrayList<Entry> log;
+	// index in the log of each scope's first declaration, outermost first
+	private int[] scopeStart;
+	// number of scopes
+	private int depth;
 
 	/**
-	 * constructor: initializes the SymTable's List field to contain a single,
-	 * empty HashMap.
+	 * constructor: initializes the SymTable to contain a single, empty scope.
 	 */
 	public SymTable() {
-		/* Note: LinkedList used for efficient insert/remove oprerations */
-		this.table = new LinkedList<HashMap<String, Sym>>();
-		this.table.add(new HashMap<>());
+		this.table = new HashMap<>();
+		this.log = new ArrayList<>();
+		this.scopeStart = new int[8];
+		this.depth = 0;
+		this.addScope();
 	}
 
 	/**
-	 * add the given name and sym to the first HashMap in the list
+	 * add the given name and sym to the innermost scope
 	 * 
-	 * @param name identifier name corresponds to the hash map key
-	 * @param sym  identifier's info instance corresponds to hash map value
-	 * @throws EmptySymTableException   If this SymTable's list is empty
+	 * @param name identifier name
+	 * @param sym  identifier's info instance
+	 * @throws EmptySymTableException   If this SymTable has no scopes
 	 * @throws IllegalArgumentException If either name or sym (or both) is null
-	 * @throws DuplicateSymException    If the first HashMap in the list already
-	 *                                  contains the given name as a key
+	 * @throws DuplicateSymException    If the innermost scope already declares
+	 *                                  the given name
 	 */
 	public void addDecl(String name, Sym sym)
 			throws DuplicateSymException, EmptySymTableException {
 		// validate symbol-table state
-		if (this.table.isEmpty())
+		if (this.depth == 0)
 			throw new EmptySymTableException();
 		// validate parameters
 		if (name == null || sym == null)
 			throw new IllegalArgumentException("parameters must not be null");
-		if (this.table.get(0).containsKey(name))
+		Entry visible = this.table.get(name);
+		if (visible != null && visible.scope == this.depth)
 			throw new DuplicateSymException();
 
-		this.table.get(0).put(name, sym);
+		Entry entry = new Entry(name, sym, this.depth, visible);
+		this.table.put(name, entry);
+		this.log.add(entry);
 	}
 
 	/**
-	 * add a new, empty HashMap to the symbol-table at the front
+	 * add a new, empty scope to the symbol-table, inside the current ones
 	 */
 	public void addScope() {
-		this.table.add(0, new HashMap<>());
+		if (this.depth == this.scopeStart.length)
+			this.scopeStart = Arrays.copyOf(this.scopeStart, 2 * this.depth);
+		this.scopeStart[this.depth++] = this.log.size();
 	}
 
 	/**
-	 * retrieve symbol by identifier name (key) from first/front hash map
-	 * element
+	 * retrieve symbol by identifier name from the innermost scope
 	 * 
-	 * @param name identifier name corresponds to the hash map key
+	 * @param name identifier name
 	 * @return matching symbol, otherwise null.
-	 * @throws EmptySymTableException If this SymTable's list is empty
+	 * @throws EmptySymTableException If this SymTable has no scopes
 	 */
 	public Sym lookupLocal(String name) throws EmptySymTableException {
-		if (this.table.isEmpty())
+		if (this.depth == 0)
 			throw new EmptySymTableException();
 
-		return this.table.get(0).containsKey(name) ? this.table.get(0).get(name)
+		Entry visible = this.table.get(name);
+		return visible != null && visible.scope == this.depth ? visible.sym
 				: null;
 	}
 
 	/**
-	 * retrieve symbol by identifier name (key) from any hash map in the
-	 * symbol-table
+	 * retrieve symbol by identifier name from the innermost scope declaring it
 	 * 
-	 * @param name identifier name corresponds to the hash map key
+	 * @param name identifier name
 	 * @return matching symbol, otherwise null.
 	 * 
-	 * @throws EmptySymTableException If this SymTable's list is empty
+	 * @throws EmptySymTableException If this SymTable has no scopes
 	 */
 	public Sym lookupGlobal(String name) throws EmptySymTableException {
-		if (this.table.isEmpty())
+		if (this.depth == 0)
 			throw new EmptySymTableException();
 
-		for (HashMap<String, Sym> element : this.table)
-			if (element.containsKey(name))
-				return element.get(name);
-
-		return null;
+		Entry visible = this.table.get(name);
+		return visible != null ? visible.sym : null;
 	}
 
 	/**
-	 * remove the HashMap from the front of the list
+	 * remove the innermost scope, undoing its declarations
 	 * 
-	 * @throws EmptySymTableException If this SymTable's list is empty
+	 * @throws EmptySymTableException If this SymTable has no scopes
 	 */
 	public void removeScope() throws EmptySymTableException {
-		if (this.table.isEmpty())
+		if (this.depth == 0)
 			throw new EmptySymTableException();
 
-		this.table.remove(0);
+		// latest declaration first, so shadowed ones are restored in order
+		int start = this.scopeStart[--this.depth];
+		for (int i = this.log.size() - 1; i >= start; i--) {
+			Entry entry = this.log.remove(i);
+			if (entry.shadowed == null)
+				this.table.remove(entry.name);
+			else
+				this.table.put(entry.name, entry.shadowed);
+		}
 	}
 
 	/**
@@ -122,10 +158,23 @@ public class SymTable {
 	public String print() {
 		String output = "\nSym Table\n"; // output accumolator with required
 											// format
-		for (HashMap<String, Sym> scope : this.table) {
-			output += scope.toString() + "\n";
+		for (int scope = this.depth - 1; scope >= 0; scope--) {
+			output += this.scopeMap(scope).toString() + "\n";
 		}
 		System.out.println(output); // (as per specification)
 		return output;
 	}
+
+	/**
+	 * @param scope index of a scope, 0 for the outermost
+	 * @return the scope's declarations, as a map from name to symbol
+	 */
+	private HashMap<String, Sym> scopeMap(int scope) {
+		int end = scope + 1 < this.depth ? this.scopeStart[scope + 1]
+				: this.log.size();
+		HashMap<String, Sym> map = new HashMap<>();
+		for (int i = this.scopeStart[scope]; i < end; i++)
+			map.put(this.log.get(i).name, this.log.get(i).sym);
+		return map;
+	}
 }
@@ -0,0 +1,108 @@
+import java.io.*;
+import java_cup.runtime.*; // defines Symbol
+
+/**
+ * Bench class: measures scanner throughput in tokens per second, by scanning
+ * an input file repeated a number of times end to end.
+ *
+ * <p>
+ * usage: java Bench &lt;input file&gt; &lt;copies&gt; [label]
+ * </p>
+ *
+ * <p>
+ * The first runs warm up the JIT; the best of the remaining runs is reported.
+ * Each scanner is timed reading through a Reader and scanning the whole input
+ * in place from a CharBuffer (%nio). `make bench` runs it against both the
+ * table-driven scanner and one generated with the %switch (direct-coded)
+ * directive.
+ * </p>
+ */
+public class Bench {
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 5;
+
+    /**
+     * benchmark driver
+     *
+     * @param args input file, number of copies, optional label for the report
+     * @throws IOException exception may be thrown by yylex
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: java Bench <input file> <copies> [label]");
+            System.exit(-1);
+        }
+        String text = repeat(read(args[0]), Integer.parseInt(args[1]));
+        String label = args.length > 2 ? args[2] : "Yylex";
+
+        time(label + "/reader", text, false);
+        time(label + "/buffer", text, true);
+    }
+
+    /**
+     * times repeated scans of text and reports the best
+     *
+     * @param label  name for the report line
+     * @param text   input to scan
+     * @param buffer scan from a CharBuffer rather than a Reader
+     * @throws IOException exception may be thrown by yylex
+     */
+    private static void time(String label, String text, boolean buffer)
+            throws IOException {
+        char[] chars = text.toCharArray();
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+            long start = System.nanoTime();
+            tokens = scan(buffer ? new Yylex(java.nio.CharBuffer.wrap(chars))
+                    : new Yylex(new StringReader(text)));
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS && elapsed < best)
+                best = elapsed;
+        }
+        System.out.printf("%s: %d chars, %d tokens, best %.1f ms, %.0f tokens/sec\n",
+                label, text.length(), tokens, best / 1e6, tokens / (best / 1e9));
+    }
+
+    /**
+     * scans to the end, counting tokens
+     *
+     * @param scanner scanner to run
+     * @return number of tokens before EOF
+     * @throws IOException exception may be thrown by yylex
+     */
+    private static int scan(Yylex scanner) throws IOException {
+        int count = 0;
+        while (scanner.next_token().sym != sym.EOF)
+            count++;
+        return count;
+    }
+
+    /**
+     * @param filename file to read
+     * @return whole file contents
+     * @throws IOException if the file cannot be read
+     */
+    static String read(String filename) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (Reader in = new BufferedReader(new FileReader(filename))) {
+            char[] buffer = new char[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1)
+                text.append(buffer, 0, n);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @param text   text to repeat
+     * @param copies number of copies
+     * @return copies of text, newline separated
+     */
+    static String repeat(String text, int copies) {
+        StringBuilder result = new StringBuilder(copies * (text.length() + 1));
+        for (int i = 0; i < copies; i++)
+            result.append(text).append('\n');
+        return result.toString();
+    }
+}
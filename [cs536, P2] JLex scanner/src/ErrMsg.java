@@ -2,8 +2,32 @@
  * ErrMsg
  *
  * This class is used to generate warning and fatal error messages.
+ * Messages go to System.err unless the current thread has redirected them
+ * (ParallelLexer collects each chunk's messages to print them in order).
  */
 class ErrMsg {
+    private static final ThreadLocal<java.io.PrintStream> out =
+        new ThreadLocal<>();
+
+    /**
+     * Redirects the messages generated by the current thread.
+     * @param stream stream to write messages to, or null for System.err
+     * @return the stream they were redirected to before, or null
+     */
+    static java.io.PrintStream redirect(java.io.PrintStream stream) {
+        java.io.PrintStream previous = out.get();
+        out.set(stream);
+        return previous;
+    }
+
+    /**
+     * @return the stream the current thread's messages go to
+     */
+    static java.io.PrintStream stream() {
+        java.io.PrintStream stream = out.get();
+        return stream == null ? System.err : stream;
+    }
+
     /**
      * Generates a fatal error message.
      * @param lineNum line number for error location
@@ -11,7 +35,7 @@ class ErrMsg {
      * @param msg associated message for error
      */
     static void fatal(int lineNum, int charNum, String msg) {
-        System.err.println(lineNum + ":" + charNum + " ***ERROR*** " + msg);
+        stream().println(lineNum + ":" + charNum + " ***ERROR*** " + msg);
     }
 
     /**
@@ -21,6 +45,6 @@ class ErrMsg {
      * @param msg associated message for warning
      */
     static void warn(int lineNum, int charNum, String msg) {
-        System.err.println(lineNum + ":" + charNum + " ***WARNING*** " + msg);
+        stream().println(lineNum + ":" + charNum + " ***WARNING*** " + msg);
     }
 }
@@ -0,0 +1,152 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * JLexBench class: times the JLex generator, phase by phase, on the C-- spec
+ * and on synthetic specs scaled up to stress it, to track generator
+ * regressions.
+ *
+ * <p>
+ * usage: java JLexBench &lt;directory&gt; [keywords ...]
+ * </p>
+ *
+ * <p>
+ * The specs are written to the given directory: a copy of cminusminus.jlex,
+ * one spec per given keyword count (default 1000 and 2000) with that many
+ * keyword rules ahead of identifier, number and comment rules, and a
+ * %unicode spec whose rules use large, overlapping character classes. Each is
+ * generated WARMUP_RUNS times to warm up the JIT, then once more with the
+ * generator's -time report.
+ * </p>
+ */
+public class JLexBench {
+    private static final int WARMUP_RUNS = 2;
+    private static final int CLASS_RULES = 64;
+
+    /**
+     * benchmark driver
+     *
+     * @param args output directory, optional keyword counts
+     * @throws IOException if a spec cannot be written or generated
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java JLexBench <directory> [keywords ...]");
+            System.exit(-1);
+        }
+        File dir = new File(args[0]);
+        dir.mkdirs();
+        List<File> specs = new ArrayList<>();
+
+        File cminusminus = new File(dir, "cminusminus.jlex");
+        write(cminusminus, Bench.read("cminusminus.jlex"));
+        specs.add(cminusminus);
+        String[] counts = args.length > 1
+                ? Arrays.copyOfRange(args, 1, args.length)
+                : new String[] { "1000", "2000" };
+        for (String count : counts) {
+            File spec = new File(dir, "keywords" + count + ".jlex");
+            write(spec, keywords(Integer.parseInt(count)));
+            specs.add(spec);
+        }
+        File classes = new File(dir, "classes.jlex");
+        write(classes, classes(CLASS_RULES));
+        specs.add(classes);
+
+        for (File spec : specs)
+            time(spec);
+    }
+
+    /**
+     * generates a scanner from spec, reporting the last run's phases
+     *
+     * @param spec spec file
+     * @throws IOException if the spec cannot be read or generated
+     */
+    private static void time(File spec) throws IOException {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        try {
+            for (int run = 0; run < WARMUP_RUNS; run++)
+                JLex.Main.main(new String[] { spec.getPath() });
+        } finally {
+            System.setOut(out);
+        }
+        System.out.printf("== %s (%d chars)\n", spec.getName(), spec.length());
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(report, true));
+        try {
+            JLex.Main.main(new String[] { "-time", spec.getPath() });
+        } finally {
+            System.setOut(out);
+        }
+        // the report follows JLex's progress messages
+        String text = report.toString();
+        System.out.print(text.substring(Math.max(0, text.indexOf("phase "))));
+    }
+
+    /**
+     * @param count number of keywords
+     * @return spec with count keyword rules, each returning its own code
+     */
+    private static String keywords(int count) {
+        Random random = new Random(7);
+        SortedSet<String> keywords = new TreeSet<>();
+        while (keywords.size() < count) {
+            StringBuilder keyword = new StringBuilder();
+            for (int i = 3 + random.nextInt(8); i > 0; i--)
+                keyword.append((char) ('a' + random.nextInt(26)));
+            keywords.add(keyword.toString());
+        }
+
+        StringBuilder spec = new StringBuilder();
+        spec.append("%%\n%unicode\n%integer\n%state COMMENT\n")
+                .append("DIGIT=[0-9]\n")
+                .append("LETTER=[a-zA-Z\\u00c0-\\u024f\\u0400-\\u04ff]\n")
+                .append("WS=[\\ \\t\\n\\r]\n%%\n");
+        int code = 10;
+        for (String keyword : keywords)
+            spec.append("<YYINITIAL> \"").append(keyword).append("\" { return ")
+                    .append(code++).append("; }\n");
+        spec.append("<YYINITIAL> {LETTER}({LETTER}|{DIGIT}|_)* { return 1; }\n")
+                .append("<YYINITIAL> {DIGIT}+ { return 2; }\n")
+                .append("<YYINITIAL> \"/*\" { yybegin(COMMENT); }\n")
+                .append("<COMMENT> \"*/\" { yybegin(YYINITIAL); }\n")
+                .append("<COMMENT> [^] { }\n")
+                .append("<YYINITIAL> {WS}+ { }\n")
+                .append("<YYINITIAL> . { return 3; }\n");
+        return spec.toString();
+    }
+
+    /**
+     * @param count number of rules
+     * @return %unicode spec with count rules over large, overlapping ranges
+     *         of the basic multilingual plane, and some negated classes
+     */
+    private static String classes(int count) {
+        Random random = new Random(11);
+        StringBuilder spec = new StringBuilder();
+        spec.append("%%\n%unicode\n%integer\n%%\n");
+        for (int i = 0; i < count; i++) {
+            int low = 0x20 + random.nextInt(0xd000);
+            int high = Math.min(0xd7ff, low + 0x100 + random.nextInt(0x4000));
+            spec.append(String.format("[%s\\u%04x-\\u%04x]", i % 4 == 3 ? "^" : "",
+                    low, high));
+            spec.append(i % 2 == 0 ? "+" : "[0-9]*").append(" { return ")
+                    .append(i + 10).append("; }\n");
+        }
+        spec.append("[^] { return 1; }\n");
+        return spec.toString();
+    }
+
+    /**
+     * @param file file to write
+     * @param text contents
+     * @throws IOException if the file cannot be written
+     */
+    private static void write(File file, String text) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(file))) {
+            out.write(text);
+        }
+    }
+}
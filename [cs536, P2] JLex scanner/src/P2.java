@@ -136,7 +136,6 @@ public class P2 {
      */
     private static void lexer(FileReader in, PrintWriter out)
             throws IOException {
-        CharNum.num = 1; // reset character counter
         // create and call the scanner
         Yylex scanner = new Yylex(in);
         Symbol token = scanner.next_token();
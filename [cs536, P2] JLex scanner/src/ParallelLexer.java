@@ -0,0 +1,315 @@
+import java.io.*;
+import java.nio.CharBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java_cup.runtime.*; // defines Symbol
+
+/**
+ * ParallelLexer class: scans a large input by splitting it into chunks at line
+ * boundaries and scanning the chunks concurrently, each with its own Yylex.
+ *
+ * <p>
+ * usage: java ParallelLexer &lt;input file&gt; &lt;copies&gt; [chunks]
+ * </p>
+ *
+ * <p>
+ * No C-- token spans a newline, and every lexical state returns to YYINITIAL
+ * at one, so a chunk that starts at the beginning of a line is scanned exactly
+ * as it would be serially provided the chunk before it ended in YYINITIAL.
+ * That is checked for each chunk; if it does not hold, everything from that
+ * chunk on is scanned again serially. Each chunk interns its identifiers in
+ * its own table and collects its own error messages; both are merged in chunk
+ * order, so ids, token values and messages come out the same as from a serial
+ * scan.
+ * </p>
+ *
+ * <p>
+ * The main method checks that on the given input repeated a number of times,
+ * and times the serial and the parallel scan.
+ * </p>
+ */
+public class ParallelLexer {
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 5;
+
+    /**
+     * test and benchmark driver
+     *
+     * @param args input file, number of copies, optional number of chunks
+     * @throws Exception exception may be thrown by yylex or a scanning task
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: java ParallelLexer <input file> <copies> [chunks]");
+            System.exit(-1);
+        }
+        char[] text = Bench.repeat(Bench.read(args[0]), Integer.parseInt(args[1]))
+                .toCharArray();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunks = args.length > 2 ? Integer.parseInt(args[2]) : 4 * threads;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            ByteArrayOutputStream serialMessages = new ByteArrayOutputStream();
+            ByteArrayOutputStream parallelMessages = new ByteArrayOutputStream();
+            ErrMsg.redirect(new PrintStream(serialMessages, true));
+            List<Symbol> serial = lex(text, 1, new IdTable(), null);
+            ErrMsg.redirect(new PrintStream(parallelMessages, true));
+            List<Symbol> parallel = lex(text, chunks, new IdTable(), pool);
+            ErrMsg.redirect(null);
+
+            String difference = compare(serial, parallel);
+            if (difference == null && !serialMessages.toString()
+                    .equals(parallelMessages.toString()))
+                difference = "error messages differ";
+            if (difference != null) {
+                System.err.println("parallel scan differs from serial: " + difference);
+                System.exit(1);
+            }
+            System.out.printf("%d chars, %d tokens, %d message lines: parallel scan matches serial\n",
+                    text.length, serial.size() - 1,
+                    serialMessages.toString().split("\n", -1).length - 1);
+
+            ErrMsg.redirect(new PrintStream(new ByteArrayOutputStream()));
+            time("serial", text, 1, null);
+            time(String.format("parallel (%d chunks, %d threads)", chunks, threads),
+                    text, chunks, pool);
+            ErrMsg.redirect(null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * scans text, in chunks run on pool; the error messages are written, in
+     * order, wherever the calling thread's ErrMsg messages go
+     *
+     * @param text   input to scan
+     * @param chunks number of chunks to split text into
+     * @param ids    table to intern identifiers in
+     * @param pool   executor to scan the chunks on, or null to scan serially
+     * @return the tokens of text, ending with EOF
+     * @throws IOException          exception may be thrown by yylex
+     * @throws InterruptedException if interrupted waiting for the chunks
+     */
+    static List<Symbol> lex(char[] text, int chunks, IdTable ids,
+            ExecutorService pool) throws IOException, InterruptedException {
+        int[] starts = split(text, pool == null ? 1 : chunks);
+        int count = starts.length - 1;
+
+        // line each chunk starts at
+        int[] firstLine = new int[count];
+        for (int i = 1; i < count; i++)
+            firstLine[i] = firstLine[i - 1] + lines(text, starts[i - 1], starts[i]);
+
+        List<Chunk> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            tasks.add(new Chunk(text, starts[i], starts[i + 1], firstLine[i]));
+        List<Chunk> results = new ArrayList<>(count);
+        if (pool == null) {
+            for (Chunk chunk : tasks)
+                results.add(chunk.call());
+        } else {
+            for (Future<Chunk> future : pool.invokeAll(tasks))
+                results.add(get(future));
+        }
+
+        List<Symbol> tokens = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Chunk chunk = results.get(i);
+            if (i < count - 1 && !chunk.endsInitial) {
+                // speculation failed: the next chunk did not start in YYINITIAL
+                chunk = new Chunk(text, starts[i], text.length, firstLine[i]).call();
+                i = count;
+            }
+            chunk.mergeInto(tokens, ids);
+        }
+        tokens.add(new Symbol(sym.EOF));
+        return tokens;
+    }
+
+    /**
+     * splits text into about the given number of chunks, each ending just
+     * after a newline (or at the end of text)
+     *
+     * @param text   input to split
+     * @param chunks number of chunks wanted
+     * @return start of each chunk, followed by text.length
+     */
+    private static int[] split(char[] text, int chunks) {
+        int[] starts = new int[chunks + 1];
+        int count = 0;
+        int start = 0;
+        do {
+            starts[count++] = start;
+            int end = Math.max(start, (int) ((long) text.length * count / chunks));
+            while (end < text.length && (end == start || text[end - 1] != '\n'))
+                end++;
+            start = end;
+        } while (start < text.length && count < chunks);
+        starts[count] = text.length;
+        return Arrays.copyOf(starts, count + 1);
+    }
+
+    /**
+     * @param text input
+     * @param from start of the range
+     * @param to   end of the range
+     * @return number of lines ended in the range, counted as Yylex counts them
+     */
+    private static int lines(char[] text, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (text[i] == '\r' || (text[i] == '\n' && (i == 0 || text[i - 1] != '\r')))
+                lines++;
+        }
+        return lines;
+    }
+
+    /**
+     * @param future result of a scanning task
+     * @return the scanned chunk
+     * @throws IOException          exception thrown by yylex in the task
+     * @throws InterruptedException if interrupted waiting for the task
+     */
+    private static Chunk get(Future<Chunk> future)
+            throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Chunk class: a range of the input scanned on its own, with its tokens,
+     * identifiers and error messages
+     */
+    private static class Chunk implements Callable<Chunk> {
+        private final char[] text;
+        private final int from;
+        private final int to;
+        private final int firstLine;
+        private final List<Symbol> tokens = new ArrayList<>();
+        private final IdTable ids = new IdTable();
+        private final ByteArrayOutputStream messages = new ByteArrayOutputStream();
+        private boolean endsInitial;
+
+        Chunk(char[] text, int from, int to, int firstLine) {
+            this.text = text;
+            this.from = from;
+            this.to = to;
+            this.firstLine = firstLine;
+        }
+
+        /**
+         * scans the chunk
+         *
+         * @return this chunk
+         * @throws IOException exception may be thrown by yylex
+         */
+        public Chunk call() throws IOException {
+            Yylex scanner = new Yylex(CharBuffer.wrap(text, from, to - from),
+                    firstLine, ids);
+            PrintStream previous = ErrMsg.redirect(new PrintStream(messages, true));
+            try {
+                Symbol token = scanner.next_token();
+                while (token.sym != sym.EOF) {
+                    tokens.add(token);
+                    token = scanner.next_token();
+                }
+            } finally {
+                ErrMsg.redirect(previous);
+            }
+            endsInitial = scanner.inInitialState();
+            return this;
+        }
+
+        /**
+         * appends the chunk's tokens to tokens, with their identifiers
+         * renumbered from the chunk's table to ids, and writes its messages
+         *
+         * @param tokens tokens of the chunks before this one
+         * @param ids    table the identifiers of those tokens are interned in
+         * @throws IOException if the messages cannot be written
+         */
+        void mergeInto(List<Symbol> tokens, IdTable ids) throws IOException {
+            // interning the chunk's names in the order the chunk first saw
+            // them numbers them as a serial scan would
+            int[] map = new int[this.ids.size()];
+            for (int id = 0; id < map.length; id++)
+                map[id] = ids.intern(this.ids.name(id));
+            for (Symbol token : this.tokens) {
+                if (token.sym == sym.ID) {
+                    IdTokenVal value = (IdTokenVal) token.value;
+                    value.id = map[value.id];
+                    value.idVal = ids.name(value.id);
+                }
+                tokens.add(token);
+            }
+            messages.writeTo(ErrMsg.stream());
+        }
+    }
+
+    /**
+     * @param expected tokens of the serial scan
+     * @param actual   tokens of the parallel scan
+     * @return description of the first difference, or null if there is none
+     */
+    private static String compare(List<Symbol> expected, List<Symbol> actual) {
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            String a = describe(expected.get(i));
+            String b = describe(actual.get(i));
+            if (!a.equals(b))
+                return "token " + i + ": " + a + " vs " + b;
+        }
+        if (expected.size() != actual.size())
+            return expected.size() + " tokens vs " + actual.size();
+        return null;
+    }
+
+    /**
+     * @param token a token symbol generated by the scanner
+     * @return all the token's fields as a string
+     */
+    static String describe(Symbol token) {
+        String result = Integer.toString(token.sym);
+        if (token.value instanceof TokenVal) {
+            TokenVal value = (TokenVal) token.value;
+            result += " " + value.linenum + ":" + value.charnum;
+        }
+        if (token.value instanceof IdTokenVal)
+            result += " " + ((IdTokenVal) token.value).idVal + "#"
+                    + ((IdTokenVal) token.value).id;
+        else if (token.value instanceof IntLitTokenVal)
+            result += " " + ((IntLitTokenVal) token.value).intVal;
+        else if (token.value instanceof StrLitTokenVal)
+            result += " " + ((StrLitTokenVal) token.value).strVal;
+        return result;
+    }
+
+    /**
+     * times repeated scans of text and reports the best
+     *
+     * @param label  name for the report line
+     * @param text   input to scan
+     * @param chunks number of chunks to split text into
+     * @param pool   executor to scan the chunks on, or null to scan serially
+     * @throws Exception exception may be thrown by yylex
+     */
+    private static void time(String label, char[] text, int chunks,
+            ExecutorService pool) throws Exception {
+        long best = Long.MAX_VALUE;
+        int tokens = 0;
+        for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+            long start = System.nanoTime();
+            tokens = lex(text, chunks, new IdTable(), pool).size() - 1;
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS && elapsed < best)
+                best = elapsed;
+        }
+        System.out.printf("%s: best %.1f ms, %.0f tokens/sec\n",
+                label, best / 1e6, tokens / (best / 1e9));
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.*;
+import java.util.*;
+import java_cup.runtime.*; // defines Symbol
+
+/**
+ * TokenDump class: prints the tokens and error messages of random inputs, so
+ * that two builds of the scanner can be compared by diffing what they print.
+ *
+ * <p>
+ * usage: java TokenDump &lt;inputs&gt; [seed]
+ * </p>
+ *
+ * <p>
+ * Each input is a short random string over C-- operator, quote, escape and
+ * whitespace characters, letters and digits, and a few characters above 127,
+ * so that it reaches every negated character class of the spec (the string
+ * characters, comments) on both sides of 128. `make test` diffs the output of
+ * a table-driven and a %switch scanner, both generated with %unicode.
+ * </p>
+ */
+public class TokenDump {
+    private static final String ALPHABET =
+            "ab_Z09 \t\n\n\"\"\\\\'?nt{}()<>=!&|+-*/;.,#$\u00e9\u00ff\u0100\u4e2d";
+    private static final int MAX_LENGTH = 40;
+
+    /**
+     * dump driver
+     *
+     * @param args number of inputs, optional random seed
+     * @throws IOException exception may be thrown by yylex
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: java TokenDump <inputs> [seed]");
+            System.exit(-1);
+        }
+        int inputs = Integer.parseInt(args[0]);
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false, "UTF-8");
+        ErrMsg.redirect(out); // messages in order with the tokens
+        for (int i = 0; i < inputs; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(MAX_LENGTH + 1);
+            for (int c = 0; c < length; c++)
+                text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            out.println("input " + i);
+            Yylex scanner = new Yylex(new StringReader(text.toString()));
+            Symbol token;
+            do {
+                token = scanner.next_token();
+                out.println(ParallelLexer.describe(token));
+            } while (token.sym != sym.EOF);
+        }
+        out.flush();
+    }
+}
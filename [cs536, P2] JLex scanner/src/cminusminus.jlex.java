@@ -26,12 +26,15 @@ class IntLitTokenVal extends TokenVal {
     }
 }
 class IdTokenVal extends TokenVal {
-  // new field: the value of the identifier
+  // new fields: the value of the identifier (canonical, see IdTable) and
+  // its interned id
     String idVal;
+    int id;
   // constructor
-    IdTokenVal(int line, int ch, String val) {
+    IdTokenVal(int line, int ch, int id, String name) {
         super(line, ch);
-        idVal = val;
+        this.id = id;
+        idVal = name;
     }
 }
 class StrLitTokenVal extends TokenVal {
@@ -43,10 +46,84 @@ class StrLitTokenVal extends TokenVal {
         strVal = val;
     }
 }
-// The following class is used to keep track of the character number at which
-// the current token starts on its line.
-class CharNum {
-    static int num=1;
+// The following class interns identifiers as they are scanned. Each distinct
+// identifier gets a small integer id and one canonical String, so later
+// phases compare ids, or canonical strings by reference (with their hash
+// codes cached), rather than hashing and comparing a fresh string for every
+// occurrence. The table is open addressed with linear probing and is hashed
+// straight from the scanner's buffer, so a repeated identifier allocates no
+// String at all. Each scanner has its own table, which goes away with it,
+// unless it is given one to share (see ParallelLexer).
+class IdTable {
+    private int[] slots = new int[64]; // id + 1 of each entry; 0 if empty
+    private int[] hashes = new int[32]; // hash of each id
+    private String[] names = new String[32]; // canonical name of each id
+    private int size = 0;
+    // returns the id of the given identifier, adding it if it is new
+    int intern(CharSequence text) {
+        int hash = hash(text);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) {
+                id = add(text.toString(), hash);
+                slots[i] = id + 1;
+                if (2 * size > slots.length) {
+                    rehash();
+                }
+                return id;
+            }
+            if (hashes[id] == hash && matches(names[id], text)) {
+                return id;
+            }
+        }
+    }
+    // returns the canonical name of the given id
+    String name(int id) {
+        return names[id];
+    }
+    // returns the number of distinct identifiers seen
+    int size() {
+        return size;
+    }
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+    private static boolean matches(String name, CharSequence text) {
+        if (name.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private int add(String name, int hash) {
+        if (size == names.length) {
+            names = java.util.Arrays.copyOf(names, 2 * size);
+            hashes = java.util.Arrays.copyOf(hashes, 2 * size);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        return size++;
+    }
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
 }
 
 
@@ -60,6 +137,24 @@ class Yylex implements java_cup.runtime.Scanner {
 	private final int YY_NO_ANCHOR = 4;
 	private final int YY_BOL = 128;
 	private final int YY_EOF = 129;
+
+    // character number at which the current token starts on its line
+    private int charNum = 1;
+    // table the scanned identifiers are interned in
+    private IdTable idTable = new IdTable();
+    // creates a scanner for one chunk of a larger input (see ParallelLexer);
+    // the chunk starts at the beginning of line firstLine (counting from 0)
+    // and its identifiers are interned in the given table
+    Yylex(java.nio.CharBuffer chunk, int firstLine, IdTable idTable) {
+        this(chunk);
+        yyline = firstLine;
+        this.idTable = idTable;
+    }
+    // true if the scanner is in its initial lexical state; a chunk must end in
+    // it for the chunk after it to have been scanned as it would be serially
+    boolean inInitialState() {
+        return yy_lexical_state == YYINITIAL;
+    }
 	private java.io.BufferedReader yy_reader;
 	private int yy_buffer_index;
 	private int yy_buffer_read;
@@ -87,6 +182,44 @@ class Yylex implements java_cup.runtime.Scanner {
 		yy_reader = new java.io.BufferedReader(new java.io.InputStreamReader(instream));
 	}
 
+	Yylex (java.nio.CharBuffer input) {
+		this ();
+		if (null == input) {
+			throw (new Error("Error: Bad input stream initializer."));
+		}
+		if (input.hasArray()) {
+			yy_buffer = input.array();
+			yy_buffer_start = input.arrayOffset() + input.position();
+		}
+		else {
+			yy_buffer = new char[input.remaining()];
+			input.duplicate().get(yy_buffer);
+			yy_buffer_start = 0;
+		}
+		yy_buffer_index = yy_buffer_start;
+		yy_buffer_end = yy_buffer_start;
+		yy_buffer_read = yy_buffer_start + input.remaining();
+	}
+
+	Yylex (java.nio.file.Path path)
+		throws java.io.IOException
+		{
+		this (yy_map(path));
+	}
+
+	private static java.nio.CharBuffer yy_map (java.nio.file.Path path)
+		throws java.io.IOException {
+		java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path);
+		try {
+			return java.nio.charset.Charset.defaultCharset().decode(
+				channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		}
+		finally {
+			channel.close();
+		}
+	}
+
 	private Yylex () {
 		yy_buffer = new char[YY_BUFFER_SIZE];
 		yy_buffer_read = 0;
@@ -105,8 +238,8 @@ class Yylex implements java_cup.runtime.Scanner {
 	private final int COMMENT = 2;
 	private final int yy_state_dtrans[] = {
 		0,
-		46,
-		50
+		85,
+		95
 	};
 	private void yybegin (int state) {
 		yy_lexical_state = state;
@@ -121,6 +254,10 @@ class Yylex implements java_cup.runtime.Scanner {
 			return yy_buffer[yy_buffer_index++];
 		}
 
+		if (null == yy_reader) {
+			return YY_EOF;
+		}
+
 		if (0 != yy_buffer_start) {
 			i = yy_buffer_start;
 			j = 0;
@@ -196,6 +333,42 @@ class Yylex implements java_cup.runtime.Scanner {
 			yy_buffer_start,
 			yy_buffer_end - yy_buffer_start));
 	}
+	private static class yy_text_view implements java.lang.CharSequence {
+		private final char yy_chars[];
+		private final int yy_offset;
+		private final int yy_length;
+		yy_text_view (char chars[], int offset, int length) {
+			yy_chars = chars;
+			yy_offset = offset;
+			yy_length = length;
+		}
+		public int length () {
+			return yy_length;
+		}
+		public char charAt (int index) {
+			if (index < 0 || index >= yy_length) {
+				throw new java.lang.IndexOutOfBoundsException();
+			}
+			return yy_chars[yy_offset + index];
+		}
+		public java.lang.CharSequence subSequence (int start, int end) {
+			if (start < 0 || end > yy_length || start > end) {
+				throw new java.lang.IndexOutOfBoundsException();
+			}
+			return new yy_text_view(yy_chars,yy_offset + start,end - start);
+		}
+		public java.lang.String toString () {
+			return new java.lang.String(yy_chars,yy_offset,yy_length);
+		}
+	}
+	/* The current token, without copying it: valid for the life
+	   of the scanner when it scans a whole buffer, and only until
+	   the next match when it reads from a Reader. */
+	java.lang.CharSequence yytext_view () {
+		return new yy_text_view(yy_buffer,
+			yy_buffer_start,
+			yy_buffer_end - yy_buffer_start);
+	}
 	private int yylength () {
 		return yy_buffer_end - yy_buffer_start;
 	}
@@ -221,37 +394,39 @@ class Yylex implements java_cup.runtime.Scanner {
 			throw new Error("Fatal Error.\n");
 		}
 	}
-	private int[][] unpackFromString(int size1, int size2, String st) {
-		int colonIndex = -1;
-		String lengthString;
+	private static int[][] unpackFromString(int size1, int size2, String st) {
+		int length = st.length();
+		int index = 0;
 		int sequenceLength = 0;
 		int sequenceInteger = 0;
-
-		int commaIndex;
-		String workString;
+		boolean negative;
+		char c;
 
 		int res[][] = new int[size1][size2];
 		for (int i= 0; i < size1; i++) {
 			for (int j= 0; j < size2; j++) {
-				if (sequenceLength != 0) {
-					res[i][j] = sequenceInteger;
-					sequenceLength--;
-					continue;
-				}
-				commaIndex = st.indexOf(',');
-				workString = (commaIndex==-1) ? st :
-					st.substring(0, commaIndex);
-				st = st.substring(commaIndex+1);
-				colonIndex = workString.indexOf(':');
-				if (colonIndex == -1) {
-					res[i][j]=Integer.parseInt(workString);
-					continue;
+				if (sequenceLength == 0) {
+					negative = (st.charAt(index) == '-');
+					if (negative) index++;
+					sequenceInteger = 0;
+					while (index < length
+					       && (c = st.charAt(index)) >= '0' && c <= '9') {
+						sequenceInteger = 10 * sequenceInteger + (c - '0');
+						index++;
+					}
+					if (negative) sequenceInteger = -sequenceInteger;
+					sequenceLength = 1;
+					if (index < length && st.charAt(index) == ':') {
+						index++;
+						sequenceLength = 0;
+						while (index < length
+						       && (c = st.charAt(index)) >= '0' && c <= '9') {
+							sequenceLength = 10 * sequenceLength + (c - '0');
+							index++;
+						}
+					}
+					index++; // skip ','
 				}
-				lengthString =
-					workString.substring(colonIndex+1);
-				sequenceLength=Integer.parseInt(lengthString);
-				workString=workString.substring(0,colonIndex);
-				sequenceInteger=Integer.parseInt(workString);
 				res[i][j] = sequenceInteger;
 				sequenceLength--;
 			}
@@ -311,13 +486,13 @@ class Yylex implements java_cup.runtime.Scanner {
 		/* 49 */ YY_NO_ANCHOR,
 		/* 50 */ YY_NO_ANCHOR,
 		/* 51 */ YY_NO_ANCHOR,
-		/* 52 */ YY_NOT_ACCEPT,
+		/* 52 */ YY_NO_ANCHOR,
 		/* 53 */ YY_NO_ANCHOR,
 		/* 54 */ YY_NO_ANCHOR,
 		/* 55 */ YY_NO_ANCHOR,
 		/* 56 */ YY_NO_ANCHOR,
 		/* 57 */ YY_NO_ANCHOR,
-		/* 58 */ YY_NOT_ACCEPT,
+		/* 58 */ YY_NO_ANCHOR,
 		/* 59 */ YY_NO_ANCHOR,
 		/* 60 */ YY_NO_ANCHOR,
 		/* 61 */ YY_NO_ANCHOR,
@@ -348,48 +523,52 @@ class Yylex implements java_cup.runtime.Scanner {
 		/* 86 */ YY_NO_ANCHOR,
 		/* 87 */ YY_NO_ANCHOR,
 		/* 88 */ YY_NO_ANCHOR,
-		/* 89 */ YY_NO_ANCHOR,
+		/* 89 */ YY_NOT_ACCEPT,
 		/* 90 */ YY_NO_ANCHOR,
 		/* 91 */ YY_NO_ANCHOR,
 		/* 92 */ YY_NO_ANCHOR,
 		/* 93 */ YY_NO_ANCHOR,
-		/* 94 */ YY_NO_ANCHOR,
+		/* 94 */ YY_NOT_ACCEPT,
 		/* 95 */ YY_NO_ANCHOR,
 		/* 96 */ YY_NO_ANCHOR,
 		/* 97 */ YY_NO_ANCHOR
 	};
-	private int yy_cmap[] = unpackFromString(1,130,
+	private static final int yy_cmap[] = unpackFromString(1,130,
 "44:9,43,4,44:2,3,44:18,43,37,24,2,44:2,38,26,32,33,36,34,27,35,29,1,23:10,4" +
 "4,28,31,40,30,26,44,22:26,44,25,44:2,22,44,21,8,15,17,13,11,22,20,5,22:2,10" +
 ",22,6,9,22:2,12,18,7,14,16,19,22:3,41,39,42,44:2,0:2")[0];
 
-	private int yy_rmap[] = unpackFromString(1,98,
-"0,1,2,3,1,4,5,1:4,6,7,1:2,8,9,1,10,11,1:2,12,1,13,1:10,13:11,14,1,15,1,16,1" +
-",17,1,13,18,19,20,21,22,23,24,25,26,17,27,28,29,30,31,32,33,34,35,36,37,38," +
-"39,40,41,42,43,44,45,46,47,48,49,50,51,52,53,54,55,56,57,58,59")[0];
+	private static final int yy_base[] = unpackFromString(1,98,
+"90,1068,92,180,1068,394,413,432,451,470,489,508,527,546,565,584,224,1068:5," +
+"1074,1075,1068:2,236,279,1068,318,341,1066,1067,1068:2,1065,1068,603,413,62" +
+"2,641,660,679,698,717,736,755,774,793,1068:10,413,812,831,850,869,888,413,9" +
+"07,926,945,964,413:2,983,1002,413:3,1021,1040,413,1059,1078,413:3,0,178,106" +
+"8,134:2,222,266,354,1068,1096,45,310,1068")[0];
+
+	private static final int yy_chk[] = unpackFromString(1,1141,
+"0:45,45:45,90:3,92,90:41,134:44,178:3,180,178:40,222:24,224,222:19,266:3,23" +
+"6,266:40,310:3,279,310:40,354:3,318,354:20,341,354:19,394:19,413:19,432:19," +
+"451:19,470:19,489:19,508:19,527:19,546:19,565:19,584:19,603:19,622:19,641:1" +
+"9,660:19,679:19,698:19,717:19,736:19,755:19,774:19,793:19,812:19,831:19,850" +
+":19,869:19,888:19,907:19,926:19,945:19,964:19,983:19,1002:19,1021:19,1040:1" +
+"9,1059:19,1078:19,1096:2,1074,1066,1075,1067,1065,-1:5,1074,1075,-1:4,1096:" +
+"3,-1:18")[0];
 
-	private int yy_nxt[][] = unpackFromString(60,45,
-"1,2,3,-1,4,5,54,84,85,54:2,92,96,86,54,74,87,54,97,93,54:3,6,7,53:2,8,9,10," +
-"11,12,13,14,15,16,17,18,59,62,19,20,21,22,53,-1:46,23,-1:45,23,-1:47,54,60," +
-"54:4,24,54:12,-1:44,6,-1:51,25,-1:9,26,-1:35,27,-1:8,28,-1:38,29,-1:45,30,-" +
-"1:49,31,-1:44,34,-1:47,22,-1:6,54:19,-1:21,1,55:3,4,55:19,47,64,55:19,-1,48" +
-":5,56:2,48:16,49,-1,56,48:18,1,57:3,51,57:40,-1,48:5,61:2,48:16,61:3,48:18," +
-"-1,55:3,-1,55:19,47,52,55:19,-1,56:3,-1,56:19,49,-1,56:19,-1,57:3,-1,57:40," +
-"-1:6,61:2,-1:16,61:3,-1:56,32,-1:11,54:2,35,54:16,-1:22,61:3,-1,61:19,47,58" +
-",61:19,-1:39,33,-1:10,54,36,54:17,-1:26,54:8,37,54:10,-1:26,54:5,38,54:13,-" +
-"1:26,54:8,39,54:10,-1:26,54:2,40,54:16,-1:26,54:12,41,54:6,-1:26,54:8,42,54" +
-":10,-1:26,54:8,43,54:10,-1:26,54,44,54:17,-1:26,54:2,45,54:16,-1:26,63,54:3" +
-",78,54:14,-1:26,54:9,65,54:9,-1:26,54:4,66,54:14,-1:26,54:13,67,54:5,-1:26," +
-"54:9,68,54:9,-1:26,69,54:18,-1:26,54:13,70,54:5,-1:26,54:5,71,54:13,-1:26,5" +
-"4:7,72,54:11,-1:26,54:10,73,54:8,-1:26,54:7,75,54:11,-1:26,54:4,76,54:14,-1" +
-":26,54:5,77,54:13,-1:26,54:4,79,54:14,-1:26,54:5,80,54:13,-1:26,81,54:18,-1" +
-":26,54:9,82,54:9,-1:26,54:9,83,54:9,-1:26,54:16,88,54:2,-1:26,54:15,89,54:3" +
-",-1:26,54:2,90,54:16,-1:26,54:7,91,54:11,-1:26,54:8,94,54:10,-1:26,54:2,95," +
-"54:16,-1:21");
+	private static final int yy_nxt[] = unpackFromString(1,1141,
+"1,86:3,4,86:19,87,88,86:19,1,96:3,97,96:40,1,2,3,36,4,5,6,7,8,6:2,9,10,11,6" +
+",12,13,6,14,15,6:3,16,17,18:2,19,20,21,22,23,24,25,26,27,28,29,30,31,32,33," +
+"34,35,18,90:5,91:2,90:16,91:3,90:18,86:3,36,86:19,87,89,86:19,90:5,92:2,90:" +
+"16,93,16,92,90:18,91:3,53,91:19,87,94,91:19,96:3,54,96:40,92:3,55,92:19,93," +
+"56,92:19,6,37,6:4,38,6:38,39,6:15,40,6:30,41,6:10,42,6:15,43,6:13,44,6:3,45" +
+",6:18,46,6:16,47,6:31,48,6:5,59,6:25,60,6:13,61,6:19,62,6:15,63,6:29,64,6:6" +
+",65,6:26,66,6:9,67,6:25,68,6:11,69,6:26,70,6:15,71,6:26,72,6:14,73,6:17,74," +
+"6:12,75,6:28,76,6:15,77,6:14,78,6:21,79,6:17,80,6:21,81,6:16,82,6:11,83,6:1" +
+"9,84,6:16,91:2,49,57,51,58,35,-1:5,50,52,-1:4,91:3,-1:18")[0];
 
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
 		int yy_lookahead;
+		int yy_index;
 		int yy_anchor = YY_NO_ANCHOR;
 		int yy_state = yy_state_dtrans[yy_lexical_state];
 		int yy_next_state = YY_NO_STATE;
@@ -407,7 +586,8 @@ class Yylex implements java_cup.runtime.Scanner {
 			if (yy_initial && yy_at_bol) yy_lookahead = YY_BOL;
 			else yy_lookahead = yy_advance();
 			yy_next_state = YY_F;
-			yy_next_state = yy_nxt[yy_rmap[yy_state]][yy_cmap[yy_lookahead]];
+			yy_index = yy_base[yy_state] + yy_cmap[yy_lookahead];
+			if (yy_chk[yy_index] == yy_base[yy_state]) yy_next_state = yy_nxt[yy_index];
 			if (YY_EOF == yy_lookahead && true == yy_initial) {
 
     return new Symbol(sym.EOF);
@@ -438,8 +618,8 @@ class Yylex implements java_cup.runtime.Scanner {
 						break;
 					case 2:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
+    int currentCharNum = charNum;
+    charNum += yylength();
     return new Symbol(sym.DIVIDE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -3:
@@ -447,805 +627,805 @@ class Yylex implements java_cup.runtime.Scanner {
 					case 3:
 						{
     // Illegal characters
-    ErrMsg.fatal(yyline+1, CharNum.num, "illegal character ignored:  " + yytext());
-    CharNum.num++;
+    ErrMsg.fatal(yyline+1, charNum, "illegal character ignored:  " + yytext());
+    charNum++;
     yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -4:
 						break;
 					case 4:
 						{
-    CharNum.num = 1;
+    charNum = 1;
     yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -5:
 						break;
 					case 5:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -6:
 						break;
 					case 6:
 						{
-    int currentCharNum = CharNum.num;
-    String stringValue = yytext();
-    int value = 0;
-    /* check for overflow for bad integer literals (integer literals larger than
-        Integer.MAX_VALUE)
-        note - NumberFormatException is not specific for overflow errors, but 
-        reaching this transition state would exclude parsing errors. */
-    try {
-        value = Integer.parseInt(stringValue);
-    } catch (NumberFormatException e) {
-        // the line and column numbers used in the error message should correspond to the position of the first character in the string/integer literal.
-        ErrMsg.warn(yyline + 1, currentCharNum,
-            "integer literal too large; using max value");
-        value = Integer.MAX_VALUE;
-    } finally {
-        CharNum.num += stringValue.length();
-        return new Symbol(sym.INTLITERAL,
-            new IntLitTokenVal(yyline + 1, currentCharNum, value));
-    }
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -7:
 						break;
 					case 7:
 						{
-    yybegin(INQUOTE);
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -8:
 						break;
 					case 8:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.COMMA, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -9:
 						break;
 					case 9:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.SEMICOLON, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -10:
 						break;
 					case 10:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.DOT, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -11:
 						break;
 					case 11:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.GREATER, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -12:
 						break;
 					case 12:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.LESS, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -13:
 						break;
 					case 13:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.LPAREN, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -14:
 						break;
 					case 14:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.RPAREN, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -15:
 						break;
 					case 15:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.PLUS, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -16:
 						break;
 					case 16:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.MINUS, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    String stringValue = yytext();
+    int value = 0;
+    /* check for overflow for bad integer literals (integer literals larger than
+        Integer.MAX_VALUE)
+        note - NumberFormatException is not specific for overflow errors, but 
+        reaching this transition state would exclude parsing errors. */
+    try {
+        value = Integer.parseInt(stringValue);
+    } catch (NumberFormatException e) {
+        // the line and column numbers used in the error message should correspond to the position of the first character in the string/integer literal.
+        ErrMsg.warn(yyline + 1, currentCharNum,
+            "integer literal too large; using max value");
+        value = Integer.MAX_VALUE;
+    } finally {
+        charNum += stringValue.length();
+        return new Symbol(sym.INTLITERAL,
+            new IntLitTokenVal(yyline + 1, currentCharNum, value));
+    }
 }
 					case -17:
 						break;
 					case 17:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.TIMES, new TokenVal(yyline + 1, currentCharNum));
+    yybegin(INQUOTE);
 }
 					case -18:
 						break;
 					case 18:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.NOT, new TokenVal(yyline + 1, currentCharNum));
+    // Illegal characters
+    ErrMsg.fatal(yyline+1, charNum, "illegal character ignored:  " + yytext());
+    charNum++;
+    yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -19:
 						break;
 					case 19:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.ASSIGN, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.COMMA, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -20:
 						break;
 					case 20:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.LCURLY, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.SEMICOLON, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -21:
 						break;
 					case 21:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.RCURLY, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.DOT, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -22:
 						break;
 					case 22:
 						{
-    CharNum.num += yytext().length(); 
-    yybegin(YYINITIAL); // just to make sure it stays at starting state
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.GREATER, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -23:
 						break;
 					case 23:
-						{ yybegin(COMMENT); }
+						{
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.LESS, new TokenVal(yyline + 1, currentCharNum));
+}
 					case -24:
 						break;
 					case 24:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.IF, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.LPAREN, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -25:
 						break;
 					case 25:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.READ, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.RPAREN, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -26:
 						break;
 					case 26:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.GREATEREQ, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.PLUS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -27:
 						break;
 					case 27:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.WRITE, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.MINUS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -28:
 						break;
 					case 28:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.LESSEQ, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.TIMES, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -29:
 						break;
 					case 29:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.PLUSPLUS, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.NOT, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -30:
 						break;
 					case 30:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.MINUSMINUS, new TokenVal(yyline + 1, currentCharNum));
+    // Illegal characters
+    ErrMsg.fatal(yyline+1, charNum, "illegal character ignored:  " + yytext());
+    charNum++;
+    yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -31:
 						break;
 					case 31:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.NOTEQUALS, new TokenVal(yyline + 1, currentCharNum));
+    // Illegal characters
+    ErrMsg.fatal(yyline+1, charNum, "illegal character ignored:  " + yytext());
+    charNum++;
+    yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -32:
 						break;
 					case 32:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.AND, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.ASSIGN, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -33:
 						break;
 					case 33:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.OR, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.LCURLY, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -34:
 						break;
 					case 34:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.EQUALS, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.RCURLY, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -35:
 						break;
 					case 35:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.INT, new TokenVal(yyline + 1, currentCharNum));
+    charNum += yylength(); 
+    yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -36:
 						break;
 					case 36:
-						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.CIN, new TokenVal(yyline + 1, currentCharNum));
-}
+						{ yybegin(COMMENT); }
 					case -37:
 						break;
 					case 37:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.TRUE, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -38:
 						break;
 					case 38:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.BOOL, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.IF, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -39:
 						break;
 					case 39:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.ELSE, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -40:
 						break;
 					case 40:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.COUT, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -41:
 						break;
 					case 41:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.VOID, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -42:
 						break;
 					case 42:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.FALSE, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -43:
 						break;
 					case 43:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.WHILE, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -44:
 						break;
 					case 44:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.RETURN, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -45:
 						break;
 					case 45:
 						{
-    int currentCharNum = CharNum.num;
-    CharNum.num += yytext().length();
-    return new Symbol(sym.STRUCT, new TokenVal(yyline + 1, currentCharNum));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -46:
 						break;
 					case 46:
 						{
-    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "unterminated string literal ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -47:
 						break;
 					case 47:
 						{
-    yybegin(YYINITIAL);
-    // valid string literal
-    int currentCharNum = CharNum.num;
-    // put quote back and correct character # for message
-    String value = "\"" + yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.STRINGLITERAL, new StrLitTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -48:
 						break;
 					case 48:
 						{
-    // a string literal that contains a bad escaped character and is unterminated; (start looking for the next token after the newline). Note that a string literal that has a newline immediately after a backslash should be treated as having a bad escaped character and being unterminated.
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "unterminated string literal with bad escaped character ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -49:
 						break;
 					case 49:
 						{
-    // Bad string literals - includes a bad "escaped" character; (start looking for the next token after the closing quote). 
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "string literal with bad escaped character ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.READ, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -50:
 						break;
 					case 50:
 						{
-    // ignore
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.GREATEREQ, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -51:
 						break;
 					case 51:
-						{ 
-    CharNum.num = 1; 
-    yybegin(YYINITIAL); 
+						{
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.WRITE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -52:
 						break;
-					case 53:
+					case 52:
 						{
-    // Illegal characters
-    ErrMsg.fatal(yyline+1, CharNum.num, "illegal character ignored:  " + yytext());
-    CharNum.num++;
-    yybegin(YYINITIAL); // just to make sure it stays at starting state
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.LESSEQ, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -53:
 						break;
-					case 54:
+					case 53:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.PLUSPLUS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -54:
 						break;
-					case 55:
+					case 54:
 						{
-    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "unterminated string literal ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.MINUSMINUS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -55:
 						break;
-					case 56:
+					case 55:
 						{
-    // a string literal that contains a bad escaped character and is unterminated; (start looking for the next token after the newline). Note that a string literal that has a newline immediately after a backslash should be treated as having a bad escaped character and being unterminated.
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "unterminated string literal with bad escaped character ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.NOTEQUALS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -56:
 						break;
-					case 57:
+					case 56:
 						{
-    // ignore
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.AND, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -57:
 						break;
-					case 59:
+					case 57:
 						{
-    // Illegal characters
-    ErrMsg.fatal(yyline+1, CharNum.num, "illegal character ignored:  " + yytext());
-    CharNum.num++;
-    yybegin(YYINITIAL); // just to make sure it stays at starting state
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.OR, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -58:
 						break;
-					case 60:
+					case 58:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.EQUALS, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -59:
 						break;
-					case 61:
+					case 59:
 						{
-    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
-    int currentCharNum = CharNum.num;
-    ErrMsg.fatal(yyline + 1, CharNum.num, "unterminated string literal ignored");
-    CharNum.num = 1; // reset
-    yybegin(YYINITIAL);
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.INT, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -60:
 						break;
-					case 62:
+					case 60:
 						{
-    // Illegal characters
-    ErrMsg.fatal(yyline+1, CharNum.num, "illegal character ignored:  " + yytext());
-    CharNum.num++;
-    yybegin(YYINITIAL); // just to make sure it stays at starting state
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -61:
 						break;
-					case 63:
+					case 61:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -62:
 						break;
-					case 64:
+					case 62:
 						{
-    // Illegal characters
-    ErrMsg.fatal(yyline+1, CharNum.num, "illegal character ignored:  " + yytext());
-    CharNum.num++;
-    yybegin(YYINITIAL); // just to make sure it stays at starting state
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -63:
 						break;
-					case 65:
+					case 63:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -64:
 						break;
-					case 66:
+					case 64:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -65:
 						break;
-					case 67:
+					case 65:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.CIN, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -66:
 						break;
-					case 68:
+					case 66:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -67:
 						break;
-					case 69:
+					case 67:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -68:
 						break;
-					case 70:
+					case 68:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -69:
 						break;
-					case 71:
+					case 69:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -70:
 						break;
-					case 72:
+					case 70:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.TRUE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -71:
 						break;
-					case 73:
+					case 71:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.BOOL, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -72:
 						break;
-					case 74:
+					case 72:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -73:
 						break;
-					case 75:
+					case 73:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -74:
 						break;
-					case 76:
+					case 74:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.ELSE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -75:
 						break;
-					case 77:
+					case 75:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.COUT, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -76:
 						break;
-					case 78:
+					case 76:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.VOID, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -77:
 						break;
-					case 79:
+					case 77:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -78:
 						break;
-					case 80:
+					case 78:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -79:
 						break;
-					case 81:
+					case 79:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.FALSE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -80:
 						break;
-					case 82:
+					case 80:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -81:
 						break;
-					case 83:
+					case 81:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    int id = idTable.intern(yytext_view());
+    charNum += yylength();
+    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, id, idTable.name(id)));
 }
 					case -82:
 						break;
-					case 84:
+					case 82:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.WHILE, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -83:
 						break;
-					case 85:
+					case 83:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.RETURN, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -84:
 						break;
-					case 86:
+					case 84:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    int currentCharNum = charNum;
+    charNum += yylength();
+    return new Symbol(sym.STRUCT, new TokenVal(yyline + 1, currentCharNum));
 }
 					case -85:
 						break;
-					case 87:
+					case 85:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "unterminated string literal ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -86:
 						break;
-					case 88:
+					case 86:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "unterminated string literal ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -87:
 						break;
-					case 89:
+					case 87:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    yybegin(YYINITIAL);
+    // valid string literal
+    int currentCharNum = charNum;
+    // put quote back and correct character # for message
+    String value = "\"" + yytext();
+    charNum += value.length();
+    return new Symbol(sym.STRINGLITERAL, new StrLitTokenVal(yyline + 1, currentCharNum, value));
 }
 					case -88:
 						break;
-					case 90:
+					case 88:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // Illegal characters
+    ErrMsg.fatal(yyline+1, charNum, "illegal character ignored:  " + yytext());
+    charNum++;
+    yybegin(YYINITIAL); // just to make sure it stays at starting state
 }
 					case -89:
 						break;
-					case 91:
+					case 90:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // a string literal that contains a bad escaped character and is unterminated; (start looking for the next token after the newline). Note that a string literal that has a newline immediately after a backslash should be treated as having a bad escaped character and being unterminated.
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "unterminated string literal with bad escaped character ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -90:
 						break;
-					case 92:
+					case 91:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // Unterminated string literals - if there is a newline or end-of-file before the closing quote. (start looking for the next token after the newline)
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "unterminated string literal ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -91:
 						break;
-					case 93:
+					case 92:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // a string literal that contains a bad escaped character and is unterminated; (start looking for the next token after the newline). Note that a string literal that has a newline immediately after a backslash should be treated as having a bad escaped character and being unterminated.
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "unterminated string literal with bad escaped character ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -92:
 						break;
-					case 94:
+					case 93:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // Bad string literals - includes a bad "escaped" character; (start looking for the next token after the closing quote). 
+    int currentCharNum = charNum;
+    ErrMsg.fatal(yyline + 1, charNum, "string literal with bad escaped character ignored");
+    charNum = 1; // reset
+    yybegin(YYINITIAL);
 }
 					case -93:
 						break;
 					case 95:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // ignore
 }
 					case -94:
 						break;
 					case 96:
 						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+    // ignore
 }
 					case -95:
 						break;
 					case 97:
-						{
-    int currentCharNum = CharNum.num;
-    String value = yytext();
-    CharNum.num += value.length();
-    return new Symbol(sym.ID, new IdTokenVal(yyline + 1, currentCharNum, value));
+						{ 
+    charNum = 1; 
+    yybegin(YYINITIAL); 
 }
 					case -96:
 						break;
@@ -1,23 +1,58 @@
 import java.util.*;
 
+// one hash table for all scopes (LeBlanc-Cook), with a log of the
+// declarations of each scope for removeScope to undo
 public class SymTable {
 
-    private List<HashMap<String, TSym>> list;
+    // a declaration, linked to the declaration of the same name it shadows
+    private static class Entry {
+        String name;
+        TSym sym;
+        int scope; // depth of the declaring scope, 1 for the outermost
+        Entry shadowed;
+
+        Entry(String name, TSym sym, int scope, Entry shadowed) {
+            this.name = name;
+            this.sym = sym;
+            this.scope = scope;
+            this.shadowed = shadowed;
+        }
+    }
+
+    // a scope of another table, searched after this table's own scopes
+    private static class Link {
+        SymTable symTab;
+        int scope;
+
+        Link(SymTable symTab, int scope) {
+            this.symTab = symTab;
+            this.scope = scope;
+        }
+    }
+
+    private HashMap<String, Entry> table; // innermost declaration of each name
+    private ArrayList<Entry> log; // declarations, in order of their scopes
+    private int[] scopeStart; // index in log of each scope's first declaration
+    private int depth; // number of scopes
+    private ArrayList<Link> links; // linked scopes, see linkScope
 
     public SymTable() {
-        list = new LinkedList<HashMap<String, TSym>>();
-        list.add(new HashMap<String, TSym>());
+        this(1);
     }
 
     /**
      * Create symbol table with or without new scopes
-     * 
+     *
      * @param numberScope number of scopes to create with the SymTable
      */
     public SymTable(int numberScope) {
-        list = new LinkedList<HashMap<String, TSym>>();
+        table = new HashMap<String, Entry>();
+        log = new ArrayList<Entry>();
+        scopeStart = new int[8];
+        depth = 0;
+        links = new ArrayList<Link>();
         for (; numberScope-- > 0;)
-            list.add(0, new HashMap<String, TSym>());
+            addScope();
     }
 
     public void addDecl(String name, TSym sym) throws DuplicateSymException,
@@ -31,68 +66,119 @@ public class SymTable {
             throw new IllegalArgumentException();
         }
 
-        if (list.isEmpty())
+        // declarations only go into the table's own scopes
+        if (depth == 0)
             throw new EmptySymTableException();
 
 
-        HashMap<String, TSym> symTab = list.get(0);
-        if (symTab.containsKey(name)) {
+        Entry visible = table.get(name);
+        if (visible != null && visible.scope == depth) {
             throw new DuplicateSymException();
         } else {
-            symTab.put(name, sym);
+            Entry entry = new Entry(name, sym, depth, visible);
+            table.put(name, entry);
+            log.add(entry);
         }
     }
 
     public void addScope() {
-        list.add(0, new HashMap<String, TSym>());
+        if (depth == scopeStart.length)
+            scopeStart = Arrays.copyOf(scopeStart, 2 * depth);
+        scopeStart[depth++] = log.size();
     }
 
     /**
-     * Add an external hashmap to the scope chain (to end of list)
-     * 
+     * Add an external table's current scope to the scope chain (as its
+     * outermost scope)
+     *
      * Used for providing access to global variables from a nested struct
      * SymTable
      */
     public void linkScope(SymTable additionalSymTable) {
-        this.list.add(this.list.size(), additionalSymTable.list.get(0));
+        this.links.add(new Link(additionalSymTable, additionalSymTable.depth));
     }
 
     public TSym lookupLocal(String name) throws EmptySymTableException {
-        if (list.isEmpty()) {
+        if (depth == 0 && links.isEmpty()) {
             throw new EmptySymTableException();
         }
 
-        if (list.get(0).containsKey(name)) {
-            return list.get(0).get(name);
+        if (depth == 0) {
+            Link link = links.get(0);
+            return link.symTab.lookupScope(name, link.scope);
+        }
+
+        Entry visible = table.get(name);
+        if (visible != null && visible.scope == depth) {
+            return visible.sym;
         } else {
             return null;
         }
     }
 
     public TSym lookupGlobal(String name) throws EmptySymTableException {
-        if (list.isEmpty()) {
+        if (depth == 0 && links.isEmpty()) {
             throw new EmptySymTableException();
         }
 
-        for (HashMap<String, TSym> symTab : list) {
-            if (symTab.containsKey(name)) {
-                return symTab.get(name);
+        Entry visible = table.get(name);
+        if (visible != null) {
+            return visible.sym;
+        }
+        for (Link link : links) {
+            TSym sym = link.symTab.lookupScope(name, link.scope);
+            if (sym != null) {
+                return sym;
             }
         }
         return null;
     }
 
     public void removeScope() throws EmptySymTableException {
-        if (list.isEmpty())
+        if (depth == 0 && links.isEmpty())
             throw new EmptySymTableException();
 
-        list.remove(0);
+        if (depth == 0) {
+            links.remove(0);
+            return;
+        }
+
+        // undo the scope's declarations, latest first
+        int start = scopeStart[--depth];
+        for (int i = log.size() - 1; i >= start; i--) {
+            Entry entry = log.remove(i);
+            if (entry.shadowed == null)
+                table.remove(entry.name);
+            else
+                table.put(entry.name, entry.shadowed);
+        }
     }
 
     public void print() {
         System.out.print("\nSym Table\n");
-        for (HashMap<String, TSym> symTab : list)
-            System.out.println(symTab.toString());
+        for (int scope = depth; scope > 0; scope--)
+            System.out.println(scopeMap(scope).toString());
+        for (Link link : links)
+            System.out.println(link.symTab.scopeMap(link.scope).toString());
         System.out.println();
     }
+
+    // the symbol declared for name in the given scope (1 for the outermost)
+    private TSym lookupScope(String name, int scope) {
+        Entry entry = table.get(name);
+        while (entry != null && entry.scope > scope)
+            entry = entry.shadowed;
+        return entry != null && entry.scope == scope ? entry.sym : null;
+    }
+
+    // the declarations of the given scope (1 for the outermost), as a map
+    private HashMap<String, TSym> scopeMap(int scope) {
+        HashMap<String, TSym> symTab = new HashMap<String, TSym>();
+        if (scope > depth) // removed since it was linked
+            return symTab;
+        int end = scope < depth ? scopeStart[scope] : log.size();
+        for (int i = scopeStart[scope - 1]; i < end; i++)
+            symTab.put(log.get(i).name, log.get(i).sym);
+        return symTab;
+    }
 }
@@ -26,7 +26,7 @@ class IntLitTokenVal extends TokenVal {
     }
 }
 class IdTokenVal extends TokenVal {
-  // new field: the value of the identifier
+  // new field: the value of the identifier (canonical, see IdTable)
     String idVal;
   // constructor
     IdTokenVal(int line, int ch, String val) {
@@ -48,6 +48,77 @@ class StrLitTokenVal extends TokenVal {
 class CharNum {
     static int num=1;
 }
+// The following class interns identifiers as they are scanned. Each distinct
+// identifier gets one canonical String, so later phases compare names by
+// reference (with their hash codes cached), rather than hashing and comparing
+// a fresh string for every occurrence. The table is open addressed with
+// linear probing and is hashed straight from the scanner's buffer, so a
+// repeated identifier allocates no String at all. Each scanner has its own
+// table, which goes away with it.
+class IdTable {
+    private int[] slots = new int[64]; // index + 1 of each entry; 0 if empty
+    private int[] hashes = new int[32]; // hash of each name
+    private String[] names = new String[32]; // canonical names, in order seen
+    private int size = 0;
+    // returns the canonical name of the given identifier, adding it if it is
+    // new
+    String intern(CharSequence text) {
+        int hash = hash(text);
+        int mask = slots.length - 1;
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (id < 0) {
+                id = add(text.toString(), hash);
+                slots[i] = id + 1;
+                if (2 * size > slots.length) {
+                    rehash();
+                }
+                return names[id];
+            }
+            if (hashes[id] == hash && matches(names[id], text)) {
+                return names[id];
+            }
+        }
+    }
+    private static int hash(CharSequence text) {
+        int hash = 0;
+        for (int i = 0; i < text.length(); i++) {
+            hash = 31 * hash + text.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+    private static boolean matches(String name, CharSequence text) {
+        if (name.length() != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private int add(String name, int hash) {
+        if (size == names.length) {
+            names = java.util.Arrays.copyOf(names, 2 * size);
+            hashes = java.util.Arrays.copyOf(hashes, 2 * size);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        return size++;
+    }
+    private void rehash() {
+        slots = new int[2 * slots.length];
+        int mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int i = hashes[id] & mask;
+            while (slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = id + 1;
+        }
+    }
+}
 
 
 class Yylex implements java_cup.runtime.Scanner {
@@ -60,6 +131,9 @@ class Yylex implements java_cup.runtime.Scanner {
 	private final int YY_NO_ANCHOR = 4;
 	private final int YY_BOL = 128;
 	private final int YY_EOF = 129;
+
+// the identifiers scanned so far
+private IdTable ids = new IdTable();
 	private java.io.BufferedReader yy_reader;
 	private int yy_buffer_index;
 	private int yy_buffer_read;
@@ -86,6 +160,44 @@ class Yylex implements java_cup.runtime.Scanner {
 		yy_reader = new java.io.BufferedReader(new java.io.InputStreamReader(instream));
 	}
 
+	Yylex (java.nio.CharBuffer input) {
+		this ();
+		if (null == input) {
+			throw (new Error("Error: Bad input stream initializer."));
+		}
+		if (input.hasArray()) {
+			yy_buffer = input.array();
+			yy_buffer_start = input.arrayOffset() + input.position();
+		}
+		else {
+			yy_buffer = new char[input.remaining()];
+			input.duplicate().get(yy_buffer);
+			yy_buffer_start = 0;
+		}
+		yy_buffer_index = yy_buffer_start;
+		yy_buffer_end = yy_buffer_start;
+		yy_buffer_read = yy_buffer_start + input.remaining();
+	}
+
+	Yylex (java.nio.file.Path path)
+		throws java.io.IOException
+		{
+		this (yy_map(path));
+	}
+
+	private static java.nio.CharBuffer yy_map (java.nio.file.Path path)
+		throws java.io.IOException {
+		java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path);
+		try {
+			return java.nio.charset.Charset.defaultCharset().decode(
+				channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,
+					0, channel.size()));
+		}
+		finally {
+			channel.close();
+		}
+	}
+
 	private Yylex () {
 		yy_buffer = new char[YY_BUFFER_SIZE];
 		yy_buffer_read = 0;
@@ -115,6 +227,10 @@ class Yylex implements java_cup.runtime.Scanner {
 			return yy_buffer[yy_buffer_index++];
 		}
 
+		if (null == yy_reader) {
+			return YY_EOF;
+		}
+
 		if (0 != yy_buffer_start) {
 			i = yy_buffer_start;
 			j = 0;
@@ -188,6 +304,42 @@ class Yylex implements java_cup.runtime.Scanner {
 			yy_buffer_start,
 			yy_buffer_end - yy_buffer_start));
 	}
+	private static class yy_text_view implements java.lang.CharSequence {
+		private final char yy_chars[];
+		private final int yy_offset;
+		private final int yy_length;
+		yy_text_view (char chars[], int offset, int length) {
+			yy_chars = chars;
+			yy_offset = offset;
+			yy_length = length;
+		}
+		public int length () {
+			return yy_length;
+		}
+		public char charAt (int index) {
+			if (index < 0 || index >= yy_length) {
+				throw new java.lang.IndexOutOfBoundsException();
+			}
+			return yy_chars[yy_offset + index];
+		}
+		public java.lang.CharSequence subSequence (int start, int end) {
+			if (start < 0 || end > yy_length || start > end) {
+				throw new java.lang.IndexOutOfBoundsException();
+			}
+			return new yy_text_view(yy_chars,yy_offset + start,end - start);
+		}
+		public java.lang.String toString () {
+			return new java.lang.String(yy_chars,yy_offset,yy_length);
+		}
+	}
+	/* The current token, without copying it: valid for the life
+	   of the scanner when it scans a whole buffer, and only until
+	   the next match when it reads from a Reader. */
+	java.lang.CharSequence yytext_view () {
+		return new yy_text_view(yy_buffer,
+			yy_buffer_start,
+			yy_buffer_end - yy_buffer_start);
+	}
 	private int yylength () {
 		return yy_buffer_end - yy_buffer_start;
 	}
@@ -213,37 +365,39 @@ class Yylex implements java_cup.runtime.Scanner {
 			throw new Error("Fatal Error.\n");
 		}
 	}
-	private int[][] unpackFromString(int size1, int size2, String st) {
-		int colonIndex = -1;
-		String lengthString;
+	private static int[][] unpackFromString(int size1, int size2, String st) {
+		int length = st.length();
+		int index = 0;
 		int sequenceLength = 0;
 		int sequenceInteger = 0;
-
-		int commaIndex;
-		String workString;
+		boolean negative;
+		char c;
 
 		int res[][] = new int[size1][size2];
 		for (int i= 0; i < size1; i++) {
 			for (int j= 0; j < size2; j++) {
-				if (sequenceLength != 0) {
-					res[i][j] = sequenceInteger;
-					sequenceLength--;
-					continue;
-				}
-				commaIndex = st.indexOf(',');
-				workString = (commaIndex==-1) ? st :
-					st.substring(0, commaIndex);
-				st = st.substring(commaIndex+1);
-				colonIndex = workString.indexOf(':');
-				if (colonIndex == -1) {
-					res[i][j]=Integer.parseInt(workString);
-					continue;
+				if (sequenceLength == 0) {
+					negative = (st.charAt(index) == '-');
+					if (negative) index++;
+					sequenceInteger = 0;
+					while (index < length
+					       && (c = st.charAt(index)) >= '0' && c <= '9') {
+						sequenceInteger = 10 * sequenceInteger + (c - '0');
+						index++;
+					}
+					if (negative) sequenceInteger = -sequenceInteger;
+					sequenceLength = 1;
+					if (index < length && st.charAt(index) == ':') {
+						index++;
+						sequenceLength = 0;
+						while (index < length
+						       && (c = st.charAt(index)) >= '0' && c <= '9') {
+							sequenceLength = 10 * sequenceLength + (c - '0');
+							index++;
+						}
+					}
+					index++; // skip ','
 				}
-				lengthString =
-					workString.substring(colonIndex+1);
-				sequenceLength=Integer.parseInt(lengthString);
-				workString=workString.substring(0,colonIndex);
-				sequenceInteger=Integer.parseInt(workString);
 				res[i][j] = sequenceInteger;
 				sequenceLength--;
 			}
@@ -301,7 +455,7 @@ class Yylex implements java_cup.runtime.Scanner {
 		/* 47 */ YY_NO_ANCHOR,
 		/* 48 */ YY_NO_ANCHOR,
 		/* 49 */ YY_NO_ANCHOR,
-		/* 50 */ YY_NOT_ACCEPT,
+		/* 50 */ YY_NO_ANCHOR,
 		/* 51 */ YY_NO_ANCHOR,
 		/* 52 */ YY_NO_ANCHOR,
 		/* 53 */ YY_NO_ANCHOR,
@@ -341,50 +495,50 @@ class Yylex implements java_cup.runtime.Scanner {
 		/* 87 */ YY_NO_ANCHOR,
 		/* 88 */ YY_NO_ANCHOR,
 		/* 89 */ YY_NO_ANCHOR,
-		/* 90 */ YY_NO_ANCHOR,
+		/* 90 */ YY_NOT_ACCEPT,
 		/* 91 */ YY_NO_ANCHOR,
 		/* 92 */ YY_NO_ANCHOR,
 		/* 93 */ YY_NO_ANCHOR,
 		/* 94 */ YY_NO_ANCHOR,
 		/* 95 */ YY_NO_ANCHOR,
-		/* 96 */ YY_NO_ANCHOR,
-		/* 97 */ YY_NO_ANCHOR
+		/* 96 */ YY_NO_ANCHOR
 	};
-	private int yy_cmap[] = unpackFromString(1,130,
-"46:9,27,26,46:2,23,46:18,27,42,22,29,46:2,43,25,32,33,41,39,35,40,36,28,21:" +
-"10,46,34,37,45,38,25,46,19:26,46,24,46:2,20,46,13,1,15,8,11,12,19,17,4,19:2" +
-",3,19,5,2,18,19,9,14,6,10,7,16,19:3,30,44,31,46:2,0:2")[0];
+	private static final int yy_cmap[] = unpackFromString(1,130,
+"45:9,26,25,45:2,22,45:18,26,41,21,28,45:2,42,24,31,32,40,38,34,39,35,27,20:" +
+"10,45,33,36,44,37,24,45,19:26,45,23,45:2,19,45,13,1,15,8,11,12,19,17,4,19:2" +
+",3,19,5,2,18,19,9,14,6,10,7,16,19:3,29,43,30,45:2,0:2")[0];
+
+	private static final int yy_base[] = unpackFromString(1,97,
+"0,1119,360,380,400,420,440,460,480,500,520,540,560,2,45,1119:2,44,88,90,111" +
+"9:7,1127,1128,122,166,1119,206,253,293,296,580,600,380,620,640,660,680,700," +
+"720,740,760,780,1119,135,1119:10,800,380,820,840,860,880,900,920,940,960,38" +
+"0,980,180,380:3,1000,1020,380,1040,1060,380,1080,1119,225,1100,1120,380,114" +
+"0,380,270,315,380:3,315,1156")[0];
 
-	private int yy_rmap[] = unpackFromString(1,98,
-"0,1,2,3,4,1:2,5,6,7,1:7,8,9,10,11,1,12,13,14,1,15,1:10,14:7,1,14:5,16,17,18" +
-",19,20,21,22,23,24,20,25,26,27,28,29,30,31,32,33,34,35,36,37,14,38,39,40,41" +
-",42,43,44,45,46,47,48,49,50,51,52,14,53,54,55,56,57,58,59,60")[0];
+	private static final int yy_chk[] = unpackFromString(1,1202,
+"0:22,2,0:23,45:24,44,45:20,90:24,88,90:20,135:24,122,135:20,180:24,166,180:" +
+"20,225:24,206,225:20,270:24,253,270:20,315:20,293,315:3,296,315:20,360:20,3" +
+"80:20,400:20,420:20,440:20,460:20,480:20,500:20,520:20,540:20,560:20,580:20" +
+",600:20,620:20,640:20,660:20,680:20,700:20,720:20,740:20,760:20,780:20,800:" +
+"20,820:20,840:20,860:20,880:20,900:20,920:20,940:20,960:20,980:20,1000:20,1" +
+"020:20,1040:20,1060:20,1080:20,1100:20,1120:20,1140:20,1156:2,1127,-1,1128," +
+"-1:5,1127,1128,-1:4,1156,-1,1156:2,-1:21")[0];
 
-	private int yy_nxt[][] = unpackFromString(61,47,
-"1,2,89:2,51,89,91,92,89,93,89,94,95,89,96,71,97,89:4,3,4,-1,5:2,6,7,8,9,10," +
-"11,12,13,14,15,16,17,18,19,20,21,22,52,56,23,5,-1:48,89,72,89:17,73:2,-1:46" +
-",3,-1:26,4:21,25,4,26,4,-1,4:20,-1:27,7,-1:47,9,-1:19,9:25,-1,9:20,-1:37,27" +
-",-1:7,28,-1:39,29,-1:6,30,-1:40,31,-1:47,32,-1:51,33,-1:46,36,-1:2,89:19,73" +
-":2,-1:26,53:4,4:2,53:15,4,53,4:2,-1,53:20,-1,50:21,44,50:3,-1,50:20,-1,89:4" +
-",55,89:6,24,89:7,73:2,-1:68,34,-1:4,53:21,44,53,57,53,-1,53:20,-1,59:21,-1," +
-"59,61,59,-1,59:20,-1,89:5,37,89:13,73:2,-1:69,35,-1:3,50:4,53:2,50:15,54,50" +
-",53:2,-1,50:20,-1,89:4,38,89:14,73:2,-1:26,89:2,39,89:16,73:2,-1:30,59:2,-1" +
-":15,59,-1,59:2,-1:22,89:10,40,89:8,73:2,-1:26,89:7,41,89:11,73:2,-1:26,89:1" +
-"0,42,89:8,73:2,-1:26,89:5,43,89:13,73:2,-1:26,89:10,45,89:8,73:2,-1:26,89:1" +
-"0,46,89:8,73:2,-1:26,89:4,47,89:14,73:2,-1:26,89:5,48,89:13,73:2,-1:26,89:5" +
-",49,89:13,73:2,-1:26,89,80,89,58,89:15,73:2,-1:26,89,60,89:17,73:2,-1:26,89" +
-":9,62,89:9,73:2,-1:26,89:3,63,89:15,73:2,-1:26,89:5,82,89:11,83,89,73:2,-1:" +
-"26,89:13,64,89:5,73:2,-1:26,89:2,84,89:16,73:2,-1:26,89:8,90,89:10,73:2,-1:" +
-"26,89:9,65,89:9,73:2,-1:26,89:3,85,89:15,73:2,-1:26,89:9,86,89:9,73:2,-1:26" +
-",89:10,87,89:8,73:2,-1:26,89:13,66,89:5,73:2,-1:26,89:2,67,89:16,73:2,-1:26" +
-",89:8,68,89:10,73:2,-1:26,89:12,69,89:6,73:2,-1:26,89:14,70,89:4,73:2,-1:26" +
-",89:9,88,89:9,73:2,-1:26,89:8,74,89:10,73:2,-1:26,89,75,89:17,73:2,-1:26,89" +
-":10,76,89:8,73:2,-1:26,89:2,77,89:16,73:2,-1:26,89:12,78,89:6,73:2,-1:26,89" +
-":5,79,89:13,73:2,-1:26,89:16,81,89:2,73:2,-1:25");
+	private static final int yy_nxt[] = unpackFromString(1,1202,
+"1,2,3:2,4,3,5,6,3,7,3,8,9,3,10,11,12,3:3,13,14,13,15:2,16,17,18,19,20,21,22" +
+",23,24,25,26,27,28,29,30,31,32,33,34,35,15,14:20,48,14,49,14,17,14:20,19:45" +
+",72:4,14:2,72:14,14,72,14:2,54,72:40,83,72,84,72,55,72:20,90:4,72:2,90:14,9" +
+"1,90,72:2,56,90:40,83,90:3,57,90:20,95:20,58,95,96,95,59,95:20,3,36,3:42,37" +
+",3:6,38,3:16,39,3:12,40,3:28,41,3:11,42,3:29,43,3:12,44,3:15,45,3,46,3:32,4" +
+"7,3:4,60,3:23,61,3:23,62,3:13,63,3:21,64,3:11,65,3:15,66,3:8,67,3:25,68,3:2" +
+"0,69,3:14,70,3:18,71,3:18,73,3:27,74,3:16,75,3:21,76,3:20,77,3:19,78,3:22,7" +
+"9,3:15,80,3:15,81,3:16,82,3:25,85,3:23,86,3:17,87,3:23,88,3:15,89,3:13,92,3" +
+":20,93,3:19,94,3:14,95:2,50,-1,52,-1:5,51,53,-1:4,95,-1,95:2,-1:21")[0];
 
 	public java_cup.runtime.Symbol next_token ()
 		throws java.io.IOException {
 		int yy_lookahead;
+		int yy_index;
 		int yy_anchor = YY_NO_ANCHOR;
 		int yy_state = yy_state_dtrans[yy_lexical_state];
 		int yy_next_state = YY_NO_STATE;
@@ -402,7 +556,8 @@ class Yylex implements java_cup.runtime.Scanner {
 			if (yy_initial && yy_at_bol) yy_lookahead = YY_BOL;
 			else yy_lookahead = yy_advance();
 			yy_next_state = YY_F;
-			yy_next_state = yy_nxt[yy_rmap[yy_state]][yy_cmap[yy_lookahead]];
+			yy_index = yy_base[yy_state] + yy_cmap[yy_lookahead];
+			if (yy_chk[yy_index] == yy_base[yy_state]) yy_next_state = yy_nxt[yy_index];
 			if (YY_EOF == yy_lookahead && true == yy_initial) {
 
 return new Symbol(sym.EOF);
@@ -434,766 +589,797 @@ return new Symbol(sym.EOF);
 					case 2:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -3:
 						break;
 					case 3:
-						{ double val = Double.parseDouble(yytext());
-            int intVal;
-            if (val > Integer.MAX_VALUE) {
-                ErrMsg.warn(yyline+1, CharNum.num,
-                            "integer literal too large; using max value");
-                intVal = Integer.MAX_VALUE;
-            } else {
-                intVal = Integer.parseInt(yytext());
-            }
-            Symbol S = new Symbol(sym.INTLITERAL,
-                             new IntLitTokenVal(yyline+1, CharNum.num, intVal));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -4:
 						break;
 					case 4:
 						{
-            // unterminated string
-            ErrMsg.fatal(yyline+1, CharNum.num,
-                         "unterminated string literal ignored");
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
           }
 					case -5:
 						break;
 					case 5:
-						{ ErrMsg.fatal(yyline+1, CharNum.num,
-                         "illegal character ignored: " + yytext());
-            CharNum.num++;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
           }
 					case -6:
 						break;
 					case 6:
-						{ CharNum.num = 1; }
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
+          }
 					case -7:
 						break;
 					case 7:
-						{ CharNum.num += yytext().length(); }
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
+          }
 					case -8:
 						break;
 					case 8:
-						{ Symbol S = new Symbol(sym.DIVIDE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -9:
 						break;
 					case 9:
-						{ // comment - ignore. Note: don't need to update char num 
-            // since everything to end of line will be ignored
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
           }
 					case -10:
 						break;
 					case 10:
-						{ Symbol S = new Symbol(sym.LCURLY, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -11:
 						break;
 					case 11:
-						{ Symbol S = new Symbol(sym.RCURLY, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -12:
 						break;
 					case 12:
-						{ Symbol S = new Symbol(sym.LPAREN, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -13:
 						break;
 					case 13:
-						{ Symbol S = new Symbol(sym.RPAREN, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
+						{ double val = Double.parseDouble(yytext());
+            int intVal;
+            if (val > Integer.MAX_VALUE) {
+                ErrMsg.warn(yyline+1, CharNum.num,
+                            "integer literal too large; using max value");
+                intVal = Integer.MAX_VALUE;
+            } else {
+                intVal = Integer.parseInt(yytext());
+            }
+            Symbol S = new Symbol(sym.INTLITERAL,
+                             new IntLitTokenVal(yyline+1, CharNum.num, intVal));
+            CharNum.num += yylength();
             return S;
           }
 					case -14:
 						break;
 					case 14:
-						{ Symbol S = new Symbol(sym.SEMICOLON, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
-            return S;
+						{
+            // unterminated string
+            ErrMsg.fatal(yyline+1, CharNum.num,
+                         "unterminated string literal ignored");
           }
 					case -15:
 						break;
 					case 15:
-						{ Symbol S = new Symbol(sym.COMMA, new TokenVal(yyline+1, CharNum.num));
+						{ ErrMsg.fatal(yyline+1, CharNum.num,
+                         "illegal character ignored: " + yytext());
             CharNum.num++;
-            return S;
           }
 					case -16:
 						break;
 					case 16:
-						{ Symbol S = new Symbol(sym.DOT, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
-            return S;
-          }
+						{ CharNum.num = 1; }
 					case -17:
 						break;
 					case 17:
-						{ Symbol S = new Symbol(sym.LESS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
-            return S;
-          }
+						{ CharNum.num += yylength(); }
 					case -18:
 						break;
 					case 18:
-						{ Symbol S = new Symbol(sym.GREATER, new TokenVal(yyline+1, CharNum.num));
+						{ Symbol S = new Symbol(sym.DIVIDE, new TokenVal(yyline+1, CharNum.num));
             CharNum.num++;
             return S;
           }
 					case -19:
 						break;
 					case 19:
-						{ Symbol S = new Symbol(sym.PLUS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num++;
-            return S;
+						{ // comment - ignore. Note: don't need to update char num 
+            // since everything to end of line will be ignored
           }
 					case -20:
 						break;
 					case 20:
-						{ Symbol S = new Symbol(sym.MINUS, new TokenVal(yyline+1, CharNum.num));
+						{ Symbol S = new Symbol(sym.LCURLY, new TokenVal(yyline+1, CharNum.num));
             CharNum.num++;
             return S;
           }
 					case -21:
 						break;
 					case 21:
-						{ Symbol S = new Symbol(sym.TIMES, new TokenVal(yyline+1, CharNum.num));
+						{ Symbol S = new Symbol(sym.RCURLY, new TokenVal(yyline+1, CharNum.num));
             CharNum.num++;
             return S;
           }
 					case -22:
 						break;
 					case 22:
-						{ Symbol S = new Symbol(sym.NOT, new TokenVal(yyline+1, CharNum.num));
+						{ Symbol S = new Symbol(sym.LPAREN, new TokenVal(yyline+1, CharNum.num));
             CharNum.num++;
             return S;
           }
 					case -23:
 						break;
 					case 23:
-						{ Symbol S = new Symbol(sym.ASSIGN, new TokenVal(yyline+1, CharNum.num));
+						{ Symbol S = new Symbol(sym.RPAREN, new TokenVal(yyline+1, CharNum.num));
             CharNum.num++;
             return S;
           }
 					case -24:
 						break;
 					case 24:
-						{ Symbol S = new Symbol(sym.IF, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.SEMICOLON, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -25:
 						break;
 					case 25:
-						{
-            String strVal = yytext();
-            Symbol S = new Symbol(sym.STRINGLITERAL,
-                             new StrLitTokenVal(yyline+1, CharNum.num, strVal));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.COMMA, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -26:
 						break;
 					case 26:
-						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-             "unterminated string literal with bad escaped character ignored");
+						{ Symbol S = new Symbol(sym.DOT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
+            return S;
           }
 					case -27:
 						break;
 					case 27:
-						{ Symbol S = new Symbol(sym.WRITE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.LESS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -28:
 						break;
 					case 28:
-						{ Symbol S = new Symbol(sym.LESSEQ, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.GREATER, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -29:
 						break;
 					case 29:
-						{ Symbol S = new Symbol(sym.READ, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.PLUS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -30:
 						break;
 					case 30:
-						{ Symbol S = new Symbol(sym.GREATEREQ, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.MINUS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -31:
 						break;
 					case 31:
-						{ Symbol S = new Symbol(sym.PLUSPLUS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.TIMES, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -32:
 						break;
 					case 32:
-						{ Symbol S = new Symbol(sym.MINUSMINUS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.NOT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -33:
 						break;
 					case 33:
-						{ Symbol S = new Symbol(sym.NOTEQUALS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
-            return S;
+						{ ErrMsg.fatal(yyline+1, CharNum.num,
+                         "illegal character ignored: " + yytext());
+            CharNum.num++;
           }
 					case -34:
 						break;
 					case 34:
-						{ Symbol S = new Symbol(sym.AND, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
-            return S;
+						{ ErrMsg.fatal(yyline+1, CharNum.num,
+                         "illegal character ignored: " + yytext());
+            CharNum.num++;
           }
 					case -35:
 						break;
 					case 35:
-						{ Symbol S = new Symbol(sym.OR, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{ Symbol S = new Symbol(sym.ASSIGN, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num++;
             return S;
           }
 					case -36:
 						break;
 					case 36:
-						{ Symbol S = new Symbol(sym.EQUALS, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += 2;
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -37:
 						break;
 					case 37:
-						{ Symbol S = new Symbol(sym.INT, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -38:
 						break;
 					case 38:
-						{ Symbol S = new Symbol(sym.CIN, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.IF, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -39:
 						break;
 					case 39:
-						{ Symbol S = new Symbol(sym.BOOL, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -40:
 						break;
 					case 40:
-						{ Symbol S = new Symbol(sym.TRUE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -41:
 						break;
 					case 41:
-						{ Symbol S = new Symbol(sym.VOID, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -42:
 						break;
 					case 42:
-						{ Symbol S = new Symbol(sym.ELSE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -43:
 						break;
 					case 43:
-						{ Symbol S = new Symbol(sym.COUT, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -44:
 						break;
 					case 44:
 						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-                         "string literal with bad escaped character ignored");
-            CharNum.num += yytext().length();
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
           }
 					case -45:
 						break;
 					case 45:
-						{ Symbol S = new Symbol(sym.FALSE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -46:
 						break;
 					case 46:
-						{ Symbol S = new Symbol(sym.WHILE, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -47:
 						break;
 					case 47:
-						{ Symbol S = new Symbol(sym.RETURN, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -48:
 						break;
 					case 48:
-						{ Symbol S = new Symbol(sym.REPEAT, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
+						{
+            String strVal = yytext();
+            Symbol S = new Symbol(sym.STRINGLITERAL,
+                             new StrLitTokenVal(yyline+1, CharNum.num, strVal));
+            CharNum.num += yylength();
             return S;
           }
 					case -49:
 						break;
 					case 49:
-						{ Symbol S = new Symbol(sym.STRUCT, new TokenVal(yyline+1, CharNum.num));
-            CharNum.num += yytext().length();
-            return S;
+						{
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+             "unterminated string literal with bad escaped character ignored");
           }
 					case -50:
 						break;
-					case 51:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 50:
+						{ Symbol S = new Symbol(sym.WRITE, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
             return S;
           }
 					case -51:
 						break;
-					case 52:
-						{ ErrMsg.fatal(yyline+1, CharNum.num,
-                         "illegal character ignored: " + yytext());
-            CharNum.num++;
+					case 51:
+						{ Symbol S = new Symbol(sym.LESSEQ, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -52:
 						break;
-					case 53:
-						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-             "unterminated string literal with bad escaped character ignored");
+					case 52:
+						{ Symbol S = new Symbol(sym.READ, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -53:
 						break;
-					case 54:
-						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-                         "string literal with bad escaped character ignored");
-            CharNum.num += yytext().length();
+					case 53:
+						{ Symbol S = new Symbol(sym.GREATEREQ, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -54:
 						break;
-					case 55:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 54:
+						{ Symbol S = new Symbol(sym.PLUSPLUS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
             return S;
           }
 					case -55:
 						break;
-					case 56:
-						{ ErrMsg.fatal(yyline+1, CharNum.num,
-                         "illegal character ignored: " + yytext());
-            CharNum.num++;
+					case 55:
+						{ Symbol S = new Symbol(sym.MINUSMINUS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -56:
 						break;
-					case 57:
-						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-             "unterminated string literal with bad escaped character ignored");
+					case 56:
+						{ Symbol S = new Symbol(sym.NOTEQUALS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -57:
 						break;
-					case 58:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 57:
+						{ Symbol S = new Symbol(sym.AND, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
             return S;
           }
 					case -58:
 						break;
-					case 59:
-						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-             "unterminated string literal with bad escaped character ignored");
+					case 58:
+						{ Symbol S = new Symbol(sym.OR, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
+            return S;
           }
 					case -59:
 						break;
-					case 60:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 59:
+						{ Symbol S = new Symbol(sym.EQUALS, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += 2;
             return S;
           }
 					case -60:
 						break;
-					case 61:
+					case 60:
 						{
-            // bad escape character
-            ErrMsg.fatal(yyline+1, CharNum.num,
-             "unterminated string literal with bad escaped character ignored");
+            Symbol S = new Symbol(sym.ID, 
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
+            return S;
           }
 					case -61:
 						break;
-					case 62:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 61:
+						{ Symbol S = new Symbol(sym.INT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -62:
 						break;
-					case 63:
+					case 62:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -63:
 						break;
-					case 64:
+					case 63:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -64:
 						break;
-					case 65:
+					case 64:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -65:
 						break;
-					case 66:
+					case 65:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -66:
 						break;
-					case 67:
+					case 66:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -67:
 						break;
-					case 68:
+					case 67:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -68:
 						break;
-					case 69:
+					case 68:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -69:
 						break;
-					case 70:
+					case 69:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -70:
 						break;
-					case 71:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 70:
+						{ Symbol S = new Symbol(sym.CIN, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -71:
 						break;
-					case 72:
+					case 71:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -72:
 						break;
-					case 73:
+					case 72:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+             "unterminated string literal with bad escaped character ignored");
           }
 					case -73:
 						break;
-					case 74:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 73:
+						{ Symbol S = new Symbol(sym.BOOL, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -74:
 						break;
-					case 75:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 74:
+						{ Symbol S = new Symbol(sym.TRUE, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -75:
 						break;
-					case 76:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 75:
+						{ Symbol S = new Symbol(sym.VOID, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -76:
 						break;
-					case 77:
+					case 76:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -77:
 						break;
-					case 78:
+					case 77:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -78:
 						break;
-					case 79:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 78:
+						{ Symbol S = new Symbol(sym.ELSE, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -79:
 						break;
-					case 80:
+					case 79:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -80:
 						break;
-					case 81:
+					case 80:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -81:
 						break;
-					case 82:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 81:
+						{ Symbol S = new Symbol(sym.COUT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -82:
 						break;
-					case 83:
+					case 82:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -83:
 						break;
-					case 84:
+					case 83:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+                         "string literal with bad escaped character ignored");
+            CharNum.num += yylength();
           }
 					case -84:
 						break;
-					case 85:
+					case 84:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+             "unterminated string literal with bad escaped character ignored");
           }
 					case -85:
 						break;
-					case 86:
+					case 85:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -86:
 						break;
-					case 87:
+					case 86:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -87:
 						break;
-					case 88:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 87:
+						{ Symbol S = new Symbol(sym.FALSE, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -88:
 						break;
-					case 89:
+					case 88:
 						{
             Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+                             new IdTokenVal(yyline+1, CharNum.num,
+                                            ids.intern(yytext_view())));
+            CharNum.num += yylength();
             return S;
           }
 					case -89:
 						break;
-					case 90:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+					case 89:
+						{ Symbol S = new Symbol(sym.WHILE, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -90:
 						break;
 					case 91:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+                         "string literal with bad escaped character ignored");
+            CharNum.num += yylength();
           }
 					case -91:
 						break;
 					case 92:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.RETURN, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -92:
 						break;
 					case 93:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.REPEAT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -93:
 						break;
 					case 94:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
+						{ Symbol S = new Symbol(sym.STRUCT, new TokenVal(yyline+1, CharNum.num));
+            CharNum.num += yylength();
             return S;
           }
 					case -94:
 						break;
 					case 95:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+             "unterminated string literal with bad escaped character ignored");
           }
 					case -95:
 						break;
 					case 96:
 						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
+            // bad escape character
+            ErrMsg.fatal(yyline+1, CharNum.num,
+             "unterminated string literal with bad escaped character ignored");
           }
 					case -96:
 						break;
-					case 97:
-						{
-            Symbol S = new Symbol(sym.ID, 
-                             new IdTokenVal(yyline+1, CharNum.num, yytext()));
-            CharNum.num += yytext().length();
-            return S;
-          }
-					case -97:
-						break;
 					default:
 						yy_error(YY_E_INTERNAL,false);
 					case -1:
@@ -822,7 +822,7 @@ class IntNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new IntType();
+        return IntType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -839,7 +839,7 @@ class BoolNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new BoolType();
+        return BoolType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -856,7 +856,7 @@ class VoidNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new VoidType();
+        return VoidType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -878,7 +878,7 @@ class StructNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new StructType(myId);
+        return StructType.of(myId);
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -0,0 +1,340 @@
+import java.util.*;
+
+// **********************************************************************
+// The Arena class is a compact representation of the abstract-syntax tree
+// of a C-- program, for very large programs (P6 -arena). It holds the same
+// tree as the ASTnode classes (see ast.java), but as a struct of arrays:
+// node n is the nth entry of each of the arrays below, so a node costs 17
+// bytes (and a bit), with no object header and no references, and the names
+// and string literals are kept once each in a string table.
+//
+// The arena is built by the actions of ArenaParser (arena.cup), analysed by
+// ArenaSemantics (which links the IDs to their symbols, in sym, and makes
+// each WRITE of a string a WRITE_STRING) and lowered to three-address code
+// by ArenaLower.
+//
+// Each node has:
+//   kind       its kind (one of the constants below)
+//   first      its first child, or NONE; for the leaves with a value
+//              (hasValue), the value instead: an int literal's, or the
+//              string table index of an id's name or of a string literal
+//   next       the next child of its parent, or NONE (while a LIST is
+//              built, its last child)
+//   line, chr  its position: for leaves, where they are in the source; for
+//              other nodes, the position the AST reports for them (the
+//              left operand of an operator, the name of a call ...)
+//   sideEffects
+//              whether evaluating it may assign a variable or call a
+//              function (as ExpNode.hasSideEffects), set as it is built
+//
+// The kinds and their children (in order), as the classes of ast.java:
+//
+//   Kind                          Kids
+//   ----                          ----
+//   PROGRAM                       LIST of decls
+//   LIST                          any number of nodes
+//   VAR_DECL                      type, ID
+//   FN_DECL                       type, ID, LIST of FORMAL_DECL, FN_BODY
+//   FORMAL_DECL                   type, ID
+//   STRUCT_DECL                   ID, LIST of VAR_DECL
+//   FN_BODY                       LIST of VAR_DECL, LIST of stmts
+//   INT_TYPE, BOOL_TYPE, VOID_TYPE-- none --
+//   STRUCT_TYPE                   ID
+//
+//   ASSIGN_STMT                   ASSIGN
+//   POST_INC, POST_DEC, READ, WRITEexp
+//   RETURN                        exp, or none
+//   WRITE_STRING                  exp
+//   IF                            exp, LIST of VAR_DECL, LIST of stmts
+//   IF_ELSE                       exp, LIST, LIST (then), LIST, LIST (else)
+//   WHILE, REPEAT                 exp, LIST of VAR_DECL, LIST of stmts
+//   CALL_STMT                     CALL
+//
+//   INT_LIT, STRING_LIT, ID       -- none -- (a value)
+//   TRUE, FALSE                   -- none --
+//   DOT                           exp, ID
+//   ASSIGN                        exp, exp
+//   CALL                          ID, LIST of exps
+//   UNARY_MINUS, NOT              exp
+//   PLUS ... GREATER_EQ           exp, exp
+// **********************************************************************
+
+public class Arena {
+    public static final int NONE = -1;
+
+    // node kinds
+    public static final byte PROGRAM = 0, LIST = 1, VAR_DECL = 2, FN_DECL = 3,
+            FORMAL_DECL = 4, STRUCT_DECL = 5, FN_BODY = 6, INT_TYPE = 7,
+            BOOL_TYPE = 8, VOID_TYPE = 9, STRUCT_TYPE = 10, ASSIGN_STMT = 11,
+            POST_INC = 12, POST_DEC = 13, READ = 14, WRITE = 15, IF = 16,
+            IF_ELSE = 17, WHILE = 18, REPEAT = 19, CALL_STMT = 20, RETURN = 21,
+            INT_LIT = 22, STRING_LIT = 23, TRUE = 24, FALSE = 25, ID = 26,
+            DOT = 27, ASSIGN = 28, CALL = 29, UNARY_MINUS = 30, NOT = 31,
+            PLUS = 32, MINUS = 33, TIMES = 34, DIVIDE = 35, AND = 36, OR = 37,
+            EQUALS = 38, NOT_EQUALS = 39, LESS = 40, GREATER = 41,
+            LESS_EQ = 42, GREATER_EQ = 43, WRITE_STRING = 44;
+
+    // names of the kinds (for the metrics), indexed by kind
+    public static final String[] KIND_NAMES = {"Program", "List", "VarDecl",
+            "FnDecl", "FormalDecl", "StructDecl", "FnBody", "Int", "Bool",
+            "Void", "Struct", "AssignStmt", "PostIncStmt", "PostDecStmt",
+            "ReadStmt", "WriteStmt", "IfStmt", "IfElseStmt", "WhileStmt",
+            "RepeatStmt", "CallStmt", "ReturnStmt", "IntLit", "StringLit",
+            "True", "False", "Id", "DotAccess", "Assign", "CallExp",
+            "UnaryMinus", "Not", "Plus", "Minus", "Times", "Divide", "And",
+            "Or", "Equals", "NotEquals", "Less", "Greater", "LessEq",
+            "GreaterEq", "WriteStmt"};
+
+    public byte[] kind;
+    public int[] first, next, line, chr;
+    public int size = 0; // number of nodes
+    public int root = NONE; // the PROGRAM node, once parsed
+    private final BitSet sideEffects = new BitSet();
+
+    // symbol linked to each ID by name analysis (null for other nodes)
+    public TSym[] sym;
+
+    // string table: names and string literals, each once
+    public final List<String> strings = new ArrayList<String>();
+    private Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+    public Arena() {
+        this(1024);
+    }
+
+    public Arena(int capacity) {
+        kind = new byte[capacity];
+        first = new int[capacity];
+        next = new int[capacity];
+        line = new int[capacity];
+        chr = new int[capacity];
+    }
+
+    /**
+     * @return whether nodes of the given kind hold a value in first
+     */
+    public static boolean hasValue(int kind) {
+        return kind == INT_LIT || kind == STRING_LIT || kind == ID;
+    }
+
+    // **********************************************************************
+    // building (by the parser's actions)
+    // **********************************************************************
+
+    /**
+     * @return a new node with no children (and the given value, for the
+     *         kinds that have one)
+     */
+    public int leaf(byte kind, int line, int chr, int value) {
+        if (size == this.kind.length) grow();
+        int n = size++;
+        this.kind[n] = kind;
+        this.first[n] = hasValue(kind) ? value : NONE;
+        this.next[n] = NONE;
+        this.line[n] = line;
+        this.chr[n] = chr;
+        return n;
+    }
+
+    /**
+     * @return a new node with the given children, at the position of the
+     *         first one (of the second for DOT)
+     */
+    public int node(byte kind, int... kids) {
+        int at = kids.length == 0 ? NONE : kids[kind == DOT ? 1 : 0];
+        int n = leaf(kind, at == NONE ? 0 : line[at], at == NONE ? 0 : chr[at],
+                0);
+        int last = NONE;
+        boolean effects = kind == ASSIGN || kind == CALL;
+        for (int kid : kids) {
+            if (kid == NONE) continue; // (RETURN without a value)
+            next[kid] = NONE; // (a LIST's last child, until now)
+            if (last == NONE)
+                first[n] = kid;
+            else
+                next[last] = kid;
+            last = kid;
+            effects |= kind != DOT && sideEffects.get(kid);
+        }
+        if (effects) sideEffects.set(n);
+        return n;
+    }
+
+    public int id(int line, int chr, String name) {
+        return leaf(ID, line, chr, intern(name));
+    }
+
+    public int string(int line, int chr, String literal) {
+        return leaf(STRING_LIT, line, chr, intern(literal));
+    }
+
+    /**
+     * @return a new, empty LIST
+     */
+    public int list() {
+        return leaf(LIST, 0, 0, 0);
+    }
+
+    /**
+     * Add kid at the end of list (which is not a child yet)
+     *
+     * @return list
+     */
+    public int append(int list, int kid) {
+        if (first[list] == NONE)
+            first[list] = kid;
+        else
+            next[next[list]] = kid;
+        next[kid] = NONE; // (a LIST's last child, if it is one)
+        next[list] = kid;
+        if (sideEffects.get(kid)) sideEffects.set(list);
+        return list;
+    }
+
+    /**
+     * Add kid at the start of list (which is not a child yet)
+     *
+     * @return list
+     */
+    public int prepend(int list, int kid) {
+        if (first[list] == NONE) next[list] = kid;
+        next[kid] = first[list];
+        first[list] = kid;
+        if (sideEffects.get(kid)) sideEffects.set(list);
+        return list;
+    }
+
+    /**
+     * End the building of the tree at root: the arrays shrink to the nodes
+     * used, and the strings are no longer indexed
+     */
+    public void finish(int root) {
+        this.root = root;
+        kind = Arrays.copyOf(kind, size);
+        first = Arrays.copyOf(first, size);
+        next = Arrays.copyOf(next, size);
+        line = Arrays.copyOf(line, size);
+        chr = Arrays.copyOf(chr, size);
+        stringIndex = null;
+    }
+
+    private int intern(String s) {
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = kind.length * 2;
+        kind = Arrays.copyOf(kind, capacity);
+        first = Arrays.copyOf(first, capacity);
+        next = Arrays.copyOf(next, capacity);
+        line = Arrays.copyOf(line, capacity);
+        chr = Arrays.copyOf(chr, capacity);
+    }
+
+    // **********************************************************************
+    // reading
+    // **********************************************************************
+
+    /**
+     * @return the first child of n, or NONE (for all leaves)
+     */
+    public int kids(int n) {
+        return hasValue(kind[n]) ? NONE : first[n];
+    }
+
+    /**
+     * @return the ith child of n (from 0), or NONE
+     */
+    public int kid(int n, int i) {
+        int kid = kids(n);
+        while (i-- > 0 && kid != NONE)
+            kid = next[kid];
+        return kid;
+    }
+
+    /**
+     * @return the number of children of n
+     */
+    public int count(int n) {
+        int count = 0;
+        for (int kid = kids(n); kid != NONE; kid = next[kid])
+            count++;
+        return count;
+    }
+
+    /**
+     * @return whether evaluating n may assign a variable or call a function
+     */
+    public boolean hasSideEffects(int n) {
+        return sideEffects.get(n);
+    }
+
+    /**
+     * @return the value of an INT_LIT
+     */
+    public int value(int n) {
+        return first[n];
+    }
+
+    /**
+     * @return the name of an ID, or the text of a STRING_LIT
+     */
+    public String name(int n) {
+        return strings.get(first[n]);
+    }
+
+    /**
+     * @return the Type of a type node (as TypeNode.type)
+     */
+    public Type type(int n) {
+        switch (kind[n]) {
+            case INT_TYPE:
+                return IntType.INSTANCE;
+            case BOOL_TYPE:
+                return BoolType.INSTANCE;
+            case VOID_TYPE:
+                return VoidType.INSTANCE;
+            default:
+                return StructType.of(idNode(first[n]));
+        }
+    }
+
+    /**
+     * @return an IdNode for the ID n (what struct types are named by)
+     */
+    public IdNode idNode(int n) {
+        return new IdNode(line[n], chr[n], name(n));
+    }
+
+    /**
+     * @return bytes held by the arrays and the string table (each String
+     *         counted as its characters and a 40-byte header, each symbol
+     *         reference as 4 bytes)
+     */
+    public long bytes() {
+        long bytes = 17L * kind.length + sideEffects.size() / 8
+                + (sym == null ? 0 : 4L * sym.length);
+        for (String s : strings)
+            bytes += 40 + s.length();
+        return bytes;
+    }
+
+    /**
+     * Count the nodes, by kind, in the given metrics
+     */
+    public void count(Metrics metrics) {
+        int[] counts = new int[KIND_NAMES.length];
+        for (int n = 0; n < size; n++)
+            counts[kind[n]]++;
+        for (int k = 0; k < counts.length; k++) {
+            if (counts[k] > 0)
+                metrics.countNodes("Arena." + KIND_NAMES[k], counts[k]);
+        }
+    }
+}
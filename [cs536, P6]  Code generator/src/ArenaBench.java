@@ -0,0 +1,128 @@
+import java.io.*;
+import java.nio.file.*;
+
+import java_cup.runtime.*;
+
+/**
+ * Benchmark of the memory held by the tree of a large program, as ASTnode
+ * objects (parser) and as an Arena (ArenaParser, P6 -arena), and of the
+ * time of name analysis and type checking over each.
+ *
+ * usage: java ArenaBench <functions | file>
+ *
+ * The program is the given file, or one generated with the given number of
+ * functions, each with locals, loops, conditions and calls. For each tree,
+ * the heap in use (after garbage collection) is measured before parsing,
+ * after parsing and after the analyses, which add the symbols; the
+ * analyses are timed on their first run, as in a compilation.
+ */
+public class ArenaBench {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: java ArenaBench <functions | file>");
+            System.exit(-1);
+        }
+        String program = args[0].matches("\\d+")
+                ? program(Integer.parseInt(args[0]))
+                : new String(Files.readAllBytes(Paths.get(args[0])));
+        System.out.printf("%d lines%n", program.split("\n").length);
+        System.out.printf("%-8s %12s %14s %12s%n", "tree", "tree KB",
+                "+symbols KB", "analyses ms");
+
+        // AST
+        long before = usedHeap();
+        Symbol cfgRoot = new parser(new Yylex(new StringReader(program))).parse();
+        ProgramNode astRoot = (ProgramNode) cfgRoot.value;
+        long parsed = usedHeap();
+        long start = System.nanoTime();
+        astRoot.nameAnalysis();
+        astRoot.typeCheck();
+        long nanos = System.nanoTime() - start;
+        check();
+        print("AST", parsed - before, usedHeap() - before, nanos);
+        cfgRoot = null;
+        astRoot = null;
+
+        // Arena
+        before = usedHeap();
+        ArenaParser arenaParser = new ArenaParser(new Yylex(new StringReader(program)));
+        arenaParser.parse();
+        Arena arena = arenaParser.arena();
+        arenaParser = null;
+        parsed = usedHeap();
+        start = System.nanoTime();
+        ArenaSemantics.nameAnalysis(arena);
+        ArenaSemantics.typeCheck(arena);
+        nanos = System.nanoTime() - start;
+        check();
+        print("Arena", parsed - before, usedHeap() - before, nanos);
+        System.out.printf("%d arena nodes, %d strings, %d KB of arrays and strings%n",
+                arena.size, arena.strings.size(), arena.bytes() / 1024);
+    }
+
+    private static void print(String tree, long treeBytes, long withSymbols,
+            long nanos) {
+        System.out.printf("%-8s %12d %14d %12.1f%n", tree, treeBytes / 1024,
+                withSymbols / 1024, nanos / 1e6);
+    }
+
+    private static void check() {
+        if (ErrMsg.getErr()) {
+            System.err.println("the program has errors");
+            System.exit(1);
+        }
+    }
+
+    // heap in use, once the garbage is collected
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) { // until it no longer shrinks
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) break;
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * @param functions number of functions (besides main)
+     * @return the program's source
+     */
+    private static String program(int functions) {
+        StringBuilder text = new StringBuilder();
+        text.append("int total;\nbool seen;\n");
+        for (int f = 0; f < functions; f++) {
+            text.append("int f").append(f).append("(int n, bool b) {\n");
+            text.append("    int i;\n    int sum;\n    bool odd;\n");
+            text.append("    i = 0;\n    sum = n * ").append(f % 7 + 1).append(";\n");
+            text.append("    while (i < n) {\n");
+            text.append("        int t;\n");
+            text.append("        t = i / 2;\n");
+            text.append("        odd = i - t * 2 == 1;\n");
+            text.append("        if (odd && b) {\n");
+            text.append("            sum = sum + i * t - ").append(f).append(";\n");
+            text.append("        } else {\n");
+            text.append("            sum = sum - (i + total) / 3;\n");
+            text.append("        }\n");
+            text.append("        i++;\n");
+            text.append("    }\n");
+            if (f > 0) {
+                text.append("    if (sum > 100 || !b) {\n");
+                text.append("        sum = sum + f").append(f - 1)
+                        .append("(n - 1, !b);\n");
+                text.append("    }\n");
+            }
+            text.append("    total = total + sum;\n");
+            text.append("    cout << \"f").append(f).append(" \";\n");
+            text.append("    return sum;\n}\n\n");
+        }
+        text.append("void main() {\n    int result;\n");
+        if (functions > 0)
+            text.append("    result = f").append(functions - 1)
+                    .append("(10, true);\n");
+        text.append("    cout << result;\n}\n");
+        return text.toString();
+    }
+}
@@ -0,0 +1,365 @@
+import java.util.*;
+
+// **********************************************************************
+// The ArenaLower class translates a program held in an Arena to three-
+// address code (P6 -arena), after its name analysis and type checking, as
+// ProgramNode.lower does for the AST: the same code for each kind of node
+// as the lower, lowerJump and lowerStore methods of its class.
+//
+// Constants are not folded in the arena (there is no ProgramNode.fold for
+// it): the passes of the middle end fold them in the three-address code.
+// **********************************************************************
+
+public class ArenaLower {
+    private final Arena a;
+    private final Tac.Builder b = new Tac.Builder();
+
+    private ArenaLower(Arena arena) {
+        a = arena;
+    }
+
+    /**
+     * @return the three-address code of the program in arena
+     */
+    public static Tac.Program lower(Arena arena) {
+        ArenaLower lower = new ArenaLower(arena);
+        int decls = arena.first[arena.root];
+        Walk.run(() -> {
+            for (int decl = arena.first[decls]; decl != Arena.NONE;
+                    decl = arena.next[decl]) {
+                int d = decl;
+                if (arena.kind[decl] == Arena.VAR_DECL)
+                    Walk.then(() -> lower.global(d));
+                else if (arena.kind[decl] == Arena.FN_DECL)
+                    Walk.then(() -> lower.function(d));
+            }
+        });
+        return lower.b.program;
+    }
+
+    // as VarDeclNode.lower (a global's storage: structs have none)
+    private void global(int decl) {
+        int type = a.first[decl], id = a.next[type];
+        b.global(a.name(id), a.kind[type] == Arena.STRUCT_TYPE ? 0 : 4);
+    }
+
+    // as FnDeclNode.lower
+    private void function(int decl) {
+        int id = a.kid(decl, 1);
+        FnSym s = (FnSym) a.sym[id];
+        b.beginFunction(a.name(id), s.getParameterSize(), s.getLocalSize());
+        stmts(a.kid(a.kid(decl, 3), 1));
+        Walk.then(() -> b.endFunction());
+    }
+
+    // **********************************************************************
+    // statements
+    // **********************************************************************
+
+    private void stmts(int list) {
+        for (int stmt = a.first[list]; stmt != Arena.NONE; stmt = a.next[stmt]) {
+            int s = stmt;
+            Walk.then(() -> stmt(s));
+        }
+    }
+
+    private void stmt(int stmt) {
+        int exp = a.first[stmt];
+        switch (a.kind[stmt]) {
+            case Arena.ASSIGN_STMT:
+                lower(exp);
+                Walk.then(() -> Walk.pop());
+                break;
+            case Arena.POST_INC:
+            case Arena.POST_DEC:
+                lower(exp);
+                Walk.then(() -> store(exp, b.emit(a.kind[stmt] == Arena.POST_INC
+                        ? Tac.Op.ADD : Tac.Op.SUB, Walk.pop(),
+                        Tac.Operand.constant(1))));
+                break;
+            case Arena.READ:
+                Tac.Operand value = b.temp();
+                b.emit(new Tac.Instr(Tac.Op.READ, value, null, null));
+                store(exp, value);
+                break;
+            case Arena.WRITE:
+            case Arena.WRITE_STRING:
+                lower(exp);
+                Walk.then(() -> b.emit(new Tac.Instr(
+                        a.kind[stmt] == Arena.WRITE_STRING ? Tac.Op.WRITE_STRING
+                                : Tac.Op.WRITE_INT, null, Walk.pop(), null)));
+                break;
+            case Arena.IF: {
+                Tac.Block thenBlock = b.newBlock();
+                Tac.Block doneBlock = b.newBlock();
+                jump(exp, thenBlock, doneBlock);
+                Walk.then(() -> {
+                    b.start(thenBlock);
+                    stmts(a.kid(stmt, 2));
+                });
+                Walk.then(() -> b.start(doneBlock));
+                break;
+            }
+            case Arena.IF_ELSE: {
+                Tac.Block thenBlock = b.newBlock();
+                Tac.Block elseBlock = b.newBlock();
+                Tac.Block doneBlock = b.newBlock();
+                jump(exp, thenBlock, elseBlock);
+                Walk.then(() -> {
+                    b.start(thenBlock);
+                    stmts(a.kid(stmt, 2));
+                });
+                Walk.then(() -> {
+                    b.jump(doneBlock);
+                    b.start(elseBlock);
+                    stmts(a.kid(stmt, 4));
+                });
+                Walk.then(() -> b.start(doneBlock));
+                break;
+            }
+            case Arena.WHILE: {
+                Tac.Block testBlock = b.newBlock();
+                Tac.Block bodyBlock = b.newBlock();
+                Tac.Block doneBlock = b.newBlock();
+                b.start(testBlock);
+                jump(exp, bodyBlock, doneBlock);
+                Walk.then(() -> {
+                    b.start(bodyBlock);
+                    stmts(a.kid(stmt, 2));
+                });
+                Walk.then(() -> {
+                    b.jump(testBlock);
+                    b.start(doneBlock);
+                });
+                break;
+            }
+            case Arena.REPEAT: // ignored, as by codeGen
+                break;
+            case Arena.CALL_STMT:
+                call(exp, false); // the value returned, if any, is not used
+                Walk.then(() -> Walk.pop());
+                break;
+            case Arena.RETURN:
+                if (exp == Arena.NONE) {
+                    b.ret(null);
+                } else {
+                    lower(exp);
+                    Walk.then(() -> b.ret(Walk.pop()));
+                }
+                break;
+        }
+    }
+
+    // **********************************************************************
+    // expressions
+    // **********************************************************************
+
+    /**
+     * Add the code evaluating the expression n to b, and push the operand
+     * holding its value
+     */
+    private void lower(int n) {
+        int left = a.kids(n), right = left == Arena.NONE ? Arena.NONE : a.next[left];
+        switch (a.kind[n]) {
+            case Arena.INT_LIT:
+                Walk.push(Tac.Operand.constant(a.value(n)));
+                break;
+            case Arena.STRING_LIT:
+                Walk.push(b.string(a.name(n)));
+                break;
+            case Arena.TRUE:
+                Walk.push(Tac.Operand.constant(1));
+                break;
+            case Arena.FALSE:
+                Walk.push(Tac.Operand.constant(0));
+                break;
+            case Arena.ID: {
+                // a local is its own operand; a global is loaded
+                Tac.Operand variable = b.variable(a.sym[n], a.name(n));
+                if (variable.isVariable()) {
+                    Walk.push(variable);
+                    break;
+                }
+                Tac.Operand value = b.temp();
+                b.emit(new Tac.Instr(Tac.Op.COPY, value, variable, null));
+                Walk.push(value);
+                break;
+            }
+            case Arena.DOT: // structs are not supported, as by codeGen
+                Walk.push(Tac.Operand.constant(0));
+                break;
+            case Arena.ASSIGN:
+                Walk.then(() -> lower(right));
+                Walk.then(() -> Walk.push(store(left, Walk.pop())));
+                break;
+            case Arena.CALL:
+                call(n, true);
+                break;
+            case Arena.UNARY_MINUS:
+            case Arena.NOT:
+                Walk.then(() -> lower(left));
+                Walk.then(() -> Walk.push(b.emit(a.kind[n] == Arena.NOT
+                        ? Tac.Op.NOT : Tac.Op.NEG, Walk.pop(), null)));
+                break;
+            case Arena.AND:
+            case Arena.OR: {
+                // the value of the left operand, replaced by that of the
+                // right one unless the left one decides the result
+                Tac.Operand result = b.temp();
+                Tac.Block rightBlock = b.newBlock();
+                Tac.Block doneBlock = b.newBlock();
+                Walk.then(() -> lower(left));
+                Walk.then(() -> {
+                    b.assign(result, Walk.pop());
+                    b.branch(Tac.Op.SEQ, result,
+                            Tac.Operand.constant(shortCircuitValue(n)),
+                            doneBlock, rightBlock);
+                    b.start(rightBlock);
+                    lower(right);
+                });
+                Walk.then(() -> {
+                    b.assign(result, Walk.pop());
+                    b.start(doneBlock);
+                    Walk.push(result);
+                });
+                break;
+            }
+            default: // a local read by the left operand is copied first if
+                     // the right one could assign it
+                operands(left, right);
+                Walk.then(() -> {
+                    Tac.Operand value2 = Walk.pop();
+                    Walk.push(b.emit(tacOp(n), Walk.pop(), value2));
+                });
+        }
+    }
+
+    // push the operands holding the values of left and right
+    private void operands(int left, int right) {
+        Walk.then(() -> lower(left));
+        Walk.then(() -> {
+            Tac.Operand value = Walk.pop();
+            Walk.push(a.hasSideEffects(right) ? b.hold(value) : value);
+            lower(right);
+        });
+    }
+
+    /**
+     * Add the code going to trueBlock if the condition n is true, otherwise
+     * to falseBlock, to b
+     */
+    private void jump(int n, Tac.Block trueBlock, Tac.Block falseBlock) {
+        int left = a.kids(n), right = left == Arena.NONE ? Arena.NONE : a.next[left];
+        switch (a.kind[n]) {
+            case Arena.TRUE:
+                b.jump(trueBlock);
+                return;
+            case Arena.FALSE:
+                b.jump(falseBlock);
+                return;
+            case Arena.NOT:
+                // reverse logic
+                Walk.then(() -> jump(left, falseBlock, trueBlock));
+                return;
+            case Arena.AND:
+            case Arena.OR: {
+                Tac.Block rightBlock = b.newBlock();
+                if (shortCircuitValue(n) == 0)
+                    Walk.then(() -> jump(left, rightBlock, falseBlock));
+                else
+                    Walk.then(() -> jump(left, trueBlock, rightBlock));
+                Walk.then(() -> {
+                    b.start(rightBlock); // evaluate second operand
+                    jump(right, trueBlock, falseBlock);
+                });
+                return;
+            }
+        }
+        Tac.Op op = tacOp(n);
+        if (op != null && op.isComparison()) { // branch on the operands
+            operands(left, right);
+            Walk.then(() -> {
+                Tac.Operand value2 = Walk.pop();
+                b.branch(op, Walk.pop(), value2, trueBlock, falseBlock);
+            });
+        } else { // evaluate and branch on the value
+            lower(n);
+            Walk.then(() -> b.branch(Tac.Op.SNE, Walk.pop(),
+                    Tac.Operand.constant(0), trueBlock, falseBlock));
+        }
+    }
+
+    /**
+     * Add an assignment of value to the identifier n to b
+     *
+     * @return the operand holding the value assigned
+     */
+    private Tac.Operand store(int n, Tac.Operand value) {
+        if (a.kind[n] != Arena.ID)
+            throw new IllegalStateException("expected LHS to be an identifier");
+        Tac.Operand variable = b.variable(a.sym[n], a.name(n));
+        b.assign(variable, value);
+        return variable.isVariable() ? variable : value;
+    }
+
+    /**
+     * Add the call n to b: the arguments evaluated in order (a local read by
+     * one copied first if a later one could assign it), and push the
+     * temporary holding the value returned (if value is true, otherwise null)
+     */
+    private void call(int n, boolean value) {
+        int id = a.first[n], args = a.next[id];
+        int last = -1; // last argument with side effects
+        int count = 0;
+        for (int arg = a.first[args]; arg != Arena.NONE; arg = a.next[arg], count++)
+            if (a.hasSideEffects(arg)) last = count;
+
+        Tac.Operand[] values = new Tac.Operand[count];
+        int k = 0;
+        for (int arg = a.first[args]; arg != Arena.NONE; arg = a.next[arg], k++) {
+            int e = arg, i = k;
+            boolean hold = k < last;
+            Walk.then(() -> lower(e));
+            Walk.then(() -> {
+                Tac.Operand argValue = Walk.pop();
+                values[i] = hold ? b.hold(argValue) : argValue;
+            });
+        }
+        String name = a.name(id);
+        Walk.then(() -> Walk.push(b.call((name.equals("main") ? "" : "_") + name,
+                values, value)));
+    }
+
+    // value of the left operand of && (0) or || (1) that decides the result
+    private int shortCircuitValue(int n) {
+        return a.kind[n] == Arena.AND ? 0 : 1;
+    }
+
+    // the three-address operator of a binary operator (null for others)
+    private Tac.Op tacOp(int n) {
+        switch (a.kind[n]) {
+            case Arena.PLUS:
+                return Tac.Op.ADD;
+            case Arena.MINUS:
+                return Tac.Op.SUB;
+            case Arena.TIMES:
+                return Tac.Op.MUL;
+            case Arena.DIVIDE:
+                return Tac.Op.DIV;
+            case Arena.EQUALS:
+                return Tac.Op.SEQ;
+            case Arena.NOT_EQUALS:
+                return Tac.Op.SNE;
+            case Arena.LESS:
+                return Tac.Op.SLT;
+            case Arena.GREATER:
+                return Tac.Op.SGT;
+            case Arena.LESS_EQ:
+                return Tac.Op.SLE;
+            case Arena.GREATER_EQ:
+                return Tac.Op.SGE;
+            default:
+                return null;
+        }
+    }
+}
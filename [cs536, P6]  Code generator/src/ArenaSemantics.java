@@ -0,0 +1,713 @@
+import java.util.*;
+
+// **********************************************************************
+// The ArenaSemantics class does the name analysis and type checking of a
+// program held in an Arena (P6 -arena), as ProgramNode.nameAnalysis and
+// typeCheck do for the AST: the same checks, reported with the same
+// messages at the same positions, and the same symbols (TSym), scopes and
+// frame offsets.
+//
+// Name analysis links each ID to its symbol in arena.sym. Type checking
+// makes each WRITE of a string a WRITE_STRING (where WriteStmtNode keeps
+// the type of the expression it writes).
+//
+// As for the AST, statements and expressions are walked with the Walk:
+// the work on the kids of a node is scheduled (Walk.then) rather than
+// called, and types (and the symbols of dot-accesses) are passed on its
+// stack of values.
+// **********************************************************************
+
+public class ArenaSemantics {
+    private static final int CONTROL_SIZE = 8; // return address & control link
+
+    // result of dot for a dot-access with errors (DotAccessExpNode.badAccess)
+    private static final TSym BAD_ACCESS = new TSym(ErrorType.INSTANCE);
+
+    private final Arena a;
+
+    // locals of the function being analysed: next offset, and count
+    private int offset, localCount;
+
+    private ArenaSemantics(Arena arena) {
+        a = arena;
+    }
+
+    /**
+     * Name analysis of the program in arena (as ProgramNode.nameAnalysis)
+     */
+    public static void nameAnalysis(Arena arena) {
+        arena.sym = new TSym[arena.size];
+        ArenaSemantics semantics = new ArenaSemantics(arena);
+        Walk.run(semantics::program);
+    }
+
+    /**
+     * Type checking of the program in arena, after its name analysis (as
+     * ProgramNode.typeCheck)
+     */
+    public static void typeCheck(Arena arena) {
+        ArenaSemantics semantics = new ArenaSemantics(arena);
+        int decls = arena.first[arena.root];
+        Walk.run(() -> {
+            for (int decl = arena.first[decls]; decl != Arena.NONE;
+                    decl = arena.next[decl]) {
+                if (arena.kind[decl] != Arena.FN_DECL) continue;
+                int type = arena.first[decl];
+                int body = arena.kid(decl, 3);
+                semantics.stmts(arena.kid(body, 1), arena.type(type));
+            }
+        });
+    }
+
+    // **********************************************************************
+    // name analysis: declarations
+    // **********************************************************************
+
+    private void program() {
+        SymTable symTab = new SymTable();
+        int decls = a.first[a.root];
+        decls(decls, symTab, symTab);
+        Walk.then(() -> programEnd(decls, symTab));
+    }
+
+    // the rest of program, after its declarations
+    private void programEnd(int decls, SymTable symTab) {
+        Metrics metrics = Compilation.current().metrics;
+        if (metrics != null) metrics.scopeDepth(symTab.peakDepth());
+
+        for (int decl = a.first[decls]; decl != Arena.NONE; decl = a.next[decl]) {
+            TSym sym = a.sym[declId(decl)];
+            if (sym != null) sym.setScope(TSym.AccessScope.GLOBAL);
+        }
+
+        TSym mainSymbol = null;
+        try {
+            mainSymbol = symTab.lookupLocal("main");
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException "
+                    + " in ArenaSemantics.program");
+        }
+        if (mainSymbol == null || !mainSymbol.getType().isFnType())
+            ErrMsg.fatal(new int[] {0, 0}, 1);
+    }
+
+    // the ID a declaration declares
+    private int declId(int decl) {
+        return a.kind[decl] == Arena.STRUCT_DECL ? a.first[decl]
+                : a.next[a.first[decl]];
+    }
+
+    // symTab: scope of the declarations; globalTab: where struct types are
+    private void decls(int list, SymTable symTab, SymTable globalTab) {
+        for (int decl = a.first[list]; decl != Arena.NONE; decl = a.next[decl]) {
+            int d = decl;
+            switch (a.kind[decl]) {
+                case Arena.VAR_DECL:
+                    Walk.then(() -> varDecl(d, symTab, globalTab));
+                    break;
+                case Arena.FN_DECL:
+                    Walk.then(() -> fnDecl(d, symTab));
+                    break;
+                case Arena.STRUCT_DECL:
+                    Walk.then(() -> structDecl(d, symTab));
+                    break;
+            }
+        }
+    }
+
+    private void varDecl(int decl, SymTable symTab, SymTable globalTab) {
+        int type = a.first[decl], id = a.next[type];
+        boolean badDecl = false;
+        TSym sym = null;
+        IdNode structId = null;
+
+        if (a.kind[type] == Arena.VOID_TYPE) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Non-function declared void");
+            badDecl = true;
+        } else if (a.kind[type] == Arena.STRUCT_TYPE) {
+            int structName = a.first[type];
+            sym = lookupGlobal(globalTab, a.name(structName));
+            if (sym == null || !(sym instanceof StructDefSym)) {
+                ErrMsg.fatal(a.line[structName], a.chr[structName],
+                        "Invalid name of struct type");
+                badDecl = true;
+            } else {
+                a.sym[structName] = sym;
+                structId = a.idNode(structName);
+                structId.link(sym);
+            }
+        }
+
+        if (lookupLocal(symTab, a.name(id)) != null) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Multiply declared identifier");
+            badDecl = true;
+        }
+
+        if (!badDecl) {
+            sym = structId != null ? new StructSym(structId)
+                    : new TSym(a.type(type));
+            declare(symTab, id, sym);
+        }
+    }
+
+    private void fnDecl(int decl, SymTable symTab) {
+        int type = a.first[decl], id = a.next[type];
+        int formals = a.next[id], body = a.next[formals];
+        FnSym sym = null;
+
+        if (lookupLocal(symTab, a.name(id)) != null) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Multiply declared identifier");
+        } else {
+            sym = new FnSym(a.type(type), a.count(formals));
+            declare(symTab, id, sym);
+        }
+
+        symTab.addScope(); // for locals and params
+
+        // formals, at offsets 0, -4 ...
+        List<Type> typeList = new LinkedList<Type>();
+        int parameterSize = 0;
+        for (int formal = a.first[formals]; formal != Arena.NONE;
+                formal = a.next[formal]) {
+            TSym s = formalDecl(formal, symTab);
+            if (s == null) continue;
+            typeList.add(s.getType());
+            s.setOffset(-parameterSize);
+            parameterSize += 4;
+        }
+        if (sym != null) sym.addFormals(typeList);
+
+        // body, then its locals (the declarations of the body and of its
+        // if, if-else and while statements), below the control link
+        int bodyDecls = a.first[body], bodyStmts = a.next[bodyDecls];
+        decls(bodyDecls, symTab, symTab);
+        Walk.then(() -> stmts(bodyStmts, symTab));
+        offset = -(parameterSize + CONTROL_SIZE);
+        Walk.then(() -> {
+            localCount = 0;
+            locals(bodyDecls);
+            nestedLocals(bodyStmts);
+        });
+
+        FnSym fnSym = sym;
+        int size = parameterSize;
+        Walk.then(() -> {
+            removeScope(symTab);
+            if (fnSym != null) {
+                fnSym.setParameterSize(size);
+                fnSym.setLocalSize(4 * localCount);
+            }
+        });
+    }
+
+    private TSym formalDecl(int formal, SymTable symTab) {
+        int type = a.first[formal], id = a.next[type];
+        boolean badDecl = false;
+
+        if (a.kind[type] == Arena.VOID_TYPE) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Non-function declared void");
+            badDecl = true;
+        }
+        if (lookupLocal(symTab, a.name(id)) != null) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Multiply declared identifier");
+            badDecl = true;
+        }
+        if (badDecl) return null;
+
+        TSym sym = new TSym(a.type(type));
+        declare(symTab, id, sym);
+        return sym;
+    }
+
+    private void structDecl(int decl, SymTable symTab) {
+        int id = a.first[decl], fields = a.next[id];
+
+        if (lookupLocal(symTab, a.name(id)) != null) {
+            ErrMsg.fatal(a.line[id], a.chr[id], "Multiply declared identifier");
+            return;
+        }
+        SymTable structSymTab = new SymTable();
+        decls(fields, structSymTab, symTab);
+        Walk.then(() -> declare(symTab, id, new StructDefSym(structSymTab)));
+    }
+
+    // give the next offsets to the variables declared in list
+    private void locals(int list) {
+        for (int decl = a.first[list]; decl != Arena.NONE; decl = a.next[decl]) {
+            TSym s = a.sym[declId(decl)];
+            if (s == null) continue;
+            s.setOffset(offset);
+            offset -= 4;
+            localCount++;
+        }
+    }
+
+    // ... and to those of the statements in list, in order (as
+    // Declaration.getDeclarationList: repeat statements have none)
+    private void nestedLocals(int list) {
+        for (int stmt = a.first[list]; stmt != Arena.NONE; stmt = a.next[stmt]) {
+            int s = stmt;
+            switch (a.kind[stmt]) {
+                case Arena.IF:
+                case Arena.WHILE:
+                    Walk.then(() -> {
+                        locals(a.kid(s, 1));
+                        nestedLocals(a.kid(s, 2));
+                    });
+                    break;
+                case Arena.IF_ELSE:
+                    Walk.then(() -> {
+                        locals(a.kid(s, 1));
+                        nestedLocals(a.kid(s, 2));
+                    });
+                    Walk.then(() -> {
+                        locals(a.kid(s, 3));
+                        nestedLocals(a.kid(s, 4));
+                    });
+                    break;
+            }
+        }
+    }
+
+    // **********************************************************************
+    // name analysis: statements and expressions
+    // **********************************************************************
+
+    private void stmts(int list, SymTable symTab) {
+        for (int stmt = a.first[list]; stmt != Arena.NONE; stmt = a.next[stmt]) {
+            int s = stmt, exp = a.first[stmt];
+            switch (a.kind[stmt]) {
+                case Arena.IF:
+                case Arena.WHILE:
+                case Arena.REPEAT:
+                    Walk.then(() -> exp(exp, symTab));
+                    Walk.then(() -> block(a.kid(s, 1), symTab));
+                    break;
+                case Arena.IF_ELSE:
+                    Walk.then(() -> exp(exp, symTab));
+                    Walk.then(() -> block(a.kid(s, 1), symTab));
+                    Walk.then(() -> block(a.kid(s, 3), symTab));
+                    break;
+                default: // one expression, or none
+                    if (exp != Arena.NONE) Walk.then(() -> exp(exp, symTab));
+            }
+        }
+    }
+
+    // the declarations decls and the statements after them, in a new scope
+    private void block(int decls, SymTable symTab) {
+        symTab.addScope();
+        decls(decls, symTab, symTab);
+        Walk.then(() -> stmts(a.next[decls], symTab));
+        Walk.then(() -> removeScope(symTab));
+    }
+
+    private void exp(int n, SymTable symTab) {
+        switch (a.kind[n]) {
+            case Arena.ID:
+                TSym sym = lookupGlobal(symTab, a.name(n));
+                if (sym == null)
+                    ErrMsg.fatal(a.line[n], a.chr[n], "Undeclared identifier");
+                else
+                    a.sym[n] = sym;
+                break;
+            case Arena.DOT:
+                dot(n, symTab);
+                Walk.then(() -> Walk.pop()); // symbol for a dot-access of it
+                break;
+            case Arena.CALL:
+                Walk.then(() -> exp(a.first[n], symTab));
+                for (int arg = a.first[a.next[a.first[n]]]; arg != Arena.NONE;
+                        arg = a.next[arg]) {
+                    int e = arg;
+                    Walk.then(() -> exp(e, symTab));
+                }
+                break;
+            default: // operators (literals have no kids)
+                for (int kid = a.kids(n); kid != Arena.NONE; kid = a.next[kid]) {
+                    int e = kid;
+                    Walk.then(() -> exp(e, symTab));
+                }
+        }
+    }
+
+    /**
+     * Name analysis of the dot-access n (as DotAccessExpNode.nameAnalysis):
+     * pushes the symbol of the struct type of its field, if it is of a struct
+     * type (for a dot-access of it), BAD_ACCESS after an error and null
+     * otherwise
+     */
+    private void dot(int n, SymTable symTab) {
+        int loc = a.first[n];
+        if (a.kind[loc] == Arena.DOT) {
+            Walk.then(() -> dot(loc, symTab));
+            Walk.then(() -> Walk.push(field(n, Walk.pop())));
+        } else {
+            if (a.kind[loc] == Arena.ID) exp(loc, symTab);
+            Walk.push(field(n, null));
+        }
+    }
+
+    // the rest of dot, given what dot pushed for its LHS, if it is one
+    private TSym field(int n, TSym locSym) {
+        int loc = a.first[n], field = a.next[loc];
+        SymTable structSymTab = null;
+
+        if (a.kind[loc] == Arena.ID) {
+            TSym sym = a.sym[loc];
+            if (sym == null) return BAD_ACCESS; // undeclared
+            if (!(sym instanceof StructSym)) {
+                ErrMsg.fatal(a.line[loc], a.chr[loc],
+                        "Dot-access of non-struct type");
+                return BAD_ACCESS;
+            }
+            TSym structSym = ((StructSym) sym).getStructType().sym();
+            structSymTab = ((StructDefSym) structSym).getSymTable();
+        } else if (a.kind[loc] == Arena.DOT) {
+            TSym sym = locSym;
+            if (sym == BAD_ACCESS) return BAD_ACCESS;
+            if (sym == null) {
+                ErrMsg.fatal(a.line[loc], a.chr[loc],
+                        "Dot-access of non-struct type");
+                return BAD_ACCESS;
+            }
+            structSymTab = ((StructDefSym) sym).getSymTable();
+        } else {
+            System.err.println("Unexpected node type in LHS of dot-access");
+            System.exit(-1);
+        }
+
+        TSym sym = lookupGlobal(structSymTab, a.name(field));
+        if (sym == null) {
+            ErrMsg.fatal(a.line[field], a.chr[field],
+                    "Invalid struct field name");
+            return BAD_ACCESS;
+        }
+        a.sym[field] = sym;
+        return sym instanceof StructSym
+                ? ((StructSym) sym).getStructType().sym() : null;
+    }
+
+    // **********************************************************************
+    // type checking
+    // **********************************************************************
+
+    private void stmts(int list, Type retType) {
+        for (int stmt = a.first[list]; stmt != Arena.NONE; stmt = a.next[stmt]) {
+            int s = stmt;
+            Walk.then(() -> stmt(s, retType));
+        }
+    }
+
+    private void stmt(int stmt, Type retType) {
+        int exp = a.first[stmt];
+        if (exp == Arena.NONE) { // RETURN
+            if (!retType.isVoidType())
+                ErrMsg.fatal(0, 0, "Missing return value");
+            return;
+        }
+        typeCheck(exp);
+        Walk.then(() -> stmt(stmt, Walk.pop(), retType));
+    }
+
+    // the rest of stmt, given the type of its expression
+    private void stmt(int stmt, Type type, Type retType) {
+        int exp = a.first[stmt];
+        switch (a.kind[stmt]) {
+            case Arena.POST_INC:
+            case Arena.POST_DEC:
+                if (!type.isErrorType() && !type.isIntType())
+                    error(exp, "Arithmetic operator applied to non-numeric operand");
+                break;
+            case Arena.READ:
+                if (type.isFnType()) error(exp, "Attempt to read a function");
+                if (type.isStructDefType())
+                    error(exp, "Attempt to read a struct name");
+                if (type.isStructType())
+                    error(exp, "Attempt to read a struct variable");
+                break;
+            case Arena.WRITE:
+                if (type.isFnType()) error(exp, "Attempt to write a function");
+                if (type.isStructDefType())
+                    error(exp, "Attempt to write a struct name");
+                if (type.isStructType())
+                    error(exp, "Attempt to write a struct variable");
+                if (type.isVoidType()) error(exp, "Attempt to write void");
+                if (type.isStringType()) a.kind[stmt] = Arena.WRITE_STRING;
+                break;
+            case Arena.IF:
+            case Arena.IF_ELSE:
+                if (!type.isErrorType() && !type.isBoolType())
+                    error(exp, "Non-bool expression used as an if condition");
+                stmts(a.kid(stmt, 2), retType);
+                if (a.kind[stmt] == Arena.IF_ELSE)
+                    stmts(a.kid(stmt, 4), retType);
+                break;
+            case Arena.WHILE:
+                if (!type.isErrorType() && !type.isBoolType())
+                    error(exp, "Non-bool expression used as a while condition");
+                stmts(a.kid(stmt, 2), retType);
+                break;
+            case Arena.REPEAT:
+                if (!type.isErrorType() && !type.isIntType())
+                    error(exp, "Non-integer expression used as a repeat clause");
+                stmts(a.kid(stmt, 2), retType);
+                break;
+            case Arena.RETURN:
+                if (retType.isVoidType()) {
+                    error(exp, "Return with a value in a void function");
+                } else if (!retType.isErrorType() && !type.isErrorType()
+                        && !retType.equals(type)) {
+                    error(exp, "Bad return value");
+                }
+                break;
+        }
+    }
+
+    // pushes the type of expression n
+    private void typeCheck(int n) {
+        int left = a.kids(n), right = left == Arena.NONE ? Arena.NONE : a.next[left];
+        switch (a.kind[n]) {
+            case Arena.INT_LIT:
+                Walk.push(IntType.INSTANCE);
+                break;
+            case Arena.STRING_LIT:
+                Walk.push(StringType.INSTANCE);
+                break;
+            case Arena.TRUE:
+            case Arena.FALSE:
+                Walk.push(BoolType.INSTANCE);
+                break;
+            case Arena.ID:
+                Walk.push(idType(n));
+                break;
+            case Arena.DOT:
+                Walk.push(idType(right));
+                break;
+            case Arena.ASSIGN:
+                Walk.then(() -> typeCheck(left));
+                Walk.then(() -> typeCheck(right));
+                Walk.then(() -> {
+                    Type typeExp = Walk.pop();
+                    Walk.push(assign(n, Walk.pop(), typeExp));
+                });
+                break;
+            case Arena.CALL:
+                call(left, right);
+                break;
+            case Arena.UNARY_MINUS:
+                operand(left, IntType.INSTANCE,
+                        "Arithmetic operator applied to non-numeric operand");
+                break;
+            case Arena.NOT:
+                operand(left, BoolType.INSTANCE,
+                        "Logical operator applied to non-bool operand");
+                break;
+            case Arena.PLUS:
+            case Arena.MINUS:
+            case Arena.TIMES:
+            case Arena.DIVIDE:
+                operands(left, right, IntType.INSTANCE, IntType.INSTANCE,
+                        "Arithmetic operator applied to non-numeric operand");
+                break;
+            case Arena.AND:
+            case Arena.OR:
+                operands(left, right, BoolType.INSTANCE, BoolType.INSTANCE,
+                        "Logical operator applied to non-bool operand");
+                break;
+            case Arena.EQUALS:
+            case Arena.NOT_EQUALS:
+                Walk.then(() -> typeCheck(left));
+                Walk.then(() -> typeCheck(right));
+                Walk.then(() -> {
+                    Type type2 = Walk.pop();
+                    Walk.push(equality(n, Walk.pop(), type2));
+                });
+                break;
+            default: // relational
+                operands(left, right, IntType.INSTANCE, BoolType.INSTANCE,
+                        "Relational operator applied to non-numeric operand");
+        }
+    }
+
+    // the type of the ID n
+    private Type idType(int n) {
+        if (a.sym[n] == null) {
+            System.err.println("ID with null sym field in ArenaSemantics.typeCheck");
+            System.exit(-1);
+        }
+        return a.sym[n].getType();
+    }
+
+    // as AssignNode.typeCheck
+    private Type assign(int n, Type typeLhs, Type typeExp) {
+        Type retType = typeLhs;
+        if (typeLhs.isFnType() && typeExp.isFnType()) {
+            error(n, "Function assignment");
+            retType = ErrorType.INSTANCE;
+        }
+        if (typeLhs.isStructDefType() && typeExp.isStructDefType()) {
+            error(n, "Struct name assignment");
+            retType = ErrorType.INSTANCE;
+        }
+        if (typeLhs.isStructType() && typeExp.isStructType()) {
+            error(n, "Struct variable assignment");
+            retType = ErrorType.INSTANCE;
+        }
+        if (!typeLhs.equals(typeExp) && !typeLhs.isErrorType()
+                && !typeExp.isErrorType()) {
+            error(n, "Type mismatch");
+            retType = ErrorType.INSTANCE;
+        }
+        if (typeLhs.isErrorType() || typeExp.isErrorType())
+            retType = ErrorType.INSTANCE;
+        return retType;
+    }
+
+    // as CallExpNode.typeCheck
+    private void call(int id, int args) {
+        if (!idType(id).isFnType()) {
+            error(id, "Attempt to call a non-function");
+            Walk.push(ErrorType.INSTANCE);
+            return;
+        }
+        FnSym fnSym = (FnSym) a.sym[id];
+        if (a.count(args) != fnSym.getNumParams()) {
+            error(id, "Function call with wrong number of args");
+            Walk.push(fnSym.getReturnType());
+            return;
+        }
+        Iterator<Type> formals = fnSym.getParamTypes().iterator();
+        for (int arg = a.first[args]; arg != Arena.NONE; arg = a.next[arg]) {
+            int e = arg;
+            Type formalType = formals.next();
+            Walk.then(() -> typeCheck(e));
+            Walk.then(() -> {
+                Type actualType = Walk.pop();
+                if (!actualType.isErrorType() && !formalType.equals(actualType))
+                    error(e, "Type of actual does not match type of formal");
+            });
+        }
+        Walk.then(() -> Walk.push(fnSym.getReturnType()));
+    }
+
+    // a unary operator taking and giving type
+    private void operand(int exp, Type type, String message) {
+        Walk.then(() -> typeCheck(exp));
+        Walk.then(() -> {
+            Type expType = Walk.pop();
+            if (!expType.isErrorType() && !expType.equals(type)) {
+                error(exp, message);
+                Walk.push(ErrorType.INSTANCE);
+            } else {
+                Walk.push(expType.isErrorType() ? ErrorType.INSTANCE : type);
+            }
+        });
+    }
+
+    // a binary operator taking operandType and giving type
+    private void operands(int left, int right, Type operandType, Type type,
+            String message) {
+        Walk.then(() -> typeCheck(left));
+        Walk.then(() -> typeCheck(right));
+        Walk.then(() -> {
+            Type type2 = Walk.pop();
+            Type type1 = Walk.pop();
+            Type retType = type;
+            if (!type1.isErrorType() && !type1.equals(operandType)) {
+                error(left, message);
+                retType = ErrorType.INSTANCE;
+            }
+            if (!type2.isErrorType() && !type2.equals(operandType)) {
+                error(right, message);
+                retType = ErrorType.INSTANCE;
+            }
+            if (type1.isErrorType() || type2.isErrorType())
+                retType = ErrorType.INSTANCE;
+            Walk.push(retType);
+        });
+    }
+
+    // as EqualityExpNode.typeCheck
+    private Type equality(int n, Type type1, Type type2) {
+        Type retType = BoolType.INSTANCE;
+        if (type1.isVoidType() && type2.isVoidType()) {
+            error(n, "Equality operator applied to void functions");
+            retType = ErrorType.INSTANCE;
+        }
+        if (type1.isFnType() && type2.isFnType()) {
+            error(n, "Equality operator applied to functions");
+            retType = ErrorType.INSTANCE;
+        }
+        if (type1.isStructDefType() && type2.isStructDefType()) {
+            error(n, "Equality operator applied to struct names");
+            retType = ErrorType.INSTANCE;
+        }
+        if (type1.isStructType() && type2.isStructType()) {
+            error(n, "Equality operator applied to struct variables");
+            retType = ErrorType.INSTANCE;
+        }
+        if (!type1.equals(type2) && !type1.isErrorType()
+                && !type2.isErrorType()) {
+            error(n, "Type mismatch");
+            retType = ErrorType.INSTANCE;
+        }
+        if (type1.isErrorType() || type2.isErrorType())
+            retType = ErrorType.INSTANCE;
+        return retType;
+    }
+
+    // **********************************************************************
+    // helpers
+    // **********************************************************************
+
+    // report an error at the position of node n
+    private void error(int n, String msg) {
+        ErrMsg.fatal(a.line[n], a.chr[n], msg);
+    }
+
+    private void declare(SymTable symTab, int id, TSym sym) {
+        try {
+            symTab.addDecl(a.name(id), sym);
+            a.sym[id] = sym;
+        } catch (DuplicateSymException ex) {
+            System.err.println("Unexpected DuplicateSymException "
+                    + " in ArenaSemantics.declare");
+            System.exit(-1);
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException "
+                    + " in ArenaSemantics.declare");
+            System.exit(-1);
+        }
+    }
+
+    private static TSym lookupLocal(SymTable symTab, String name) {
+        try {
+            return symTab.lookupLocal(name);
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException "
+                    + " in ArenaSemantics.lookupLocal");
+            return null;
+        }
+    }
+
+    private static TSym lookupGlobal(SymTable symTab, String name) {
+        try {
+            return symTab.lookupGlobal(name);
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException "
+                    + " in ArenaSemantics.lookupGlobal");
+            return null;
+        }
+    }
+
+    private static void removeScope(SymTable symTab) {
+        try {
+            symTab.removeScope();
+        } catch (EmptySymTableException ex) {
+            System.err.println("Unexpected EmptySymTableException "
+                    + " in ArenaSemantics.removeScope");
+            System.exit(-1);
+        }
+    }
+}
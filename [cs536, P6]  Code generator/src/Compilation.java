@@ -0,0 +1,68 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * The state of one compilation: the code generator's output, code buffer,
+ * string literal labels and label counter (used through G), the error
+ * reporting (used through ErrMsg), the metrics, if they are collected, the
+ * walk of the tree by the phases (Walk) and its struct types (StructType.of).
+ *
+ * G and ErrMsg are called statically from the AST nodes, the scanner and the
+ * parser, so they act on the compilation that is current on the calling
+ * thread. P6.process makes its own compilation current while it runs, so
+ * separate P6 instances can compile at the same time on different threads.
+ * A thread that never set one (NameBench, for instance) gets its own.
+ */
+public class Compilation {
+    private static final ThreadLocal<Compilation> current =
+            ThreadLocal.withInitial(Compilation::new);
+
+    // file into which generated code is written
+    public PrintWriter out;
+
+    // generated code, in order, until it is written by G.flush
+    public final List<G.Instr> code = new ArrayList<G.Instr>();
+
+    // string key-value map (for tracking duplicate global strings)
+    public final Map<String, String> stringMap = new HashMap<String, String>();
+
+    // evaluate expressions in G.REGS (otherwise, on the stack)
+    public boolean registers = true;
+
+    // number of the next label
+    int labelCount = 0;
+
+    // where errors and warnings are reported
+    public PrintStream diagnostics = System.err;
+
+    // whether a fatal error was reported
+    boolean err = false;
+
+    // compile-time metrics, null unless they are collected
+    public Metrics metrics;
+
+    // traversal of the tree by the phases (see Walk)
+    public final Walk walk = new Walk();
+
+    // struct types by name (see StructType.of)
+    final Map<String, StructType> structTypes = new HashMap<String, StructType>();
+
+    /**
+     * @return the compilation current on this thread
+     */
+    public static Compilation current() {
+        return current.get();
+    }
+
+    /**
+     * Make the given compilation current on this thread
+     *
+     * @param compilation the compilation
+     * @return the compilation that was current before
+     */
+    public static Compilation setCurrent(Compilation compilation) {
+        Compilation previous = current.get();
+        current.set(compilation);
+        return previous;
+    }
+}
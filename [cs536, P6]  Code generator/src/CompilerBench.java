@@ -0,0 +1,196 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * End-to-end benchmark of the compiler: P6.process on generated programs
+ * (ProgramGenerator) of growing size, with the time and allocation of each
+ * phase from its Metrics (as -stats reports them), so that a phase that
+ * does not scale linearly shows up.
+ *
+ * usage: java CompilerBench [-O0|-O2|-arena] [-seed n] [-runs n] [lines...]
+ *
+ * A program of each number of lines (1000 to 1000000 by default) is
+ * generated with the given seed and the generator's other defaults, then
+ * compiled at the given level (the default level otherwise) the given
+ * number of times; the run with the least total time is reported (after a
+ * first, unreported compilation of a smaller program warms up the JVM).
+ * For each phase, the tables give its time, its time per line and the
+ * memory it allocated, for each size; the last line is the peak of the
+ * heap in use during the compilation (the sum of the peaks of its pools,
+ * so an upper bound).
+ */
+public class CompilerBench {
+    private static final int[] LINES = {1000, 10000, 100000, 1000000};
+    private static final int WARMUP_LINES = 10000;
+
+    public static void main(String[] args) throws Exception {
+        String level = "";
+        long seed = 1;
+        int runs = 1;
+        List<Integer> sizes = new ArrayList<Integer>();
+        try {
+            for (int arg = 0; arg < args.length; arg++) {
+                if (args[arg].equals("-O0") || args[arg].equals("-O2")
+                        || args[arg].equals("-arena")) {
+                    level = args[arg];
+                } else if (args[arg].equals("-seed")) {
+                    seed = Long.parseLong(args[++arg]);
+                } else if (args[arg].equals("-runs")) {
+                    runs = Integer.parseInt(args[++arg]);
+                } else {
+                    sizes.add(Integer.parseInt(args[arg]));
+                }
+            }
+        } catch (RuntimeException e) { // a bad or missing number
+            System.err.println("usage: java CompilerBench [-O0|-O2|-arena] "
+                    + "[-seed n] [-runs n] [lines...]");
+            System.exit(-1);
+        }
+        if (sizes.isEmpty())
+            for (int lines : LINES)
+                sizes.add(lines);
+
+        File source = File.createTempFile("bench", ".cminusminus");
+        File target = File.createTempFile("bench", ".s");
+        source.deleteOnExit();
+        target.deleteOnExit();
+
+        ProgramGenerator warmup = new ProgramGenerator(seed + 1);
+        warmup.setLines(WARMUP_LINES);
+        try (Writer out = new FileWriter(source)) {
+            out.write(warmup.generate());
+        }
+        compile(level, source, target);
+
+        // the costs of each size's phases, and its lines and peak heap
+        List<Map<String, long[]>> costs = new ArrayList<Map<String, long[]>>();
+        long[] lines = new long[sizes.size()];
+        long[] peaks = new long[sizes.size()];
+        for (int i = 0; i < sizes.size(); i++) {
+            ProgramGenerator generator = new ProgramGenerator(seed);
+            generator.setLines(sizes.get(i));
+            String program = generator.generate();
+            lines[i] = program.chars().filter(c -> c == '\n').count();
+            try (Writer out = new FileWriter(source)) {
+                out.write(program);
+            }
+            program = null;
+
+            Map<String, long[]> best = null;
+            for (int run = 0; run < runs; run++) {
+                System.gc();
+                resetPeakHeap();
+                Map<String, long[]> runCosts = compile(level, source, target);
+                long peak = peakHeap();
+                if (best == null || total(runCosts) < total(best)) {
+                    best = runCosts;
+                    peaks[i] = peak;
+                }
+            }
+            costs.add(best);
+        }
+
+        Set<String> phases = new LinkedHashSet<String>();
+        for (Map<String, long[]> cost : costs)
+            phases.addAll(cost.keySet());
+        System.out.printf("P6 %s, seed %d, best of %d runs%n",
+                level.isEmpty() ? "(default)" : level, seed, runs);
+        System.out.printf("%-16s", "lines");
+        for (long count : lines)
+            System.out.printf(" %12d", count);
+        System.out.println();
+
+        System.out.printf("%nms%n");
+        for (String phase : phases)
+            row(phase, costs, phase, 0, 1e6, null);
+        row("total", costs, null, 0, 1e6, null);
+        System.out.printf("%nus per line%n");
+        for (String phase : phases)
+            row(phase, costs, phase, 0, 1e3, lines);
+        row("total", costs, null, 0, 1e3, lines);
+        System.out.printf("%nMB allocated%n");
+        for (String phase : phases)
+            row(phase, costs, phase, 1, 1 << 20, null);
+        row("total", costs, null, 1, 1 << 20, null);
+        System.out.printf("%n%-16s", "peak heap MB");
+        for (long peak : peaks)
+            System.out.printf(" %12.1f", peak / (double) (1 << 20));
+        System.out.println();
+    }
+
+    /**
+     * Print the cost of phase (or the total, if null) for each size: the
+     * given one of its costs (0: nanos, 1: bytes), divided by unit and by
+     * the lines of each size, if given
+     */
+    private static void row(String name, List<Map<String, long[]>> costs,
+            String phase, int cost, double unit, long[] lines) {
+        System.out.printf("%-16s", name);
+        for (int i = 0; i < costs.size(); i++) {
+            long value = 0;
+            for (Map.Entry<String, long[]> entry : costs.get(i).entrySet()) {
+                if (phase != null && !entry.getKey().equals(phase)) continue;
+                long phaseCost = entry.getValue()[cost];
+                value = phaseCost < 0 || value < 0 ? -1 : value + phaseCost;
+            }
+            if (value < 0 || (phase != null && !costs.get(i).containsKey(phase)))
+                System.out.printf(" %12s", "-");
+            else
+                System.out.printf(" %12.3f",
+                        value / unit / (lines == null ? 1 : lines[i]));
+        }
+        System.out.println();
+    }
+
+    /**
+     * Compile source to target at level, collecting its metrics
+     *
+     * @return the costs of its phases
+     */
+    private static Map<String, long[]> compile(String level, File source,
+            File target) throws Exception {
+        P6 p6 = new P6();
+        p6.setInfile(source.getPath());
+        p6.setOutfile(target.getPath());
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        p6.setDiagnostics(new PrintStream(diagnostics));
+        p6.setOptimize(!level.equals("-O0"));
+        p6.setMiddleEnd(level.equals("-O2"));
+        p6.setArena(level.equals("-arena"));
+        Metrics metrics = p6.collectMetrics();
+        int code;
+        try {
+            code = p6.process();
+        } finally {
+            p6.cleanup();
+        }
+        if (code != P6.RESULT_CORRECT) {
+            System.err.print(diagnostics);
+            System.err.println(source + ": " + P6Batch.resultName(code));
+            System.exit(1);
+        }
+        return metrics.phaseCosts();
+    }
+
+    private static long total(Map<String, long[]> costs) {
+        long nanos = 0;
+        for (long[] cost : costs.values())
+            nanos += cost[0];
+        return nanos;
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+    }
+
+    // peak of the heap in use since resetPeakHeap (of each of its pools)
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+}
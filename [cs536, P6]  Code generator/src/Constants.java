@@ -0,0 +1,50 @@
+import java.util.*;
+
+// **********************************************************************
+// The Constants class holds what constant folding (the fold methods of the
+// AST nodes) knows at a point of a function body: the value of each local
+// int or bool variable (bools as 1 and 0) whose last assignment was a
+// constant.
+//
+// Locals can only be changed by the statements of their own function
+// (there are no pointers), so calls do not change what is known. Where
+// paths join, only the values known on every path are kept (meet); at the
+// head of a loop nothing is known.
+// **********************************************************************
+
+public class Constants {
+    private HashMap<TSym, Integer> values = new HashMap<TSym, Integer>();
+
+    public Constants copy() {
+        Constants copy = new Constants();
+        copy.values.putAll(values);
+        return copy;
+    }
+
+    // returns: the value of sym, or null if it is not known
+    public Integer get(TSym sym) {
+        return values.get(sym);
+    }
+
+    // record the value assigned to sym (null if it is not constant)
+    public void set(TSym sym, Integer value) {
+        if (value == null || sym == null || !sym.isLocal())
+            values.remove(sym);
+        else
+            values.put(sym, value);
+    }
+
+    public void clear() {
+        values.clear();
+    }
+
+    // keep only the values that other knows as well
+    public void meet(Constants other) {
+        Iterator<Map.Entry<TSym, Integer>> it = values.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TSym, Integer> entry = it.next();
+            if (!entry.getValue().equals(other.values.get(entry.getKey())))
+                it.remove();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Stress test and benchmark of the phases over the tree (Walk) on
+ * pathologically deep programs: each is compiled, on the default Java
+ * stack, at each optimization level (-O0, the default, -O2 and -arena).
+ *
+ * usage: java DeepBench <depth> [runs] [program...]
+ *
+ * Each program nests one construct depth levels deep: if and while
+ * statements, else branches, left- and right-nested arithmetic, chains of
+ * ! and unary minus, of assignments and of &&, and calls as arguments of
+ * calls. A last, shallow program of depth small functions compares the
+ * throughput of the walk with that of the recursive phases it replaced
+ * (run it on both). The best time of the runs is reported for each program
+ * (all of them, or those named) and level, or the error that stopped the
+ * compilation.
+ *
+ * (The middle end's loop passes take time and memory quadratic in the depth
+ * of nested loops, so while is slow at -O2 and -arena beyond a few
+ * thousand levels.)
+ */
+public class DeepBench {
+    private static final String[] SHAPES = {"if", "while", "else", "left",
+            "right", "not", "minus", "assign", "and", "call", "shallow"};
+    private static final String[] LEVELS = {"-O0", "-O1", "-O2", "-arena"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: java DeepBench <depth> [runs] [program...]");
+            System.exit(-1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String[] shapes = args.length > 2
+                ? Arrays.copyOfRange(args, 2, args.length) : SHAPES;
+
+        File source = File.createTempFile("deep", ".cminusminus");
+        File target = File.createTempFile("deep", ".s");
+        source.deleteOnExit();
+        target.deleteOnExit();
+        PrintStream diagnostics = new PrintStream(new ByteArrayOutputStream());
+
+        System.out.printf("depth %d, best of %d runs (ms)%n", depth, runs);
+        System.out.printf("%-8s %8s", "program", "lines");
+        for (String level : LEVELS)
+            System.out.printf(" %12s", level);
+        System.out.println();
+        boolean allCorrect = true;
+        for (String shape : shapes) {
+            String program = program(shape, depth);
+            try (Writer out = new FileWriter(source)) {
+                out.write(program);
+            }
+            System.out.printf("%-8s %8d", shape, program.split("\n").length);
+            for (String level : LEVELS) {
+                String result = null;
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < runs && result == null; run++) {
+                    long start = System.nanoTime();
+                    result = compile(level, source, target, diagnostics);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf(" %12s", result != null ? result
+                        : String.format("%.1f", best / 1e6));
+                allCorrect &= result == null;
+            }
+            System.out.println();
+        }
+        System.exit(allCorrect ? 0 : 1);
+    }
+
+    /**
+     * Compile source to target at the given level
+     *
+     * @return null if it compiled correctly, otherwise what stopped it
+     */
+    private static String compile(String level, File source, File target,
+            PrintStream diagnostics) throws Exception {
+        P6 p6 = new P6();
+        p6.setInfile(source.getPath());
+        p6.setOutfile(target.getPath());
+        p6.setDiagnostics(diagnostics);
+        p6.setOptimize(!level.equals("-O0"));
+        p6.setMiddleEnd(level.equals("-O2"));
+        p6.setArena(level.equals("-arena"));
+        try {
+            int code = p6.process();
+            return code == P6.RESULT_CORRECT ? null : P6Batch.resultName(code);
+        } catch (StackOverflowError e) {
+            return "overflow";
+        } finally {
+            p6.cleanup();
+        }
+    }
+
+    /**
+     * @param shape one of SHAPES
+     * @param depth nesting depth
+     * @return the program's source
+     */
+    private static String program(String shape, int depth) {
+        StringBuilder text = new StringBuilder();
+        text.append("int f(int n) {\n    return n + 1;\n}\n\n");
+        if (shape.equals("shallow")) {
+            for (int i = 0; i < depth; i++) {
+                text.append("int g").append(i).append("(int n, bool b) {\n");
+                text.append("    int x;\n    x = n * 3 + ").append(i).append(";\n");
+                text.append("    while (x > n && b) {\n");
+                text.append("        if (x / 2 * 2 == x) {\n");
+                text.append("            x = x / 2;\n");
+                text.append("        } else {\n");
+                text.append("            x = f(x) - 2;\n");
+                text.append("        }\n    }\n");
+                text.append("    return x;\n}\n\n");
+            }
+        }
+        text.append("void main() {\n    int x;\n    bool b;\n    x = 1;\n    b = true;\n");
+        switch (shape) {
+            case "if":
+            case "while":
+                for (int i = 0; i < depth; i++)
+                    text.append(shape).append(" (x > ").append(i)
+                            .append(") {\nx = x - 1;\n");
+                text.append("cout << x;\n");
+                for (int i = 0; i < depth; i++)
+                    text.append("}\n");
+                break;
+            case "else":
+                for (int i = 0; i < depth; i++)
+                    text.append("if (x == ").append(i)
+                            .append(") {\ncout << x;\n} else {\n");
+                text.append("cout << x;\n");
+                for (int i = 0; i < depth; i++)
+                    text.append("}\n");
+                break;
+            case "left": // ((x + 1) - x) + 1 ...
+                text.append("x = x");
+                for (int i = 0; i < depth; i++)
+                    text.append(i % 2 == 0 ? " + " : " - ").append(i % 3 == 0 ? "x" : "1")
+                            .append(i % 8 == 7 ? "\n" : "");
+                text.append(";\n");
+                break;
+            case "right": // x + (1 - (x + ...))
+                text.append("x = ");
+                for (int i = 0; i < depth; i++)
+                    text.append(i % 3 == 0 ? "x" : "1").append(i % 2 == 0 ? " + (" : " - (")
+                            .append(i % 8 == 7 ? "\n" : "");
+                text.append("x");
+                for (int i = 0; i < depth; i++)
+                    text.append(')');
+                text.append(";\n");
+                break;
+            case "not":
+                text.append("b = ");
+                for (int i = 0; i < depth; i++)
+                    text.append('!').append(i % 32 == 31 ? "\n" : "");
+                text.append("b;\n");
+                break;
+            case "minus": // -(-(...))
+                text.append("x = ");
+                for (int i = 0; i < depth; i++)
+                    text.append("-(").append(i % 16 == 15 ? "\n" : "");
+                text.append("x");
+                for (int i = 0; i < depth; i++)
+                    text.append(')');
+                text.append(";\n");
+                break;
+            case "assign":
+                for (int i = 0; i < depth; i++)
+                    text.append("x = ").append(i % 8 == 7 ? "\n" : "");
+                text.append("x + 1;\n");
+                break;
+            case "and": // as a value and as a condition
+                for (String use : new String[] {"b = ", "if ("}) {
+                    text.append(use).append("b");
+                    for (int i = 0; i < depth; i++)
+                        text.append(i % 2 == 0 ? " && x > " : " || x < ").append(i)
+                                .append(i % 8 == 7 ? "\n" : "");
+                    text.append(use.equals("b = ") ? ";\n" : ") {\ncout << x;\n}\n");
+                }
+                break;
+            case "call":
+                text.append("x = ");
+                for (int i = 0; i < depth; i++)
+                    text.append("f(").append(i % 16 == 15 ? "\n" : "");
+                text.append("x");
+                for (int i = 0; i < depth; i++)
+                    text.append(')');
+                text.append(";\n");
+                break;
+            case "shallow":
+                for (int i = 0; i < depth; i++)
+                    text.append("x = x + g").append(i).append("(x, b);\n");
+                break;
+        }
+        text.append("cout << x;\n}\n");
+        return text.toString();
+    }
+}
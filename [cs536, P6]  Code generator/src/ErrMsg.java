@@ -5,10 +5,11 @@ import static java.util.Map.entry;
 /**
  * ErrMsg
  *
- * This class is used to generate warning and fatal error messages.
+ * This class is used to generate warning and fatal error messages. They are
+ * reported for the compilation current on the calling thread (see
+ * Compilation).
  */
 class ErrMsg {
-    private static boolean err = false;
 
     // message values
     public static final HashMap<Integer, String> message =
@@ -28,8 +29,10 @@ class ErrMsg {
      * @param msg associated message for error
      */
     static void fatal(int lineNum, int charNum, String msg) {
-        err = true;
-        System.err.println(lineNum + ":" + charNum + " ***ERROR*** " + msg);
+        Compilation compilation = Compilation.current();
+        compilation.err = true;
+        compilation.diagnostics.println(lineNum + ":" + charNum
+                + " ***ERROR*** " + msg);
     }
 
     // additional interface accepting an array position parameter
@@ -45,18 +48,19 @@ class ErrMsg {
      * @param msg associated message for warning
      */
     static void warn(int lineNum, int charNum, String msg) {
-        System.err.println(lineNum + ":" + charNum + " ***WARNING*** " + msg);
+        Compilation.current().diagnostics.println(lineNum + ":" + charNum
+                + " ***WARNING*** " + msg);
     }
 
     /**
      * Returns the err flag.
      */
     static boolean getErr() {
-        return err;
+        return Compilation.current().err;
     }
 
     static void setErr() {
-        err = true;
+        Compilation.current().err = true;
     }
 
 
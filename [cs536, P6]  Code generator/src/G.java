@@ -9,8 +9,9 @@ import java.util.*;
 // Registers: FP, SP, RA, V0, V1, A0, T0, T1
 // Values: TRUE, FALSE
 //
-// The operations include various "generate" methods to print nicely
-// formatted assembly code:
+// The operations include various "generate" methods to append assembly
+// code to the instruction buffer, code():
+// sectionComment
 // generateWithComment
 // generate
 // generateIndexed
@@ -18,22 +19,20 @@ import java.util.*;
 // genPush
 // genPop
 // genLabel
-// and a method nextLabel to create and return a new label.
+// a method flush to write the buffered code, nicely formatted, to the
+// output file, and a method nextLabel to create and return a new label.
+//
+// The buffer, the output file and the labels belong to the compilation
+// current on the calling thread (see Compilation).
 //
 // **********************************************************************
 
 public class G {
-    // file into which generated code is written
-    public static PrintWriter p = null;
-
     // comment types
     public static enum Comment {
         BLOCK, LINE
     };
 
-    // string key-value map (for tracking duplicate global strings)
-    public static Map<String, String> stringMap = new HashMap<String, String>();
-
     // values of true and false
     public static final String TRUE = "1";
     public static final String FALSE = "0";
@@ -49,13 +48,171 @@ public class G {
     public static final String T1 = "$t1";
     public static final String ZERO = "$zero"; // value zero
 
+    // registers for evaluating expressions (ExpNode.genReg), in order
+    public static final String[] REGS = { T0, T1, "$t2", "$t3", "$t4", "$t5",
+            "$t6", "$t7", "$t8", "$t9" };
+
 
     // for pretty printing generated code
     private static final int MAXLEN = 4;
+    private static final String NL = System.lineSeparator();
+    private static final int FLUSH_SIZE = 1 << 13; // chars written at a time
+
+
+    // **********************************************************************
+    // Op
+    // the opcodes and assembler directives the code generator uses, with
+    // their text as written in the assembly code
+    // **********************************************************************
+    public static enum Op {
+        ADD("add"), ADDU("addu"), AND("and"), B("b"), BEQ("beq"), BGE("bge"),
+        BGT("bgt"), BLE("ble"), BLT("blt"), BNE("bne"), DIV("div"),
+        JAL("jal"), JR("jr"), LA("la"), LI("li"), LW("lw"), MOVE("move"),
+        MUL("mul"), MULO("mulo"), OR("or"), SEQ("seq"), SGE("sge"), SGT("sgt"),
+        SLE("sle"), SLT("slt"), SNE("sne"), SUB("sub"), SUBU("subu"),
+        SW("sw"), SYSCALL("syscall"), XORI("xori"),
+        DATA(".data"), TEXT(".text"), ALIGN_WORD(".align 2"),
+        GLOBL_MAIN(".globl main"), SPACE(".space "), ASCIIZ(".asciiz "),
+        NONE("");
+
+        private static final Map<String, Op> byText = new HashMap<String, Op>();
+        static {
+            for (Op op : values())
+                byText.put(op.text, op);
+        }
+
+        public final String text;
+
+        private Op(String text) {
+            this.text = text;
+        }
+
+        // the Op written as text
+        public static Op of(String text) {
+            Op op = byText.get(text);
+            if (op == null)
+                throw new IllegalArgumentException("unknown opcode: " + text);
+            return op;
+        }
+    }
+
+    // **********************************************************************
+    // Instr
+    // one line of generated code: an instruction or directive, a label or a
+    // section comment. Operands are register or label names, except for
+    // one int operand (an immediate, or an offset in an indexed load or
+    // store), which is kept as an int until the code is written.
+    // **********************************************************************
+    public static final class Instr {
+        public static enum Kind {
+            PLAIN, // op arg1, arg2, arg3
+            INDEXED, // op arg1, imm(arg2)
+            LABELED, // label: op arg1
+            LABEL, // label:
+            SECTION // section comment (text in label)
+        };
+
+        public final Kind kind;
+        public final Op op;
+        public final String label;
+        public final String arg1, arg2, arg3; // "" for none, null for imm
+        public final int imm;
+        public final String comment; // null for none
+        final Comment section;
+
+        Instr(Kind kind, Op op, String label, String arg1, String arg2,
+                String arg3, int imm, String comment, Comment section) {
+            this.kind = kind;
+            this.op = op;
+            this.label = label;
+            this.arg1 = arg1;
+            this.arg2 = arg2;
+            this.arg3 = arg3;
+            this.imm = imm;
+            this.comment = comment == null || comment.isEmpty() ? null
+                    : comment;
+            this.section = section;
+        }
+
+        // write the line, nicely formatted (ending with new line), to out
+        void appendTo(StringBuilder out) {
+            switch (kind) {
+                case SECTION:
+                    if (section == Comment.BLOCK) {
+                        out.append("\n########################\n# ").append(label)
+                                .append("\n########################");
+                    } else {
+                        out.append("#———").append(label)
+                                .append("———————————————");
+                    }
+                    break;
+                case LABEL:
+                    out.append(label).append(':');
+                    if (comment != null) out.append("\t\t# ").append(comment);
+                    break;
+                case LABELED:
+                    out.append(label).append(":\t").append(op.text);
+                    if (!arg1.isEmpty()) pad(out).append(arg1);
+                    if (comment != null) out.append("\t# ").append(comment);
+                    break;
+                case INDEXED:
+                    out.append('\t').append(op.text);
+                    pad(out).append(arg1).append(", ").append(imm).append('(')
+                            .append(arg2).append(')');
+                    if (comment != null) out.append("\t# ").append(comment);
+                    break;
+                case PLAIN:
+                    out.append('\t').append(op.text);
+                    if (!arg1.isEmpty()) {
+                        pad(out).append(arg1);
+                        if (arg2 == null || !arg2.isEmpty()) {
+                            appendArg(out.append(", "), arg2);
+                            if (arg3 == null || !arg3.isEmpty())
+                                appendArg(out.append(", "), arg3);
+                        }
+                    }
+                    if (comment != null) out.append("\t\t# ").append(comment);
+                    break;
+            }
+            out.append(NL);
+        }
+
+        private StringBuilder pad(StringBuilder out) {
+            for (int k = MAXLEN - op.text.length() + 2; k > 0; k--)
+                out.append(' ');
+            return out;
+        }
+
+        private void appendArg(StringBuilder out, String arg) {
+            if (arg == null) out.append(imm);
+            else out.append(arg);
+        }
 
-    // for generating labels
-    private static int currLabel = 0;
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            appendTo(out);
+            return out.substring(0, out.length() - NL.length());
+        }
+    }
+
+    // **********************************************************************
+    // state of the current compilation
+    // **********************************************************************
+
+    // generated code, in order, until it is written by flush
+    public static List<Instr> code() {
+        return Compilation.current().code;
+    }
 
+    // string key-value map (for tracking duplicate global strings)
+    public static Map<String, String> stringMap() {
+        return Compilation.current().stringMap;
+    }
+
+    // evaluate expressions in REGS (otherwise, on the stack)
+    public static boolean registers() {
+        return Compilation.current().registers;
+    }
 
     // **********************************************************************
     // **********************************************************************
@@ -64,45 +221,25 @@ public class G {
     // **********************************************************************
 
     public static void sectionComment(String comment, Comment t) {
-        switch (t) {
-            case BLOCK:
-                p.print("\n########################\n");
-                p.print("# " + comment);
-                p.print("\n########################");
-                break;
-            case LINE:
-                p.print("#———" + comment + "———————————————");
-                break;
-        }
-        p.println();
+        code().add(new Instr(Instr.Kind.SECTION, null, comment, "", "", "", 0,
+                null, t));
     }
 
     // **********************************************************************
     // generateWithComment
     // given: op code, comment, and 0 to 3 string args
-    // do: write nicely formatted code (ending with new line)
+    // do: append the instruction to code
     // **********************************************************************
     public static void generateWithComment(String opcode, String arg1,
             String arg2, String arg3, String comment) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print("\t" + opcode);
-        if (arg1 != "") {
-            for (int k = 1; k <= space; k++)
-                p.print(" ");
-            p.print(arg1);
-            if (arg2 != "") {
-                p.print(", " + arg2);
-                if (arg3 != "") p.print(", " + arg3);
-            }
-        }
-        if (comment != null && comment != "") p.print("\t\t# " + comment);
-        p.println();
+        code().add(new Instr(Instr.Kind.PLAIN, Op.of(opcode), null, arg1, arg2,
+                arg3, 0, comment, null));
     }
 
     public static void generateWithComment(String opcode, String arg1,
             String arg2, int arg3, String comment) {
-        generateWithComment(opcode, arg1, arg2, String.valueOf(arg3), comment);
+        code().add(new Instr(Instr.Kind.PLAIN, Op.of(opcode), null, arg1, arg2,
+                null, arg3, comment, null));
     }
 
     public static void generateWithComment(String opcode, String arg1,
@@ -112,7 +249,8 @@ public class G {
 
     public static void generateWithComment(String opcode, String arg1, int arg2,
             String comment) {
-        generateWithComment(opcode, arg1, String.valueOf(arg2), "", comment);
+        code().add(new Instr(Instr.Kind.PLAIN, Op.of(opcode), null, arg1, null,
+                "", arg2, comment, null));
     }
 
     public static void generateWithComment(String opcode, String arg1,
@@ -127,23 +265,11 @@ public class G {
     // **********************************************************************
     // generate
     // given: op code, and 0 to 3 string args
-    // do: write nicely formatted code (ending with new line)
+    // do: append the instruction to code
     // **********************************************************************
     public static void generate(String opcode, String arg1, String arg2,
             String arg3) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print("\t" + opcode);
-        if (arg1 != "") {
-            for (int k = 1; k <= space; k++)
-                p.print(" ");
-            p.print(arg1);
-            if (arg2 != "") {
-                p.print(", " + arg2);
-                if (arg3 != "") p.print(", " + arg3);
-            }
-        }
-        p.println();
+        generateWithComment(opcode, arg1, arg2, arg3, null);
     }
 
     public static void generate(String opcode, String arg1, String arg2) {
@@ -161,49 +287,33 @@ public class G {
     // **********************************************************************
     // generate (two string args, one int)
     // given: op code and args
-    // do: write nicely formatted code (ending with new line)
+    // do: append the instruction to code
     // **********************************************************************
     public static void generate(String opcode, String arg1, String arg2,
             int arg3) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print("\t" + opcode);
-        for (int k = 1; k <= space; k++)
-            p.print(" ");
-        p.println(arg1 + ", " + arg2 + ", " + arg3);
+        generateWithComment(opcode, arg1, arg2, arg3, null);
     }
 
     // **********************************************************************
     // generate (one string arg, one int)
     // given: op code and args
-    // do: write nicely formatted code (ending with new line)
+    // do: append the instruction to code
     // **********************************************************************
     public static void generate(String opcode, String arg1, int arg2) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print("\t" + opcode);
-        for (int k = 1; k <= space; k++)
-            p.print(" ");
-        p.println(arg1 + ", " + arg2);
+        generateWithComment(opcode, arg1, arg2, null);
     }
 
     // **********************************************************************
     // generateIndexed
     // given: op code, target register T1 (as string), indexed register T2
     // (as string), - offset xx (int), and optional comment
-    // do: write nicely formatted code (ending with new line):
+    // do: append the instruction to code, written as:
     // op T1, xx(T2) #comment
     // **********************************************************************
     public static void generateIndexed(String opcode, String arg1, String arg2,
             int arg3, String comment) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print("\t" + opcode);
-        for (int k = 1; k <= space; k++)
-            p.print(" ");
-        p.print(arg1 + ", " + arg3 + "(" + arg2 + ")");
-        if (comment != null && comment != "") p.print("\t# " + comment);
-        p.println();
+        code().add(new Instr(Instr.Kind.INDEXED, Op.of(opcode), null, arg1, arg2,
+                "", arg3, comment, null));
     }
 
     public static void generateIndexed(String opcode, String arg1, String arg2,
@@ -214,21 +324,12 @@ public class G {
     // **********************************************************************
     // generateLabeled (string args -- perhaps empty)
     // given: label, op code, comment, and arg
-    // do: write nicely formatted code (ending with new line)
+    // do: append the instruction to code
     // **********************************************************************
     public static void generateLabeled(String label, String opcode, String arg1,
             String comment) {
-        int space = MAXLEN - opcode.length() + 2;
-
-        p.print(label + ":");
-        p.print("\t" + opcode);
-        if (arg1 != "") {
-            for (int k = 1; k <= space; k++)
-                p.print(" ");
-            p.print(arg1);
-        }
-        if (comment != null && comment != "") p.print("\t# " + comment);
-        p.println();
+        code().add(new Instr(Instr.Kind.LABELED, Op.of(opcode), label, arg1, "",
+                "", 0, comment, null));
     }
 
     public static void generateLabeled(String label, String opcode,
@@ -242,9 +343,8 @@ public class G {
     // generate: L: # comment
     // **********************************************************************
     public static void genLabel(String label, String comment) {
-        p.print(label + ":");
-        if (comment != null && comment != "") p.print("\t\t" + "# " + comment);
-        p.println();
+        code().add(new Instr(Instr.Kind.LABEL, null, label, "", "", "", 0,
+                comment, null));
     }
 
     public static void genLabel(String label) {
@@ -269,13 +369,38 @@ public class G {
         generate("addu", SP, SP, 4);
     }
 
+    // **********************************************************************
+    // flush
+    // write the code generated so far, nicely formatted, to the output file
+    // and clear it
+    // **********************************************************************
+    public static void flush() {
+        Compilation compilation = Compilation.current();
+        StringBuilder text = new StringBuilder(2 * FLUSH_SIZE);
+        char[] chars = new char[2 * FLUSH_SIZE];
+        for (Instr instr : compilation.code) {
+            instr.appendTo(text);
+            if (text.length() >= FLUSH_SIZE) {
+                write(compilation.out, text, chars);
+            }
+        }
+        write(compilation.out, text, chars);
+        compilation.code.clear();
+    }
+
+    // write text to p (through chars, to copy it without allocating)
+    private static void write(PrintWriter p, StringBuilder text, char[] chars) {
+        if (chars.length < text.length()) chars = new char[text.length()];
+        text.getChars(0, text.length(), chars, 0);
+        p.write(chars, 0, text.length());
+        text.setLength(0);
+    }
+
     // **********************************************************************
     // Return a different label each time:
     // L0 L1 L2, etc.
     // **********************************************************************
     public static String nextLabel() {
-        Integer k = new Integer(currLabel++);
-        String tmp = ".L" + k;
-        return (tmp);
+        return ".L" + Compilation.current().labelCount++;
     }
 }
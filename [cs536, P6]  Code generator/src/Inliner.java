@@ -0,0 +1,286 @@
+import java.util.*;
+
+// **********************************************************************
+// The Inliner class replaces calls to small functions by their bodies, in
+// the three-address code of a program (P6 -O2).
+//
+// A function is inlined if it is not main, is not recursive (it is in no
+// cycle of the call graph, or only calls itself in tail calls, which the
+// passes turn into loops) and has at most MAX_SIZE instructions and
+// terminators. No call is inlined into a function that would grow past
+// MAX_CALLER_SIZE, as the passes' dataflow grows with the square of a
+// function's size.
+//
+// Functions are visited callees first (the strongly connected components
+// of the call graph, in reverse topological order): the calls in a
+// function are inlined and the passes run over it before it is inlined
+// itself, and it is measured as it is after that.
+//
+// At each call, the callee's blocks are copied into the caller, with its
+// formals and locals renamed to new temporaries of the caller: each formal
+// is assigned its argument, each return assigns the call's result and
+// jumps to the code after the call. Functions that are then no longer
+// called (from main, directly or not) are removed.
+// **********************************************************************
+
+public class Inliner {
+    public static final int MAX_SIZE = 24;
+    public static final int MAX_CALLER_SIZE = 500;
+
+    private final Map<String, Tac.Function> functions =
+            new HashMap<String, Tac.Function>(); // by label
+
+    // call graph: labels of the functions each one calls
+    private final Map<Tac.Function, Set<String>> callees =
+            new HashMap<Tac.Function, Set<String>>();
+
+    // functions in a cycle of the call graph
+    private final Set<Tac.Function> recursive = new HashSet<Tac.Function>();
+
+    // components of the call graph, callees first (Tarjan's algorithm)
+    private final List<List<Tac.Function>> components =
+            new ArrayList<List<Tac.Function>>();
+    private final Map<Tac.Function, int[]> visits =
+            new HashMap<Tac.Function, int[]>(); // index, lowlink
+    private final Deque<Tac.Function> stack = new ArrayDeque<Tac.Function>();
+    private final Set<Tac.Function> onStack = new HashSet<Tac.Function>();
+
+    private Inliner(Tac.Program program) {
+        for (Tac.Function function : program.functions) {
+            functions.put(function.label, function);
+            Set<String> called = new LinkedHashSet<String>();
+            for (Tac.Block block : function.blocks) {
+                for (Tac.Instr instr : block.instrs)
+                    if (instr.op == Tac.Op.CALL) called.add(instr.function);
+            }
+            callees.put(function, called);
+        }
+        for (Tac.Function function : program.functions) {
+            if (!visits.containsKey(function)) visit(function);
+        }
+    }
+
+    /**
+     * Inline the calls to small functions in program, and run passes over
+     * each function after inlining into it. The calls inlined are counted in
+     * passes (as "inline")
+     */
+    public static void inline(Tac.Program program, PassManager passes) {
+        Inliner inliner = new Inliner(program);
+        for (List<Tac.Function> component : inliner.components) {
+            for (Tac.Function function : component) {
+                int size = function.size();
+                long start = System.nanoTime();
+                int calls = inliner.inlineCalls(function);
+                passes.count("inline", calls, System.nanoTime() - start,
+                        size - function.size());
+                passes.run(function);
+                if (component.size() == 1 && !calls(function, function))
+                    inliner.recursive.remove(function); // (tail calls gone)
+            }
+        }
+        inliner.removeUncalled(program);
+    }
+
+    // **********************************************************************
+    // call graph
+    // **********************************************************************
+
+    private void visit(Tac.Function function) {
+        int[] visit = new int[] {visits.size(), visits.size()};
+        visits.put(function, visit);
+        stack.push(function);
+        onStack.add(function);
+        for (String label : callees.get(function)) {
+            Tac.Function callee = functions.get(label);
+            if (callee == null) continue;
+            if (!visits.containsKey(callee)) {
+                visit(callee);
+                visit[1] = Math.min(visit[1], visits.get(callee)[1]);
+            } else if (onStack.contains(callee)) {
+                visit[1] = Math.min(visit[1], visits.get(callee)[0]);
+            }
+        }
+        if (visit[1] != visit[0]) return;
+
+        List<Tac.Function> component = new ArrayList<Tac.Function>();
+        Tac.Function member;
+        do {
+            member = stack.pop();
+            onStack.remove(member);
+            component.add(member);
+        } while (member != function);
+        if (component.size() > 1 || callees.get(function).contains(function.label))
+            recursive.addAll(component);
+        components.add(component);
+    }
+
+    private static boolean calls(Tac.Function caller, Tac.Function callee) {
+        for (Tac.Block block : caller.blocks) {
+            for (Tac.Instr instr : block.instrs) {
+                if (instr.op == Tac.Op.CALL && instr.function.equals(callee.label))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isInlined(Tac.Function callee) {
+        return callee != null && !callee.isMain() && !recursive.contains(callee)
+                && callee.size() <= MAX_SIZE;
+    }
+
+    // remove the functions main no longer calls, directly or not
+    private void removeUncalled(Tac.Program program) {
+        Set<Tac.Function> called = new HashSet<Tac.Function>();
+        Deque<Tac.Function> work = new ArrayDeque<Tac.Function>();
+        for (Tac.Function function : program.functions) {
+            if (function.isMain()) {
+                called.add(function);
+                work.push(function);
+            }
+        }
+        if (work.isEmpty()) return; // (no main: keep everything)
+        while (!work.isEmpty()) {
+            for (Tac.Block block : work.pop().blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    Tac.Function callee = instr.op == Tac.Op.CALL
+                            ? functions.get(instr.function) : null;
+                    if (callee != null && called.add(callee)) work.push(callee);
+                }
+            }
+        }
+        program.functions.retainAll(called);
+    }
+
+    // **********************************************************************
+    // inlining
+    // **********************************************************************
+
+    // returns: number of calls inlined
+    private int inlineCalls(Tac.Function caller) {
+        int inlined = 0;
+        for (int i = 0; i < caller.blocks.size(); i++) {
+            Tac.Block block = caller.blocks.get(i);
+            for (int j = 0; j < block.instrs.size(); j++) {
+                Tac.Instr instr = block.instrs.get(j);
+                Tac.Function callee = instr.op == Tac.Op.CALL
+                        ? functions.get(instr.function) : null;
+                if (callee == caller || !isInlined(callee)
+                        || caller.size() + callee.size() > MAX_CALLER_SIZE)
+                    continue;
+
+                // continue from the block after the callee's blocks, which
+                // holds the rest of this one
+                List<Tac.Block> body = new ArrayList<Tac.Block>();
+                Tac.Block after = split(caller, block, j);
+                Tac.Block entry = copy(callee, caller, instr, after, body);
+                block.jump(entry);
+                body.add(after);
+                caller.blocks.addAll(i + 1, body);
+                i += body.size() - 1; // (next: after)
+                inlined++;
+                break;
+            }
+        }
+        caller.link();
+        return inlined;
+    }
+
+    // move the instructions of block after the jth (the call), and its
+    // terminator, to a new block
+    private static Tac.Block split(Tac.Function function, Tac.Block block,
+            int j) {
+        Tac.Block after = function.newBlock();
+        List<Tac.Instr> rest = block.instrs.subList(j + 1, block.instrs.size());
+        after.instrs.addAll(rest);
+        rest.clear();
+        block.instrs.remove(j);
+        after.end = block.end;
+        after.test = block.test;
+        after.left = block.left;
+        after.right = block.right;
+        after.target = block.target;
+        after.next = block.next;
+        return after;
+    }
+
+    /**
+     * Copy the blocks of callee into caller (adding them to body), for call:
+     * formals and locals renamed, formals assigned the arguments, and
+     * returns assigning the result and jumping to after
+     *
+     * @return the block to jump to
+     */
+    private static Tac.Block copy(Tac.Function callee, Tac.Function caller,
+            Tac.Instr call, Tac.Block after, List<Tac.Block> body) {
+        Map<Tac.Operand, Tac.Operand> names =
+                new HashMap<Tac.Operand, Tac.Operand>();
+        Map<Tac.Block, Tac.Block> blocks = new HashMap<Tac.Block, Tac.Block>();
+
+        Tac.Block entry = caller.newBlock();
+        body.add(entry);
+        for (int k = 0; k < call.args.length; k++) {
+            entry.instrs.add(new Tac.Instr(Tac.Op.COPY,
+                    rename(names, Tac.Operand.local("formal", -4 * k), caller),
+                    call.args[k], null));
+        }
+        for (Tac.Block block : callee.blocks) {
+            // the entry's copy follows the assignments to the formals, unless
+            // it is jumped back to (see TailCalls)
+            Tac.Block copy = block == callee.entry() && block.preds.isEmpty()
+                    ? entry : caller.newBlock();
+            if (copy != entry) body.add(copy);
+            blocks.put(block, copy);
+        }
+        if (entry.end == null) entry.jump(blocks.get(callee.entry()));
+
+        for (Tac.Block block : callee.blocks) {
+            Tac.Block copy = blocks.get(block);
+            for (Tac.Instr instr : block.instrs) {
+                Tac.Instr renamed = new Tac.Instr(instr.op,
+                        rename(names, instr.dst, caller),
+                        rename(names, instr.a, caller),
+                        rename(names, instr.b, caller));
+                renamed.wraps = instr.wraps;
+                if (instr.op == Tac.Op.CALL) {
+                    renamed.function = instr.function;
+                    renamed.args = new Tac.Operand[instr.args.length];
+                    for (int k = 0; k < instr.args.length; k++)
+                        renamed.args[k] = rename(names, instr.args[k], caller);
+                }
+                copy.instrs.add(renamed);
+            }
+            switch (block.end) {
+                case JUMP:
+                    copy.jump(blocks.get(block.target));
+                    break;
+                case BRANCH:
+                    copy.end = Tac.Block.End.BRANCH;
+                    copy.test = block.test;
+                    copy.left = rename(names, block.left, caller);
+                    copy.right = rename(names, block.right, caller);
+                    copy.target = blocks.get(block.target);
+                    copy.next = blocks.get(block.next);
+                    break;
+                case RETURN:
+                    if (block.left != null && call.dst != null) {
+                        copy.instrs.add(new Tac.Instr(Tac.Op.COPY, call.dst,
+                                rename(names, block.left, caller), null));
+                    }
+                    copy.jump(after);
+                    break;
+            }
+        }
+        return entry;
+    }
+
+    // the operand of caller that stands for o, a variable of the callee
+    private static Tac.Operand rename(Map<Tac.Operand, Tac.Operand> names,
+            Tac.Operand o, Tac.Function caller) {
+        if (o == null || !o.isVariable()) return o;
+        Tac.Operand name = names.get(o);
+        if (name == null) names.put(o, name = caller.newTemp());
+        return name;
+    }
+}
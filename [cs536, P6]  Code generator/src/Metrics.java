@@ -0,0 +1,221 @@
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Compile-time metrics of one compilation, collected when P6 is asked to
+ * (P6.collectMetrics, or -stats on the command line):
+ *
+ * - wall time and bytes allocated by each phase of P6.process
+ * - AST nodes created, by class (counted by the ASTnode constructor), or
+ * by kind with -arena (Arena.count)
+ * - peak depth of the symbol table's scopes
+ * - instructions and labels in the generated code, after code generation
+ * and after the peephole optimizer
+ * - what each pass of the middle end did (PassManager, and the Inliner,
+ * whose changes are the calls it inlined), with -O2
+ *
+ * Allocation is measured for the compiling thread, and is reported as -1 if
+ * the JVM cannot measure it. The metrics print as a table or as JSON.
+ */
+public class Metrics {
+    // allocation counter of the JVM, if it has one
+    private static final com.sun.management.ThreadMXBean threads =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                    ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+                    : null;
+
+    // phases, in the order they ran
+    private List<String> phases = new ArrayList<String>();
+    private List<long[]> phaseCosts = new ArrayList<long[]>(); // nanos, bytes
+
+    // phase running, and its start
+    private String phase;
+    private long startNanos, startBytes;
+
+    // AST nodes created, by class
+    private Map<String, int[]> nodes = new HashMap<String, int[]>();
+
+    // peak number of nested scopes in the symbol table
+    private int scopeDepth;
+
+    // instructions and labels of the code, at each stage it was counted
+    private Map<String, int[]> code = new LinkedHashMap<String, int[]>();
+
+    // passes of the middle end: runs that changed the code, nanos, removed
+    private Map<String, long[]> passes = new LinkedHashMap<String, long[]>();
+
+    /**
+     * End the phase running, if any, and start the given one
+     */
+    public void begin(String phase) {
+        end();
+        this.phase = phase;
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * End the phase running, if any
+     */
+    public void end() {
+        if (phase == null) return;
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+        phases.add(phase);
+        phaseCosts.add(new long[] {nanos, bytes});
+        phase = null;
+    }
+
+    public void countNode(Class<?> nodeClass) {
+        countNodes(nodeClass.getName(), 1);
+    }
+
+    // count nodes of a kind that is not a class (see Arena.count)
+    public void countNodes(String kind, int number) {
+        int[] count = nodes.get(kind);
+        if (count == null) nodes.put(kind, count = new int[1]);
+        count[0] += number;
+    }
+
+    public void scopeDepth(int depth) {
+        scopeDepth = Math.max(scopeDepth, depth);
+    }
+
+    /**
+     * Count the instructions and labels of code as it is after the given
+     * stage of code generation
+     */
+    public void countCode(String stage, List<G.Instr> code) {
+        int labels = 0;
+        for (G.Instr instr : code) {
+            if (instr.kind == G.Instr.Kind.LABEL
+                    || instr.kind == G.Instr.Kind.LABELED)
+                labels++;
+        }
+        this.code.put(stage, new int[] {Peephole.count(code), labels});
+    }
+
+    /**
+     * Count what a pass of the middle end did: how many of its runs changed
+     * the code, in how long, and how many instructions it removed in all
+     */
+    public void countPass(String pass, long changes, long nanos, long removed) {
+        passes.put(pass, new long[] {changes, nanos, removed});
+    }
+
+    /**
+     * @return the phases that ran, in order, each with its wall time (nanos)
+     *         and bytes allocated (-1 if not measured)
+     */
+    public Map<String, long[]> phaseCosts() {
+        Map<String, long[]> costs = new LinkedHashMap<String, long[]>();
+        for (int i = 0; i < phases.size(); i++)
+            costs.put(phases.get(i), phaseCosts.get(i).clone());
+        return costs;
+    }
+
+    /**
+     * @return total number of AST nodes created
+     */
+    public int nodeCount() {
+        int total = 0;
+        for (int[] count : nodes.values())
+            total += count[0];
+        return total;
+    }
+
+    public void printTable(PrintStream p) {
+        long totalNanos = 0, totalBytes = 0;
+        p.printf("%-16s %10s %14s%n", "phase", "ms", "KB allocated");
+        for (int i = 0; i < phases.size(); i++) {
+            long[] cost = phaseCosts.get(i);
+            p.printf("%-16s %10.2f %14s%n", phases.get(i), cost[0] / 1e6,
+                    kilobytes(cost[1]));
+            totalNanos += cost[0];
+            totalBytes = cost[1] < 0 || totalBytes < 0 ? -1 : totalBytes + cost[1];
+        }
+        p.printf("%-16s %10.2f %14s%n", "total", totalNanos / 1e6,
+                kilobytes(totalBytes));
+
+        p.printf("%n%-24s %10d%n", "AST nodes", nodeCount());
+        for (Map.Entry<String, int[]> entry : sortedNodes())
+            p.printf("  %-22s %10d%n", entry.getKey(), entry.getValue()[0]);
+        p.printf("%n%-24s %10d%n", "symbol table peak depth", scopeDepth);
+
+        if (!passes.isEmpty()) {
+            p.printf("%n%-20s %8s %10s %10s%n", "pass", "changes", "ms", "removed");
+            for (Map.Entry<String, long[]> entry : passes.entrySet()) {
+                long[] pass = entry.getValue();
+                p.printf("%-20s %8d %10.2f %10d%n", entry.getKey(), pass[0],
+                        pass[1] / 1e6, pass[2]);
+            }
+        }
+
+        if (code.isEmpty()) return;
+        p.printf("%n%-16s %12s %10s%n", "code after", "instructions", "labels");
+        for (Map.Entry<String, int[]> entry : code.entrySet())
+            p.printf("%-16s %12d %10d%n", entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1]);
+    }
+
+    public void printJson(PrintStream p) {
+        StringBuilder json = new StringBuilder("{\"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            long[] cost = phaseCosts.get(i);
+            json.append(i == 0 ? "" : ", ").append("{\"name\": \"")
+                    .append(phases.get(i)).append("\", \"nanos\": ")
+                    .append(cost[0]).append(", \"allocatedBytes\": ")
+                    .append(cost[1]).append("}");
+        }
+        json.append("], \"nodes\": {");
+        String separator = "";
+        for (Map.Entry<String, int[]> entry : sortedNodes()) {
+            json.append(separator).append("\"").append(entry.getKey())
+                    .append("\": ").append(entry.getValue()[0]);
+            separator = ", ";
+        }
+        json.append("}, \"symbolTablePeakDepth\": ").append(scopeDepth)
+                .append(", \"code\": {");
+        separator = "";
+        for (Map.Entry<String, int[]> entry : code.entrySet()) {
+            json.append(separator).append("\"").append(entry.getKey())
+                    .append("\": {\"instructions\": ")
+                    .append(entry.getValue()[0]).append(", \"labels\": ")
+                    .append(entry.getValue()[1]).append("}");
+            separator = ", ";
+        }
+        json.append("}, \"passes\": {");
+        separator = "";
+        for (Map.Entry<String, long[]> entry : passes.entrySet()) {
+            long[] pass = entry.getValue();
+            json.append(separator).append("\"").append(entry.getKey())
+                    .append("\": {\"changes\": ").append(pass[0])
+                    .append(", \"nanos\": ").append(pass[1])
+                    .append(", \"removed\": ").append(pass[2]).append("}");
+            separator = ", ";
+        }
+        p.println(json.append("}}"));
+    }
+
+    // node counts, largest first
+    private List<Map.Entry<String, int[]>> sortedNodes() {
+        List<Map.Entry<String, int[]>> sorted =
+                new ArrayList<Map.Entry<String, int[]>>(nodes.entrySet());
+        sorted.sort((a, b) -> b.getValue()[0] != a.getValue()[0]
+                ? b.getValue()[0] - a.getValue()[0]
+                : a.getKey().compareTo(b.getKey()));
+        return sorted;
+    }
+
+    private static String kilobytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f", bytes / 1024.0);
+    }
+
+    // bytes allocated by this thread so far, -1 if unknown
+    private static long allocatedBytes() {
+        if (threads == null || !threads.isThreadAllocatedMemorySupported())
+            return -1;
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
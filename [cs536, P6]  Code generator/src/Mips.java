@@ -0,0 +1,665 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Mips class: a simulator for the subset of MIPS assembly that the code
+ * generator (G) emits, to run and profile generated code without SPIM.
+ *
+ * <p>
+ * usage: java Mips [-stats] [-profile] &lt;file.s&gt;
+ * </p>
+ *
+ * <p>
+ * The program's output goes to standard output and its input (for cin) is read
+ * from standard input. With -stats, the number of instructions executed, loads
+ * and stores, and the most stack used (in bytes, below the initial $sp), are
+ * reported on standard error when the program exits; -profile
+ * adds, for each function, its calls and the instructions executed in it.
+ * </p>
+ *
+ * <p>
+ * The assembly is decoded once into parallel int arrays (opcode, three
+ * registers, an immediate and a branch target per instruction), with labels
+ * resolved to instruction indexes or data addresses, so the dispatch loop is
+ * a switch on the opcode. add, sub and mulo trap on overflow, as in SPIM. Memory is word-addressed: the data segment starts at
+ * DATA_BASE, as in SPIM, and the stack grows down from STACK_TOP.
+ * </p>
+ */
+public class Mips {
+    public static final int DATA_BASE = 0x10010000;
+    public static final int STACK_TOP = 0x7fffeffc; // initial $sp
+    private static final int STACK_END = 0x7ffffffc; // last stack word
+    private static final int STACK_WORDS = 1 << 22; // 16 MB of stack
+    private static final int HALT = -1; // return address of main
+
+    // opcodes
+    private static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, REM = 4,
+            AND = 5, OR = 6, XOR = 7, SEQ = 8, SNE = 9, SLT = 10, SGT = 11,
+            SLE = 12, SGE = 13, LI = 14, MOVE = 15, LW = 16, SW = 17,
+            LA = 18, B = 19, BEQ = 20, BNE = 21, JAL = 22, JR = 23,
+            SYSCALL = 24, NOP = 25, NEG = 26, NOT = 27, SLL = 28, SRA = 29,
+            BLT = 30, BGT = 31, BLE = 32, BGE = 33, ADDU = 34, SUBU = 35,
+            MULO = 36;
+
+    // operand forms of ALU and branch ops: third operand register or imm
+    private static final int REG = 0, IMM = 1;
+
+    private static final Map<String, Integer> OPS = new HashMap<>();
+    static {
+        String[][] ops = { { "add", "addi" }, { "sub" }, { "mul", "mulou" },
+                { "div", "divu" }, { "rem", "remu" }, { "and", "andi" },
+                { "or", "ori" }, { "xor", "xori" }, { "seq" }, { "sne" },
+                { "slt", "slti" }, { "sgt" }, { "sle" }, { "sge" },
+                { "li" }, { "move" }, { "lw" }, { "sw" }, { "la" },
+                { "b", "j" }, { "beq" }, { "bne" }, { "jal" }, { "jr" },
+                { "syscall" }, { "nop" }, { "neg", "negu" }, { "not" },
+                { "sll" }, { "sra" }, { "blt" }, { "bgt" }, { "ble" },
+                { "bge" }, { "addu", "addiu" }, { "subu" }, { "mulo" } };
+        for (int op = 0; op < ops.length; op++)
+            for (String name : ops[op])
+                OPS.put(name, op);
+    }
+
+    private static final String[] REGISTERS = { "zero", "at", "v0", "v1",
+            "a0", "a1", "a2", "a3", "t0", "t1", "t2", "t3", "t4", "t5", "t6",
+            "t7", "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7", "t8", "t9",
+            "k0", "k1", "gp", "sp", "fp", "ra" };
+    private static final int V0 = 2, A0 = 4, SP = 29, RA = 31;
+
+    // decoded instructions
+    private int size;
+    private int[] op = new int[256];
+    private int[] form = new int[256];
+    private int[] rd = new int[256];
+    private int[] rs = new int[256];
+    private int[] rt = new int[256];
+    private int[] imm = new int[256];
+    private int[] target = new int[256]; // of branches and jumps
+    private int[] line = new int[256]; // source line of each instruction
+
+    // labels of the text segment (instruction indexes) and the data segment
+    // (addresses), and the references to resolve once all are known
+    private final Map<String, Integer> textLabels = new HashMap<>();
+    private final Map<String, Integer> dataLabels = new HashMap<>();
+    private final List<Object[]> fixups = new ArrayList<>();
+
+    // memory
+    private int[] data = new int[256];
+    private int dataSize; // in bytes
+    private final int[] stack = new int[STACK_WORDS];
+
+    // machine state and statistics
+    private final int[] reg = new int[32];
+    private long instructions, loads, stores;
+    private int stackLow = STACK_TOP + 4; // lowest stack address stored to
+    private long[] counts; // times each instruction was executed
+
+    private BufferedReader in;
+    private PrintStream out;
+
+    /**
+     * loads a program
+     *
+     * @param source assembly code
+     * @throws IllegalArgumentException if the code cannot be assembled
+     */
+    public Mips(Reader source) throws IOException {
+        BufferedReader lines = new BufferedReader(source);
+        boolean text = true;
+        String s;
+        for (int n = 1; (s = lines.readLine()) != null; n++) {
+            try {
+                text = assemble(s, n, text);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("line " + n + ": "
+                        + e.getMessage() + ": " + s.trim(), e);
+            }
+        }
+        for (Object[] fixup : fixups) {
+            int i = (Integer) fixup[0];
+            String label = (String) fixup[1];
+            boolean data = op[i] == LA || op[i] == LW || op[i] == SW;
+            Integer address = data ? dataLabels.get(label)
+                    : textLabels.get(label);
+            if (address == null)
+                throw new IllegalArgumentException("line " + line[i]
+                        + ": undefined label " + label);
+            if (data)
+                imm[i] = address;
+            else
+                target[i] = address;
+        }
+        fixups.clear();
+    }
+
+    /**
+     * assembles one line
+     *
+     * @param s    the line
+     * @param n    its line number
+     * @param text whether the line is in the text segment
+     * @return whether the next line is in the text segment
+     */
+    private boolean assemble(String s, int n, boolean text) {
+        s = stripComment(s).trim();
+        int colon = labelEnd(s);
+        while (colon > 0) {
+            String label = s.substring(0, colon).trim();
+            if (text)
+                textLabels.put(label, size);
+            else
+                dataLabels.put(label, DATA_BASE + dataSize);
+            s = s.substring(colon + 1).trim();
+            colon = labelEnd(s);
+        }
+        if (s.isEmpty())
+            return text;
+
+        String[] parts = s.split("\\s+", 2);
+        String name = parts[0];
+        String rest = parts.length > 1 ? parts[1].trim() : "";
+        if (name.startsWith(".")) {
+            switch (name) {
+                case ".data":
+                    return false;
+                case ".text":
+                    return true;
+                case ".align":
+                    int align = 1 << Integer.parseInt(rest);
+                    reserve((align - dataSize % align) % align);
+                    return text;
+                case ".space":
+                    reserve(Integer.parseInt(rest));
+                    return text;
+                case ".word":
+                    for (String word : rest.split(",")) {
+                        reserve((4 - dataSize % 4) % 4);
+                        int address = DATA_BASE + dataSize;
+                        reserve(4);
+                        data[(address - DATA_BASE) >> 2] = parseInt(word.trim());
+                    }
+                    return text;
+                case ".asciiz":
+                case ".ascii":
+                    for (char c : unescape(rest).toCharArray())
+                        storeByte(c);
+                    if (name.equals(".asciiz"))
+                        storeByte(0);
+                    return text;
+                case ".globl":
+                    return text;
+                default:
+                    throw new IllegalArgumentException("unsupported directive");
+            }
+        }
+        if (!text)
+            throw new IllegalArgumentException("instruction in data segment");
+
+        Integer code = OPS.get(name);
+        if (code == null)
+            throw new IllegalArgumentException("unsupported instruction");
+        String[] args = rest.isEmpty() ? new String[0] : rest.split("\\s*,\\s*");
+        if (size == op.length)
+            grow();
+        int i = size++;
+        op[i] = code;
+        line[i] = n;
+        switch (code) {
+            case LI:
+                expect(args, 2);
+                rd[i] = register(args[0]);
+                imm[i] = parseInt(args[1]);
+                break;
+            case MOVE:
+            case NEG:
+            case NOT:
+                expect(args, 2);
+                rd[i] = register(args[0]);
+                rs[i] = register(args[1]);
+                break;
+            case LW:
+            case SW:
+            case LA:
+                expect(args, 2);
+                rd[i] = register(args[0]);
+                int paren = args[1].indexOf('(');
+                if (paren >= 0) {
+                    form[i] = REG;
+                    imm[i] = paren == 0 ? 0 : parseInt(args[1].substring(0, paren));
+                    rs[i] = register(args[1].substring(paren + 1,
+                            args[1].indexOf(')')));
+                } else {
+                    form[i] = IMM; // absolute address of a label
+                    fixups.add(new Object[] { i, args[1] });
+                }
+                break;
+            case B:
+            case JAL:
+                expect(args, 1);
+                fixups.add(new Object[] { i, args[0] });
+                break;
+            case JR:
+                expect(args, 1);
+                rs[i] = register(args[0]);
+                break;
+            case BEQ:
+            case BNE:
+            case BLT:
+            case BGT:
+            case BLE:
+            case BGE:
+                expect(args, 3);
+                rs[i] = register(args[0]);
+                operand(i, args[1]);
+                fixups.add(new Object[] { i, args[2] });
+                break;
+            case SYSCALL:
+            case NOP:
+                expect(args, 0);
+                break;
+            default: // rd, rs, rt or imm
+                if (args.length == 2) // rd, rs as rd, rd, rs
+                    args = new String[] { args[0], args[0], args[1] };
+                expect(args, 3);
+                rd[i] = register(args[0]);
+                rs[i] = register(args[1]);
+                operand(i, args[2]);
+                break;
+        }
+        return text;
+    }
+
+    /**
+     * decodes the last operand of instruction i, a register or an immediate
+     */
+    private void operand(int i, String arg) {
+        if (arg.startsWith("$")) {
+            form[i] = REG;
+            rt[i] = register(arg);
+        } else {
+            form[i] = IMM;
+            imm[i] = parseInt(arg);
+        }
+    }
+
+    private static void expect(String[] args, int count) {
+        if (args.length != count)
+            throw new IllegalArgumentException("expected " + count + " operands");
+    }
+
+    private static int register(String name) {
+        if (!name.startsWith("$"))
+            throw new IllegalArgumentException("expected register: " + name);
+        name = name.substring(1);
+        for (int r = 0; r < REGISTERS.length; r++)
+            if (REGISTERS[r].equals(name))
+                return r;
+        if (name.equals("s8"))
+            return 30;
+        return Integer.parseInt(name);
+    }
+
+    private static int parseInt(String s) {
+        return s.startsWith("0x") ? (int) Long.parseLong(s.substring(2), 16)
+                : Integer.parseInt(s);
+    }
+
+    // s without its comment, if any (a # outside a string literal)
+    private static String stripComment(String s) {
+        boolean quoted = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"')
+                quoted = !quoted;
+            else if (c == '\\' && quoted)
+                i++;
+            else if (c == '#' && !quoted)
+                return s.substring(0, i);
+        }
+        return s;
+    }
+
+    // index of the colon ending a leading label, or -1 if there is none
+    private static int labelEnd(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ':')
+                return i;
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '$')
+                return -1;
+        }
+        return -1;
+    }
+
+    // the characters of a quoted string literal
+    private static String unescape(String s) {
+        if (s.length() < 2 || s.charAt(0) != '"' || s.charAt(s.length() - 1) != '"')
+            throw new IllegalArgumentException("expected string literal");
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < s.length() - 1; i++) {
+            char c = s.charAt(i);
+            if (c == '\\') {
+                c = s.charAt(++i);
+                switch (c) {
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case '0': c = '\0'; break;
+                    default: break; // \\, \", \'
+                }
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private void reserve(int bytes) {
+        dataSize += bytes;
+        if ((dataSize + 3) >> 2 > data.length)
+            data = Arrays.copyOf(data, Math.max(2 * data.length, (dataSize + 3) >> 2));
+    }
+
+    private void storeByte(int b) {
+        int address = dataSize;
+        reserve(1);
+        data[address >> 2] |= (b & 0xff) << (8 * (address & 3));
+    }
+
+    private void grow() {
+        int n = 2 * op.length;
+        op = Arrays.copyOf(op, n);
+        form = Arrays.copyOf(form, n);
+        rd = Arrays.copyOf(rd, n);
+        rs = Arrays.copyOf(rs, n);
+        rt = Arrays.copyOf(rt, n);
+        imm = Arrays.copyOf(imm, n);
+        target = Arrays.copyOf(target, n);
+        line = Arrays.copyOf(line, n);
+    }
+
+    /**
+     * runs the program from main until it exits
+     *
+     * @param in      program input
+     * @param out     program output
+     * @param profile whether to count executions of each instruction
+     * @return the program's exit code
+     * @throws IOException if the input cannot be read
+     */
+    public int run(Reader in, PrintStream out, boolean profile) throws IOException {
+        Integer main = textLabels.get("main");
+        if (main == null)
+            throw new IllegalArgumentException("no main label");
+        this.in = in instanceof BufferedReader ? (BufferedReader) in
+                : new BufferedReader(in);
+        this.out = out;
+        counts = profile ? new long[size] : null;
+        Arrays.fill(reg, 0);
+        reg[SP] = STACK_TOP;
+        reg[RA] = HALT;
+        instructions = loads = stores = 0;
+        stackLow = STACK_TOP + 4;
+        try {
+            return execute(main);
+        } finally {
+            out.flush();
+        }
+    }
+
+    // the dispatch loop
+    private int execute(int pc) throws IOException {
+        final int[] op = this.op, form = this.form, rd = this.rd,
+                rs = this.rs, rt = this.rt, imm = this.imm,
+                target = this.target, reg = this.reg;
+        final long[] counts = this.counts;
+        long executed = 0;
+        try {
+            while (true) {
+                if (pc < 0 || pc >= size) {
+                    if (pc == HALT)
+                        return 0;
+                    throw new IllegalStateException("jump out of the program");
+                }
+                int i = pc++;
+                executed++;
+                if (counts != null)
+                    counts[i]++;
+                // second operand of ALU ops and branches
+                int b = form[i] == REG ? reg[rt[i]] : imm[i];
+                switch (op[i]) {
+                    case ADD: set(rd[i], Math.addExact(reg[rs[i]], b)); break;
+                    case SUB: set(rd[i], Math.subtractExact(reg[rs[i]], b)); break;
+                    case MULO: set(rd[i], Math.multiplyExact(reg[rs[i]], b)); break;
+                    case ADDU: set(rd[i], reg[rs[i]] + b); break;
+                    case SUBU: set(rd[i], reg[rs[i]] - b); break;
+                    case MUL: set(rd[i], reg[rs[i]] * b); break;
+                    case DIV:
+                        if (b == 0)
+                            throw new ArithmeticException("division by zero");
+                        set(rd[i], reg[rs[i]] / b);
+                        break;
+                    case REM:
+                        if (b == 0)
+                            throw new ArithmeticException("division by zero");
+                        set(rd[i], reg[rs[i]] % b);
+                        break;
+                    case AND: set(rd[i], reg[rs[i]] & b); break;
+                    case OR: set(rd[i], reg[rs[i]] | b); break;
+                    case XOR: set(rd[i], reg[rs[i]] ^ b); break;
+                    case SEQ: set(rd[i], reg[rs[i]] == b ? 1 : 0); break;
+                    case SNE: set(rd[i], reg[rs[i]] != b ? 1 : 0); break;
+                    case SLT: set(rd[i], reg[rs[i]] < b ? 1 : 0); break;
+                    case SGT: set(rd[i], reg[rs[i]] > b ? 1 : 0); break;
+                    case SLE: set(rd[i], reg[rs[i]] <= b ? 1 : 0); break;
+                    case SGE: set(rd[i], reg[rs[i]] >= b ? 1 : 0); break;
+                    case SLL: set(rd[i], reg[rs[i]] << b); break;
+                    case SRA: set(rd[i], reg[rs[i]] >> b); break;
+                    case LI: set(rd[i], imm[i]); break;
+                    case MOVE: set(rd[i], reg[rs[i]]); break;
+                    case NEG: set(rd[i], -reg[rs[i]]); break;
+                    case NOT: set(rd[i], ~reg[rs[i]]); break;
+                    case LA:
+                        set(rd[i], form[i] == REG ? reg[rs[i]] + imm[i] : imm[i]);
+                        break;
+                    case LW:
+                        loads++;
+                        set(rd[i], load(form[i] == REG ? reg[rs[i]] + imm[i] : imm[i]));
+                        break;
+                    case SW:
+                        stores++;
+                        store(form[i] == REG ? reg[rs[i]] + imm[i] : imm[i], reg[rd[i]]);
+                        break;
+                    case B: pc = target[i]; break;
+                    case BEQ: if (reg[rs[i]] == b) pc = target[i]; break;
+                    case BNE: if (reg[rs[i]] != b) pc = target[i]; break;
+                    case BLT: if (reg[rs[i]] < b) pc = target[i]; break;
+                    case BGT: if (reg[rs[i]] > b) pc = target[i]; break;
+                    case BLE: if (reg[rs[i]] <= b) pc = target[i]; break;
+                    case BGE: if (reg[rs[i]] >= b) pc = target[i]; break;
+                    case JAL:
+                        reg[RA] = pc;
+                        pc = target[i];
+                        break;
+                    case JR: pc = reg[rs[i]]; break;
+                    case SYSCALL:
+                        Integer exit = syscall();
+                        if (exit != null)
+                            return exit;
+                        break;
+                    case NOP: break;
+                    default:
+                        throw new IllegalStateException("bad opcode");
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("line " + line[pc - 1] + ": "
+                    + e.getMessage(), e);
+        } finally {
+            instructions += executed;
+        }
+    }
+
+    private void set(int r, int value) {
+        if (r != 0)
+            reg[r] = value;
+    }
+
+    private int load(int address) {
+        int offset = STACK_END - address;
+        return offset >= 0 && offset < STACK_WORDS << 2 && (offset & 3) == 0
+                ? stack[offset >> 2] : data[dataIndex(address)];
+    }
+
+    private void store(int address, int value) {
+        int offset = STACK_END - address;
+        if (offset >= 0 && offset < STACK_WORDS << 2 && (offset & 3) == 0) {
+            stack[offset >> 2] = value;
+            stackLow = Math.min(stackLow, address);
+        } else
+            data[dataIndex(address)] = value;
+    }
+
+    private int dataIndex(int address) {
+        if ((address & 3) != 0)
+            throw new IllegalStateException("unaligned address " + Integer.toHexString(address));
+        int index = (address - DATA_BASE) >> 2;
+        if (address < DATA_BASE || index >= (dataSize + 3) >> 2)
+            throw new IllegalStateException("bad address " + Integer.toHexString(address));
+        return index;
+    }
+
+    /**
+     * performs the system call in $v0
+     *
+     * @return the exit code if the program exits, otherwise null
+     */
+    private Integer syscall() throws IOException {
+        switch (reg[V0]) {
+            case 1: // print integer
+                out.print(reg[A0]);
+                return null;
+            case 4: // print string
+                for (int address = reg[A0];; address++) {
+                    int c = (data[dataIndex(address & ~3)] >> (8 * (address & 3))) & 0xff;
+                    if (c == 0)
+                        break;
+                    out.print((char) c);
+                }
+                return null;
+            case 5: // read integer
+                reg[V0] = readInt();
+                return null;
+            case 10: // exit
+                return 0;
+            case 11: // print character
+                out.print((char) reg[A0]);
+                return null;
+            case 17: // exit with code
+                return reg[A0];
+            default:
+                throw new IllegalStateException("unsupported syscall " + reg[V0]);
+        }
+    }
+
+    /**
+     * writes the statistics of the last run: instructions executed, loads,
+     * stores and stack used and, if it was profiled, the calls of each function and the
+     * instructions executed in it (in order of those, largest first)
+     *
+     * @param report where to write them
+     */
+    public void report(PrintStream report) {
+        report.printf("instructions: %d%nloads: %d%nstores: %d%nstack: %d%n",
+                instructions, loads, stores, STACK_TOP + 4 - stackLow);
+        if (counts == null)
+            return;
+
+        // functions are main and the targets of jal, each running up to the
+        // next one
+        TreeMap<Integer, String> entries = new TreeMap<>();
+        Map<Integer, Long> calls = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (op[i] == JAL)
+                calls.merge(target[i], counts[i], Long::sum);
+        }
+        for (Map.Entry<String, Integer> label : textLabels.entrySet()) {
+            if (label.getKey().equals("main") || calls.containsKey(label.getValue()))
+                entries.put(label.getValue(), label.getKey());
+        }
+        Map<String, Long> executed = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Map.Entry<Integer, String> entry = entries.floorEntry(i);
+            if (entry != null && counts[i] > 0)
+                executed.merge(entry.getValue(), counts[i], Long::sum);
+        }
+        List<Map.Entry<Integer, String>> functions = new ArrayList<>(entries.entrySet());
+        functions.sort((a, b) -> Long.compare(executed.getOrDefault(b.getValue(), 0L),
+                executed.getOrDefault(a.getValue(), 0L)));
+        report.printf("%-24s %12s %14s %7s%n", "function", "calls",
+                "instructions", "%");
+        for (Map.Entry<Integer, String> function : functions) {
+            long n = executed.getOrDefault(function.getValue(), 0L);
+            report.printf("%-24s %12d %14d %6.2f%%%n", function.getValue(),
+                    calls.getOrDefault(function.getKey(), 0L), n,
+                    instructions == 0 ? 0.0 : 100.0 * n / instructions);
+        }
+    }
+
+    /**
+     * @return number of instructions executed in the last run
+     */
+    public long instructions() {
+        return instructions;
+    }
+
+    /**
+     * loads the given assembly file and runs it on standard input and output
+     *
+     * @param args options and the assembly file
+     */
+    public static void main(String[] args) throws IOException {
+        boolean stats = false, profile = false;
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("-"); arg++) {
+            if (args[arg].equals("-stats"))
+                stats = true;
+            else if (args[arg].equals("-profile"))
+                stats = profile = true;
+            else
+                break;
+        }
+        if (arg != args.length - 1) {
+            System.err.println("usage: java Mips [-stats] [-profile] <file.s>");
+            System.exit(-1);
+        }
+
+        Mips mips;
+        try (Reader source = new FileReader(args[arg])) {
+            mips = new Mips(source);
+        } catch (IllegalArgumentException e) {
+            System.err.println(args[arg] + ": " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+        int exit;
+        try {
+            exit = mips.run(new InputStreamReader(System.in),
+                    new PrintStream(new BufferedOutputStream(System.out)), profile);
+        } catch (IllegalStateException | ArithmeticException e) {
+            System.out.flush();
+            System.err.println(args[arg] + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (stats)
+            mips.report(System.err);
+        System.exit(exit);
+    }
+
+    private int readInt() throws IOException {
+        out.flush();
+        String s = in.readLine();
+        if (s == null)
+            throw new IllegalStateException("end of input");
+        return Integer.parseInt(s.trim());
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.*;
+
+import java_cup.runtime.*;
+
+/**
+ * Micro-benchmark of name analysis (and so of SymTable) on deeply nested
+ * programs.
+ *
+ * usage: java NameBench <depth> [globals]
+ *
+ * The generated program declares the given number of global variables and a
+ * main function whose body nests if statements depth levels deep. Each level
+ * declares a local, sometimes shadowing a global, and assigns to it from
+ * globals and from the enclosing level's local, so most uses resolve in an
+ * outer scope. The program is parsed once; name analysis is then timed over
+ * repeated runs and the best run reported.
+ */
+public class NameBench {
+    private static final int WARMUP_RUNS = 10;
+    private static final int RUNS = 20;
+    private static final int STATEMENTS = 4; // assignments per level
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: java NameBench <depth> [globals]");
+            System.exit(-1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        int globals = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        String program = program(depth, globals);
+        Symbol cfgRoot = new parser(new Yylex(new StringReader(program))).parse();
+        ProgramNode astRoot = (ProgramNode) cfgRoot.value;
+
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < WARMUP_RUNS + RUNS; run++) {
+            long start = System.nanoTime();
+            astRoot.nameAnalysis();
+            long elapsed = System.nanoTime() - start;
+            if (run >= WARMUP_RUNS && elapsed < best)
+                best = elapsed;
+        }
+        if (ErrMsg.getErr()) {
+            System.err.println("name analysis reported errors");
+            System.exit(1);
+        }
+        int uses = depth * STATEMENTS * 3;
+        System.out.printf("depth %d, %d globals, %d uses: best %.3f ms, %.0f ns/use\n",
+                depth, globals, uses, best / 1e6, (double) best / uses);
+    }
+
+    /**
+     * @param depth   nesting depth of main's body
+     * @param globals number of global variables
+     * @return the program's source
+     */
+    private static String program(int depth, int globals) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < globals; i++)
+            text.append("int g").append(i).append(";\n");
+        text.append("void main() {\n    int v0;\n");
+        for (int level = 1; level <= depth; level++) {
+            text.append("if (true) {\n");
+            text.append("int v").append(level).append(";\n");
+            if (level % 4 == 0) // shadow a global
+                text.append("int g").append(level % globals).append(";\n");
+            for (int s = 0; s < STATEMENTS; s++) {
+                int global = (level * STATEMENTS + s) * 7 % globals;
+                text.append("v").append(level).append(" = g").append(global)
+                        .append(" + v").append(level - 1).append(";\n");
+            }
+        }
+        for (int level = 1; level <= depth; level++)
+            text.append("}\n");
+        text.append("}\n");
+        return text.toString();
+    }
+}
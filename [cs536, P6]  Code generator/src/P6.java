@@ -1,4 +1,5 @@
 import java.io.*;
+import java.util.*;
 
 import java_cup.runtime.*;
 
@@ -10,12 +11,26 @@ import java_cup.runtime.*;
  *
  * The program opens the two files, creates a scanner and a parser, and calls
  * the parser. If the parse is successful, then it will call name analysis and
- * type checking routines. If there is no error at the end, it will generate
- * MIPS code to the output file.
+ * type checking routines. If there is no error at the end, it will fold
+ * constants, generate MIPS code, buffered in G.code(), and write it to the
+ * output file. With -O2, the code is generated through the middle end
+ * instead: the AST is lowered to three-address code (Tac), small functions
+ * are inlined by the Inliner, and the code is optimized by the PassManager
+ * and translated by TacGen. With -arena, the parser builds the compact tree
+ * (Arena) instead of the AST, which ArenaSemantics analyses and ArenaLower
+ * lowers to three-address code, for the middle end.
+ *
+ * Each P6 compiles in its own Compilation, so P6 instances can run on
+ * different threads at the same time (see P6Batch).
  */
 public class P6 {
     FileReader inFile;
     private PrintWriter outFile;
+    private boolean optimize = true; // folding, register code and peephole
+    private boolean middleEnd = false; // code through Tac and PassManager
+    private boolean arena = false; // compact tree (Arena) instead of the AST
+    private Compilation compilation = new Compilation();
+    private boolean json = false; // print metrics (-stats) as JSON
     private static PrintStream outStream = System.err;
 
     public static final int RESULT_CORRECT = 0;
@@ -25,6 +40,9 @@ public class P6 {
     public static final int RESULT_CODE_GENERATION_ERROR = 4;
     public static final int RESULT_OTHER_ERROR = -1;
 
+    private static final String USAGE = "usage: java P6 [-O0|-O2] [-arena] "
+            + "[-stats[=json]] <infile> <outfile>";
+
     /**
      * P6 constructor for client programs and testers. Note that users MUST
      * invoke {@link setInfile} and {@link setOutfile}
@@ -36,10 +54,33 @@ public class P6 {
      * line to use. It shouldn't be invoked from outside the class (hence the
      * private constructor) because it
      * 
-     * @param args command line args array for [<infile> <outfile>]
+     * @param args command line args array for [-O0|-O2] [-arena]
+     *        [-stats[=json]] <infile> <outfile>
      */
     private P6(String[] args) throws FileNotFoundException {
-        // Parse arguments
+        // Parse arguments, then resolve the options they give
+        boolean o0 = false, o2 = false;
+        while (args.length > 0 && args[0].startsWith("-")) {
+            if (args[0].equals("-O0")) {
+                o0 = true;
+            } else if (args[0].equals("-O2")) {
+                o2 = true;
+            } else if (args[0].equals("-arena")) {
+                setArena(true);
+            } else if (args[0].equals("-stats")
+                    || args[0].equals("-stats=json")) {
+                collectMetrics();
+                json = args[0].endsWith("json");
+            } else {
+                pukeAndDie("unknown option " + args[0]);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (o0 && o2)
+            pukeAndDie("-O0 and -O2 can not be used together\n" + USAGE);
+        setOptimize(!o0);
+        setMiddleEnd(o2);
+        if (conflict() != null) pukeAndDie(conflict() + "\n" + USAGE);
         if (args.length < 2) {
             String msg = "please supply name of the input file "
                     + "and name of file for assembly output.";
@@ -54,15 +95,6 @@ public class P6 {
         } catch (BadOutfileException e) {
             pukeAndDie(e.getMessage());
         }
-
-        // setup code generator target file
-        // try {
-        G.p = outFile; // new PrintWriter(args[1]);
-        // } catch (FileNotFoundException e) {
-        // pukeAndDie(e.getMessage());
-        // e.printStackTrace();
-        // }
-
     }
 
     /**
@@ -89,6 +121,82 @@ public class P6 {
         } catch (FileNotFoundException ex) {
             throw new BadOutfileException(ex, filename);
         }
+        compilation.out = outFile; // code generator target file
+    }
+
+    /**
+     * Where errors and warnings are reported (System.err by default)
+     * 
+     * @param diagnostics stream for error and warning messages
+     */
+    public void setDiagnostics(PrintStream diagnostics) {
+        compilation.diagnostics = diagnostics;
+    }
+
+    /**
+     * Optimization of the generated code (on by default): constants are
+     * folded in the AST (ProgramNode.fold), expressions are evaluated in
+     * registers (G.registers()) and Peephole.optimize runs before the code is
+     * written. Otherwise, expressions are evaluated on the stack. Can not be
+     * turned off with the middle end or the compact tree (see process).
+     * 
+     * @param optimize whether to optimize
+     */
+    public void setOptimize(boolean optimize) {
+        this.optimize = optimize;
+    }
+
+    /**
+     * Generation of the code through the middle end (off by default): after
+     * folding, the AST is lowered to three-address code (ProgramNode.lower),
+     * the Inliner inlines calls to small functions and the PassManager's
+     * standard passes rewrite it, TacGen translates it,
+     * allocating registers, and Peephole.optimize runs. Requires
+     * optimization.
+     * 
+     * @param middleEnd whether to use the middle end
+     */
+    public void setMiddleEnd(boolean middleEnd) {
+        this.middleEnd = middleEnd;
+    }
+
+    /**
+     * Compilation of very large programs in less memory (off by default):
+     * the parser (ArenaParser) builds the compact tree of the program
+     * (Arena), a few int arrays, instead of an object per AST node;
+     * ArenaSemantics does the name analysis and type checking over it and
+     * ArenaLower lowers it to three-address code. Implies the middle end
+     * (constants are folded by its passes), whatever setMiddleEnd says, so
+     * it requires optimization.
+     * 
+     * @param arena whether to use the compact tree
+     */
+    public void setArena(boolean arena) {
+        this.arena = arena;
+    }
+
+    /**
+     * The options set do not depend on the order they were set in: they are
+     * resolved when the program is compiled, where they can conflict
+     * 
+     * @return why the options set conflict, or null if they do not
+     */
+    private String conflict() {
+        if (optimize) return null;
+        if (arena) return "-arena can not be used with -O0";
+        if (middleEnd) return "-O2 can not be used with -O0";
+        return null;
+    }
+
+    /**
+     * Collect compile-time metrics (phase times and allocation, AST node
+     * counts, symbol table depth, generated code size) when processing
+     * 
+     * @return the metrics, filled in by process
+     */
+    public Metrics collectMetrics() {
+        compilation.metrics = new Metrics();
+        return compilation.metrics;
     }
 
     /**
@@ -110,10 +218,6 @@ public class P6 {
             outFile.flush();
             outFile.close();
         }
-        if (G.p != null) {
-            G.p.flush();
-            G.p.close();
-        }
     }
 
     /**
@@ -149,30 +253,78 @@ public class P6 {
             parser P = new parser(new Yylex(inFile));
             return P.parse();
         } catch (Exception e) {
-            System.err.print(e.getMessage());
-            e.printStackTrace();
+            compilation.diagnostics.print(e.getMessage());
+            e.printStackTrace(compilation.diagnostics);
             return null;
         }
     }
 
+    /**
+     * Compile the input file to the output file, in this P6's compilation
+     * 
+     * @return one of the RESULT_ codes
+     * @throws IllegalStateException if the options set conflict (the middle
+     *         end or the compact tree without optimization)
+     */
     public int process() {
+        if (conflict() != null) throw new IllegalStateException(conflict());
+        Compilation previous = Compilation.setCurrent(compilation);
+        try {
+            return compile();
+        } finally {
+            if (compilation.metrics != null) compilation.metrics.end();
+            Compilation.setCurrent(previous);
+        }
+    }
+
+    // parse the input to its compact tree, or null after an exception
+    private Arena parseArena() {
+        try {
+            ArenaParser P = new ArenaParser(new Yylex(inFile));
+            P.parse();
+            return P.arena();
+        } catch (Exception e) {
+            compilation.diagnostics.print(e.getMessage());
+            e.printStackTrace(compilation.diagnostics);
+            return null;
+        }
+    }
+
+    private int compile() {
+        if (arena) return compileArena();
+        phase("parse");
         Symbol cfgRoot = parseCFG();
+        if (ErrMsg.getErr()) return P6.RESULT_SYNTAX_ERROR;
         if (cfgRoot == null) return P6.RESULT_OTHER_ERROR;
 
         ProgramNode astRoot = (ProgramNode) cfgRoot.value;
-        if (ErrMsg.getErr()) return P6.RESULT_SYNTAX_ERROR;
 
+        phase("nameAnalysis");
         astRoot.nameAnalysis(); // perform name analysis
         if (ErrMsg.getErr()) return P6.RESULT_NAME_ANALYSIS_ERROR;
 
+        phase("typeCheck");
         astRoot.typeCheck();
         if (ErrMsg.getErr()) return P6.RESULT_TYPE_ERROR;
 
+        if (optimize) {
+            phase("fold");
+            astRoot.fold(); // constant folding and propagation
+        }
+
         try {
-            astRoot.codeGen();
+            if (middleEnd) {
+                phase("lower");
+                generate(astRoot.lower());
+            } else {
+                phase("codeGen");
+                compilation.registers = optimize;
+                astRoot.codeGen();
+                finish();
+            }
         } catch (Exception e) {
-            System.err.print(e.getMessage());
-            e.printStackTrace();
+            compilation.diagnostics.print(e.getMessage());
+            e.printStackTrace(compilation.diagnostics);
             return P6.RESULT_OTHER_ERROR;
         }
         if (ErrMsg.getErr()) return P6.RESULT_CODE_GENERATION_ERROR;
@@ -182,8 +334,80 @@ public class P6 {
         return P6.RESULT_CORRECT;
     }
 
+    // compile, through the compact tree
+    private int compileArena() {
+        phase("parse");
+        Arena tree = parseArena();
+        if (ErrMsg.getErr()) return P6.RESULT_SYNTAX_ERROR;
+        if (tree == null || tree.root == Arena.NONE) return P6.RESULT_OTHER_ERROR;
+        if (compilation.metrics != null) tree.count(compilation.metrics);
+
+        phase("nameAnalysis");
+        ArenaSemantics.nameAnalysis(tree);
+        if (ErrMsg.getErr()) return P6.RESULT_NAME_ANALYSIS_ERROR;
+
+        phase("typeCheck");
+        ArenaSemantics.typeCheck(tree);
+        if (ErrMsg.getErr()) return P6.RESULT_TYPE_ERROR;
+
+        try {
+            phase("lower");
+            Tac.Program program = ArenaLower.lower(tree);
+            tree = null; // (no longer needed: the code takes its place)
+            generate(program);
+        } catch (Exception e) {
+            compilation.diagnostics.print(e.getMessage());
+            e.printStackTrace(compilation.diagnostics);
+            return P6.RESULT_OTHER_ERROR;
+        }
+        if (ErrMsg.getErr()) return P6.RESULT_CODE_GENERATION_ERROR;
+        return P6.RESULT_CORRECT;
+    }
+
+    // run the middle end over program and generate its code
+    private void generate(Tac.Program program) {
+        phase("passes");
+        PassManager passes = PassManager.standard();
+        Inliner.inline(program, passes);
+        if (compilation.metrics != null) passes.report(compilation.metrics);
+        phase("codeGen");
+        TacGen.generate(program);
+        finish();
+    }
+
+    // optimize the code generated and write it to the output file
+    private void finish() {
+        countCode("codeGen");
+        if (optimize) {
+            phase("peephole");
+            Peephole.optimize(G.code());
+            countCode("peephole");
+        }
+        phase("flush");
+        G.flush(); // write the generated code to the output file
+    }
+
+    // start the given phase of compile in the metrics, if collected
+    private void phase(String name) {
+        if (compilation.metrics != null) compilation.metrics.begin(name);
+    }
+
+    // end the phase and count the code generated so far in the metrics, if
+    // collected
+    private void countCode(String stage) {
+        if (compilation.metrics == null) return;
+        compilation.metrics.end();
+        compilation.metrics.countCode(stage, G.code());
+    }
+
     public void run() {
         int resultCode = process();
+        if (compilation.metrics != null) {
+            if (json)
+                compilation.metrics.printJson(outStream);
+            else
+                compilation.metrics.printTable(outStream);
+        }
         if (resultCode == RESULT_CORRECT) {
             cleanup();
             return;
@@ -0,0 +1,139 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Compiles many C-- files at once, each with its own P6 (and so its own
+ * Compilation), on a pool of threads.
+ *
+ * usage: java P6Batch [-O0|-O2] [-threads n] <outdir> <file>...
+ *
+ * Each file's assembly is written to outdir, named after the file with its
+ * extension replaced by .s. When all are done, the result code of each file
+ * is printed in the order given, followed by the errors and warnings reported
+ * for it, then the number of files with each result. The exit code is 0 if
+ * every file compiled correctly, 1 otherwise. The default number of threads
+ * is the number of processors.
+ */
+public class P6Batch {
+
+    public static void main(String[] args) throws Exception {
+        boolean optimize = true;
+        boolean middleEnd = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int arg = 0;
+        for (; arg < args.length && args[arg].startsWith("-"); arg++) {
+            if (args[arg].equals("-O0")) {
+                optimize = false;
+            } else if (args[arg].equals("-O2")) {
+                middleEnd = true;
+            } else if (args[arg].equals("-threads") && arg + 1 < args.length) {
+                threads = Integer.parseInt(args[++arg]);
+            } else {
+                break;
+            }
+        }
+        if (args.length - arg < 2) {
+            System.err.println("usage: java P6Batch [-O0|-O2] [-threads n] "
+                    + "<outdir> <file>...");
+            System.exit(-1);
+        }
+        File outDir = new File(args[arg++]);
+        outDir.mkdirs();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<String> files = Arrays.asList(args).subList(arg, args.length);
+        List<Future<Result>> results = new ArrayList<Future<Result>>();
+        long start = System.nanoTime();
+        for (String file : files) {
+            results.add(pool.submit(new Job(file, outDir, optimize, middleEnd)));
+        }
+
+        Map<String, Integer> totals = new TreeMap<String, Integer>();
+        boolean allCorrect = true;
+        for (int i = 0; i < files.size(); i++) {
+            Result result = results.get(i).get();
+            String name = resultName(result.code);
+            System.out.println(files.get(i) + ": " + name);
+            System.out.print(result.diagnostics);
+            totals.merge(name, 1, Integer::sum);
+            allCorrect &= result.code == P6.RESULT_CORRECT;
+        }
+        pool.shutdown();
+
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%d files, %d threads, %.1f ms: %s\n", files.size(),
+                threads, elapsed / 1e6, totals);
+        System.exit(allCorrect ? 0 : 1);
+    }
+
+    /**
+     * @param code one of the P6.RESULT_ codes
+     * @return its name
+     */
+    static String resultName(int code) {
+        switch (code) {
+            case P6.RESULT_CORRECT:
+                return "RESULT_CORRECT";
+            case P6.RESULT_SYNTAX_ERROR:
+                return "RESULT_SYNTAX_ERROR";
+            case P6.RESULT_TYPE_ERROR:
+                return "RESULT_TYPE_ERROR";
+            case P6.RESULT_NAME_ANALYSIS_ERROR:
+                return "RESULT_NAME_ANALYSIS_ERROR";
+            case P6.RESULT_CODE_GENERATION_ERROR:
+                return "RESULT_CODE_GENERATION_ERROR";
+            default:
+                return "RESULT_OTHER_ERROR";
+        }
+    }
+
+    // result code and diagnostics of one file
+    private static class Result {
+        int code;
+        String diagnostics;
+    }
+
+    // compilation of one file
+    private static class Job implements Callable<Result> {
+        private String file;
+        private File outDir;
+        private boolean optimize;
+        private boolean middleEnd;
+
+        Job(String file, File outDir, boolean optimize, boolean middleEnd) {
+            this.file = file;
+            this.outDir = outDir;
+            this.optimize = optimize;
+            this.middleEnd = middleEnd;
+        }
+
+        public Result call() {
+            ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+            PrintStream stream = new PrintStream(diagnostics, true);
+            Result result = new Result();
+
+            String name = new File(file).getName();
+            int dot = name.lastIndexOf('.');
+            File outFile = new File(outDir,
+                    (dot > 0 ? name.substring(0, dot) : name) + ".s");
+
+            P6 compiler = new P6();
+            compiler.setOptimize(optimize);
+            compiler.setMiddleEnd(middleEnd);
+            compiler.setDiagnostics(stream);
+            try {
+                compiler.setInfile(file);
+                compiler.setOutfile(outFile.getPath());
+                result.code = compiler.process();
+            } catch (Exception | StackOverflowError e) { // bad file, or bug
+                stream.println(e);
+                result.code = P6.RESULT_OTHER_ERROR;
+            } finally {
+                compiler.cleanup();
+            }
+            result.diagnostics = diagnostics.toString();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,934 @@
+import java.util.*;
+
+// **********************************************************************
+// The PassManager class runs the passes of the middle end over the
+// three-address code (Tac) of each function: all of them in order, again
+// and again until none changes anything (or MAX_ROUNDS), keeping count of
+// what each one did.
+//
+// The standard passes are:
+// TailCalls: turns a call of the function to itself, whose value is
+// returned, into assignments to its formals and a jump to its entry
+// SimplifyCfg: folds branches on constants, threads jumps through empty
+// blocks, removes unreachable blocks and merges a block into its
+// only predecessor
+// LoopRotation: copies the test at the top of a loop to the ends of its
+// body, so that each iteration branches back once (the test at the
+// top is then only run on entry)
+// CopyPropagation: replaces a variable by the variable or constant copied
+// into it, where that copy reaches on every path (available
+// copies), and folds instructions whose operands are constant
+// CommonSubexpressions: within a block, replaces an expression computed
+// before (and not changed since) by the variable holding it. Loads
+// of globals count, until a call or a store to the global
+// LoopInvariants: moves the computations whose operands a loop does not
+// change (and loads of globals it does not store or call anything
+// that could) to a block before the loop
+// StrengthReduction: replaces the products of a loop's induction
+// variables by constants with variables stepped by additions
+// DeadCodeElimination: removes instructions without side effects or traps whose
+// result is not live, or only feeds instructions like them
+//
+// The loop passes work on natural loops (Tac.Loops), inner loops first.
+// **********************************************************************
+
+public class PassManager {
+    private static final int MAX_ROUNDS = 10;
+
+    /**
+     * A pass of the middle end
+     */
+    public interface Pass {
+        String name();
+
+        /**
+         * Rewrite function in place, leaving its blocks linked
+         *
+         * @return whether the function changed
+         */
+        boolean run(Tac.Function function);
+    }
+
+    private final List<Pass> passes;
+
+    // for each pass: runs that changed the code, nanoseconds, instructions
+    // (and terminators) removed
+    private final Map<String, long[]> stats = new LinkedHashMap<String, long[]>();
+
+    public PassManager(Pass... passes) {
+        this.passes = Arrays.asList(passes);
+        for (Pass pass : passes)
+            stats.put(pass.name(), new long[3]);
+    }
+
+    public static PassManager standard() {
+        return new PassManager(new TailCalls(), new SimplifyCfg(),
+                new LoopRotation(), new CopyPropagation(),
+                new CommonSubexpressions(), new LoopInvariants(),
+                new StrengthReduction(), new DeadCodeElimination());
+    }
+
+    public void run(Tac.Program program) {
+        for (Tac.Function function : program.functions)
+            run(function);
+    }
+
+    public void run(Tac.Function function) {
+        function.link();
+        boolean changed = true;
+        for (int round = 0; changed && round < MAX_ROUNDS; round++) {
+            changed = false;
+            for (Pass pass : passes) {
+                long[] stat = stats.get(pass.name());
+                int size = function.size();
+                long start = System.nanoTime();
+                if (pass.run(function)) {
+                    changed = true;
+                    stat[0]++;
+                }
+                stat[1] += System.nanoTime() - start;
+                stat[2] += size - function.size();
+            }
+        }
+    }
+
+    /**
+     * Count what a step run outside of the passes did (the Inliner), to be
+     * reported with them
+     */
+    public void count(String name, long changes, long nanos, long removed) {
+        long[] stat = stats.get(name);
+        if (stat == null) stats.put(name, stat = new long[3]);
+        stat[0] += changes;
+        stat[1] += nanos;
+        stat[2] += removed;
+    }
+
+    /**
+     * Add what each pass did to metrics
+     */
+    public void report(Metrics metrics) {
+        for (Map.Entry<String, long[]> entry : stats.entrySet()) {
+            long[] stat = entry.getValue();
+            metrics.countPass(entry.getKey(), stat[0], stat[1], stat[2]);
+        }
+    }
+
+    // **********************************************************************
+    // TailCalls
+    // **********************************************************************
+    public static class TailCalls implements Pass {
+        public String name() {
+            return "tailCalls";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            for (Tac.Block block : function.blocks) {
+                if (block.end != Tac.Block.End.RETURN || block.instrs.isEmpty())
+                    continue;
+                Tac.Instr call = block.instrs.get(block.instrs.size() - 1);
+                if (call.op != Tac.Op.CALL
+                        || !call.function.equals(function.label)
+                        || block.left != null && !block.left.equals(call.dst))
+                    continue;
+
+                // the arguments are all read before any formal is assigned
+                block.instrs.remove(block.instrs.size() - 1);
+                Tac.Operand[] args = call.args.clone();
+                for (int i = 0; i < args.length; i++) {
+                    if (!args[i].isVariable()) continue;
+                    Tac.Operand arg = function.newTemp();
+                    block.instrs.add(new Tac.Instr(Tac.Op.COPY, arg, args[i], null));
+                    args[i] = arg;
+                }
+                for (int i = 0; i < args.length; i++) {
+                    block.instrs.add(new Tac.Instr(Tac.Op.COPY,
+                            Tac.Operand.local("formal", -4 * i), args[i], null));
+                }
+                block.jump(function.entry());
+                changed = true;
+            }
+            if (changed) function.link();
+            return changed;
+        }
+    }
+
+    // **********************************************************************
+    // SimplifyCfg
+    // **********************************************************************
+    public static class SimplifyCfg implements Pass {
+        public String name() {
+            return "simplifyCfg";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            for (Tac.Block block : function.blocks) {
+                if (block.end != Tac.Block.End.BRANCH) continue;
+                if (block.left.kind == Tac.Operand.Kind.CONST
+                        && block.right.kind == Tac.Operand.Kind.CONST) {
+                    Integer taken = block.test.apply(block.left.value,
+                            block.right.value);
+                    block.jump(taken != 0 ? block.target : block.next);
+                    changed = true;
+                } else if (block.target == block.next) {
+                    block.jump(block.target);
+                    changed = true;
+                }
+            }
+
+            // thread jumps through empty blocks
+            for (Tac.Block block : function.blocks) {
+                if (block.end == Tac.Block.End.RETURN) continue;
+                Tac.Block target = skipEmpty(block.target, function);
+                if (target != block.target) {
+                    block.target = target;
+                    changed = true;
+                }
+                if (block.next == null) continue;
+                Tac.Block next = skipEmpty(block.next, function);
+                if (next != block.next) {
+                    block.next = next;
+                    changed = true;
+                }
+            }
+            function.link();
+
+            // merge a block into its predecessor, if it is the only one and
+            // jumps to it (the successors of the block merged take the
+            // predecessor as theirs instead, and the blocks merged are
+            // removed at the end)
+            Set<Tac.Block> merged = new HashSet<Tac.Block>();
+            for (Tac.Block block : function.blocks) {
+                if (merged.contains(block)) continue;
+                Tac.Block succ = block.target;
+                while (block.end == Tac.Block.End.JUMP && succ != block
+                        && succ != function.entry() && succ.preds.size() == 1) {
+                    block.instrs.addAll(succ.instrs);
+                    block.end = succ.end;
+                    block.test = succ.test;
+                    block.left = succ.left;
+                    block.right = succ.right;
+                    block.target = succ.target;
+                    block.next = succ.next;
+                    for (Tac.Block next : succ.successors())
+                        next.preds.set(next.preds.indexOf(succ), block);
+                    merged.add(succ);
+                    changed = true;
+                    succ = block.target;
+                }
+            }
+            if (!merged.isEmpty()) function.blocks.removeIf(merged::contains);
+            return changed;
+        }
+
+        // the block that jumping to block ends up in, past empty blocks
+        private static Tac.Block skipEmpty(Tac.Block block,
+                Tac.Function function) {
+            for (int steps = 0; block.instrs.isEmpty()
+                    && block.end == Tac.Block.End.JUMP
+                    && steps < function.blocks.size(); steps++)
+                block = block.target; // (steps: an empty loop jumps forever)
+            return block;
+        }
+    }
+
+    // **********************************************************************
+    // CopyPropagation
+    // **********************************************************************
+    public static class CopyPropagation implements Pass {
+        public String name() {
+            return "copyPropagation";
+        }
+
+        public boolean run(Tac.Function function) {
+            // number the copies, and the copies each variable is part of
+            List<Tac.Instr> copies = new ArrayList<Tac.Instr>();
+            Map<Tac.Instr, Integer> numbers = new HashMap<Tac.Instr, Integer>();
+            Map<Tac.Operand, BitSet> touching = new HashMap<Tac.Operand, BitSet>();
+            for (Tac.Block block : function.blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    if (!isCopy(instr)) continue;
+                    numbers.put(instr, copies.size());
+                    touching(touching, instr.dst).set(copies.size());
+                    if (instr.a.isVariable())
+                        touching(touching, instr.a).set(copies.size());
+                    copies.add(instr);
+                }
+            }
+
+            // copies reaching the end of each block on every path
+            Map<Tac.Block, BitSet> gen = new HashMap<Tac.Block, BitSet>();
+            Map<Tac.Block, BitSet> kill = new HashMap<Tac.Block, BitSet>();
+            Map<Tac.Block, BitSet> out = new HashMap<Tac.Block, BitSet>();
+            BitSet all = new BitSet();
+            all.set(0, copies.size());
+            for (Tac.Block block : function.blocks) {
+                BitSet g = new BitSet(), k = new BitSet();
+                for (Tac.Instr instr : block.instrs) {
+                    if (instr.dst == null || !instr.dst.isVariable()) continue;
+                    BitSet changed = touching.get(instr.dst);
+                    if (changed != null) {
+                        g.andNot(changed);
+                        k.or(changed);
+                    }
+                    if (isCopy(instr)) g.set(numbers.get(instr));
+                }
+                gen.put(block, g);
+                kill.put(block, k);
+                out.put(block, (BitSet) all.clone());
+            }
+            Map<Tac.Block, BitSet> in = new HashMap<Tac.Block, BitSet>();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Tac.Block block : function.blocks) {
+                    BitSet reaching = block == function.entry() ? new BitSet()
+                            : (BitSet) all.clone();
+                    for (Tac.Block pred : block.preds)
+                        reaching.and(out.get(pred));
+                    in.put(block, reaching);
+                    BitSet blockOut = (BitSet) reaching.clone();
+                    blockOut.andNot(kill.get(block));
+                    blockOut.or(gen.get(block));
+                    if (!blockOut.equals(out.get(block))) {
+                        out.put(block, blockOut);
+                        changed = true;
+                    }
+                }
+            }
+
+            // replace uses, block by block
+            boolean rewritten = false;
+            for (Tac.Block block : function.blocks) {
+                Map<Tac.Operand, Tac.Operand> values =
+                        new HashMap<Tac.Operand, Tac.Operand>();
+                // the variables each variable was copied to (some may have
+                // been assigned since)
+                Map<Tac.Operand, List<Tac.Operand>> copiedTo =
+                        new HashMap<Tac.Operand, List<Tac.Operand>>();
+                BitSet reaching = in.get(block);
+                for (int i = reaching.nextSetBit(0); i >= 0;
+                        i = reaching.nextSetBit(i + 1))
+                    copy(values, copiedTo, copies.get(i));
+                for (Tac.Instr instr : block.instrs) {
+                    rewritten |= instr.replaceUses(values);
+                    rewritten |= fold(instr);
+                    if (instr.dst == null || !instr.dst.isVariable()) continue;
+                    values.remove(instr.dst);
+                    List<Tac.Operand> copied = copiedTo.remove(instr.dst);
+                    if (copied != null) {
+                        for (Tac.Operand variable : copied)
+                            if (instr.dst.equals(values.get(variable)))
+                                values.remove(variable);
+                    }
+                    if (isCopy(instr) && !instr.a.equals(instr.dst))
+                        copy(values, copiedTo, instr);
+                }
+                rewritten |= block.replaceTerminatorUses(values);
+            }
+            return rewritten;
+        }
+
+        private static void copy(Map<Tac.Operand, Tac.Operand> values,
+                Map<Tac.Operand, List<Tac.Operand>> copiedTo, Tac.Instr copy) {
+            values.put(copy.dst, copy.a);
+            if (!copy.a.isVariable()) return;
+            List<Tac.Operand> copied = copiedTo.get(copy.a);
+            if (copied == null)
+                copiedTo.put(copy.a, copied = new ArrayList<Tac.Operand>());
+            copied.add(copy.dst);
+        }
+
+        // dst = a, from a variable or constant to a variable
+        private static boolean isCopy(Tac.Instr instr) {
+            return instr.op == Tac.Op.COPY && instr.dst.isVariable()
+                    && (instr.a.isVariable() || instr.a.isConstant());
+        }
+
+        private static BitSet touching(Map<Tac.Operand, BitSet> touching,
+                Tac.Operand variable) {
+            BitSet copies = touching.get(variable);
+            if (copies == null) touching.put(variable, copies = new BitSet());
+            return copies;
+        }
+
+        /**
+         * Turn instr into a copy if its value is a constant or one of its
+         * operands (x + 0 => x), as in BinaryExpNode.fold
+         *
+         * @return whether it was
+         */
+        private static boolean fold(Tac.Instr instr) {
+            Tac.Operand a = instr.a, b = instr.b;
+            Tac.Operand value = null;
+            if (instr.op == Tac.Op.NEG || instr.op == Tac.Op.NOT) {
+                if (a.kind == Tac.Operand.Kind.CONST) {
+                    Integer folded = instr.op.apply(a.value, 0);
+                    if (folded != null) value = Tac.Operand.constant(folded);
+                }
+            } else if (instr.op.isBinary()) {
+                if (a.kind == Tac.Operand.Kind.CONST
+                        && b.kind == Tac.Operand.Kind.CONST) {
+                    Integer folded = instr.op.apply(a.value, b.value);
+                    if (folded != null) value = Tac.Operand.constant(folded);
+                } else if ((instr.op == Tac.Op.ADD || instr.op == Tac.Op.SUB)
+                        && b.isConst(0)
+                        || (instr.op == Tac.Op.MUL || instr.op == Tac.Op.DIV)
+                                && b.isConst(1)) {
+                    value = a;
+                } else if (instr.op == Tac.Op.ADD && a.isConst(0)
+                        || instr.op == Tac.Op.MUL && a.isConst(1)) {
+                    value = b;
+                } else if (instr.op == Tac.Op.MUL
+                        && (a.isConst(0) || b.isConst(0))) {
+                    value = Tac.Operand.constant(0);
+                }
+            }
+            if (value == null) return false;
+            instr.op = Tac.Op.COPY;
+            instr.a = value;
+            instr.b = null;
+            return true;
+        }
+    }
+
+    // **********************************************************************
+    // CommonSubexpressions
+    // **********************************************************************
+    public static class CommonSubexpressions implements Pass {
+        public String name() {
+            return "commonSubexpressions";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            for (Tac.Block block : function.blocks) {
+                // expressions computed, and the variable or constant that
+                // holds each one
+                Map<List<Object>, Tac.Operand> available =
+                        new HashMap<List<Object>, Tac.Operand>();
+                // the expressions each variable or global is part of or
+                // holds (some may no longer be available), and the loads
+                Map<Tac.Operand, List<List<Object>>> mentions =
+                        new HashMap<Tac.Operand, List<List<Object>>>();
+                List<List<Object>> loads = new ArrayList<List<Object>>();
+                for (Tac.Instr instr : block.instrs) {
+                    List<Object> expression = expression(instr);
+                    if (expression != null && instr.dst.isVariable()) {
+                        Tac.Operand holder = available.get(expression);
+                        if (holder != null) {
+                            instr.op = Tac.Op.COPY;
+                            instr.a = holder;
+                            instr.b = null;
+                            changed = true;
+                        }
+                    }
+
+                    if (instr.op == Tac.Op.CALL) {
+                        for (List<Object> load : loads)
+                            available.remove(load);
+                        loads.clear();
+                    }
+                    if (instr.dst == null) continue;
+                    Tac.Operand dst = instr.dst;
+                    List<List<Object>> stale = mentions.remove(dst);
+                    if (stale != null) {
+                        for (List<Object> e : stale)
+                            available.remove(e);
+                    }
+                    if (dst.kind == Tac.Operand.Kind.GLOBAL) {
+                        // the global holds what was stored in it
+                        record(available, mentions, loads, load(dst), instr.a);
+                    } else if (expression != null
+                            && !expression.contains(dst)) {
+                        record(available, mentions, loads, expression, dst);
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private static void record(Map<List<Object>, Tac.Operand> available,
+                Map<Tac.Operand, List<List<Object>>> mentions,
+                List<List<Object>> loads, List<Object> expression,
+                Tac.Operand holder) {
+            available.put(expression, holder);
+            if (expression.get(0) == null) loads.add(expression);
+            for (Object o : expression) {
+                if (o instanceof Tac.Operand) mention(mentions, (Tac.Operand) o, expression);
+            }
+            mention(mentions, holder, expression);
+        }
+
+        private static void mention(Map<Tac.Operand, List<List<Object>>> mentions,
+                Tac.Operand o, List<Object> expression) {
+            if (o.isConstant()) return;
+            List<List<Object>> expressions = mentions.get(o);
+            if (expressions == null)
+                mentions.put(o, expressions = new ArrayList<List<Object>>());
+            expressions.add(expression);
+        }
+
+        // the expression instr computes, or null if it is not one to reuse
+        private static List<Object> expression(Tac.Instr instr) {
+            if (instr.dst == null) return null;
+            if (instr.op == Tac.Op.COPY) {
+                return instr.a.kind == Tac.Operand.Kind.GLOBAL ? load(instr.a)
+                        : null;
+            }
+            if (instr.op == Tac.Op.NEG || instr.op == Tac.Op.NOT)
+                return Arrays.<Object>asList(instr.op, instr.a);
+            if (!instr.op.isBinary()) return null;
+            Tac.Operand a = instr.a, b = instr.b;
+            if (instr.op.isCommutative() && a.hashCode() > b.hashCode()) {
+                a = instr.b;
+                b = instr.a;
+            }
+            return Arrays.<Object>asList(instr.op, a, b);
+        }
+
+        // the expression loading a global (calls may change any global)
+        private static List<Object> load(Tac.Operand global) {
+            return Arrays.<Object>asList(null, global);
+        }
+    }
+
+    // **********************************************************************
+    // LoopRotation
+    // **********************************************************************
+    public static class LoopRotation implements Pass {
+        // the most instructions of a loop's test to copy
+        private static final int MAX_TEST_SIZE = 8;
+
+        public String name() {
+            return "loopRotation";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            for (Tac.Loops.Loop loop : new Tac.Loops(function).loops()) {
+                Tac.Block header = loop.header;
+                if (header.end != Tac.Block.End.BRANCH
+                        || header.instrs.size() > MAX_TEST_SIZE
+                        || loop.contains(header.target) == loop.contains(header.next))
+                    continue;
+                for (Tac.Block latch : loop.latches) {
+                    if (latch.end != Tac.Block.End.JUMP) continue; // (rotated)
+                    for (Tac.Instr instr : header.instrs)
+                        latch.instrs.add(instr.copy());
+                    latch.end = Tac.Block.End.BRANCH;
+                    latch.test = header.test;
+                    latch.left = header.left;
+                    latch.right = header.right;
+                    latch.target = header.target;
+                    latch.next = header.next;
+                    changed = true;
+                }
+            }
+            if (changed) function.link();
+            return changed;
+        }
+    }
+
+    // **********************************************************************
+    // LoopInvariants
+    // **********************************************************************
+    public static class LoopInvariants implements Pass {
+        public String name() {
+            return "loopInvariants";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            Set<Tac.Block> done = new HashSet<Tac.Block>(); // (headers)
+            boolean deferred = true;
+            while (deferred) {
+                deferred = false;
+                List<Tac.Block> moved = new ArrayList<Tac.Block>(); // (headers)
+                Tac.Loops loops = new Tac.Loops(function);
+                if (loops.loops().isEmpty()) break;
+                Tac.Liveness liveness = new Tac.Liveness(function);
+                for (Tac.Loops.Loop loop : loops.loops()) {
+                    if (containsAny(loop, moved)) {
+                        deferred = true;
+                        continue;
+                    }
+                    if (!done.add(loop.header)) continue;
+                    List<Tac.Instr> invariants = remove(loop, loops, liveness);
+                    if (invariants.isEmpty()) continue;
+                    preheader(function, loop).instrs.addAll(invariants);
+                    moved.add(loop.header);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Remove from loop the instructions to compute before it instead, in
+         * order: those without side effects whose operands are not assigned
+         * in the loop (loads of globals count, if the loop makes no call or
+         * store to the global), assigning a variable that the loop assigns
+         * nowhere else and does not read before assigning. The block must
+         * run on every iteration before the loop is left, or else the
+         * instruction must not trap and its variable not be read after the
+         * loop. An instruction that can trap must also come before any side
+         * effect of the iteration, which would otherwise happen before the
+         * trap.
+         */
+        private static List<Tac.Instr> remove(Tac.Loops.Loop loop,
+                Tac.Loops loops, Tac.Liveness liveness) {
+            Map<Tac.Operand, Integer> assigned = new HashMap<Tac.Operand, Integer>();
+            Set<Tac.Operand> stored = new HashSet<Tac.Operand>();
+            boolean calls = false;
+            for (Tac.Block block : loop.blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    calls |= instr.op == Tac.Op.CALL;
+                    if (instr.dst == null) continue;
+                    if (!instr.dst.isVariable()) {
+                        stored.add(instr.dst);
+                        continue;
+                    }
+                    Integer count = assigned.get(instr.dst);
+                    assigned.put(instr.dst, count == null ? 1 : count + 1);
+                }
+            }
+            List<Tac.Block> exits = loop.exits();
+            BitSet readBefore = liveness.liveIn(loop.header);
+            BitSet readAfter = new BitSet();
+            for (Tac.Block target : loop.exitTargets())
+                readAfter.or(liveness.liveIn(target));
+
+            Set<Tac.Block> afterEffects = afterEffects(loop);
+            List<Tac.Instr> invariants = new ArrayList<Tac.Instr>();
+            for (Tac.Block block : loop.blocks) {
+                boolean everyIteration = !exits.isEmpty();
+                for (Tac.Block exit : exits)
+                    everyIteration &= loops.dominates(block, exit);
+                boolean effects = afterEffects.contains(block);
+                Iterator<Tac.Instr> it = block.instrs.iterator();
+                while (it.hasNext()) {
+                    Tac.Instr instr = it.next();
+                    boolean effectsBefore = effects;
+                    effects |= instr.hasSideEffects();
+                    if (!isInvariant(instr, assigned, stored, calls)) continue;
+                    int dst = liveness.index(instr.dst);
+                    if (assigned.get(instr.dst) != 1 || readBefore.get(dst)
+                            || (!everyIteration || effectsBefore) && instr.canTrap()
+                            || !everyIteration && readAfter.get(dst))
+                        continue;
+                    it.remove();
+                    invariants.add(instr);
+                    assigned.remove(instr.dst); // (now assigned before)
+                }
+            }
+            return invariants;
+        }
+
+        /**
+         * @return the blocks of loop that a path from its header, within one
+         *         iteration, can reach after an instruction with side effects
+         */
+        private static Set<Tac.Block> afterEffects(Tac.Loops.Loop loop) {
+            Set<Tac.Block> after = new HashSet<Tac.Block>();
+            Set<Tac.Block> effects = new HashSet<Tac.Block>();
+            for (Tac.Block block : loop.blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    if (instr.hasSideEffects()) {
+                        effects.add(block);
+                        break;
+                    }
+                }
+            }
+            boolean changed = true;
+            while (changed) { // (again for the back edges of inner loops)
+                changed = false;
+                for (Tac.Block block : loop.blocks) {
+                    if (!after.contains(block) && !effects.contains(block))
+                        continue;
+                    for (Tac.Block succ : block.successors())
+                        if (succ != loop.header && loop.contains(succ))
+                            changed |= after.add(succ);
+                }
+            }
+            return after;
+        }
+
+        private static boolean isInvariant(Tac.Instr instr,
+                Map<Tac.Operand, Integer> assigned, Set<Tac.Operand> stored,
+                boolean calls) {
+            if (instr.dst == null || !instr.dst.isVariable()
+                    || instr.hasSideEffects())
+                return false;
+            if (instr.op == Tac.Op.COPY && instr.a.kind == Tac.Operand.Kind.GLOBAL
+                    && (calls || stored.contains(instr.a)))
+                return false;
+            for (Tac.Operand o : instr.uses())
+                if (assigned.containsKey(o)) return false;
+            return true;
+        }
+    }
+
+    // **********************************************************************
+    // StrengthReduction
+    // **********************************************************************
+    public static class StrengthReduction implements Pass {
+        public String name() {
+            return "strengthReduction";
+        }
+
+        public boolean run(Tac.Function function) {
+            boolean changed = false;
+            Set<Tac.Block> done = new HashSet<Tac.Block>(); // (headers)
+            boolean deferred = true;
+            while (deferred) {
+                deferred = false;
+                List<Tac.Block> reduced = new ArrayList<Tac.Block>(); // (headers)
+                Tac.Loops loops = new Tac.Loops(function);
+                for (Tac.Loops.Loop loop : loops.loops()) {
+                    if (containsAny(loop, reduced)) {
+                        deferred = true;
+                        continue;
+                    }
+                    if (!done.add(loop.header)) continue;
+                    if (reduce(function, loop, loops)) {
+                        reduced.add(loop.header);
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * For each induction variable i of loop (assigned in it only by
+         * i = i + c or i = i - c, c a constant), replace the products i * k
+         * (k a constant) computed on every iteration by a variable p that is
+         * set to i * k before the loop and increased by c * k after i is.
+         * p wraps around on overflow, as it can go one step further than
+         * the products did.
+         */
+        private static boolean reduce(Tac.Function function,
+                Tac.Loops.Loop loop, Tac.Loops loops) {
+            // the only assignment in the loop of each variable assigned once
+            Map<Tac.Operand, Tac.Instr> assignments = new HashMap<Tac.Operand, Tac.Instr>();
+            Map<Tac.Operand, Tac.Block> blocks = new HashMap<Tac.Operand, Tac.Block>();
+            Set<Tac.Operand> reassigned = new HashSet<Tac.Operand>();
+            for (Tac.Block block : loop.blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    if (instr.dst == null || !instr.dst.isVariable()) continue;
+                    if (assignments.put(instr.dst, instr) != null)
+                        reassigned.add(instr.dst);
+                    blocks.put(instr.dst, block);
+                }
+            }
+
+            // the products to replace, by variable and constant
+            Map<List<Object>, List<Tac.Instr>> products =
+                    new LinkedHashMap<List<Object>, List<Tac.Instr>>();
+            for (Tac.Block block : loop.blocks) {
+                boolean everyIteration = true;
+                for (Tac.Block latch : loop.latches)
+                    everyIteration &= loops.dominates(block, latch);
+                if (!everyIteration) continue;
+                for (Tac.Instr instr : block.instrs) {
+                    if (instr.op != Tac.Op.MUL || !instr.dst.isVariable())
+                        continue;
+                    Tac.Operand i = instr.b.kind == Tac.Operand.Kind.CONST
+                            ? instr.a : instr.b;
+                    Tac.Operand k = i == instr.a ? instr.b : instr.a;
+                    if (k.kind != Tac.Operand.Kind.CONST || reassigned.contains(i)
+                            || step(assignments.get(i), i) == null)
+                        continue;
+                    List<Object> key = Arrays.<Object>asList(i, k.value);
+                    List<Tac.Instr> same = products.get(key);
+                    if (same == null)
+                        products.put(key, same = new ArrayList<Tac.Instr>());
+                    same.add(instr);
+                }
+            }
+
+            boolean changed = false;
+            for (Map.Entry<List<Object>, List<Tac.Instr>> entry : products.entrySet()) {
+                Tac.Operand i = (Tac.Operand) entry.getKey().get(0);
+                int k = (Integer) entry.getKey().get(1);
+                long increment = (long) step(assignments.get(i), i) * k;
+                if (increment != (int) increment) continue;
+
+                Tac.Operand p = function.newTemp();
+                Tac.Instr start = new Tac.Instr(Tac.Op.MUL, p, i,
+                        Tac.Operand.constant(k));
+                start.wraps = true;
+                Tac.Instr step = new Tac.Instr(Tac.Op.ADD, p, p,
+                        Tac.Operand.constant((int) increment));
+                step.wraps = true;
+                List<Tac.Instr> instrs = blocks.get(i).instrs;
+                instrs.add(instrs.indexOf(assignments.get(i)) + 1, step);
+                for (Tac.Instr product : entry.getValue()) {
+                    product.op = Tac.Op.COPY;
+                    product.a = p;
+                    product.b = null;
+                }
+                preheader(function, loop).instrs.add(start);
+                changed = true;
+            }
+            return changed;
+        }
+
+        // c, if instr is i = i + c, i = c + i or i = i - c; else null
+        private static Long step(Tac.Instr instr, Tac.Operand i) {
+            if (instr == null) return null;
+            if (instr.op == Tac.Op.ADD && instr.a.equals(i)
+                    && instr.b.kind == Tac.Operand.Kind.CONST)
+                return (long) instr.b.value;
+            if (instr.op == Tac.Op.ADD && instr.b.equals(i)
+                    && instr.a.kind == Tac.Operand.Kind.CONST)
+                return (long) instr.a.value;
+            if (instr.op == Tac.Op.SUB && instr.a.equals(i)
+                    && instr.b.kind == Tac.Operand.Kind.CONST)
+                return -(long) instr.b.value;
+            return null;
+        }
+    }
+
+    /**
+     * Whether loop contains any of the headers of the loops changed: the
+     * analyses of the code as it was are still right for the other loops
+     * (a block added before a loop is in no loop its header is not in, and
+     * moving code out of a loop makes fewer variables live elsewhere), but
+     * not for those, which are left for analyses of the code as it is now
+     */
+    private static boolean containsAny(Tac.Loops.Loop loop,
+            List<Tac.Block> headers) {
+        for (Tac.Block header : headers)
+            if (loop.contains(header)) return true;
+        return false;
+    }
+
+    /**
+     * The block from which loop is entered: the only block outside it that
+     * goes to its header, if that block jumps there, or else a new block
+     * laid out before the header, that the blocks outside the loop go to
+     * instead
+     */
+    private static Tac.Block preheader(Tac.Function function,
+            Tac.Loops.Loop loop) {
+        List<Tac.Block> outside = new ArrayList<Tac.Block>();
+        for (Tac.Block pred : loop.header.preds)
+            if (!loop.contains(pred)) outside.add(pred);
+        if (outside.size() == 1 && outside.get(0).end == Tac.Block.End.JUMP)
+            return outside.get(0);
+
+        Tac.Block preheader = function.newBlock();
+        preheader.jump(loop.header);
+        for (Tac.Block pred : outside) {
+            if (pred.target == loop.header) pred.target = preheader;
+            if (pred.next == loop.header) pred.next = preheader;
+        }
+        function.blocks.add(function.blocks.indexOf(loop.header), preheader);
+        function.link();
+        return preheader;
+    }
+
+    // **********************************************************************
+    // DeadCodeElimination
+    // **********************************************************************
+    public static class DeadCodeElimination implements Pass {
+        public String name() {
+            return "deadCodeElimination";
+        }
+
+        public boolean run(Tac.Function function) {
+            Tac.Liveness liveness = new Tac.Liveness(function);
+            boolean changed = false;
+            for (Tac.Block block : function.blocks) {
+                BitSet live = liveness.liveOut(block);
+                for (Tac.Operand o : block.terminatorUses())
+                    if (o.isVariable()) live.set(liveness.index(o));
+
+                ListIterator<Tac.Instr> it =
+                        block.instrs.listIterator(block.instrs.size());
+                while (it.hasPrevious()) {
+                    Tac.Instr instr = it.previous();
+                    Tac.Operand dst = instr.dst;
+                    boolean dead = dst != null && dst.isVariable()
+                            && !live.get(liveness.index(dst))
+                            || instr.op == Tac.Op.COPY && dst.equals(instr.a);
+                    if (dead && !instr.hasSideEffects() && !instr.canTrap()) {
+                        it.remove();
+                        changed = true;
+                        continue;
+                    }
+                    if (dead && (instr.op == Tac.Op.CALL
+                            || instr.op == Tac.Op.READ)) {
+                        instr.dst = dst = null; // value not used
+                        changed = true;
+                    }
+                    if (dst != null && dst.isVariable())
+                        live.clear(liveness.index(dst));
+                    for (Tac.Operand o : instr.uses())
+                        if (o.isVariable()) live.set(liveness.index(o));
+                }
+            }
+            return removeUnneeded(function) | changed;
+        }
+
+        /**
+         * Remove the instructions without side effects (or traps) whose
+         * variables are only read to compute themselves or each other (live
+         * around a loop, like an induction variable whose products were
+         * strength reduced): the variables needed are those read by
+         * terminators and instructions with side effects or traps, and by
+         * the assignments of the variables needed
+         */
+        private static boolean removeUnneeded(Tac.Function function) {
+            Map<Tac.Operand, List<Tac.Instr>> assignments =
+                    new HashMap<Tac.Operand, List<Tac.Instr>>();
+            Set<Tac.Operand> needed = new HashSet<Tac.Operand>();
+            Deque<Tac.Operand> work = new ArrayDeque<Tac.Operand>();
+            for (Tac.Block block : function.blocks) {
+                for (Tac.Instr instr : block.instrs) {
+                    if (instr.hasSideEffects() || instr.canTrap())
+                        need(instr.uses(), needed, work);
+                    if (instr.dst == null || !instr.dst.isVariable()) continue;
+                    List<Tac.Instr> assigning = assignments.get(instr.dst);
+                    if (assigning == null) {
+                        assignments.put(instr.dst,
+                                assigning = new ArrayList<Tac.Instr>());
+                    }
+                    assigning.add(instr);
+                }
+                need(block.terminatorUses(), needed, work);
+            }
+            while (!work.isEmpty()) {
+                List<Tac.Instr> assigning = assignments.get(work.pop());
+                if (assigning == null) continue; // (formals)
+                for (Tac.Instr instr : assigning)
+                    need(instr.uses(), needed, work);
+            }
+
+            boolean changed = false;
+            for (Tac.Block block : function.blocks) {
+                Iterator<Tac.Instr> it = block.instrs.iterator();
+                while (it.hasNext()) {
+                    Tac.Instr instr = it.next();
+                    if (instr.dst != null && instr.dst.isVariable()
+                            && !needed.contains(instr.dst)
+                            && !instr.hasSideEffects() && !instr.canTrap()) {
+                        it.remove();
+                        changed = true;
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private static void need(List<Tac.Operand> uses,
+                Set<Tac.Operand> needed, Deque<Tac.Operand> work) {
+            for (Tac.Operand o : uses)
+                if (o.isVariable() && needed.add(o)) work.push(o);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.*;
+
+// **********************************************************************
+// The Peephole class rewrites the code buffered in G.code() to remove the
+// stack traffic of the push/pop code generation scheme.
+//
+// Each expression pushes its value and its parent pops it, so a push is
+// most often followed closely by the pop of the same slot. The optimizer
+// repeats the following passes over each straight-line run of code until
+// none of them changes anything:
+// sinkStackAdjustments: moves each "addu/subu $sp, $sp, n" down past
+// instructions that do not use $sp (rebasing $sp-relative loads and
+// stores), merging adjacent adjustments and dropping those that cancel
+// forwardStores: replaces a load of the slot just stored to with a move
+// (or nothing, when the register is the same)
+// removeDeadStores: removes stores to stack slots below $sp that are
+// not loaded before $sp drops past them again
+// removeOverwritten: removes a move or load into a register that the
+// next instruction overwrites without reading it
+// removeJumpsToNext: removes "b L" when L is the next label
+// invertBranches: turns a branch over a jump into the opposite branch to
+// the jump's label (the condition of a while loop, tested after its body,
+// branches back this way)
+//
+// removeDeadStores relies on the code generator never reading the stack
+// below $sp before writing it: pushes store to 0($sp) before moving $sp
+// down, and every load of a pushed value happens while it is above $sp.
+// **********************************************************************
+
+public class Peephole {
+
+    // **********************************************************************
+    // optimize
+    // rewrite code in place
+    // returns: number of instructions removed
+    // **********************************************************************
+    public static int optimize(List<G.Instr> code) {
+        int before = count(code);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            changed |= replace(code, sinkStackAdjustments(code));
+            changed |= replace(code, forwardStores(code));
+            changed |= replace(code, removeDeadStores(code));
+            changed |= replace(code, removeOverwritten(code));
+            changed |= replace(code, removeJumpsToNext(code));
+            changed |= replace(code, invertBranches(code));
+        }
+        return before - count(code);
+    }
+
+    // **********************************************************************
+    // count
+    // returns: number of instructions (not labels, comments or directives)
+    // in code
+    // **********************************************************************
+    public static int count(List<G.Instr> code) {
+        int n = 0;
+        for (G.Instr instr : code) {
+            if (isInstruction(instr)) n++;
+        }
+        return n;
+    }
+
+    // **********************************************************************
+    // sinkStackAdjustments
+    // **********************************************************************
+    private static List<G.Instr> sinkStackAdjustments(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        int pending = 0; // adjustment of $sp not yet emitted
+        G.Instr unmoved = null; // the pending adjustment, if not yet moved
+        for (G.Instr instr : code) {
+            if (isStackAdjustment(instr)) {
+                unmoved = pending == 0 ? instr : null;
+                pending += adjustment(instr);
+            } else if (instr.kind == G.Instr.Kind.SECTION) {
+                result.add(instr);
+            } else if (isBarrier(instr) || usesStackPointer(instr)
+                    && !(isStackSlot(instr) && !instr.arg1.equals(G.SP))) {
+                addAdjustment(result, pending, unmoved);
+                pending = 0;
+                result.add(instr);
+            } else {
+                unmoved = null;
+                if (pending != 0 && isStackSlot(instr)) {
+                    // n($sp) before the adjustment is n + pending($sp) now
+                    instr = indexed(instr.op, instr.arg1, G.SP,
+                            instr.imm + pending, instr.comment);
+                }
+                result.add(instr);
+            }
+        }
+        addAdjustment(result, pending, unmoved);
+        return result;
+    }
+
+    // **********************************************************************
+    // forwardStores
+    // sw R, n(B)          sw R, n(B)
+    // lw D, n(B)    =>    move D, R     (nothing, if D is R)
+    // **********************************************************************
+    private static List<G.Instr> forwardStores(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        G.Instr store = null; // store just before, if any
+        for (G.Instr instr : code) {
+            if (instr.kind == G.Instr.Kind.SECTION) {
+                result.add(instr);
+                continue;
+            }
+            if (store != null && instr.kind == G.Instr.Kind.INDEXED
+                    && instr.op == G.Op.LW && instr.arg2.equals(store.arg2)
+                    && instr.imm == store.imm
+                    && !store.arg1.equals(store.arg2)) {
+                if (!instr.arg1.equals(store.arg1))
+                    result.add(plain(G.Op.MOVE, instr.arg1, store.arg1,
+                            instr.comment));
+                store = null;
+                continue;
+            }
+            store = instr.kind == G.Instr.Kind.INDEXED && instr.op == G.Op.SW
+                    ? instr : null;
+            result.add(instr);
+        }
+        return result;
+    }
+
+    // **********************************************************************
+    // removeDeadStores
+    // **********************************************************************
+    private static List<G.Instr> removeDeadStores(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            G.Instr instr = code.get(i);
+            if (!(isStackSlot(instr) && instr.op == G.Op.SW && instr.imm <= 0
+                    && isDeadSlot(code, i + 1, instr.imm)))
+                result.add(instr);
+        }
+        return result;
+    }
+
+    // **********************************************************************
+    // isDeadSlot
+    // given: the offset from $sp of a slot below $sp, and where to start
+    // returns: true if the slot is written again, or reaches the end of the
+    // straight-line code, while still below $sp and without being read
+    // **********************************************************************
+    private static boolean isDeadSlot(List<G.Instr> code, int from,
+            int offset) {
+        for (int i = from; i < code.size(); i++) {
+            G.Instr instr = code.get(i);
+            if (instr.kind == G.Instr.Kind.SECTION) continue;
+            if (isBarrier(instr)) return true;
+            if (isStackAdjustment(instr)) {
+                offset -= adjustment(instr);
+                if (offset > 0) return false; // pushed back onto the stack
+            } else if (isStackSlot(instr) && !instr.arg1.equals(G.SP)) {
+                if (instr.op != G.Op.SW) {
+                    if (instr.op == G.Op.LA || instr.imm == offset)
+                        return false;
+                } else if (instr.imm == offset) {
+                    return true;
+                }
+            } else if (usesStackPointer(instr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // **********************************************************************
+    // removeOverwritten
+    // move R, S
+    // lw R, 4($sp)    =>    lw R, 4($sp)
+    // **********************************************************************
+    private static List<G.Instr> removeOverwritten(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            G.Instr instr = code.get(i);
+            if (isRegisterLoad(instr)) {
+                int next = i + 1;
+                while (next < code.size()
+                        && code.get(next).kind == G.Instr.Kind.SECTION)
+                    next++;
+                if (next < code.size() && isRegisterLoad(code.get(next))
+                        && instr.arg1.equals(code.get(next).arg1)
+                        && !instr.arg1.equals(code.get(next).arg2))
+                    continue;
+            }
+            result.add(instr);
+        }
+        return result;
+    }
+
+    // **********************************************************************
+    // removeJumpsToNext
+    // b L      =>
+    // L:            L:
+    // **********************************************************************
+    private static List<G.Instr> removeJumpsToNext(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            G.Instr instr = code.get(i);
+            if (instr.kind == G.Instr.Kind.PLAIN && instr.op == G.Op.B) {
+                int next = i + 1;
+                while (next < code.size()
+                        && code.get(next).kind == G.Instr.Kind.SECTION)
+                    next++;
+                if (next < code.size() && instr.arg1.equals(code.get(next).label))
+                    continue;
+            }
+            result.add(instr);
+        }
+        return result;
+    }
+
+    // **********************************************************************
+    // invertBranches
+    // bCC R, S, L1          bNCC R, S, L2
+    // b L2            =>    L1:
+    // L1:
+    // **********************************************************************
+    private static List<G.Instr> invertBranches(List<G.Instr> code) {
+        List<G.Instr> result = new ArrayList<G.Instr>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            G.Instr instr = code.get(i);
+            G.Op inverse = instr.kind == G.Instr.Kind.PLAIN
+                    ? inverse(instr.op) : null;
+            if (inverse != null && i + 1 < code.size()) {
+                G.Instr jump = code.get(i + 1);
+                int next = i + 2;
+                while (next < code.size()
+                        && code.get(next).kind == G.Instr.Kind.SECTION)
+                    next++;
+                if (jump.kind == G.Instr.Kind.PLAIN && jump.op == G.Op.B
+                        && next < code.size()
+                        && instr.arg3.equals(code.get(next).label)) {
+                    result.add(new G.Instr(G.Instr.Kind.PLAIN, inverse, null,
+                            instr.arg1, instr.arg2, jump.arg1, instr.imm,
+                            jump.comment, null));
+                    i++; // (the jump)
+                    continue;
+                }
+            }
+            result.add(instr);
+        }
+        return result;
+    }
+
+    // **********************************************************************
+    // helpers
+    // **********************************************************************
+
+    // the branch taken when op's is not, or null if op is no branch
+    private static G.Op inverse(G.Op op) {
+        switch (op) {
+            case BEQ: return G.Op.BNE;
+            case BNE: return G.Op.BEQ;
+            case BLT: return G.Op.BGE;
+            case BGE: return G.Op.BLT;
+            case BGT: return G.Op.BLE;
+            case BLE: return G.Op.BGT;
+            default: return null;
+        }
+    }
+
+    // replace code by rewritten, returning true if they differ. G.Instr has
+    // no equals, so they differ only where a pass made a new instruction or
+    // dropped one: each pass keeps the instructions it leaves alone. Each
+    // such change removes an instruction, turns a load into a move or moves
+    // an adjustment of $sp further down, and none undoes another, so the
+    // loop in optimize ends
+    private static boolean replace(List<G.Instr> code,
+            List<G.Instr> rewritten) {
+        boolean changed = !rewritten.equals(code);
+        code.clear();
+        code.addAll(rewritten);
+        return changed;
+    }
+
+    private static boolean isInstruction(G.Instr instr) {
+        return (instr.kind == G.Instr.Kind.PLAIN
+                || instr.kind == G.Instr.Kind.INDEXED)
+                && !instr.op.text.startsWith(".");
+    }
+
+    // true for move, li, la and lw: instructions that only set arg1, from
+    // arg2 (if any)
+    private static boolean isRegisterLoad(G.Instr instr) {
+        if (instr.kind == G.Instr.Kind.INDEXED)
+            return instr.op == G.Op.LW || instr.op == G.Op.LA;
+        return instr.kind == G.Instr.Kind.PLAIN
+                && (instr.op == G.Op.MOVE || instr.op == G.Op.LI
+                        || instr.op == G.Op.LA || instr.op == G.Op.LW)
+                && !G.SP.equals(instr.arg1);
+    }
+
+    // true for "addu $sp, $sp, n" and "subu $sp, $sp, n"
+    private static boolean isStackAdjustment(G.Instr instr) {
+        return instr.kind == G.Instr.Kind.PLAIN
+                && (instr.op == G.Op.ADDU || instr.op == G.Op.SUBU)
+                && instr.arg1.equals(G.SP) && instr.arg2.equals(G.SP)
+                && instr.arg3 == null;
+    }
+
+    // change of $sp by a stack adjustment
+    private static int adjustment(G.Instr instr) {
+        return instr.op == G.Op.ADDU ? instr.imm : -instr.imm;
+    }
+
+    // true for a load, store or address of n($sp)
+    private static boolean isStackSlot(G.Instr instr) {
+        return instr.kind == G.Instr.Kind.INDEXED && instr.arg2.equals(G.SP);
+    }
+
+    // true for labels, jumps, calls, system calls and directives: code can
+    // not be moved past these
+    private static boolean isBarrier(G.Instr instr) {
+        switch (instr.kind) {
+            case LABEL:
+            case LABELED:
+                return true;
+            case SECTION:
+                return false;
+            default:
+                switch (instr.op) {
+                    case B:
+                    case BEQ:
+                    case BGE:
+                    case BGT:
+                    case BLE:
+                    case BLT:
+                    case BNE:
+                    case JAL:
+                    case JR:
+                    case SYSCALL:
+                        return true;
+                    default:
+                        return instr.op.text.startsWith(".");
+                }
+        }
+    }
+
+    private static boolean usesStackPointer(G.Instr instr) {
+        return G.SP.equals(instr.arg1) || G.SP.equals(instr.arg2)
+                || G.SP.equals(instr.arg3);
+    }
+
+    // append the stack adjustment by delta, unless it is 0 (unmoved, if not
+    // null, being the adjustment by delta as it was)
+    private static void addAdjustment(List<G.Instr> code, int delta,
+            G.Instr unmoved) {
+        if (unmoved != null && delta != 0)
+            code.add(unmoved);
+        else if (delta > 0)
+            code.add(new G.Instr(G.Instr.Kind.PLAIN, G.Op.ADDU, null, G.SP,
+                    G.SP, null, delta, null, null));
+        else if (delta < 0)
+            code.add(new G.Instr(G.Instr.Kind.PLAIN, G.Op.SUBU, null, G.SP,
+                    G.SP, null, -delta, null, null));
+    }
+
+    private static G.Instr indexed(G.Op op, String arg1, String arg2, int imm,
+            String comment) {
+        return new G.Instr(G.Instr.Kind.INDEXED, op, null, arg1, arg2, "", imm,
+                comment, null);
+    }
+
+    private static G.Instr plain(G.Op op, String arg1, String arg2,
+            String comment) {
+        return new G.Instr(G.Instr.Kind.PLAIN, op, null, arg1, arg2, "", 0,
+                comment, null);
+    }
+}
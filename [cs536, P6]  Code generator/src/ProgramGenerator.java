@@ -0,0 +1,413 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Generator of valid C-- programs of a given size, for benchmarks of the
+ * compiler (CompilerBench): the same seed and sizes always give the same
+ * program.
+ *
+ * usage: java ProgramGenerator [-seed n] [-functions n | -lines n]
+ *        [-statements n] [-depth n] [-structs n] [outfile]
+ *
+ * The program declares globals, the struct types and the functions, then
+ * main, which calls some of them. Each function has parameters and a
+ * return type drawn at random, and a body of statements (-statements, those
+ * nested in its if and while statements included): assignments of int and
+ * bool expressions, increments, output, calls of the functions declared
+ * before it, and if, if-else and while statements nested up to -depth
+ * levels, each with locals of its own. With -lines, functions are added
+ * until the program has at least that many lines.
+ *
+ * With -structs, the struct types (a field of each but the first is of the
+ * type before) have global and local variables, whose fields are read in
+ * int expressions. They are not assigned: the code generator does not
+ * support structs, so the values read are not meaningful, but every phase
+ * runs over them.
+ *
+ * The programs are for compiling more than for running: loops always end
+ * and no function calls itself or one declared after it, but arithmetic
+ * may overflow (which the simulator stops at).
+ */
+public class ProgramGenerator {
+    private static final int GLOBALS = 4; // of each type
+    private static final int FIELDS = 3; // int fields of each struct type
+    private static final int MAX_OPERANDS = 4; // per expression
+    private static final int MAX_PARAMS = 3;
+
+    private final Random random;
+    private int functions = 10;
+    private int lines = 0;
+    private int statements = 20;
+    private int depth = 3;
+    private int structs = 2;
+
+    // the program, and its lines
+    private StringBuilder text;
+    private int lineCount;
+
+    // functions declared: name, return type (int, bool or void), parameters
+    private List<String> fnNames = new ArrayList<String>();
+    private List<String> fnTypes = new ArrayList<String>();
+    private List<String[]> fnParams = new ArrayList<String[]>();
+
+    // variables in scope, by type, the innermost last
+    private List<String> ints = new ArrayList<String>();
+    private List<String> bools = new ArrayList<String>();
+    private List<String> structVars = new ArrayList<String>();
+    private int variables; // declared in the function so far
+
+    public ProgramGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Number of functions besides main (10 by default)
+     */
+    public void setFunctions(int functions) {
+        this.functions = functions;
+        lines = 0;
+    }
+
+    /**
+     * Number of lines to reach (instead of a number of functions)
+     */
+    public void setLines(int lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * Number of statements in each function (20 by default)
+     */
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Maximum depth of if and while statements nested in a function (3 by
+     * default)
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * Number of struct types (2 by default; none if 0)
+     */
+    public void setStructs(int structs) {
+        this.structs = structs;
+    }
+
+    /**
+     * @return the program's source
+     */
+    public String generate() {
+        text = new StringBuilder();
+        lineCount = 0;
+        fnNames.clear();
+        fnTypes.clear();
+        fnParams.clear();
+        ints.clear();
+        bools.clear();
+        structVars.clear();
+
+        for (int i = 0; i < GLOBALS; i++) {
+            line("int g" + i + ";");
+            line("bool h" + i + ";");
+            ints.add("g" + i);
+            bools.add("h" + i);
+        }
+        for (int s = 0; s < structs; s++) {
+            line("struct S" + s + " {");
+            for (int f = 0; f < FIELDS; f++)
+                line("    int a" + f + ";");
+            if (s > 0) line("    struct S" + (s - 1) + " inner;");
+            line("};");
+            line("struct S" + s + " gs" + s + ";");
+            structVars.add("gs" + s + " S" + s);
+        }
+        line("");
+        for (int f = 0; lines > 0 ? lineCount < lines : f < functions; f++)
+            function(f);
+        main();
+        return text.toString();
+    }
+
+    // function f, after those before it
+    private void function(int f) {
+        String type = pick("int", "bool", "void");
+        String[] params = new String[random.nextInt(MAX_PARAMS + 1)];
+        StringBuilder header = new StringBuilder(type + " f" + f + "(");
+        variables = 0;
+        int outerInts = ints.size(), outerBools = bools.size();
+        for (int p = 0; p < params.length; p++) {
+            params[p] = random.nextInt(3) == 0 ? "bool" : "int";
+            String name = variable(params[p]);
+            header.append(p == 0 ? "" : ", ").append(params[p]).append(' ')
+                    .append(name);
+        }
+        line(header.append(") {").toString());
+        block(statements, 0, 1);
+        if (type.equals("int")) line("    return " + intExp() + ";");
+        if (type.equals("bool")) line("    return " + boolExp() + ";");
+        line("}");
+        line("");
+        trim(ints, outerInts);
+        trim(bools, outerBools);
+        fnNames.add("f" + f);
+        fnTypes.add(type);
+        fnParams.add(params);
+    }
+
+    private void main() {
+        variables = 0;
+        line("void main() {");
+        String result = "v" + variables++;
+        line("    int " + result + ";");
+        ints.add(result);
+        line("    " + result + " = 0;");
+        for (int f = Math.max(0, fnNames.size() - 8); f < fnNames.size(); f++) {
+            if (fnTypes.get(f).equals("int"))
+                line("    " + result + " = " + result + " + " + call(f) + ";");
+            else
+                line("    " + call(f) + ";");
+        }
+        line("    cout << " + result + ";");
+        line("}");
+    }
+
+    /**
+     * A block of about count statements (and its declarations), nested in
+     * the given number of if and while statements, at indentation level
+     * indent
+     */
+    private void block(int count, int nesting, int indent) {
+        int outerInts = ints.size(), outerBools = bools.size();
+        int outerStructs = structVars.size();
+        String pad = "    ".repeat(indent);
+        String counter = "v" + variables++; // of the loops in this block
+        line(pad + "int " + counter + ";");
+        for (int i = random.nextInt(3); i > 0; i--)
+            line(pad + "int " + variable("int") + ";");
+        if (random.nextBoolean())
+            line(pad + "bool " + variable("bool") + ";");
+        if (structs > 0 && random.nextInt(4) == 0) {
+            int s = random.nextInt(structs);
+            String name = "v" + variables++;
+            line(pad + "struct S" + s + " " + name + ";");
+            structVars.add(name + " S" + s);
+        }
+        for (int i = outerInts; i < ints.size(); i++)
+            line(pad + ints.get(i) + " = " + random.nextInt(10) + ";");
+        for (int i = outerBools; i < bools.size(); i++)
+            line(pad + bools.get(i) + " = " + pick("true", "false") + ";");
+
+        while (count > 0) {
+            int kind = random.nextInt(10);
+            if (kind < 2 && nesting < depth && count > 1) { // if, if-else
+                int inner = 1 + random.nextInt(Math.min(count - 1, 6));
+                count -= inner + 1;
+                line(pad + "if (" + boolExp() + ") {");
+                if (random.nextBoolean()) {
+                    int half = (inner + 1) / 2;
+                    block(half, nesting + 1, indent + 1);
+                    line(pad + "} else {");
+                    block(inner - half, nesting + 1, indent + 1);
+                } else {
+                    block(inner, nesting + 1, indent + 1);
+                }
+                line(pad + "}");
+            } else if (kind < 3 && nesting < depth && count > 1) { // while
+                int inner = 1 + random.nextInt(Math.min(count - 1, 6));
+                count -= inner + 1;
+                line(pad + counter + " = 0;");
+                line(pad + "while (" + counter + " < " + (1 + random.nextInt(4))
+                        + ") {");
+                block(inner, nesting + 1, indent + 1);
+                line(pad + "    " + counter + "++;");
+                line(pad + "}");
+            } else {
+                statement(pad);
+                count--;
+            }
+        }
+        trim(ints, outerInts);
+        trim(bools, outerBools);
+        trim(structVars, outerStructs);
+    }
+
+    // a simple statement (loop counters are not among the ints it assigns)
+    private void statement(String pad) {
+        String target = ints.get(random.nextInt(ints.size()));
+        switch (random.nextInt(8)) {
+            case 0:
+                line(pad + target + "++;");
+                break;
+            case 1:
+                line(pad + "cout << " + pick(intExp(), "\"" + target + " \"")
+                        + ";");
+                break;
+            case 2: {
+                String b = bools.get(random.nextInt(bools.size()));
+                line(pad + b + " = " + boolExp() + ";");
+                break;
+            }
+            case 3:
+                if (!fnNames.isEmpty()) {
+                    int f = random.nextInt(fnNames.size());
+                    if (fnTypes.get(f).equals("int"))
+                        line(pad + target + " = " + call(f) + ";");
+                    else
+                        line(pad + call(f) + ";");
+                    break;
+                }
+                // otherwise an assignment
+            default:
+                line(pad + target + " = " + intExp() + ";");
+        }
+    }
+
+    // an int expression
+    private String intExp() {
+        StringBuilder exp = new StringBuilder(intOperand());
+        for (int i = random.nextInt(MAX_OPERANDS); i > 0; i--) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    exp.append(" + ").append(intOperand());
+                    break;
+                case 1:
+                    exp.append(" - ").append(intOperand());
+                    break;
+                case 2:
+                    exp.append(" * ").append(intOperand());
+                    break;
+                default:
+                    exp.append(" / ").append(1 + random.nextInt(9));
+            }
+        }
+        return exp.toString();
+    }
+
+    private String intOperand() {
+        switch (random.nextInt(8)) {
+            case 0:
+                return String.valueOf(random.nextInt(100));
+            case 1:
+                return "-" + ints.get(random.nextInt(ints.size()));
+            case 2:
+                if (!structVars.isEmpty()) return field();
+            default:
+                return ints.get(random.nextInt(ints.size()));
+        }
+    }
+
+    // a field read from a struct variable in scope, through its inner
+    // fields
+    private String field() {
+        String[] variable = structVars.get(random.nextInt(structVars.size()))
+                .split(" ");
+        StringBuilder access = new StringBuilder(variable[0]);
+        for (int s = Integer.parseInt(variable[1].substring(1)); s > 0
+                && random.nextBoolean(); s--)
+            access.append(".inner");
+        return access.append(".a").append(random.nextInt(FIELDS)).toString();
+    }
+
+    // a bool expression
+    private String boolExp() {
+        String exp;
+        switch (random.nextInt(5)) {
+            case 0:
+                exp = bools.get(random.nextInt(bools.size()));
+                break;
+            case 1:
+                exp = "!" + bools.get(random.nextInt(bools.size()));
+                break;
+            case 2:
+                exp = intOperand() + pick(" == ", " != ") + intOperand();
+                break;
+            default:
+                exp = intOperand() + pick(" < ", " > ", " <= ", " >= ")
+                        + intOperand();
+        }
+        if (random.nextInt(4) == 0)
+            exp += pick(" && ", " || ") + bools.get(random.nextInt(bools.size()));
+        return exp;
+    }
+
+    // a call of function f, with arguments of its parameters' types
+    private String call(int f) {
+        StringBuilder call = new StringBuilder(fnNames.get(f)).append('(');
+        String[] params = fnParams.get(f);
+        for (int p = 0; p < params.length; p++)
+            call.append(p == 0 ? "" : ", ").append(
+                    params[p].equals("int") ? intOperand() : boolExp());
+        return call.append(')').toString();
+    }
+
+    // a new variable of type, in scope
+    private String variable(String type) {
+        String name = "v" + variables++;
+        (type.equals("int") ? ints : bools).add(name);
+        return name;
+    }
+
+    private String pick(String... choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    private static void trim(List<String> list, int size) {
+        while (list.size() > size)
+            list.remove(list.size() - 1);
+    }
+
+    private void line(String line) {
+        text.append(line).append('\n');
+        lineCount++;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seed = 1;
+        int functions = -1, lines = -1, statements = -1, depth = -1, structs = -1;
+        String outFile = null;
+        try {
+            for (int arg = 0; arg < args.length; arg++) {
+                if (args[arg].equals("-seed")) {
+                    seed = Long.parseLong(args[++arg]);
+                } else if (args[arg].equals("-functions")) {
+                    functions = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("-lines")) {
+                    lines = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("-statements")) {
+                    statements = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("-depth")) {
+                    depth = Integer.parseInt(args[++arg]);
+                } else if (args[arg].equals("-structs")) {
+                    structs = Integer.parseInt(args[++arg]);
+                } else if (outFile == null && !args[arg].startsWith("-")) {
+                    outFile = args[arg];
+                } else {
+                    throw new IllegalArgumentException(args[arg]);
+                }
+            }
+        } catch (RuntimeException e) { // a bad or missing number, or option
+            System.err.println("usage: java ProgramGenerator [-seed n] "
+                    + "[-functions n | -lines n] [-statements n] [-depth n] "
+                    + "[-structs n] [outfile]");
+            System.exit(-1);
+        }
+        ProgramGenerator generator = new ProgramGenerator(seed);
+        if (functions >= 0) generator.setFunctions(functions);
+        if (lines >= 0) generator.setLines(lines);
+        if (statements >= 0) generator.setStatements(statements);
+        if (depth >= 0) generator.setDepth(depth);
+        if (structs >= 0) generator.setStructs(structs);
+        String program = generator.generate();
+        if (outFile == null) {
+            System.out.print(program);
+        } else {
+            try (Writer out = new FileWriter(outFile)) {
+                out.write(program);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Regression tests of the code generated at each optimization level: each
+ * test program is compiled with -O0, the default, -O2 and -arena and run on
+ * the simulator (Mips), and what it does must be what its .expected file
+ * says, at every level.
+ *
+ * usage: java Regress <dir>
+ *
+ * The tests are the .cminusminus files in dir. A test's input, if it reads
+ * any, is its .input file. What it does is its output, followed, if it
+ * stops at a trap (such as an overflow), by a line "trap: " and the trap
+ * (without its line in the assembly), or by "timeout" if it runs for more
+ * than TIMEOUT_MS. A test P6 rejects does what P6 reports: its result (as
+ * P6Batch names it) and its diagnostics. Each failure is printed with what
+ * the test did instead; the exit code is 0 if all passed, 1 otherwise.
+ */
+public class Regress {
+    private static final String[] LEVELS = {"-O0", "-O1", "-O2", "-arena"};
+    private static final long TIMEOUT_MS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: java Regress <dir>");
+            System.exit(-1);
+        }
+        File[] tests = new File(args[0]).listFiles(
+                (dir, name) -> name.endsWith(".cminusminus"));
+        if (tests == null) {
+            System.err.println(args[0] + ": not a directory");
+            System.exit(-1);
+        }
+        Arrays.sort(tests);
+        File target = File.createTempFile("regress", ".s");
+        target.deleteOnExit();
+
+        int failures = 0;
+        for (File test : tests) {
+            String base = test.getPath().replaceAll("\\.cminusminus$", "");
+            String expected = read(new File(base + ".expected"));
+            File input = new File(base + ".input");
+            for (String level : LEVELS) {
+                String actual = compile(level, test, target);
+                if (actual == null) actual = run(target, input);
+                if (!actual.equals(expected)) {
+                    failures++;
+                    System.out.printf("FAIL %s %s:%n%s%n", test.getName(),
+                            level, actual);
+                }
+            }
+        }
+        System.out.printf("%d tests, %d levels: %d failures%n", tests.length,
+                LEVELS.length, failures);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Compile test to target at level
+     *
+     * @return null if it compiled correctly, otherwise the result
+     */
+    private static String compile(String level, File test, File target)
+            throws Exception {
+        P6 p6 = new P6();
+        p6.setInfile(test.getPath());
+        p6.setOutfile(target.getPath());
+        ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+        p6.setDiagnostics(new PrintStream(diagnostics));
+        p6.setOptimize(!level.equals("-O0"));
+        p6.setMiddleEnd(level.equals("-O2"));
+        p6.setArena(level.equals("-arena"));
+        int code;
+        try {
+            code = p6.process();
+        } finally {
+            p6.cleanup();
+        }
+        return code == P6.RESULT_CORRECT ? null
+                : P6Batch.resultName(code) + "\n" + diagnostics;
+    }
+
+    /**
+     * Run the code in target on input (if it exists)
+     *
+     * @return what it did, as in the .expected files
+     */
+    private static String run(File target, File input) throws Exception {
+        Mips mips;
+        try (Reader source = new FileReader(target)) {
+            mips = new Mips(source);
+        }
+        Reader in = input.exists() ? new FileReader(input) : new StringReader("");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String[] trap = new String[1];
+        Thread thread = new Thread(() -> {
+            try {
+                mips.run(in, new PrintStream(out), false);
+            } catch (IOException | RuntimeException e) {
+                trap[0] = e.getMessage().replaceFirst("^line \\d+: ", "");
+            }
+        });
+        thread.setDaemon(true); // left running after a timeout
+        thread.start();
+        thread.join(TIMEOUT_MS);
+        if (thread.isAlive()) return out + "\ntimeout\n";
+        return trap[0] == null ? out.toString()
+                : out + "\ntrap: " + trap[0] + "\n";
+    }
+
+    private static String read(File file) throws IOException {
+        return file.exists() ? new String(Files.readAllBytes(file.toPath())) : "";
+    }
+}
@@ -1,12 +1,36 @@
 import java.util.*;
 
+// one hash table for all scopes (LeBlanc-Cook), with a log of the
+// declarations of each scope for removeScope to undo
 public class SymTable {
 
-  private List<HashMap<String, TSym>> list;
+  // a declaration, linked to the declaration of the same name it shadows
+  private static class Entry {
+    String name;
+    TSym sym;
+    int scope;
+    Entry shadowed;
+
+    Entry(String name, TSym sym, int scope, Entry shadowed) {
+      this.name = name;
+      this.sym = sym;
+      this.scope = scope;
+      this.shadowed = shadowed;
+    }
+  }
+
+  private HashMap<String, Entry> table; // innermost declaration of each name
+  private ArrayList<Entry> log; // declarations, in order of their scopes
+  private int[] scopeStart; // index in log of each scope's first declaration
+  private int depth; // number of scopes
+  private int peakDepth; // largest number of scopes so far
 
   public SymTable() {
-    list = new LinkedList<HashMap<String, TSym>>();
-    list.add(new HashMap<String, TSym>());
+    table = new HashMap<String, Entry>();
+    log = new ArrayList<Entry>();
+    scopeStart = new int[8];
+    depth = 0;
+    addScope();
   }
 
   public void addDecl(String name, TSym sym) throws DuplicateSymException,
@@ -20,59 +44,87 @@ public class SymTable {
       throw new IllegalArgumentException();
     }
 
-    if (list.isEmpty()) {
+    if (depth == 0) {
       throw new EmptySymTableException();
     }
 
-    HashMap<String, TSym> symTab = list.get(0);
-    if (symTab.containsKey(name)) {
+    Entry visible = table.get(name);
+    if (visible != null && visible.scope == depth) {
       throw new DuplicateSymException();
     } else {
-      symTab.put(name, sym);
+      Entry entry = new Entry(name, sym, depth, visible);
+      table.put(name, entry);
+      log.add(entry);
     }
   }
 
   public void addScope() {
-    list.add(0, new HashMap<String, TSym>());
+    if (depth == scopeStart.length) {
+      scopeStart = Arrays.copyOf(scopeStart, 2 * depth);
+    }
+    scopeStart[depth++] = log.size();
+    peakDepth = Math.max(peakDepth, depth);
+  }
+
+  // the largest number of scopes the table has had
+  public int peakDepth() {
+    return peakDepth;
   }
 
   public TSym lookupLocal(String name) throws EmptySymTableException {
-    if (list.isEmpty()) {
+    if (depth == 0) {
       throw new EmptySymTableException();
     }
 
-    if (list.get(0).containsKey(name)){
-      return list.get(0).get(name);
+    Entry visible = table.get(name);
+    if (visible != null && visible.scope == depth){
+      return visible.sym;
     } else {
       return null;
     }
   }
 
   public TSym lookupGlobal(String name) throws EmptySymTableException {
-    if (list.isEmpty()) {
+    if (depth == 0) {
       throw new EmptySymTableException();
     }
 
-    for (HashMap<String, TSym> symTab : list) {
-      if (symTab.containsKey(name)){
-        return symTab.get(name);
-      }
-    }
-    return null;
+    Entry visible = table.get(name);
+    return visible == null ? null : visible.sym;
   }
 
   public void removeScope() throws EmptySymTableException {
-    if (list.isEmpty()) {
+    if (depth == 0) {
       throw new EmptySymTableException();
     }
-    list.remove(0);
+
+    // undo the scope's declarations, latest first
+    int start = scopeStart[--depth];
+    for (int i = log.size() - 1; i >= start; i--) {
+      Entry entry = log.remove(i);
+      if (entry.shadowed == null) {
+        table.remove(entry.name);
+      } else {
+        table.put(entry.name, entry.shadowed);
+      }
+    }
   }
 
   public void print() {
     System.out.print("\nSym Table\n");
-    for (HashMap<String, TSym> symTab : list) {
-      System.out.println(symTab.toString());
+    for (int scope = depth - 1; scope >= 0; scope--) {
+      System.out.println(scopeMap(scope).toString());
     }
     System.out.println();
   }
+
+  // the declarations of a scope (counting from 0, the outermost), as a map
+  private HashMap<String, TSym> scopeMap(int scope) {
+    int end = scope + 1 < depth ? scopeStart[scope + 1] : log.size();
+    HashMap<String, TSym> symTab = new HashMap<String, TSym>();
+    for (int i = scopeStart[scope]; i < end; i++) {
+      symTab.put(log.get(i).name, log.get(i).sym);
+    }
+    return symTab;
+  }
 }
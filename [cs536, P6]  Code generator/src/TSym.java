@@ -70,7 +70,7 @@ class FnSym extends TSym {
 
 
     public FnSym(Type type, int numparams) {
-        super(new FnType());
+        super(FnType.INSTANCE);
         returnType = type;
         numParams = numparams;
     }
@@ -135,7 +135,7 @@ class StructSym extends TSym {
     private IdNode structType; // name of the struct type
 
     public StructSym(IdNode id) {
-        super(new StructType(id));
+        super(StructType.of(id));
         structType = id;
     }
 
@@ -155,7 +155,7 @@ class StructDefSym extends TSym {
     private SymTable symTab;
 
     public StructDefSym(SymTable table) {
-        super(new StructDefType());
+        super(StructDefType.INSTANCE);
         symTab = table;
     }
 
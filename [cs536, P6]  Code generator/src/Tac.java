@@ -0,0 +1,874 @@
+import java.util.*;
+
+// **********************************************************************
+// The Tac class defines the intermediate representation of the middle end
+// (P6 -O2): three-address code, in basic blocks, with one control-flow
+// graph per function.
+//
+// The AST is lowered to it (the lower methods of the AST nodes, through a
+// Builder), the PassManager rewrites it, and TacGen translates it to MIPS.
+//
+// Operand: a value an instruction reads or writes
+// TEMP t<n> a temporary, made by lowering expressions
+// LOCAL name@offset a local variable or formal, at its $fp offset
+// GLOBAL _name a global variable (memory: only read or written
+// by COPY)
+// CONST n an int, or a bool as 1 or 0
+// STRING label the address of a string literal
+//
+// Instr: dst = a op b
+// COPY dst = a
+// NEG, NOT dst = op a
+// ADD ... SGE dst = a op b
+// (ADD, MUL dst = a op~ b wrapping around on overflow)
+// READ dst = read int
+// WRITE_INT write a
+// WRITE_STRING write a (a STRING, or a variable holding one)
+// CALL dst = function(args) (dst null if unused)
+//
+// Block: instructions ending in a terminator
+// JUMP goto target
+// BRANCH if left test right goto target else goto next
+// (test one of SEQ ... SGE)
+// RETURN return left (null for none)
+//
+// Liveness and Loops are the analyses the passes share.
+//
+// TEMPs and LOCALs are the variables the passes track and TacGen keeps in
+// registers. Locals can only be read and written by their own function
+// (there are no pointers), but a call may change any global, so globals
+// stay in memory.
+// **********************************************************************
+
+public class Tac {
+
+    public static enum Op {
+        COPY("="), NEG("-"), NOT("!"), ADD("+"), SUB("-"), MUL("*"),
+        DIV("/"), SEQ("=="), SNE("!="), SLT("<"), SGT(">"), SLE("<="),
+        SGE(">="), READ("read"), WRITE_INT("write"),
+        WRITE_STRING("write"), CALL("call");
+
+        public final String text;
+
+        private Op(String text) {
+            this.text = text;
+        }
+
+        public boolean isBinary() {
+            return compareTo(ADD) >= 0 && compareTo(SGE) <= 0;
+        }
+
+        public boolean isComparison() {
+            return compareTo(SEQ) >= 0 && compareTo(SGE) <= 0;
+        }
+
+        public boolean isCommutative() {
+            return this == ADD || this == MUL || this == SEQ || this == SNE;
+        }
+
+        // the comparison with its operands swapped: a op b == b op' a
+        public Op swapped() {
+            switch (this) {
+                case SLT: return SGT;
+                case SGT: return SLT;
+                case SLE: return SGE;
+                case SGE: return SLE;
+                default: return this;
+            }
+        }
+
+        // the comparison that is true when this one is false
+        public Op negated() {
+            switch (this) {
+                case SEQ: return SNE;
+                case SNE: return SEQ;
+                case SLT: return SGE;
+                case SGE: return SLT;
+                case SGT: return SLE;
+                case SLE: return SGT;
+                default: throw new IllegalStateException(this + " is not a comparison");
+            }
+        }
+
+        /**
+         * The value of this operator applied to constants, or null if it is
+         * left to run time (because add, sub, mulo and div would trap)
+         */
+        public Integer apply(int a, int b) {
+            try {
+                switch (this) {
+                    case NEG: return Math.negateExact(a);
+                    case NOT: return a ^ 1;
+                    case ADD: return Math.addExact(a, b);
+                    case SUB: return Math.subtractExact(a, b);
+                    case MUL: return Math.multiplyExact(a, b);
+                    case DIV:
+                        return b == 0 || a == Integer.MIN_VALUE && b == -1
+                                ? null : a / b;
+                    case SEQ: return a == b ? 1 : 0;
+                    case SNE: return a != b ? 1 : 0;
+                    case SLT: return a < b ? 1 : 0;
+                    case SGT: return a > b ? 1 : 0;
+                    case SLE: return a <= b ? 1 : 0;
+                    case SGE: return a >= b ? 1 : 0;
+                    default: return null;
+                }
+            } catch (ArithmeticException ex) {
+                return null;
+            }
+        }
+    }
+
+    // **********************************************************************
+    // Operand
+    // **********************************************************************
+    public static final class Operand {
+        public static enum Kind {
+            TEMP, LOCAL, GLOBAL, CONST, STRING
+        };
+
+        public final Kind kind;
+        public final int value; // TEMP number, LOCAL offset or CONST value
+        public final String name; // LOCAL name, GLOBAL or STRING label
+
+        private Operand(Kind kind, int value, String name) {
+            this.kind = kind;
+            this.value = value;
+            this.name = name;
+        }
+
+        public static Operand temp(int number) {
+            return new Operand(Kind.TEMP, number, null);
+        }
+
+        public static Operand local(String name, int offset) {
+            return new Operand(Kind.LOCAL, offset, name);
+        }
+
+        public static Operand global(String label) {
+            return new Operand(Kind.GLOBAL, 0, label);
+        }
+
+        public static Operand constant(int value) {
+            return new Operand(Kind.CONST, value, null);
+        }
+
+        public static Operand string(String label) {
+            return new Operand(Kind.STRING, 0, label);
+        }
+
+        // a TEMP or LOCAL: tracked by the passes, kept in a register
+        public boolean isVariable() {
+            return kind == Kind.TEMP || kind == Kind.LOCAL;
+        }
+
+        // a CONST or STRING: the same value everywhere
+        public boolean isConstant() {
+            return kind == Kind.CONST || kind == Kind.STRING;
+        }
+
+        public boolean isConst(int value) {
+            return kind == Kind.CONST && this.value == value;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Operand)) return false;
+            Operand other = (Operand) o;
+            // locals are told apart by offset: names are reused in scopes
+            return kind == other.kind && value == other.value
+                    && (kind == Kind.LOCAL || Objects.equals(name, other.name));
+        }
+
+        public int hashCode() {
+            return 31 * (31 * kind.hashCode() + value)
+                    + (kind == Kind.LOCAL || name == null ? 0 : name.hashCode());
+        }
+
+        public String toString() {
+            switch (kind) {
+                case TEMP: return "t" + value;
+                case LOCAL: return name + "@" + value;
+                case CONST: return String.valueOf(value);
+                default: return name;
+            }
+        }
+    }
+
+    // **********************************************************************
+    // Instr
+    // **********************************************************************
+    public static final class Instr {
+        public Op op;
+        public Operand dst; // null if none
+        public Operand a, b; // null if none
+        public String function; // label of the function a CALL calls
+        public Operand[] args; // of a CALL
+        // an ADD or MUL that wraps around on overflow (addu, mul) rather
+        // than trapping: made by StrengthReduction, whose values may
+        // overflow where the program's would not
+        public boolean wraps;
+
+        public Instr(Op op, Operand dst, Operand a, Operand b) {
+            this.op = op;
+            this.dst = dst;
+            this.a = a;
+            this.b = b;
+        }
+
+        public static Instr call(Operand dst, String function, Operand[] args) {
+            Instr instr = new Instr(Op.CALL, dst, null, null);
+            instr.function = function;
+            instr.args = args;
+            return instr;
+        }
+
+        public Instr copy() {
+            Instr copy = new Instr(op, dst, a, b);
+            copy.function = function;
+            copy.args = args == null ? null : args.clone();
+            copy.wraps = wraps;
+            return copy;
+        }
+
+        // the operands read, in order
+        public List<Operand> uses() {
+            List<Operand> uses = new ArrayList<Operand>(2);
+            if (a != null) uses.add(a);
+            if (b != null) uses.add(b);
+            if (args != null) uses.addAll(Arrays.asList(args));
+            return uses;
+        }
+
+        // replace each operand read by its value in map, if it has one,
+        // returning whether any was
+        public boolean replaceUses(Map<Operand, Operand> map) {
+            if (map.isEmpty()) return false;
+            boolean replaced = false;
+            if (a != null && map.containsKey(a)) {
+                a = map.get(a);
+                replaced = true;
+            }
+            if (b != null && map.containsKey(b)) {
+                b = map.get(b);
+                replaced = true;
+            }
+            if (args != null) {
+                for (int i = 0; i < args.length; i++) {
+                    if (map.containsKey(args[i])) {
+                        args[i] = map.get(args[i]);
+                        replaced = true;
+                    }
+                }
+            }
+            return replaced;
+        }
+
+        /**
+         * Whether this instruction has to run even if it sets no live
+         * variable, and can not be moved: input and output, calls, stores
+         * to globals, and divisions that may trap. Arithmetic that may trap
+         * on overflow is only kept where it is (canTrap).
+         */
+        public boolean hasSideEffects() {
+            switch (op) {
+                case READ:
+                case WRITE_INT:
+                case WRITE_STRING:
+                case CALL:
+                    return true;
+                case DIV:
+                    return b.kind != Operand.Kind.CONST || b.value == 0
+                            || b.value == -1;
+                default:
+                    return dst != null && dst.kind == Operand.Kind.GLOBAL;
+            }
+        }
+
+        /**
+         * Whether this instruction traps on overflow (add, sub, mulo and neg,
+         * unless it wraps), so that it has to run even if it sets no live
+         * variable, though it can be moved where nothing happens before it
+         */
+        public boolean canTrap() {
+            switch (op) {
+                case ADD:
+                case SUB:
+                case MUL:
+                case NEG:
+                    return !wraps;
+                default:
+                    return false;
+            }
+        }
+
+        public String toString() {
+            String prefix = dst == null ? "" : dst + " = ";
+            switch (op) {
+                case COPY:
+                    return prefix + a;
+                case NEG:
+                case NOT:
+                    return prefix + op.text + a;
+                case READ:
+                    return prefix + "read";
+                case WRITE_INT:
+                case WRITE_STRING:
+                    return "write " + a;
+                case CALL:
+                    StringBuilder call = new StringBuilder(prefix)
+                            .append("call ").append(function).append('(');
+                    for (int i = 0; i < args.length; i++)
+                        call.append(i == 0 ? "" : ", ").append(args[i]);
+                    return call.append(')').toString();
+                default:
+                    return prefix + a + " " + op.text + (wraps ? "~ " : " ") + b;
+            }
+        }
+    }
+
+    // **********************************************************************
+    // Block
+    // **********************************************************************
+    public static final class Block {
+        public static enum End {
+            JUMP, BRANCH, RETURN
+        };
+
+        public final int id;
+        public final List<Instr> instrs = new ArrayList<Instr>();
+
+        // terminator
+        public End end;
+        public Op test; // of a BRANCH
+        public Operand left, right; // of a BRANCH; left is a RETURN's value
+        public Block target, next; // JUMP and BRANCH (true); BRANCH (false)
+
+        // blocks that end in a jump or branch to this one (Function.link)
+        public final List<Block> preds = new ArrayList<Block>();
+
+        Block(int id) {
+            this.id = id;
+        }
+
+        public List<Block> successors() {
+            if (end == End.JUMP) return Collections.singletonList(target);
+            if (end == End.BRANCH)
+                return target == next ? Collections.singletonList(target)
+                        : Arrays.asList(target, next);
+            return Collections.emptyList();
+        }
+
+        // the operands the terminator reads
+        public List<Operand> terminatorUses() {
+            List<Operand> uses = new ArrayList<Operand>(2);
+            if (left != null) uses.add(left);
+            if (right != null) uses.add(right);
+            return uses;
+        }
+
+        public boolean replaceTerminatorUses(Map<Operand, Operand> map) {
+            boolean replaced = false;
+            if (left != null && map.containsKey(left)) {
+                left = map.get(left);
+                replaced = true;
+            }
+            if (right != null && map.containsKey(right)) {
+                right = map.get(right);
+                replaced = true;
+            }
+            return replaced;
+        }
+
+        public void jump(Block target) {
+            end = End.JUMP;
+            this.target = target;
+            next = null;
+            test = null;
+            left = right = null;
+        }
+
+        public String toString() {
+            return "B" + id;
+        }
+    }
+
+    // **********************************************************************
+    // Function
+    // **********************************************************************
+    public static final class Function {
+        public final String name;
+        public final String label; // "main" or _<name>
+        public final int formalSize; // bytes of formals
+        public final int localSize; // bytes of locals
+        public final List<Block> blocks = new ArrayList<Block>(); // entry first
+        private int temps = 0;
+        private int blockCount = 0;
+
+        Function(String name, int formalSize, int localSize) {
+            this.name = name;
+            this.label = (name.equals("main") ? "" : "_") + name;
+            this.formalSize = formalSize;
+            this.localSize = localSize;
+        }
+
+        public boolean isMain() {
+            return name.equals("main");
+        }
+
+        public Operand newTemp() {
+            return Operand.temp(temps++);
+        }
+
+        public Block newBlock() {
+            return new Block(blockCount++);
+        }
+
+        public Block entry() {
+            return blocks.get(0);
+        }
+
+        // whether offset is that of a formal (formals are at 0, -4, ...)
+        public boolean isFormal(int offset) {
+            return offset <= 0 && offset > -formalSize;
+        }
+
+        /**
+         * Set the predecessors of each block, after removing the blocks that
+         * can not be reached from the entry
+         */
+        public void link() {
+            Set<Block> reached = new HashSet<Block>();
+            Deque<Block> work = new ArrayDeque<Block>();
+            work.push(entry());
+            reached.add(entry());
+            while (!work.isEmpty()) {
+                for (Block succ : work.pop().successors()) {
+                    if (reached.add(succ)) work.push(succ);
+                }
+            }
+            blocks.retainAll(reached);
+            for (Block block : blocks)
+                block.preds.clear();
+            for (Block block : blocks) {
+                for (Block succ : block.successors())
+                    succ.preds.add(block);
+            }
+        }
+
+        // number of instructions and terminators
+        public int size() {
+            int n = 0;
+            for (Block block : blocks)
+                n += block.instrs.size() + 1;
+            return n;
+        }
+
+        public String toString() {
+            StringBuilder out = new StringBuilder(label).append(":\n");
+            for (Block block : blocks) {
+                out.append(block).append(":\n");
+                for (Instr instr : block.instrs)
+                    out.append("\t").append(instr).append('\n');
+                switch (block.end) {
+                    case JUMP:
+                        out.append("\tgoto ").append(block.target);
+                        break;
+                    case BRANCH:
+                        out.append("\tif ").append(block.left).append(' ')
+                                .append(block.test.text).append(' ')
+                                .append(block.right).append(" goto ")
+                                .append(block.target).append(" else ")
+                                .append(block.next);
+                        break;
+                    case RETURN:
+                        out.append("\treturn");
+                        if (block.left != null) out.append(' ').append(block.left);
+                        break;
+                }
+                out.append('\n');
+            }
+            return out.toString();
+        }
+    }
+
+    // **********************************************************************
+    // Program
+    // **********************************************************************
+    public static final class Program {
+        public final Map<String, Integer> globals =
+                new LinkedHashMap<String, Integer>(); // label -> size
+        public final Map<String, String> strings =
+                new LinkedHashMap<String, String>(); // literal -> label
+        public final List<Function> functions = new ArrayList<Function>();
+
+        public int size() {
+            int n = 0;
+            for (Function function : functions)
+                n += function.size();
+            return n;
+        }
+
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            for (Function function : functions)
+                out.append(function).append('\n');
+            return out.toString();
+        }
+    }
+
+    // **********************************************************************
+    // Builder
+    // what the lower methods of the AST nodes add code to: the block being
+    // built, of the function being built, of the program
+    // **********************************************************************
+    public static final class Builder {
+        public final Program program = new Program();
+        private Function function;
+        private Block block; // null after a terminator, until the next start
+
+        public void global(String name, int size) {
+            program.globals.put("_" + name, size);
+        }
+
+        public void beginFunction(String name, int formalSize, int localSize) {
+            function = new Function(name, formalSize, localSize);
+            program.functions.add(function);
+            start(function.newBlock());
+        }
+
+        // end the function (returning, if its last statement does not)
+        public void endFunction() {
+            ret(null);
+            function.link();
+            function = null;
+        }
+
+        public Operand temp() {
+            return function.newTemp();
+        }
+
+        public Operand variable(TSym sym, String name) {
+            return sym.isGlobal() ? Operand.global("_" + name)
+                    : Operand.local(name, sym.getOffset());
+        }
+
+        // the address of a string literal, stored once per program
+        public Operand string(String literal) {
+            String label = program.strings.get(literal);
+            if (label == null) {
+                label = G.nextLabel();
+                program.strings.put(literal, label);
+            }
+            return Operand.string(label);
+        }
+
+        public Block newBlock() {
+            return function.newBlock();
+        }
+
+        // continue in block, falling through to it from the current block
+        public void start(Block next) {
+            if (block != null) block.jump(next);
+            function.blocks.add(next);
+            block = next;
+        }
+
+        public void emit(Instr instr) {
+            if (block == null) start(newBlock()); // unreachable code
+            block.instrs.add(instr);
+        }
+
+        public Operand emit(Op op, Operand a, Operand b) {
+            Operand dst = temp();
+            emit(new Instr(op, dst, a, b));
+            return dst;
+        }
+
+        /**
+         * dst = value. A temporary just computed into by the last
+         * instruction is only read here, so that instruction computes into
+         * dst instead
+         */
+        public void assign(Operand dst, Operand value) {
+            if (block != null && value.kind == Operand.Kind.TEMP
+                    && !block.instrs.isEmpty() && dst.isVariable()) {
+                Instr last = block.instrs.get(block.instrs.size() - 1);
+                if (value.equals(last.dst) && !value.equals(dst)) {
+                    last.dst = dst;
+                    return;
+                }
+            }
+            emit(new Instr(Op.COPY, dst, value, null));
+        }
+
+        // value, copied to a temporary if it is a local (which code lowered
+        // after this could assign)
+        public Operand hold(Operand value) {
+            if (value.kind != Operand.Kind.LOCAL) return value;
+            Operand copy = temp();
+            emit(new Instr(Op.COPY, copy, value, null));
+            return copy;
+        }
+
+        public Operand call(String function, Operand[] args, boolean value) {
+            Operand dst = value ? temp() : null;
+            emit(Instr.call(dst, function, args));
+            return dst;
+        }
+
+        public void jump(Block target) {
+            if (block == null) return;
+            block.jump(target);
+            block = null;
+        }
+
+        public void branch(Op test, Operand left, Operand right, Block target,
+                Block next) {
+            if (block == null) return;
+            block.end = Block.End.BRANCH;
+            block.test = test;
+            block.left = left;
+            block.right = right;
+            block.target = target;
+            block.next = next;
+            block = null;
+        }
+
+        public void ret(Operand value) {
+            if (block == null) return;
+            block.end = Block.End.RETURN;
+            block.left = value;
+            block = null;
+        }
+    }
+
+    // **********************************************************************
+    // Liveness
+    // the variables live on entry to and exit from each block of a
+    // function, by iterating use/def sets backwards to a fixed point
+    // **********************************************************************
+    public static final class Liveness {
+        private final Map<Operand, Integer> index = new HashMap<Operand, Integer>();
+        private final List<Operand> variables = new ArrayList<Operand>();
+        private final Map<Block, BitSet> in = new HashMap<Block, BitSet>();
+        private final Map<Block, BitSet> out = new HashMap<Block, BitSet>();
+
+        public Liveness(Function function) {
+            Map<Block, BitSet> uses = new HashMap<Block, BitSet>();
+            Map<Block, BitSet> defs = new HashMap<Block, BitSet>();
+            for (Block block : function.blocks) {
+                BitSet use = new BitSet(), def = new BitSet();
+                for (Instr instr : block.instrs) {
+                    for (Operand o : instr.uses())
+                        if (o.isVariable() && !def.get(index(o))) use.set(index(o));
+                    if (instr.dst != null && instr.dst.isVariable())
+                        def.set(index(instr.dst));
+                }
+                for (Operand o : block.terminatorUses())
+                    if (o.isVariable() && !def.get(index(o))) use.set(index(o));
+                uses.put(block, use);
+                defs.put(block, def);
+                in.put(block, new BitSet());
+                out.put(block, new BitSet());
+            }
+
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = function.blocks.size() - 1; i >= 0; i--) {
+                    Block block = function.blocks.get(i);
+                    BitSet liveOut = out.get(block);
+                    for (Block succ : block.successors())
+                        liveOut.or(in.get(succ));
+                    BitSet liveIn = (BitSet) liveOut.clone();
+                    liveIn.andNot(defs.get(block));
+                    liveIn.or(uses.get(block));
+                    if (!liveIn.equals(in.get(block))) {
+                        in.put(block, liveIn);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // the number of variable o (numbering it if it is new)
+        public int index(Operand o) {
+            Integer i = index.get(o);
+            if (i == null) {
+                i = variables.size();
+                index.put(o, i);
+                variables.add(o);
+            }
+            return i;
+        }
+
+        public Operand variable(int index) {
+            return variables.get(index);
+        }
+
+        public int variables() {
+            return variables.size();
+        }
+
+        public BitSet liveIn(Block block) {
+            return in.get(block);
+        }
+
+        // a copy, to be updated walking the block backwards
+        public BitSet liveOut(Block block) {
+            return (BitSet) out.get(block).clone();
+        }
+    }
+
+    // **********************************************************************
+    // Loops
+    // the dominator tree of a function (by iterating immediate dominators
+    // over the blocks in reverse postorder, after Cooper, Harvey and
+    // Kennedy) and its natural loops: for each back edge, from a block to
+    // a block that dominates it (the header), the blocks that reach the
+    // back edge without going through the header. Back edges to the same
+    // header make one loop.
+    // **********************************************************************
+    public static final class Loops {
+        public static final class Loop {
+            public final Block header;
+            public final List<Block> blocks = new ArrayList<Block>(); // in reverse postorder
+            public final List<Block> latches = new ArrayList<Block>(); // sources of back edges
+            private final Set<Block> members = new HashSet<Block>();
+
+            private Loop(Block header) {
+                this.header = header;
+            }
+
+            public boolean contains(Block block) {
+                return members.contains(block);
+            }
+
+            // the blocks of the loop that jump or branch out of it
+            public List<Block> exits() {
+                List<Block> exits = new ArrayList<Block>();
+                for (Block block : blocks) {
+                    for (Block succ : block.successors()) {
+                        if (!contains(succ)) {
+                            exits.add(block);
+                            break;
+                        }
+                    }
+                }
+                return exits;
+            }
+
+            // the blocks outside the loop that it jumps or branches to
+            public Set<Block> exitTargets() {
+                Set<Block> targets = new LinkedHashSet<Block>();
+                for (Block block : blocks) {
+                    for (Block succ : block.successors())
+                        if (!contains(succ)) targets.add(succ);
+                }
+                return targets;
+            }
+        }
+
+        private final Map<Block, Integer> order = new HashMap<Block, Integer>(); // in reverse postorder
+        private final Map<Block, Block> idom = new HashMap<Block, Block>();
+        private final List<Loop> loops = new ArrayList<Loop>();
+
+        // function must be linked (Function.link)
+        public Loops(Function function) {
+            List<Block> blocks = reversePostorder(function.entry());
+            for (int i = 0; i < blocks.size(); i++)
+                order.put(blocks.get(i), i);
+
+            idom.put(function.entry(), function.entry());
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (Block block : blocks) {
+                    if (block == function.entry()) continue;
+                    Block dom = null;
+                    for (Block pred : block.preds) {
+                        if (!idom.containsKey(pred)) continue; // (not yet seen)
+                        dom = dom == null ? pred : intersect(dom, pred);
+                    }
+                    if (dom != idom.get(block)) {
+                        idom.put(block, dom);
+                        changed = true;
+                    }
+                }
+            }
+
+            Map<Block, Loop> byHeader = new LinkedHashMap<Block, Loop>();
+            for (Block block : blocks) {
+                for (Block succ : block.successors()) {
+                    if (!dominates(succ, block)) continue;
+                    Loop loop = byHeader.get(succ);
+                    if (loop == null) byHeader.put(succ, loop = new Loop(succ));
+                    loop.latches.add(block);
+                    loop.members.add(succ);
+                    Deque<Block> work = new ArrayDeque<Block>();
+                    if (loop.members.add(block)) work.push(block);
+                    while (!work.isEmpty()) {
+                        for (Block pred : work.pop().preds)
+                            if (loop.members.add(pred)) work.push(pred);
+                    }
+                }
+            }
+            for (Loop loop : byHeader.values()) {
+                for (Block block : blocks)
+                    if (loop.contains(block)) loop.blocks.add(block);
+                loops.add(loop);
+            }
+            // inner loops (which have fewer blocks) first
+            Collections.sort(loops, new Comparator<Loop>() {
+                public int compare(Loop a, Loop b) {
+                    return a.blocks.size() - b.blocks.size();
+                }
+            });
+        }
+
+        private static List<Block> reversePostorder(Block entry) {
+            List<Block> postorder = new ArrayList<Block>();
+            Set<Block> seen = new HashSet<Block>();
+            Deque<Block> blocks = new ArrayDeque<Block>();
+            Deque<Iterator<Block>> succs = new ArrayDeque<Iterator<Block>>();
+            seen.add(entry);
+            blocks.push(entry);
+            succs.push(entry.successors().iterator());
+            while (!blocks.isEmpty()) {
+                if (succs.peek().hasNext()) {
+                    Block succ = succs.peek().next();
+                    if (seen.add(succ)) {
+                        blocks.push(succ);
+                        succs.push(succ.successors().iterator());
+                    }
+                } else {
+                    postorder.add(blocks.pop());
+                    succs.pop();
+                }
+            }
+            Collections.reverse(postorder);
+            return postorder;
+        }
+
+        // the nearest common dominator of a and b
+        private Block intersect(Block a, Block b) {
+            while (a != b) {
+                while (order.get(a) > order.get(b)) a = idom.get(a);
+                while (order.get(b) > order.get(a)) b = idom.get(b);
+            }
+            return a;
+        }
+
+        // the natural loops, inner loops first
+        public List<Loop> loops() {
+            return loops;
+        }
+
+        // whether every path from the entry to b goes through a
+        public boolean dominates(Block a, Block b) {
+            int number = order.get(a);
+            while (order.get(b) > number) b = idom.get(b);
+            return a == b;
+        }
+    }
+}
@@ -0,0 +1,454 @@
+import java.util.*;
+
+// **********************************************************************
+// The TacGen class translates a program of three-address code (Tac) to
+// MIPS, through G, for P6 -O2.
+//
+// Each function keeps the activation record of FnDeclNode.codeGen (formals
+// pushed by the caller, return address, control link, locals), with slots
+// below the locals for the variables that do not get a register, and below
+// those for the saved registers.
+//
+// Variables (temporaries and locals) get registers by linear scan over
+// live intervals: the blocks are laid out in order, and a variable's
+// interval runs from the first to the last position at which it is live
+// (each instruction reading its operands at one position and writing its
+// result at the next, so that the result can take an operand's register).
+// Intervals that cross a call get a saved register ($s0-$s7), which each
+// function (other than main) saves and restores if it uses it; the others
+// get a temporary register ($t0-$t9) first. When none is free, the interval
+// ending last is spilled: a local to its own slot, a temporary to a new one.
+// $v1 and $a1 hold the operands that are not in registers.
+// **********************************************************************
+
+public class TacGen {
+    private static final String[] SAVED = { "$s0", "$s1", "$s2", "$s3",
+            "$s4", "$s5", "$s6", "$s7" };
+    private static final String SCRATCH = G.V1; // first operand or result
+    private static final String SCRATCH2 = "$a1"; // second operand
+
+    private final Tac.Function function;
+
+    // variable -> register, or -> $fp offset if it has none
+    private final Map<Tac.Operand, String> registers =
+            new HashMap<Tac.Operand, String>();
+    private final Map<Tac.Operand, Integer> slots =
+            new HashMap<Tac.Operand, Integer>();
+
+    // saved registers used (saved at the bottom of the frame, in order)
+    private final SortedSet<String> saved = new TreeSet<String>();
+
+    // bytes of the frame below the control link
+    private int frameSize;
+
+    // labels of the blocks jumped or branched to
+    private final Map<Tac.Block, String> labels =
+            new HashMap<Tac.Block, String>();
+    private String epilogueLabel;
+
+    private TacGen(Tac.Function function) {
+        this.function = function;
+    }
+
+    /**
+     * Generate the code of program: its globals, its string literals, and
+     * its functions
+     */
+    public static void generate(Tac.Program program) {
+        for (Map.Entry<String, Integer> global : program.globals.entrySet()) {
+            G.generate(".data");
+            G.generateWithComment(".align 2", "align on a word boundary");
+            G.generateLabeled(global.getKey(), ".space ",
+                    String.valueOf(global.getValue()), null);
+        }
+        for (Map.Entry<String, String> string : program.strings.entrySet()) {
+            G.generate(".data");
+            G.generateLabeled(string.getValue(), ".asciiz ", string.getKey(),
+                    "string");
+        }
+        for (Tac.Function function : program.functions)
+            new TacGen(function).generate();
+    }
+
+    // **********************************************************************
+    // register allocation
+    // **********************************************************************
+
+    private void allocate(Tac.Liveness liveness) {
+        // intervals (first and last position) and positions of calls, each
+        // block taking two positions per instruction (uses, def) and one for
+        // its terminator
+        final Map<Tac.Operand, int[]> intervals =
+                new LinkedHashMap<Tac.Operand, int[]>();
+        TreeSet<Integer> calls = new TreeSet<Integer>();
+        int position = 0;
+        for (Tac.Block block : function.blocks) {
+            int first = position, last = position + 2 * block.instrs.size();
+            position = last + 1;
+            BitSet liveOut = liveness.liveOut(block);
+            for (int i = liveOut.nextSetBit(0); i >= 0;
+                    i = liveOut.nextSetBit(i + 1))
+                extend(intervals, liveness.variable(i), last);
+            for (Tac.Operand o : block.terminatorUses())
+                extend(intervals, o, last);
+            for (int i = 0; i < block.instrs.size(); i++) {
+                Tac.Instr instr = block.instrs.get(i);
+                int uses = first + 2 * i;
+                if (instr.op == Tac.Op.CALL) calls.add(uses);
+                for (Tac.Operand o : instr.uses())
+                    extend(intervals, o, uses);
+                extend(intervals, instr.dst, uses + 1);
+            }
+            BitSet liveIn = liveness.liveIn(block);
+            for (int i = liveIn.nextSetBit(0); i >= 0;
+                    i = liveIn.nextSetBit(i + 1))
+                extend(intervals, liveness.variable(i), first);
+        }
+
+        List<Tac.Operand> order = new ArrayList<Tac.Operand>(intervals.keySet());
+        order.sort((a, b) -> intervals.get(a)[0] - intervals.get(b)[0]);
+        List<Tac.Operand> active = new ArrayList<Tac.Operand>(); // by end
+        TreeSet<String> freeTemps = new TreeSet<String>(Arrays.asList(G.REGS));
+        TreeSet<String> freeSaved = new TreeSet<String>(Arrays.asList(SAVED));
+        int spills = 0;
+        for (Tac.Operand v : order) {
+            int[] interval = intervals.get(v);
+
+            // free the registers of the intervals that have ended
+            while (!active.isEmpty()
+                    && intervals.get(active.get(0))[1] < interval[0]) {
+                String r = registers.get(active.remove(0));
+                (r.startsWith("$s") ? freeSaved : freeTemps).add(r);
+            }
+
+            // live before and after a call (not just into its arguments or
+            // out of its result, defined after it): a call where the interval
+            // begins counts, as the first instruction of a block the variable
+            // is live into
+            Integer call = calls.ceiling(interval[0]);
+            boolean crossesCall = call != null && call + 1 < interval[1];
+            String r = crossesCall || freeTemps.isEmpty()
+                    ? freeSaved.pollFirst() : freeTemps.pollFirst();
+            Tac.Operand spilled = v;
+            if (r == null) {
+                // take the register of the interval ending last, if it ends
+                // after this one
+                for (int i = active.size() - 1; i >= 0; i--) {
+                    Tac.Operand other = active.get(i);
+                    if (intervals.get(other)[1] <= interval[1]) break;
+                    if (crossesCall && !registers.get(other).startsWith("$s"))
+                        continue;
+                    r = registers.remove(other);
+                    active.remove(i);
+                    spilled = other;
+                    break;
+                }
+            }
+            if (r != null) {
+                registers.put(v, r);
+                int i = active.size();
+                while (i > 0 && intervals.get(active.get(i - 1))[1] > interval[1])
+                    i--;
+                active.add(i, v);
+                if (r.startsWith("$s")) saved.add(r);
+            }
+            if (r == null || spilled != v) {
+                slots.put(spilled, spilled.kind == Tac.Operand.Kind.LOCAL
+                        ? spilled.value : localsEnd() - 4 * spills++);
+            }
+        }
+        if (function.isMain()) saved.clear(); // nothing to restore them for
+        frameSize = function.localSize + 4 * spills + 4 * saved.size();
+    }
+
+    private static void extend(Map<Tac.Operand, int[]> intervals,
+            Tac.Operand o, int position) {
+        if (o == null || !o.isVariable()) return;
+        int[] interval = intervals.get(o);
+        if (interval == null)
+            intervals.put(o, new int[] {position, position});
+        else {
+            interval[0] = Math.min(interval[0], position);
+            interval[1] = Math.max(interval[1], position);
+        }
+    }
+
+    // $fp offset of the first slot below the locals
+    private int localsEnd() {
+        return -(function.formalSize + 8 + function.localSize);
+    }
+
+    // **********************************************************************
+    // generate
+    // **********************************************************************
+
+    private void generate() {
+        Tac.Liveness liveness = new Tac.Liveness(function);
+        allocate(liveness);
+        findLabels();
+        epilogueLabel = G.nextLabel();
+
+        // preamble
+        G.sectionComment("⨍\t" + function.name, G.Comment.BLOCK);
+        {
+            G.generate(".text");
+            if (function.isMain()) G.generate(".globl main");
+            G.generateLabeled(function.label, "", null);
+        }
+
+        // entry (AR), saving the saved registers used, and loading the
+        // locals (formals) kept in registers
+        G.sectionComment("Entry", G.Comment.LINE);
+        {
+            G.genPush(G.RA);
+            G.genPush(G.FP);
+            G.generate("addu", G.FP, G.SP, function.formalSize + 8);
+            G.generate("subu", G.SP, G.SP, frameSize);
+            int offset = savedOffset();
+            for (String r : saved) {
+                G.generateIndexed("sw", r, G.FP, offset, "save");
+                offset -= 4;
+            }
+            BitSet liveIn = liveness.liveIn(function.entry());
+            for (int i = liveIn.nextSetBit(0); i >= 0;
+                    i = liveIn.nextSetBit(i + 1)) {
+                Tac.Operand v = liveness.variable(i);
+                if (v.kind == Tac.Operand.Kind.LOCAL && registers.containsKey(v))
+                    G.generateIndexed("lw", registers.get(v), G.FP, v.value);
+            }
+        }
+
+        G.sectionComment("Body", G.Comment.LINE);
+        for (int i = 0; i < function.blocks.size(); i++) {
+            Tac.Block block = function.blocks.get(i);
+            Tac.Block following = i + 1 < function.blocks.size()
+                    ? function.blocks.get(i + 1) : null;
+            if (labels.containsKey(block)) G.genLabel(labels.get(block));
+            for (Tac.Instr instr : block.instrs)
+                generate(instr);
+            generateEnd(block, following);
+        }
+
+        // exit (restore saved registers and stack & return to caller)
+        G.sectionComment("Exit", G.Comment.LINE);
+        {
+            G.generateLabeled(epilogueLabel, "", "epilogue");
+            int offset = savedOffset();
+            for (String r : saved) {
+                G.generateIndexed("lw", r, G.FP, offset, "restore");
+                offset -= 4;
+            }
+            G.generateIndexed("lw", G.RA, G.FP, -function.formalSize);
+            G.generate("move", G.T0, G.FP);
+            G.generateIndexed("lw", G.FP, G.FP, -(function.formalSize + 4));
+            G.generate("move", G.SP, G.T0);
+            if (function.isMain()) { // required for SPIM
+                G.generateWithComment("li", G.V0, 10, "exit");
+                G.generate("syscall");
+            } else {
+                G.generate("jr", G.RA);
+            }
+        }
+    }
+
+    // $fp offset of the first saved register
+    private int savedOffset() {
+        return -(function.formalSize + 8 + frameSize - 4 * saved.size());
+    }
+
+    // label each block that is jumped or branched to, rather than reached
+    // by falling through from the block laid out before it
+    private void findLabels() {
+        for (int i = 0; i < function.blocks.size(); i++) {
+            Tac.Block block = function.blocks.get(i);
+            Tac.Block following = i + 1 < function.blocks.size()
+                    ? function.blocks.get(i + 1) : null;
+            if (block.end == Tac.Block.End.RETURN) continue;
+            if (block.end == Tac.Block.End.JUMP) {
+                if (block.target != following) label(block.target);
+            } else if (block.target == following) { // (see generateEnd)
+                label(block.next);
+            } else {
+                label(block.target);
+                if (block.next != following) label(block.next);
+            }
+        }
+    }
+
+    private String label(Tac.Block block) {
+        String label = labels.get(block);
+        if (label == null) labels.put(block, label = G.nextLabel());
+        return label;
+    }
+
+    private void generate(Tac.Instr instr) {
+        Tac.Operand dst = instr.dst;
+        String d;
+        switch (instr.op) {
+            case COPY:
+                if (dst.kind == Tac.Operand.Kind.GLOBAL) {
+                    G.generate("sw", use(instr.a, SCRATCH), dst.name);
+                    return;
+                }
+                d = def(dst);
+                if (instr.a.kind == Tac.Operand.Kind.CONST) {
+                    G.generate("li", d, instr.a.value);
+                } else {
+                    String a = use(instr.a, d);
+                    if (!a.equals(d)) G.generate("move", d, a);
+                }
+                store(dst, d);
+                return;
+            case NEG:
+                d = def(dst);
+                G.generate("sub", d, G.ZERO, use(instr.a, SCRATCH));
+                store(dst, d);
+                return;
+            case NOT:
+                d = def(dst);
+                G.generate("xori", d, use(instr.a, SCRATCH), 1);
+                store(dst, d);
+                return;
+            case READ:
+                G.generateWithComment("li", G.V0, 5, "read integer");
+                G.generate("syscall");
+                if (dst == null) return;
+                G.generate("move", def(dst), G.V0);
+                store(dst, def(dst));
+                return;
+            case WRITE_INT:
+            case WRITE_STRING:
+                String a = use(instr.a, G.A0);
+                if (!a.equals(G.A0)) G.generate("move", G.A0, a);
+                G.generate("li", G.V0, instr.op == Tac.Op.WRITE_INT ? 1 : 4);
+                G.generateWithComment("syscall", "write");
+                return;
+            case CALL:
+                for (Tac.Operand arg : instr.args)
+                    G.genPush(use(arg, SCRATCH));
+                G.generateWithComment("jal", instr.function, "call");
+                if (dst == null) return;
+                G.generate("move", def(dst), G.V0);
+                store(dst, def(dst));
+                return;
+            default:
+                generateBinary(instr);
+        }
+    }
+
+    // dst = a op b, with b (or a, if op allows swapping them) as an
+    // immediate if it is a constant
+    private void generateBinary(Tac.Instr instr) {
+        Tac.Op op = instr.op;
+        Tac.Operand a = instr.a, b = instr.b;
+        if (a.kind == Tac.Operand.Kind.CONST && b.kind != Tac.Operand.Kind.CONST
+                && (op.isCommutative() || op.isComparison())) {
+            a = instr.b;
+            b = instr.a;
+            op = op.swapped();
+        }
+        String ra = use(a, SCRATCH);
+        String d = def(instr.dst);
+        if (b.kind == Tac.Operand.Kind.CONST && b.value != 0)
+            G.generate(opcode(op, instr.wraps), d, ra, b.value);
+        else
+            G.generate(opcode(op, instr.wraps), d, ra, use(b, SCRATCH2));
+        store(instr.dst, d);
+    }
+
+    private void generateEnd(Tac.Block block, Tac.Block following) {
+        switch (block.end) {
+            case JUMP:
+                if (block.target != following)
+                    G.generate("b", labels.get(block.target));
+                return;
+            case BRANCH:
+                Tac.Op test = block.test;
+                Tac.Operand left = block.left, right = block.right;
+                Tac.Block target = block.target, next = block.next;
+                if (target == following) { // fall through when true instead
+                    test = test.negated();
+                    target = block.next;
+                    next = block.target;
+                }
+                if (left.kind == Tac.Operand.Kind.CONST
+                        && right.kind != Tac.Operand.Kind.CONST) {
+                    left = block.right;
+                    right = block.left;
+                    test = test.swapped();
+                }
+                String l = use(left, SCRATCH);
+                String r = right.kind == Tac.Operand.Kind.CONST
+                        && right.value != 0 ? String.valueOf(right.value)
+                                : use(right, SCRATCH2);
+                G.generate(branch(test), l, r, labels.get(target));
+                if (next != following) G.generate("b", labels.get(next));
+                return;
+            case RETURN:
+                if (block.left != null) {
+                    String value = use(block.left, G.V0);
+                    if (!value.equals(G.V0)) G.generate("move", G.V0, value);
+                }
+                if (following != null)
+                    G.generateWithComment("b", epilogueLabel, "jump: epilogue");
+                return;
+        }
+    }
+
+    // **********************************************************************
+    // operands
+    // **********************************************************************
+
+    // the register holding o, loaded into scratch if it is not in one
+    private String use(Tac.Operand o, String scratch) {
+        switch (o.kind) {
+            case CONST:
+                if (o.value == 0) return G.ZERO;
+                G.generate("li", scratch, o.value);
+                return scratch;
+            case STRING:
+                G.generate("la", scratch, o.name);
+                return scratch;
+            case GLOBAL:
+                G.generate("lw", scratch, o.name);
+                return scratch;
+            default:
+                String r = registers.get(o);
+                if (r != null) return r;
+                G.generateIndexed("lw", scratch, G.FP, slots.get(o));
+                return scratch;
+        }
+    }
+
+    // the register to compute dst in (then stored by store)
+    private String def(Tac.Operand dst) {
+        String r = registers.get(dst);
+        return r != null ? r : SCRATCH;
+    }
+
+    private void store(Tac.Operand dst, String r) {
+        if (!registers.containsKey(dst))
+            G.generateIndexed("sw", r, G.FP, slots.get(dst));
+    }
+
+    private static String opcode(Tac.Op op, boolean wraps) {
+        switch (op) {
+            case ADD: return wraps ? "addu" : "add";
+            case SUB: return "sub";
+            case MUL: return wraps ? "mul" : "mulo";
+            case DIV: return "div";
+            default: return op.name().toLowerCase(); // seq ... sge
+        }
+    }
+
+    private static String branch(Tac.Op test) {
+        switch (test) {
+            case SEQ: return "beq";
+            case SNE: return "bne";
+            case SLT: return "blt";
+            case SGT: return "bgt";
+            case SLE: return "ble";
+            default: return "bge";
+        }
+    }
+}
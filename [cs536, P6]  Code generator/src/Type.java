@@ -11,44 +11,53 @@ abstract public class Type {
     }
 
     /**
-     * every subclass must provide a toString method and an equals method
+     * every subclass must provide a toString method
      */
     abstract public String toString();
-    abstract public boolean equals(Type t);
 
     /**
-     * default methods for "isXXXType"
+     * types are canonical: each subclass but StructType has a single INSTANCE,
+     * and StructType.of interns struct types by name in each compilation, so
+     * two types of the same compilation are equal exactly when they are the
+     * same object, but for struct types (see StructType.equals)
+     */
+    public boolean equals(Type t) {
+        return this == t;
+    }
+
+    /**
+     * "isXXXType" methods, by identity with the canonical instances
      */
     public boolean isErrorType() {
-        return false;
+        return this == ErrorType.INSTANCE;
     }
 
     public boolean isIntType() {
-        return false;
+        return this == IntType.INSTANCE;
     }
 
     public boolean isBoolType() {
-        return false;
+        return this == BoolType.INSTANCE;
     }
 
     public boolean isVoidType() {
-        return false;
+        return this == VoidType.INSTANCE;
     }
     
     public boolean isStringType() {
-        return false;
+        return this == StringType.INSTANCE;
     }
 
     public boolean isFnType() {
-        return false;
+        return this == FnType.INSTANCE;
     }
 
     public boolean isStructType() {
-        return false;
+        return this instanceof StructType;
     }
     
     public boolean isStructDefType() {
-        return false;
+        return this == StructDefType.INSTANCE;
     }
 }
 
@@ -56,13 +65,9 @@ abstract public class Type {
 // ErrorType
 // **********************************************************************
 class ErrorType extends Type {
+    static final ErrorType INSTANCE = new ErrorType();
 
-    public boolean isErrorType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isErrorType();
+    private ErrorType() {
     }
 
     public String toString() {
@@ -74,13 +79,9 @@ class ErrorType extends Type {
 // IntType
 // **********************************************************************
 class IntType extends Type {
+    static final IntType INSTANCE = new IntType();
 
-    public boolean isIntType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isIntType();
+    private IntType() {
     }
 
     public String toString() {
@@ -92,13 +93,9 @@ class IntType extends Type {
 // BoolType
 // **********************************************************************
 class BoolType extends Type {
+    static final BoolType INSTANCE = new BoolType();
 
-    public boolean isBoolType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isBoolType();
+    private BoolType() {
     }
 
     public String toString() {
@@ -110,13 +107,9 @@ class BoolType extends Type {
 // VoidType
 // **********************************************************************
 class VoidType extends Type {
+    static final VoidType INSTANCE = new VoidType();
 
-    public boolean isVoidType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isVoidType();
+    private VoidType() {
     }
 
     public String toString() {
@@ -128,13 +121,9 @@ class VoidType extends Type {
 // StringType
 // **********************************************************************
 class StringType extends Type {
+    static final StringType INSTANCE = new StringType();
 
-    public boolean isStringType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isStringType();
+    private StringType() {
     }
 
     public String toString() {
@@ -146,13 +135,9 @@ class StringType extends Type {
 // FnType
 // **********************************************************************
 class FnType extends Type {
+    static final FnType INSTANCE = new FnType();
 
-    public boolean isFnType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isFnType();
+    private FnType() {
     }
 
     public String toString() {
@@ -164,22 +149,30 @@ class FnType extends Type {
 // StructType
 // **********************************************************************
 class StructType extends Type {
-    private IdNode myId;
+    private String myName;
     
-    public StructType(IdNode id) {
-        myId = id;
+    private StructType(String name) {
+        myName = name;
     }
-    
-    public boolean isStructType() {
-        return true;
+
+    /**
+     * the struct type named by id, in the current compilation
+     */
+    public static StructType of(IdNode id) {
+        return Compilation.current().structTypes.computeIfAbsent(id.name(),
+                StructType::new);
     }
 
+    /**
+     * all struct types are equal, whichever struct they name: a struct
+     * variable is only ever an error as an operand, and is reported as such
+     */
     public boolean equals(Type t) {
         return t.isStructType();
     }
 
     public String toString() {
-        return myId.name();
+        return myName;
     }
 }
 
@@ -187,13 +180,9 @@ class StructType extends Type {
 // StructDefType
 // **********************************************************************
 class StructDefType extends Type {
+    static final StructDefType INSTANCE = new StructDefType();
 
-    public boolean isStructDefType() {
-        return true;
-    }
-
-    public boolean equals(Type t) {
-        return t.isStructDefType();
+    private StructDefType() {
     }
 
     public String toString() {
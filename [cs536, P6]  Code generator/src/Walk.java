@@ -0,0 +1,141 @@
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Explicit-stack traversal of the tree, for the phases over it (name
+ * analysis, type checking, folding, lowering, code generation and
+ * unparsing, on the AST or on the Arena), so that deeply nested statements
+ * and expressions do not overflow the Java stack.
+ *
+ * A node's phase method does not call the same phase on its kids: it
+ * schedules each call, and the rest of its own work, as steps (then). When
+ * a step returns, the steps it scheduled run, in the order it scheduled
+ * them, each followed by the steps it schedules in turn, before the steps
+ * scheduled earlier; that is, in the order of the recursive calls, but from
+ * the loop of run. What a call returned (the type of an expression, its
+ * folded replacement, the operand holding its value) is passed on a stack
+ * of values instead: a step pushes its result, and a later step of the
+ * caller pops it.
+ *
+ * Each Compilation has its own walk, used from the thread compiling it.
+ * Walks may nest (run from a step), for a bounded part of the tree at a
+ * time.
+ *
+ * The steps are lambdas, allocated as they are scheduled: on programs that
+ * are not deep, the phases over the AST take about 20% longer than they
+ * did as recursive calls (DeepBench's shallow program: -O0 542 -> 659 ms,
+ * default 412 -> 491 ms, -O2 750 -> 933 ms), the price of not depending on
+ * the size of the Java stack. Only P6 walks its tree this way: the P4 and
+ * P5 trees (Traverser, unparse) still recurse.
+ */
+public class Walk {
+    // steps scheduled, the next to run on top
+    private Runnable[] steps = new Runnable[64];
+    private int stepCount = 0;
+
+    // values passed from steps to later steps
+    private Object[] values = new Object[16];
+    private int valueCount = 0;
+
+    // number of runs in progress
+    private int depth = 0;
+
+    /**
+     * @return the walk of the compilation current on this thread
+     */
+    public static Walk current() {
+        return Compilation.current().walk;
+    }
+
+    /**
+     * Run step, and the steps it schedules, on this thread's walk
+     *
+     * @param step the first step
+     */
+    public static void run(Runnable step) {
+        current().runSteps(step);
+    }
+
+    /**
+     * Schedule step, to run after the step running (and after the steps it
+     * scheduled before)
+     *
+     * @param step the step
+     */
+    public static void then(Runnable step) {
+        current().schedule(step);
+    }
+
+    /**
+     * Schedule a step for each of items, in order
+     *
+     * @param items the items
+     * @param step  the step to run with each of them
+     */
+    public static <T> void each(Iterable<T> items, Consumer<? super T> step) {
+        Walk walk = current();
+        for (T item : items)
+            walk.schedule(() -> step.accept(item));
+    }
+
+    /**
+     * Pass value to a later step
+     */
+    public static void push(Object value) {
+        Walk walk = current();
+        if (walk.valueCount == walk.values.length)
+            walk.values = Arrays.copyOf(walk.values, 2 * walk.values.length);
+        walk.values[walk.valueCount++] = value;
+    }
+
+    /**
+     * @return the last value pushed, removed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T pop() {
+        Walk walk = current();
+        if (walk.valueCount == 0)
+            throw new IllegalStateException("no value to pop");
+        T value = (T) walk.values[--walk.valueCount];
+        walk.values[walk.valueCount] = null;
+        return value;
+    }
+
+    private void schedule(Runnable step) {
+        if (depth == 0)
+            throw new IllegalStateException("step scheduled outside Walk.run");
+        if (stepCount == steps.length)
+            steps = Arrays.copyOf(steps, 2 * steps.length);
+        steps[stepCount++] = step;
+    }
+
+    private void runSteps(Runnable first) {
+        int base = stepCount, valueBase = valueCount;
+        boolean done = false;
+        depth++;
+        try {
+            schedule(first);
+            while (stepCount > base) {
+                Runnable step = steps[--stepCount];
+                steps[stepCount] = null;
+                int scheduled = stepCount;
+                step.run();
+                // the steps scheduled by step: first scheduled on top
+                for (int i = scheduled, j = stepCount - 1; i < j; i++, j--) {
+                    Runnable swap = steps[i];
+                    steps[i] = steps[j];
+                    steps[j] = swap;
+                }
+            }
+            done = true;
+        } finally {
+            if (!done) { // after an exception
+                Arrays.fill(steps, base, stepCount, null);
+                stepCount = base;
+                Arrays.fill(values, valueBase, valueCount, null);
+                valueCount = valueBase;
+            }
+            depth--;
+        }
+    }
+}
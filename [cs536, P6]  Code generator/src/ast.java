@@ -100,12 +100,19 @@ import java.util.*;
 // AndNode, OrNode, EqualsNode, NotEqualsNode,
 // LessNode, GreaterNode, LessEqNode, GreaterEqNode
 //
+// The phases (nameAnalysis, typeCheck, fold, lower, codeGen, unparse) do
+// not call themselves on the kids of a node: they schedule those calls,
+// and the rest of their work, as steps of the Walk (Walk.then), and pass
+// what they compute (types, folded expressions, operands) on its stack of
+// values (Walk.push, Walk.pop), so the depth of the tree is not limited by
+// the Java stack. ProgramNode runs each phase (Walk.run).
+//
 // **********************************************************************
 
 // for Statement AST nodes with variable declarations
 abstract interface Declaration {
-    // get list of all declarations recursively
-    abstract List<DeclNode> getDeclarationList();
+    // add all declarations to l, those of nested statements in later steps
+    abstract void addDeclarations(List<DeclNode> l);
 }
 
 
@@ -117,8 +124,8 @@ abstract interface CodeGeneration {
 
 // used to retrieve nested statements
 abstract interface Statement {
-    // get list of all statements recursively
-    abstract List<StmtNode> getStatementList();
+    // add all statements to l, those of nested statements in later steps
+    abstract void addStatements(List<StmtNode> l);
 }
 
 
@@ -133,6 +140,12 @@ abstract interface Condition {
 
 
 abstract class ASTnode {
+    // count the node in the compilation's metrics, if they are collected
+    protected ASTnode() {
+        Metrics metrics = Compilation.current().metrics;
+        if (metrics != null) metrics.countNode(getClass());
+    }
+
     // every subclass must provide an unparse operation
     abstract public void unparse(PrintWriter p, int indent);
 
@@ -161,7 +174,10 @@ class ProgramNode extends ASTnode implements CodeGeneration {
      */
     public void nameAnalysis() {
         SymTable symTab = new SymTable();
-        myDeclList.nameAnalysis(symTab);
+        Walk.run(() -> myDeclList.nameAnalysis(symTab));
+
+        Metrics metrics = Compilation.current().metrics;
+        if (metrics != null) metrics.scopeDepth(symTab.peakDepth());
 
         // augment with scope acccess field (global / local)
         myDeclList.setAccessScope(TSym.AccessScope.GLOBAL);
@@ -182,16 +198,34 @@ class ProgramNode extends ASTnode implements CodeGeneration {
      * typeCheck
      */
     public void typeCheck() {
-        myDeclList.typeCheck();
+        Walk.run(myDeclList::typeCheck);
+    }
+
+    /**
+     * fold Constant folding and propagation, function by function (after
+     * typeCheck, so all expressions are well typed)
+     */
+    public void fold() {
+        Walk.run(myDeclList::fold);
+    }
+
+    /**
+     * lower Translate the program to three-address code, for the middle end
+     * (after typeCheck and fold)
+     */
+    public Tac.Program lower() {
+        Tac.Builder b = new Tac.Builder();
+        Walk.run(() -> myDeclList.lower(b));
+        return b.program;
     }
 
     public void unparse(PrintWriter p, int indent) {
-        myDeclList.unparse(p, indent);
+        Walk.run(() -> myDeclList.unparse(p, indent));
     }
 
     public void codeGen() {
         if (myDeclList == null) return;
-        myDeclList.codeGen();
+        Walk.run(myDeclList::codeGen);
     }
 
     // 1 kid
@@ -226,9 +260,9 @@ class DeclListNode extends ASTnode implements CodeGeneration {
     public void nameAnalysis(SymTable symTab, SymTable globalTab) {
         for (DeclNode node : myDecls) {
             if (node instanceof VarDeclNode) {
-                ((VarDeclNode) node).nameAnalysis(symTab, globalTab);
+                Walk.then(() -> ((VarDeclNode) node).nameAnalysis(symTab, globalTab));
             } else {
-                node.nameAnalysis(symTab);
+                Walk.then(() -> node.nameAnalysis(symTab));
             }
         }
     }
@@ -237,8 +271,27 @@ class DeclListNode extends ASTnode implements CodeGeneration {
      * typeCheck
      */
     public void typeCheck() {
+        Walk.each(myDecls, DeclNode::typeCheck);
+    }
+
+    /**
+     * fold
+     */
+    public void fold() {
         for (DeclNode node : myDecls) {
-            node.typeCheck();
+            if (node instanceof FnDeclNode) Walk.then(((FnDeclNode) node)::fold);
+        }
+    }
+
+    /**
+     * lower Globals and functions (struct declarations have no code)
+     */
+    public void lower(Tac.Builder b) {
+        for (DeclNode node : myDecls) {
+            if (node instanceof VarDeclNode)
+                Walk.then(() -> ((VarDeclNode) node).lower(b));
+            else if (node instanceof FnDeclNode)
+                Walk.then(() -> ((FnDeclNode) node).lower(b));
         }
     }
 
@@ -246,7 +299,8 @@ class DeclListNode extends ASTnode implements CodeGeneration {
         Iterator it = myDecls.iterator();
         try {
             while (it.hasNext()) {
-                ((DeclNode) it.next()).unparse(p, indent);
+                DeclNode node = (DeclNode) it.next();
+                Walk.then(() -> node.unparse(p, indent));
             }
         } catch (NoSuchElementException ex) {
             System.err.println(
@@ -262,7 +316,7 @@ class DeclListNode extends ASTnode implements CodeGeneration {
             // skip struct
             if (!(node instanceof VarDeclNode) && !(node instanceof FnDeclNode))
                 continue;
-            ((CodeGeneration) node).codeGen();
+            Walk.then(((CodeGeneration) node)::codeGen);
         }
     }
 
@@ -327,42 +381,40 @@ class FnBodyNode extends ASTnode {
      * list - process the statement list
      */
     public void nameAnalysis(SymTable symTab) {
-        myDeclList.nameAnalysis(symTab);
-        myStmtList.nameAnalysis(symTab);
+        Walk.then(() -> myDeclList.nameAnalysis(symTab));
+        Walk.then(() -> myStmtList.nameAnalysis(symTab));
 
         ArrayList<DeclNode> declarationList = new ArrayList<>();
 
         // immediate declarations offset calculation
         declarationList.addAll(myDeclList.myDecls);
         // nested declarations offset calculation
-        for (StmtNode s : myStmtList.myStmts) {
-            if (!(s instanceof Declaration)) continue; // skip non declarations
-            declarationList.addAll(((Declaration) s).getDeclarationList());
-        }
+        Walk.then(() -> myStmtList.addDeclarations(declarationList));
 
         // calculate locals offset
-        for (DeclNode node : declarationList) {
-            if (!(node instanceof VarDeclNode)) continue; // ignore struct
-            TSym s = node.myId.sym(); // local
-            if (s == null) continue;
-
-            s.setOffset(offset);
-            offset -= 4;
-            localCount++;
-        }
+        Walk.then(() -> {
+            for (DeclNode node : declarationList) {
+                if (!(node instanceof VarDeclNode)) continue; // ignore struct
+                TSym s = node.myId.sym(); // local
+                if (s == null) continue;
 
+                s.setOffset(offset);
+                offset -= 4;
+                localCount++;
+            }
+        });
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        myStmtList.typeCheck(retType);
+        Walk.then(() -> myStmtList.typeCheck(retType));
     }
 
     public void unparse(PrintWriter p, int indent) {
-        myDeclList.unparse(p, indent);
-        myStmtList.unparse(p, indent);
+        Walk.then(() -> myDeclList.unparse(p, indent));
+        Walk.then(() -> myStmtList.unparse(p, indent));
     }
 
     // 2 kids
@@ -381,33 +433,65 @@ class StmtListNode extends ASTnode implements CodeGeneration {
      * list.
      */
     public void nameAnalysis(SymTable symTab) {
-        for (StmtNode node : myStmts) {
-            node.nameAnalysis(symTab);
-        }
+        Walk.each(myStmts, node -> node.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        for (StmtNode node : myStmts) {
-            node.typeCheck(retType);
+        Walk.each(myStmts, node -> node.typeCheck(retType));
+    }
+
+    /**
+     * fold Given the constants known before the list, fold each statement,
+     * replacing it by the statements to execute instead
+     */
+    public void fold(Constants consts) {
+        List<StmtNode> stmts = new ArrayList<StmtNode>(myStmts.size());
+        Walk.each(myStmts, node -> node.fold(consts, stmts));
+        Walk.then(() -> myStmts = stmts);
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Walk.each(myStmts, node -> node.lower(b));
+    }
+
+    /**
+     * addDeclarations Add the declarations of the statements (and of the
+     * statements nested in them) to l, in order
+     */
+    public void addDeclarations(List<DeclNode> l) {
+        for (StmtNode s : myStmts) {
+            if (!(s instanceof Declaration)) continue; // skip non declarations
+            Walk.then(() -> ((Declaration) s).addDeclarations(l));
         }
     }
 
-    public void unparse(PrintWriter p, int indent) {
-        Iterator<StmtNode> it = myStmts.iterator();
-        while (it.hasNext()) {
-            it.next().unparse(p, indent);
+    /**
+     * addStatements Add the statements, then those nested in them, to l
+     */
+    public void addStatements(List<StmtNode> l) {
+        l.addAll(myStmts);
+        for (StmtNode s : myStmts) {
+            if (!(s instanceof Statement)) continue; // skip non nesting
+            Walk.then(() -> ((Statement) s).addStatements(l));
         }
     }
 
+    public void unparse(PrintWriter p, int indent) {
+        Walk.each(myStmts, node -> node.unparse(p, indent));
+    }
+
     public void codeGen() {
         if (myStmts == null) return;
 
         for (StmtNode node : myStmts)
             // make sure no nulls
-            if (node != null) node.codeGen();
+            if (node != null) Walk.then(node::codeGen);
     }
 
     // list of kids (StmtNodes)
@@ -428,28 +512,28 @@ class ExpListNode extends ASTnode {
      * nameAnalysis Given a symbol table symTab, process each exp in the list.
      */
     public void nameAnalysis(SymTable symTab) {
-        for (ExpNode node : myExps) {
-            node.nameAnalysis(symTab);
-        }
+        Walk.each(myExps, node -> node.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(List<Type> typeList) {
-        int k = 0;
+        Iterator<Type> formals = typeList.iterator();
         try {
             for (ExpNode node : myExps) {
-                Type actualType = node.typeCheck(); // actual type of arg
-
-                if (!actualType.isErrorType()) { // if this is not an error
-                    Type formalType = typeList.get(k); // get the formal type
-                    if (!formalType.equals(actualType)) {
-                        ErrMsg.fatal(node.lineNum(), node.charNum(),
-                                "Type of actual does not match type of formal");
+                Type formalType = formals.next(); // get the formal type
+                Walk.then(node::typeCheck);
+                Walk.then(() -> {
+                    Type actualType = Walk.pop(); // actual type of arg
+
+                    if (!actualType.isErrorType()) { // if this is not an error
+                        if (!formalType.equals(actualType)) {
+                            ErrMsg.fatal(node.lineNum(), node.charNum(),
+                                    "Type of actual does not match type of formal");
+                        }
                     }
-                }
-                k++;
+                });
             }
         } catch (NoSuchElementException e) {
             System.err.println(
@@ -458,13 +542,54 @@ class ExpListNode extends ASTnode {
         }
     }
 
+    /**
+     * fold Fold each exp in the list, in the order they are evaluated
+     */
+    public void fold(Constants consts) {
+        Walk.each(myExps, node -> node.fold(consts));
+        Walk.then(() -> { // the last one folded on top
+            ListIterator<ExpNode> it = myExps.listIterator(myExps.size());
+            while (it.hasPrevious()) {
+                it.previous();
+                it.set(Walk.pop());
+            }
+        });
+    }
+
+    /**
+     * lower Evaluate the exps in order (pushing the array of their operands).
+     * A local read by one exp is copied first if a later one could assign it
+     */
+    public void lower(Tac.Builder b) {
+        int last = -1; // last exp with side effects
+        for (int k = 0; k < myExps.size(); k++) {
+            if (myExps.get(k).hasSideEffects()) last = k;
+        }
+        int held = last; // values before it are held
+        Tac.Operand[] values = new Tac.Operand[myExps.size()];
+        int k = 0;
+        for (ExpNode node : myExps) {
+            int index = k++;
+            Walk.then(() -> node.lower(b));
+            Walk.then(() -> {
+                Tac.Operand value = Walk.pop();
+                values[index] = index < held ? b.hold(value) : value;
+            });
+        }
+        Walk.then(() -> Walk.push(values));
+    }
+
     public void unparse(PrintWriter p, int indent) {
         Iterator<ExpNode> it = myExps.iterator();
         if (it.hasNext()) { // if there is at least one element
-            it.next().unparse(p, indent);
+            ExpNode first = it.next();
+            Walk.then(() -> first.unparse(p, indent));
             while (it.hasNext()) { // print the rest of the list
-                p.print(", ");
-                it.next().unparse(p, indent);
+                ExpNode node = it.next();
+                Walk.then(() -> {
+                    p.print(", ");
+                    node.unparse(p, indent);
+                });
             }
         }
     }
@@ -472,9 +597,16 @@ class ExpListNode extends ASTnode {
     public void codeGen() {
         if (myExps == null) return;
 
-        for (ExpNode node : myExps)
+        for (ExpNode node : myExps) {
             // make sure no nulls
-            if (node != null) node.codeGen();
+            if (node == null) continue;
+            if (G.registers()) {
+                Walk.then(() -> node.genReg(0));
+                Walk.then(() -> G.genPush(G.REGS[0]));
+            } else {
+                Walk.then(node::codeGen);
+            }
+        }
     }
 
     // list of kids (ExpNodes)
@@ -600,6 +732,13 @@ class VarDeclNode extends DeclNode implements CodeGeneration {
         return sym;
     }
 
+    /**
+     * lower A global's storage (locals have their place in the frame)
+     */
+    public void lower(Tac.Builder b) {
+        b.global(myId.name(), getSize());
+    }
+
     public void unparse(PrintWriter p, int indent) {
         TSym s = myId.sym();
 
@@ -658,12 +797,8 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
         myBody = body;
     }
 
-    public List<StmtNode> getStatementList() {
-        ArrayList<StmtNode> l = new ArrayList<>(myBody.myStmtList.myStmts);
-        for (StmtNode node : myBody.myStmtList.myStmts)
-            if (node instanceof Statement)
-                l.addAll(((Statement) node).getStatementList());
-        return l;
+    public void addStatements(List<StmtNode> l) {
+        myBody.myStmtList.addStatements(l);
     }
 
 
@@ -680,7 +815,7 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
         TSym symCheckMul = null;
         /** offset calculation */
         int controlSize = 8; // return address & control link size
-        int parameterSize = 0, localSize; // total params size and local size
+        int parameterSize = 0; // total params size
 
         try {
             symCheckMul = symTab.lookupLocal(name);
@@ -735,20 +870,25 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
 
         // locals $fp offset
         myBody.offset = -(parameterSize + controlSize); // set initial offset
-        myBody.nameAnalysis(symTab); // process the function body
-        localSize = 4 * myBody.localCount; // calculate size of locals
+        Walk.then(() -> myBody.nameAnalysis(symTab)); // process the function body
 
-        try {
-            symTab.removeScope(); // exit scope
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in FnDeclNode.nameAnalysis");
-            System.exit(-1);
-        }
+        FnSym fnSym = sym;
+        int size = parameterSize;
+        Walk.then(() -> {
+            int localSize = 4 * myBody.localCount; // calculate size of locals
+
+            try {
+                symTab.removeScope(); // exit scope
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in FnDeclNode.nameAnalysis");
+                System.exit(-1);
+            }
 
-        // set function symbol details
-        sym.setParameterSize(parameterSize);
-        sym.setLocalSize(localSize);
+            // set function symbol details
+            fnSym.setParameterSize(size);
+            fnSym.setLocalSize(localSize);
+        });
 
         return null;
     }
@@ -757,7 +897,24 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
      * typeCheck
      */
     public void typeCheck() {
-        myBody.typeCheck(myType.type());
+        Walk.then(() -> myBody.typeCheck(myType.type()));
+    }
+
+    /**
+     * fold Nothing is known about the locals on entry
+     */
+    public void fold() {
+        Walk.then(() -> myBody.myStmtList.fold(new Constants()));
+    }
+
+    /**
+     * lower Translate the body to a function of three-address code
+     */
+    public void lower(Tac.Builder b) {
+        FnSym s = (FnSym) myId.sym();
+        b.beginFunction(myId.name(), s.getParameterSize(), s.getLocalSize());
+        Walk.then(() -> myBody.myStmtList.lower(b));
+        Walk.then(b::endFunction);
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -775,8 +932,8 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
         p.print("(");
         myFormalsList.unparse(p, 0);
         p.println(") {");
-        myBody.unparse(p, indent + 4);
-        p.println("}\n");
+        Walk.then(() -> myBody.unparse(p, indent + 4));
+        Walk.then(() -> p.println("}\n"));
     }
 
     public void codeGen() {
@@ -810,21 +967,30 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
         }
 
         // body (statements)
-        {
-            G.sectionComment("Body", G.Comment.LINE);
+        G.sectionComment("Body", G.Comment.LINE);
+        List<StmtNode> l = new ArrayList<>();
+        Walk.then(() -> addStatements(l));
+        Walk.then(() -> {
             // set epiloguwLabel for return statement instaces of this function
-            List<StmtNode> l = getStatementList();
-            for (StmtNode node : l)
-                if (node instanceof ReturnStmtNode)
-                    ((ReturnStmtNode) node).epilogueLabel = epilogueLabel;
+            String bodyLabel = null; // for tail calls (with registers)
+            for (StmtNode node : l) {
+                if (!(node instanceof ReturnStmtNode)) continue;
+                ReturnStmtNode ret = (ReturnStmtNode) node;
+                ret.epilogueLabel = epilogueLabel;
+                if (G.registers() && ret.isTailCallTo(myId.sym())) {
+                    if (bodyLabel == null) bodyLabel = G.nextLabel();
+                    ret.bodyLabel = bodyLabel;
+                }
+            }
+            if (bodyLabel != null) G.genLabel(bodyLabel, "tail calls");
 
             // code generation for statements only (not declarations)
             if (myBody.myStmtList != null) myBody.myStmtList.codeGen();
-        }
+        });
 
         // exit (restore stack & return to caller)
-        G.sectionComment("Exit", G.Comment.LINE);
-        {
+        Walk.then(() -> {
+            G.sectionComment("Exit", G.Comment.LINE);
             G.generateLabeled(epilogueLabel, "", "epilogue");
             // load return address
             G.generateIndexed("lw", G.RA, G.FP, offsetRA);
@@ -841,7 +1007,7 @@ class FnDeclNode extends DeclNode implements CodeGeneration, Statement {
             } else {
                 G.generate("jr", G.RA);
             }
-        }
+        });
     }
 
     // 4 kids
@@ -962,25 +1128,27 @@ class StructDeclNode extends DeclNode {
 
 
         if (!badDecl) {
-            try { // add entry to symbol table
-                SymTable structSymTab = new SymTable();
-                myDeclList.nameAnalysis(structSymTab, symTab);
-                StructDefSym sym = new StructDefSym(structSymTab);
-                symTab.addDecl(name, sym);
-                myId.link(sym);
-            } catch (DuplicateSymException ex) {
-                System.err.println("Unexpected DuplicateSymException "
-                        + " in StructDeclNode.nameAnalysis");
-                System.exit(-1);
-            } catch (EmptySymTableException ex) {
-                System.err.println("Unexpected EmptySymTableException "
-                        + " in StructDeclNode.nameAnalysis");
-                System.exit(-1);
-            } catch (IllegalArgumentException ex) {
-                System.err.println("Unexpected IllegalArgumentException "
-                        + " in StructDeclNode.nameAnalysis");
-                System.exit(-1);
-            }
+            SymTable structSymTab = new SymTable();
+            Walk.then(() -> myDeclList.nameAnalysis(structSymTab, symTab));
+            Walk.then(() -> {
+                try { // add entry to symbol table
+                    StructDefSym sym = new StructDefSym(structSymTab);
+                    symTab.addDecl(name, sym);
+                    myId.link(sym);
+                } catch (DuplicateSymException ex) {
+                    System.err.println("Unexpected DuplicateSymException "
+                            + " in StructDeclNode.nameAnalysis");
+                    System.exit(-1);
+                } catch (EmptySymTableException ex) {
+                    System.err.println("Unexpected EmptySymTableException "
+                            + " in StructDeclNode.nameAnalysis");
+                    System.exit(-1);
+                } catch (IllegalArgumentException ex) {
+                    System.err.println("Unexpected IllegalArgumentException "
+                            + " in StructDeclNode.nameAnalysis");
+                    System.exit(-1);
+                }
+            });
         }
 
         return null;
@@ -991,10 +1159,11 @@ class StructDeclNode extends DeclNode {
         p.print("struct ");
         p.print(myId.name());
         p.println("{");
-        myDeclList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("};\n");
-
+        Walk.then(() -> myDeclList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("};\n");
+        });
     }
 
     // 2 kids
@@ -1019,7 +1188,7 @@ class IntNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new IntType();
+        return IntType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1035,7 +1204,7 @@ class BoolNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new BoolType();
+        return BoolType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1051,7 +1220,7 @@ class VoidNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new VoidType();
+        return VoidType.INSTANCE;
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1074,7 +1243,7 @@ class StructNode extends TypeNode {
      * type
      */
     public Type type() {
-        return new StructType(myId);
+        return StructType.of(myId);
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1095,6 +1264,18 @@ abstract class StmtNode extends ASTnode implements CodeGeneration {
     abstract public void nameAnalysis(SymTable symTab);
 
     abstract public void typeCheck(Type retType);
+
+    /**
+     * fold Given the constants known before this statement, fold its
+     * expressions, update consts to those known after it, and add the
+     * statements to execute instead of it to stmts
+     */
+    abstract public void fold(Constants consts, List<StmtNode> stmts);
+
+    /**
+     * lower Add the three-address code of this statement to b
+     */
+    abstract public void lower(Tac.Builder b);
 }
 
 
@@ -1108,26 +1289,51 @@ class AssignStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myAssign.nameAnalysis(symTab);
+        Walk.then(() -> myAssign.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        myAssign.typeCheck();
+        Walk.then(myAssign::typeCheck);
+        Walk.then(() -> Walk.pop()); // type of the assignment is ignored
+    }
+
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myAssign.fold(consts));
+        Walk.then(() -> {
+            Walk.pop(); // the assignment itself
+            stmts.add(this);
+        });
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Walk.then(() -> myAssign.lower(b));
+        Walk.then(() -> Walk.pop()); // value of the assignment is ignored
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
-        myAssign.unparse(p, -1); // no parentheses
-        p.println(";");
+        Walk.then(() -> myAssign.unparse(p, -1)); // no parentheses
+        Walk.then(() -> p.println(";"));
     }
 
     public void codeGen() {
-        myAssign.codeGen();
+        if (G.registers()) {
+            // value left in register is ignored
+            Walk.then(() -> myAssign.genReg(0));
+            return;
+        }
+        Walk.then(myAssign::codeGen);
         // ignore value when assignment used as a statement
-        G.genPop(G.T0); // pop vaue pushed by AssignNode
+        Walk.then(() -> G.genPop(G.T0)); // pop vaue pushed by AssignNode
     }
 
     // 1 kid
@@ -1145,31 +1351,61 @@ class PostIncStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myExp.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Arithmetic operator applied to non-numeric operand");
-        }
+            if (!type.isErrorType() && !type.isIntType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Arithmetic operator applied to non-numeric operand");
+            }
+        });
+    }
+
+    /**
+     * fold The variable stays known unless the increment overflows
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        TSym sym = ((IdNode) myExp).sym();
+        Integer value = consts.get(sym);
+        consts.set(sym, value != null && value != Integer.MAX_VALUE
+                ? value + 1 : null);
+        stmts.add(this);
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        IdNode id = (IdNode) myExp;
+        id.lowerStore(b,
+                b.emit(Tac.Op.ADD, id.lowerLoad(b), Tac.Operand.constant(1)));
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
-        myExp.unparse(p, 0);
-        p.println("++;");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.println("++;"));
     }
 
     public void codeGen() {
         assert myExp instanceof IdNode : "unexpected post increment type";
         IdNode myExp = (IdNode) this.myExp;
 
+        if (G.registers()) {
+            myExp.genReg(0);
+            G.generate("add", G.REGS[0], G.REGS[0], 1);
+            myExp.genStore(G.REGS[0]);
+            return;
+        }
+
         myExp.codeGen(); // T0: value onto stack
         myExp.genAddr(); // T1: address onto stack
 
@@ -1195,31 +1431,61 @@ class PostDecStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myExp.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Arithmetic operator applied to non-numeric operand");
-        }
+            if (!type.isErrorType() && !type.isIntType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Arithmetic operator applied to non-numeric operand");
+            }
+        });
+    }
+
+    /**
+     * fold The variable stays known unless the decrement overflows
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        TSym sym = ((IdNode) myExp).sym();
+        Integer value = consts.get(sym);
+        consts.set(sym, value != null && value != Integer.MIN_VALUE
+                ? value - 1 : null);
+        stmts.add(this);
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        IdNode id = (IdNode) myExp;
+        id.lowerStore(b,
+                b.emit(Tac.Op.SUB, id.lowerLoad(b), Tac.Operand.constant(1)));
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
-        myExp.unparse(p, 0);
-        p.println("--;");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.println("--;"));
     }
 
     public void codeGen() {
         assert myExp instanceof IdNode : "unexpected post increment type";
         IdNode myExp = (IdNode) this.myExp;
 
+        if (G.registers()) {
+            myExp.genReg(0);
+            G.generate("sub", G.REGS[0], G.REGS[0], 1);
+            myExp.genStore(G.REGS[0]);
+            return;
+        }
+
         myExp.codeGen(); // T0: value onto stack
         myExp.genAddr(); // T1: address onto stack
 
@@ -1245,36 +1511,56 @@ class ReadStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myExp.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (type.isFnType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to read a function");
-        }
+            if (type.isFnType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to read a function");
+            }
 
-        if (type.isStructDefType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to read a struct name");
-        }
+            if (type.isStructDefType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to read a struct name");
+            }
 
-        if (type.isStructType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to read a struct variable");
-        }
+            if (type.isStructType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to read a struct variable");
+            }
+        });
+    }
+
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        if (myExp instanceof IdNode) consts.set(((IdNode) myExp).sym(), null);
+        stmts.add(this);
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Tac.Operand value = b.temp();
+        b.emit(new Tac.Instr(Tac.Op.READ, value, null, null));
+        ((IdNode) myExp).lowerStore(b, value);
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("cin >> ");
-        myExp.unparse(p, 0);
-        p.println(";");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.println(";"));
     }
 
     public void codeGen() {
@@ -1288,6 +1574,11 @@ class ReadStmtNode extends StmtNode {
         G.generateWithComment("li", G.V0, 5, "read integer");
         G.generate("syscall");
 
+        if (G.registers()) {
+            myExp.genStore(G.V0);
+            return;
+        }
+
         // store value to IdNode's address
         myExp.genAddr(); // push variable address to stack
         G.genPop(G.T0);
@@ -1311,36 +1602,60 @@ class WriteStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myExp.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (type.isFnType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to write a function");
-        }
+            if (type.isFnType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to write a function");
+            }
 
-        if (type.isStructDefType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to write a struct name");
-        }
+            if (type.isStructDefType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to write a struct name");
+            }
 
-        if (type.isStructType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to write a struct variable");
-        }
+            if (type.isStructType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to write a struct variable");
+            }
 
-        if (type.isVoidType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Attempt to write void");
-        }
+            if (type.isVoidType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Attempt to write void");
+            }
+
+            expressionType = type;
+        });
+    }
+
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            stmts.add(this);
+        });
+    }
 
-        expressionType = type;
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Walk.then(() -> myExp.lower(b));
+        Walk.then(() -> b.emit(new Tac.Instr(expressionType.isStringType()
+                ? Tac.Op.WRITE_STRING : Tac.Op.WRITE_INT, null, Walk.pop(),
+                null)));
     }
 
     public void codeGen() {
@@ -1348,21 +1663,29 @@ class WriteStmtNode extends StmtNode {
         assert (expressionType.isBoolType() || expressionType.isIntType()
                 || expressionType.isStringType()) : "unsupported write type";
 
-        myExp.codeGen(); // evaluate leaving value on the stack
-        G.genPop(G.A0); // pop the top-of-stack value
-        // set syscall register register
-        if (expressionType.isStringType())
-            G.generate("li", G.V0, 4);
-        else
-            G.generate("li", G.V0, 1);
-        G.generateWithComment("syscall", "write");
+        if (G.registers()) {
+            Walk.then(() -> myExp.genReg(0));
+            Walk.then(() -> G.generate("move", G.A0, G.REGS[0]));
+        } else {
+            // evaluate leaving value on the stack
+            Walk.then(myExp::codeGen);
+            Walk.then(() -> G.genPop(G.A0)); // pop the top-of-stack value
+        }
+        Walk.then(() -> {
+            // set syscall register register
+            if (expressionType.isStringType())
+                G.generate("li", G.V0, 4);
+            else
+                G.generate("li", G.V0, 1);
+            G.generateWithComment("syscall", "write");
+        });
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("cout << ");
-        myExp.unparse(p, 0);
-        p.println(";");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.println(";"));
     }
 
     // 1 kid
@@ -1377,30 +1700,16 @@ class IfStmtNode extends StmtNode implements Declaration, Statement {
         myStmtList = slist;
     }
 
-    public List<DeclNode> getDeclarationList() {
+    public void addDeclarations(List<DeclNode> l) {
         // add immediate declarations
-        ArrayList<DeclNode> l = new ArrayList<>(myDeclList.myDecls);
+        l.addAll(myDeclList.myDecls);
         // add nested declarations
-        for (StmtNode s : myStmtList.myStmts) {
-            if (!(s instanceof Declaration)) continue; // skip non declarations
-            l.addAll(((Declaration) s).getDeclarationList());
-        }
-
-        return l;
+        myStmtList.addDeclarations(l);
     }
 
-    public List<StmtNode> getStatementList() {
-        ArrayList<StmtNode> l = new ArrayList<>();
-
-        // add immediate declarations
-        l.addAll(myStmtList.myStmts);
-        // add nested declarations
-        for (StmtNode s : myStmtList.myStmts) {
-            if (!(s instanceof Statement)) continue; // skip non declarations
-            l.addAll(((Statement) s).getStatementList());
-        }
-
-        return l;
+    public void addStatements(List<StmtNode> l) {
+        // add immediate statements, then nested ones
+        myStmtList.addStatements(l);
     }
 
     /**
@@ -1408,42 +1717,91 @@ class IfStmtNode extends StmtNode implements Declaration, Statement {
      * enter a new scope - process the decls and stmts - exit the scope
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
-        symTab.addScope();
-        myDeclList.nameAnalysis(symTab);
-        myStmtList.nameAnalysis(symTab);
-        try {
-            symTab.removeScope();
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in IfStmtNode.nameAnalysis");
-            System.exit(-1);
-        }
+        Walk.then(() -> myExp.nameAnalysis(symTab));
+        Walk.then(symTab::addScope);
+        Walk.then(() -> myDeclList.nameAnalysis(symTab));
+        Walk.then(() -> myStmtList.nameAnalysis(symTab));
+        Walk.then(() -> {
+            try {
+                symTab.removeScope();
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in IfStmtNode.nameAnalysis");
+                System.exit(-1);
+            }
+        });
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Non-bool expression used as an if condition");
-        }
+            if (!type.isErrorType() && !type.isBoolType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Non-bool expression used as an if condition");
+            }
+
+            myStmtList.typeCheck(retType);
+        });
+    }
 
-        myStmtList.typeCheck(retType);
+    /**
+     * fold With a constant condition, the if is replaced by its statements
+     * or removed. Otherwise the then case starts with what is known after
+     * the condition, and only what both paths agree on is known after the if
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            Integer condition = myExp.constValue();
+
+            if (condition == null) {
+                Constants thenConsts = consts.copy();
+                Walk.then(() -> myStmtList.fold(thenConsts));
+                Walk.then(() -> {
+                    consts.meet(thenConsts);
+                    stmts.add(this);
+                });
+            } else if (condition != 0) {
+                Walk.then(() -> myStmtList.fold(consts));
+                Walk.then(() -> stmts.addAll(myStmtList.myStmts));
+            }
+        });
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Tac.Block thenBlock = b.newBlock();
+        Tac.Block doneBlock = b.newBlock();
+
+        Walk.then(() -> myExp.lowerJump(b, thenBlock, doneBlock));
+        Walk.then(() -> {
+            b.start(thenBlock);
+            myStmtList.lower(b);
+        });
+        Walk.then(() -> b.start(doneBlock));
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("if (");
-        myExp.unparse(p, 0);
-        p.println(") {");
-        myDeclList.unparse(p, indent + 4);
-        myStmtList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("}");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> {
+            p.println(") {");
+            myDeclList.unparse(p, indent + 4);
+        });
+        Walk.then(() -> myStmtList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("}");
+        });
     }
 
     public void codeGen() {
@@ -1454,10 +1812,13 @@ class IfStmtNode extends StmtNode implements Declaration, Statement {
         String trueLabel = G.nextLabel();
         String doneLabel = G.nextLabel();
 
-        myExp.genJumpCode(trueLabel, doneLabel); // evaluate condition & jump
-        G.genLabel(trueLabel, "case: true"); // true case
-        if (myStmtList != null) myStmtList.codeGen();
-        G.genLabel(doneLabel, "case: false"); // false case
+        // evaluate condition & jump
+        Walk.then(() -> myExp.genJumpCode(trueLabel, doneLabel));
+        Walk.then(() -> {
+            G.genLabel(trueLabel, "case: true"); // true case
+            if (myStmtList != null) myStmtList.codeGen();
+        });
+        Walk.then(() -> G.genLabel(doneLabel, "case: false")); // false case
     }
 
     // e kids
@@ -1477,44 +1838,21 @@ class IfElseStmtNode extends StmtNode implements Declaration, Statement {
         myElseStmtList = slist2;
     }
 
-    public List<DeclNode> getDeclarationList() {
-        ArrayList<DeclNode> l = new ArrayList<>();
+    public void addDeclarations(List<DeclNode> l) {
         // add immediate and nested declarations in order
         l.addAll(myThenDeclList.myDecls);
-        for (StmtNode s : myThenStmtList.myStmts) {
-            if (!(s instanceof Declaration)) continue; // skip non declarations
-            l.addAll(((Declaration) s).getDeclarationList());
-        }
-        l.addAll(myElseDeclList.myDecls);
-        for (StmtNode s : myElseStmtList.myStmts) {
-            if (!(s instanceof Declaration)) continue; // skip non declarations
-            l.addAll(((Declaration) s).getDeclarationList());
-        }
-
-        return l;
+        Walk.then(() -> myThenStmtList.addDeclarations(l));
+        Walk.then(() -> {
+            l.addAll(myElseDeclList.myDecls);
+            myElseStmtList.addDeclarations(l);
+        });
     }
 
-    public List<StmtNode> getStatementList() {
-        ArrayList<StmtNode> l = new ArrayList<>();
-
-        // add immediate declarations
-        l.addAll(myThenStmtList.myStmts);
-        // add nested declarations
-        for (StmtNode s : myThenStmtList.myStmts) {
-            if (!(s instanceof Statement)) continue; // skip non declarations
-            l.addAll(((Statement) s).getStatementList());
-        }
-
-        // add immediate declarations
-        l.addAll(myElseStmtList.myStmts);
-        // add nested declarations
-        for (StmtNode s : myElseStmtList.myStmts) {
-            if (!(s instanceof Statement)) continue; // skip non declarations
-            l.addAll(((Statement) s).getStatementList());
-        }
-
-        return l;
-    }
+    public void addStatements(List<StmtNode> l) {
+        // add immediate statements, then nested ones, of each case
+        Walk.then(() -> myThenStmtList.addStatements(l));
+        Walk.then(() -> myElseStmtList.addStatements(l));
+    }
 
     /**
      * nameAnalysis Given a symbol table symTab, do: - process the condition -
@@ -1523,59 +1861,121 @@ class IfElseStmtNode extends StmtNode implements Declaration, Statement {
      * scope
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
-        symTab.addScope();
-        myThenDeclList.nameAnalysis(symTab);
-        myThenStmtList.nameAnalysis(symTab);
-        try {
-            symTab.removeScope();
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in IfElseStmtNode.nameAnalysis");
-            System.exit(-1);
-        }
-        symTab.addScope();
-        myElseDeclList.nameAnalysis(symTab);
-        myElseStmtList.nameAnalysis(symTab);
-        try {
-            symTab.removeScope();
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in IfElseStmtNode.nameAnalysis");
-            System.exit(-1);
-        }
+        Walk.then(() -> myExp.nameAnalysis(symTab));
+        Walk.then(symTab::addScope);
+        Walk.then(() -> myThenDeclList.nameAnalysis(symTab));
+        Walk.then(() -> myThenStmtList.nameAnalysis(symTab));
+        Walk.then(() -> {
+            try {
+                symTab.removeScope();
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in IfElseStmtNode.nameAnalysis");
+                System.exit(-1);
+            }
+            symTab.addScope();
+            myElseDeclList.nameAnalysis(symTab);
+        });
+        Walk.then(() -> myElseStmtList.nameAnalysis(symTab));
+        Walk.then(() -> {
+            try {
+                symTab.removeScope();
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in IfElseStmtNode.nameAnalysis");
+                System.exit(-1);
+            }
+        });
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Non-bool expression used as an if condition");
-        }
+            if (!type.isErrorType() && !type.isBoolType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Non-bool expression used as an if condition");
+            }
+
+            myThenStmtList.typeCheck(retType);
+        });
+        Walk.then(() -> myElseStmtList.typeCheck(retType));
+    }
+
+    /**
+     * fold With a constant condition, the if is replaced by the statements
+     * of the case taken
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            Integer condition = myExp.constValue();
+
+            if (condition == null) {
+                Constants elseConsts = consts.copy();
+                Walk.then(() -> myThenStmtList.fold(consts));
+                Walk.then(() -> myElseStmtList.fold(elseConsts));
+                Walk.then(() -> {
+                    consts.meet(elseConsts);
+                    stmts.add(this);
+                });
+            } else if (condition != 0) {
+                Walk.then(() -> myThenStmtList.fold(consts));
+                Walk.then(() -> stmts.addAll(myThenStmtList.myStmts));
+            } else {
+                Walk.then(() -> myElseStmtList.fold(consts));
+                Walk.then(() -> stmts.addAll(myElseStmtList.myStmts));
+            }
+        });
+    }
 
-        myThenStmtList.typeCheck(retType);
-        myElseStmtList.typeCheck(retType);
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Tac.Block thenBlock = b.newBlock();
+        Tac.Block elseBlock = b.newBlock();
+        Tac.Block doneBlock = b.newBlock();
+
+        Walk.then(() -> myExp.lowerJump(b, thenBlock, elseBlock));
+        Walk.then(() -> {
+            b.start(thenBlock);
+            myThenStmtList.lower(b);
+        });
+        Walk.then(() -> {
+            b.jump(doneBlock);
+            b.start(elseBlock);
+            myElseStmtList.lower(b);
+        });
+        Walk.then(() -> b.start(doneBlock));
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("if (");
-        myExp.unparse(p, 0);
-        p.println(") {");
-        myThenDeclList.unparse(p, indent + 4);
-        myThenStmtList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("}");
-        addIndentation(p, indent);
-        p.println("else {");
-        myElseDeclList.unparse(p, indent + 4);
-        myElseStmtList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("}");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> {
+            p.println(") {");
+            myThenDeclList.unparse(p, indent + 4);
+        });
+        Walk.then(() -> myThenStmtList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("}");
+            addIndentation(p, indent);
+            p.println("else {");
+            myElseDeclList.unparse(p, indent + 4);
+        });
+        Walk.then(() -> myElseStmtList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("}");
+        });
     }
 
     public void codeGen() {
@@ -1587,18 +1987,23 @@ class IfElseStmtNode extends StmtNode implements Declaration, Statement {
         String falseLabel = G.nextLabel();
         String doneLabel = G.nextLabel();
 
-        myExp.genJumpCode(trueLabel, falseLabel); // evaluate condition & jump
+        // evaluate condition & jump
+        Walk.then(() -> myExp.genJumpCode(trueLabel, falseLabel));
 
         // case: true
-        G.genLabel(trueLabel, "case: true");
-        if (myThenStmtList != null) myThenStmtList.codeGen();
-        G.generateWithComment("b", doneLabel, "jump: done");
+        Walk.then(() -> {
+            G.genLabel(trueLabel, "case: true");
+            if (myThenStmtList != null) myThenStmtList.codeGen();
+        });
 
         // case: false
-        G.genLabel(falseLabel, "case: false");
-        if (myElseStmtList != null) myElseStmtList.codeGen();
+        Walk.then(() -> {
+            G.generateWithComment("b", doneLabel, "jump: done");
+            G.genLabel(falseLabel, "case: false");
+            if (myElseStmtList != null) myElseStmtList.codeGen();
+        });
 
-        G.genLabel(doneLabel, "done branching"); // done
+        Walk.then(() -> G.genLabel(doneLabel, "done branching")); // done
     }
 
     // 5 kids
@@ -1617,26 +2022,16 @@ class WhileStmtNode extends StmtNode implements Declaration, Statement {
         myStmtList = slist;
     }
 
-    public List<DeclNode> getDeclarationList() {
+    public void addDeclarations(List<DeclNode> l) {
         // add immediate declarations
-        ArrayList<DeclNode> l = new ArrayList<>(myDeclList.myDecls);
+        l.addAll(myDeclList.myDecls);
         // add nested declarations
-        for (StmtNode s : myStmtList.myStmts) {
-            if (!(s instanceof Declaration)) continue; // skip non declarations
-            l.addAll(((Declaration) s).getDeclarationList());
-        }
-        return l;
+        myStmtList.addDeclarations(l);
     }
 
-    public List<StmtNode> getStatementList() {
-        // add immediate declarations
-        ArrayList<StmtNode> l = new ArrayList<>(myStmtList.myStmts);
-        // add nested declarations
-        for (StmtNode s : myStmtList.myStmts) {
-            if (!(s instanceof Statement)) continue; // skip non declarations
-            l.addAll(((Statement) s).getStatementList());
-        }
-        return l;
+    public void addStatements(List<StmtNode> l) {
+        // add immediate statements, then nested ones
+        myStmtList.addStatements(l);
     }
 
     /**
@@ -1644,42 +2039,92 @@ class WhileStmtNode extends StmtNode implements Declaration, Statement {
      * enter a new scope - process the decls and stmts - exit the scope
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
-        symTab.addScope();
-        myDeclList.nameAnalysis(symTab);
-        myStmtList.nameAnalysis(symTab);
-        try {
-            symTab.removeScope();
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in WhileStmtNode.nameAnalysis");
-            System.exit(-1);
-        }
+        Walk.then(() -> myExp.nameAnalysis(symTab));
+        Walk.then(symTab::addScope);
+        Walk.then(() -> myDeclList.nameAnalysis(symTab));
+        Walk.then(() -> myStmtList.nameAnalysis(symTab));
+        Walk.then(() -> {
+            try {
+                symTab.removeScope();
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in WhileStmtNode.nameAnalysis");
+                System.exit(-1);
+            }
+        });
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isBoolType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Non-bool expression used as a while condition");
-        }
+            if (!type.isErrorType() && !type.isBoolType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Non-bool expression used as a while condition");
+            }
+
+            myStmtList.typeCheck(retType);
+        });
+    }
+
+    /**
+     * fold The condition is reached from before the loop and from the end of
+     * the body, so nothing is known there (nor after the loop). A loop with a
+     * false condition is removed
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        consts.clear();
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            Integer condition = myExp.constValue();
+            if (condition != null && condition == 0) return;
+
+            Walk.then(() -> myStmtList.fold(consts));
+            Walk.then(() -> {
+                consts.clear();
+                stmts.add(this);
+            });
+        });
+    }
 
-        myStmtList.typeCheck(retType);
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        Tac.Block testBlock = b.newBlock();
+        Tac.Block bodyBlock = b.newBlock();
+        Tac.Block doneBlock = b.newBlock();
+
+        b.start(testBlock);
+        Walk.then(() -> myExp.lowerJump(b, bodyBlock, doneBlock));
+        Walk.then(() -> {
+            b.start(bodyBlock);
+            myStmtList.lower(b);
+        });
+        Walk.then(() -> {
+            b.jump(testBlock);
+            b.start(doneBlock);
+        });
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("while (");
-        myExp.unparse(p, 0);
-        p.println(") {");
-        myDeclList.unparse(p, indent + 4);
-        myStmtList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("}");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> {
+            p.println(") {");
+            myDeclList.unparse(p, indent + 4);
+        });
+        Walk.then(() -> myStmtList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("}");
+        });
     }
 
     public void codeGen() {
@@ -1691,17 +2136,36 @@ class WhileStmtNode extends StmtNode implements Declaration, Statement {
         String trueLabel = G.nextLabel();
         String doneLabel = G.nextLabel();
 
+        if (G.registers()) {
+            // rotated: the condition is tested after the body, so each
+            // iteration takes one branch back (and the first jumps to it)
+            G.generateWithComment("b", whileLabel, "while: test first");
+            G.genLabel(trueLabel, "while body:");
+            if (myStmtList != null) Walk.then(myStmtList::codeGen);
+            Walk.then(() -> {
+                G.genLabel(whileLabel, "while test:");
+                myExp.genJumpCode(trueLabel, doneLabel);
+            });
+            Walk.then(() -> G.genLabel(doneLabel, "while done"));
+            return;
+        }
+
         G.genLabel(whileLabel, "while block:"); // start of while block
 
-        myExp.genJumpCode(trueLabel, doneLabel); // evaluate condition & jump
+        // evaluate condition & jump
+        Walk.then(() -> myExp.genJumpCode(trueLabel, doneLabel));
 
         // true case
-        G.genLabel(trueLabel, "case: true");
-        if (myStmtList != null) myStmtList.codeGen();
-        G.generateWithComment("b", whileLabel, "jump back: while");
+        Walk.then(() -> {
+            G.genLabel(trueLabel, "case: true");
+            if (myStmtList != null) myStmtList.codeGen();
+        });
 
         // false case (done with while)
-        G.genLabel(doneLabel, "case: false");
+        Walk.then(() -> {
+            G.generateWithComment("b", whileLabel, "jump back: while");
+            G.genLabel(doneLabel, "case: false");
+        });
     }
 
     // 3 kids
@@ -1724,42 +2188,72 @@ class RepeatStmtNode extends StmtNode {
      * enter a new scope - process the decls and stmts - exit the scope
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
-        symTab.addScope();
-        myDeclList.nameAnalysis(symTab);
-        myStmtList.nameAnalysis(symTab);
-        try {
-            symTab.removeScope();
-        } catch (EmptySymTableException ex) {
-            System.err.println("Unexpected EmptySymTableException "
-                    + " in RepeatStmtNode.nameAnalysis");
-            System.exit(-1);
-        }
+        Walk.then(() -> myExp.nameAnalysis(symTab));
+        Walk.then(symTab::addScope);
+        Walk.then(() -> myDeclList.nameAnalysis(symTab));
+        Walk.then(() -> myStmtList.nameAnalysis(symTab));
+        Walk.then(() -> {
+            try {
+                symTab.removeScope();
+            } catch (EmptySymTableException ex) {
+                System.err.println("Unexpected EmptySymTableException "
+                        + " in RepeatStmtNode.nameAnalysis");
+                System.exit(-1);
+            }
+        });
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        Type type = myExp.typeCheck();
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type type = Walk.pop();
 
-        if (!type.isErrorType() && !type.isIntType()) {
-            ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                    "Non-integer expression used as a repeat clause");
-        }
+            if (!type.isErrorType() && !type.isIntType()) {
+                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                        "Non-integer expression used as a repeat clause");
+            }
+
+            myStmtList.typeCheck(retType);
+        });
+    }
 
-        myStmtList.typeCheck(retType);
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            consts.clear();
+            myStmtList.fold(consts);
+        });
+        Walk.then(() -> {
+            consts.clear();
+            stmts.add(this);
+        });
     }
 
+    /**
+     * lower Ignored, as by codeGen
+     */
+    public void lower(Tac.Builder b) {}
+
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("repeat (");
-        myExp.unparse(p, 0);
-        p.println(") {");
-        myDeclList.unparse(p, indent + 4);
-        myStmtList.unparse(p, indent + 4);
-        addIndentation(p, indent);
-        p.println("}");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> {
+            p.println(") {");
+            myDeclList.unparse(p, indent + 4);
+        });
+        Walk.then(() -> myStmtList.unparse(p, indent + 4));
+        Walk.then(() -> {
+            addIndentation(p, indent);
+            p.println("}");
+        });
     }
 
     public void codeGen() {
@@ -1783,27 +2277,52 @@ class CallStmtNode extends StmtNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myCall.nameAnalysis(symTab);
+        Walk.then(() -> myCall.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
     public void typeCheck(Type retType) {
-        myCall.typeCheck();
+        Walk.then(myCall::typeCheck);
+        Walk.then(() -> Walk.pop()); // type of the call is ignored
+    }
+
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        Walk.then(() -> myCall.fold(consts));
+        Walk.then(() -> {
+            Walk.pop(); // the call itself
+            stmts.add(this);
+        });
+    }
+
+    /**
+     * lower The value returned, if any, is not used
+     */
+    public void lower(Tac.Builder b) {
+        Walk.then(() -> myCall.lowerCall(b, false));
+        Walk.then(() -> Walk.pop());
     }
 
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
-        myCall.unparse(p, indent);
-        p.println(";");
+        Walk.then(() -> myCall.unparse(p, indent));
+        Walk.then(() -> p.println(";"));
     }
 
     public void codeGen() {
+        if (G.registers()) {
+            // value left in register is ignored
+            Walk.then(() -> myCall.genReg(0));
+            return;
+        }
         // generate jump-and-link insrtuction using label of function
-        myCall.codeGen();
+        Walk.then(myCall::codeGen);
         // ignore value when function invocation used as a statement
-        G.genPop(G.T0); // pop vaue pushed by CallExpNode
+        Walk.then(() -> G.genPop(G.T0)); // pop vaue pushed by CallExpNode
     }
 
 
@@ -1814,6 +2333,7 @@ class CallStmtNode extends StmtNode {
 
 class ReturnStmtNode extends StmtNode {
     public String epilogueLabel; // corresponding function epilogue
+    public String bodyLabel; // function body, if this is a tail call to it
 
     public ReturnStmtNode(ExpNode exp) {
         myExp = exp;
@@ -1825,7 +2345,7 @@ class ReturnStmtNode extends StmtNode {
      */
     public void nameAnalysis(SymTable symTab) {
         if (myExp != null) {
-            myExp.nameAnalysis(symTab);
+            Walk.then(() -> myExp.nameAnalysis(symTab));
         }
     }
 
@@ -1834,18 +2354,21 @@ class ReturnStmtNode extends StmtNode {
      */
     public void typeCheck(Type retType) {
         if (myExp != null) { // return value given
-            Type type = myExp.typeCheck();
+            Walk.then(myExp::typeCheck);
+            Walk.then(() -> {
+                Type type = Walk.pop();
 
-            if (retType.isVoidType()) {
-                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                        "Return with a value in a void function");
-            }
+                if (retType.isVoidType()) {
+                    ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                            "Return with a value in a void function");
+                }
 
-            else if (!retType.isErrorType() && !type.isErrorType()
-                    && !retType.equals(type)) {
-                ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
-                        "Bad return value");
-            }
+                else if (!retType.isErrorType() && !type.isErrorType()
+                        && !retType.equals(type)) {
+                    ErrMsg.fatal(myExp.lineNum(), myExp.charNum(),
+                            "Bad return value");
+                }
+            });
         }
 
         else { // no return value given -- ok if this is a void function
@@ -1856,28 +2379,72 @@ class ReturnStmtNode extends StmtNode {
 
     }
 
+    /**
+     * fold
+     */
+    public void fold(Constants consts, List<StmtNode> stmts) {
+        if (myExp == null) {
+            stmts.add(this);
+            return;
+        }
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            stmts.add(this);
+        });
+    }
+
+    /**
+     * lower
+     */
+    public void lower(Tac.Builder b) {
+        if (myExp == null) {
+            b.ret(null);
+            return;
+        }
+        Walk.then(() -> myExp.lower(b));
+        Walk.then(() -> b.ret(Walk.pop()));
+    }
+
+    /**
+     * @return whether this returns the value of a call to the function sym,
+     *         so that it can jump back to the start of the function's body
+     *         instead (with the arguments in its formals)
+     */
+    public boolean isTailCallTo(TSym sym) {
+        return myExp instanceof CallExpNode && ((CallExpNode) myExp).calls(sym);
+    }
+
     public void unparse(PrintWriter p, int indent) {
         addIndentation(p, indent);
         p.print("return");
         if (myExp != null) {
             p.print(" ");
-            myExp.unparse(p, 0);
+            Walk.then(() -> myExp.unparse(p, 0));
         }
-        p.println(";");
+        Walk.then(() -> p.println(";"));
     }
 
     public void codeGen() {
         assert epilogueLabel != null : "Error: epilogueLabel for return statement must be set";
 
-        if (myExp != null) {
-            myExp.codeGen(); // pushes evaluation into stack
+        if (bodyLabel != null) {
+            Walk.then(() -> ((CallExpNode) myExp).genTailCall(bodyLabel));
+            return;
+        }
+        if (myExp != null && G.registers()) {
+            Walk.then(() -> myExp.genReg(0));
+            Walk.then(() -> G.generate("move", G.V0, G.REGS[0]));
+        } else if (myExp != null) {
+            Walk.then(myExp::codeGen); // pushes evaluation into stack
 
             // pop the value from stack into appropriate register (V0 or F0)
             // NOTE: double values are unsupported.s
-            G.genPop(G.V0);
+            Walk.then(() -> G.genPop(G.V0));
         }
 
-        G.generateWithComment("b", epilogueLabel, "jump: epilogue");
+        Walk.then(() -> G.generateWithComment("b", epilogueLabel,
+                "jump: epilogue"));
     }
 
     // 1 kid
@@ -1895,11 +2462,112 @@ abstract class ExpNode extends ASTnode implements CodeGeneration {
      */
     public void nameAnalysis(SymTable symTab) {}
 
-    abstract public Type typeCheck();
+    /**
+     * typeCheck Push the type of this expression
+     */
+    abstract public void typeCheck();
 
     abstract public int lineNum();
 
     abstract public int charNum();
+
+    /**
+     * Sethi-Ullman number: how many of the registers G.REGS evaluating this
+     * expression uses, if none has to be spilled. Default for leaves
+     */
+    public int registersNeeded() {
+        return 1;
+    }
+
+    /**
+     * Whether evaluating this expression may assign a variable or call a
+     * function (so it can not be reordered with other expressions)
+     */
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    /**
+     * Whether evaluating this expression may trap (overflow, or divide by
+     * zero), so that it has to be evaluated even if its value is not used
+     */
+    public boolean canTrap() {
+        return false;
+    }
+
+    /**
+     * fold Given the constants known before this expression, fold its
+     * operands and push the expression to evaluate instead of this one (a
+     * literal if its value is known). Default for leaves
+     */
+    public void fold(Constants consts) {
+        Walk.push(this);
+    }
+
+    /**
+     * Value of an int or bool literal (bools as 1 and 0), null for other
+     * expressions
+     */
+    public Integer constValue() {
+        return null;
+    }
+
+    // int literal at this expression's position
+    protected ExpNode intLit(int value) {
+        return new IntLitNode(lineNum(), charNum(), value);
+    }
+
+    // bool literal at this expression's position
+    protected ExpNode boolLit(boolean value) {
+        return value ? new TrueNode(lineNum(), charNum())
+                : new FalseNode(lineNum(), charNum());
+    }
+
+    /**
+     * lower Add the three-address code evaluating this expression to b and
+     * push the operand holding its value
+     */
+    abstract public void lower(Tac.Builder b);
+
+    /**
+     * lower for conditions: go to trueBlock if this expression is true,
+     * otherwise to falseBlock. Default: evaluate and branch on the value
+     */
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        Walk.then(() -> lower(b));
+        Walk.then(() -> b.branch(Tac.Op.SNE, Walk.pop(),
+                Tac.Operand.constant(0), trueBlock, falseBlock));
+    }
+
+    /**
+     * Generate code leaving the value of this expression in G.REGS[r],
+     * changing no register of G.REGS below r.
+     *
+     * Default for expressions without a register version: save the registers
+     * below r and evaluate onto the stack
+     */
+    public void genReg(int r) {
+        for (int i = 0; i < r; i++)
+            G.genPush(G.REGS[i]);
+        Walk.then(this::codeGen);
+        Walk.then(() -> {
+            G.genPop(G.REGS[r]);
+            for (int i = r - 1; i >= 0; i--)
+                G.genPop(G.REGS[i]);
+        });
+    }
+
+    /**
+     * genJumpCode for the register mode: evaluate and branch on the value
+     */
+    protected void genRegJumpCode(String trueLabel, String falseLabel) {
+        Walk.then(() -> genReg(0));
+        Walk.then(() -> {
+            G.generate("beq", G.REGS[0], G.FALSE, falseLabel);
+            G.generate("b", trueLabel);
+        });
+    }
 }
 
 
@@ -1927,8 +2595,16 @@ class IntLitNode extends ExpNode {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        return new IntType();
+    public void typeCheck() {
+        Walk.push(IntType.INSTANCE);
+    }
+
+    public Integer constValue() {
+        return myIntVal;
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.push(Tac.Operand.constant(myIntVal));
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1941,6 +2617,10 @@ class IntLitNode extends ExpNode {
         G.genPush(G.T0);
     }
 
+    public void genReg(int r) {
+        G.generate("li", G.REGS[r], myIntVal);
+    }
+
     private int myLineNum;
     private int myCharNum;
     private int myIntVal;
@@ -1971,8 +2651,12 @@ class StringLitNode extends ExpNode {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        return new StringType();
+    public void typeCheck() {
+        Walk.push(StringType.INSTANCE);
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.push(b.string(myStrVal));
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -1985,27 +2669,40 @@ class StringLitNode extends ExpNode {
      * @return true if new label generated, otherwise false for existing equiv.
      */
     private boolean generateLabel() {
-        if (!G.stringMap.containsKey(myStrVal)) {
-            G.stringMap.put(myStrVal, G.nextLabel());
+        if (!G.stringMap().containsKey(myStrVal)) {
+            G.stringMap().put(myStrVal, G.nextLabel());
             return true;
         }
         return false;
     }
 
     public void codeGen() {
+        String stringLabel = genString();
+
+        // push address of string literal onto stack
+        G.generate("la", G.T0, stringLabel);
+        G.genPush(G.T0);
+    }
+
+    public void genReg(int r) {
+        G.generate("la", G.REGS[r], genString());
+    }
+
+    /**
+     * store string in static data area, the first time it is used
+     * 
+     * @return label of the string
+     */
+    private String genString() {
         boolean isNewString = generateLabel();
-        String stringLabel = G.stringMap.get(myStrVal);
+        String stringLabel = G.stringMap().get(myStrVal);
 
-        // store string in static data area
         if (isNewString) {
             G.generate(".data");
             G.generateLabeled(stringLabel, ".asciiz ", myStrVal, "string");
             G.generate(".text"); // reset memory segment
         }
-
-        // push address of string literal onto stack
-        G.generate("la", G.T0, stringLabel);
-        G.genPush(G.T0);
+        return stringLabel;
     }
 
     private int myLineNum;
@@ -2037,8 +2734,21 @@ class TrueNode extends ExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        return new BoolType();
+    public void typeCheck() {
+        Walk.push(BoolType.INSTANCE);
+    }
+
+    public Integer constValue() {
+        return 1;
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.push(Tac.Operand.constant(1));
+    }
+
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        b.jump(trueBlock);
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -2050,6 +2760,10 @@ class TrueNode extends ExpNode implements Condition {
         G.genPush(G.T0);
     }
 
+    public void genReg(int r) {
+        G.generate("li", G.REGS[r], G.TRUE);
+    }
+
     public void genJumpCode(String trueLabel, String falseLabel) {
         G.generate("b", trueLabel);
     }
@@ -2082,8 +2796,21 @@ class FalseNode extends ExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        return new BoolType();
+    public void typeCheck() {
+        Walk.push(BoolType.INSTANCE);
+    }
+
+    public Integer constValue() {
+        return 0;
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.push(Tac.Operand.constant(0));
+    }
+
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        b.jump(falseBlock);
     }
 
     public void unparse(PrintWriter p, int indent) {
@@ -2095,6 +2822,10 @@ class FalseNode extends ExpNode implements Condition {
         G.genPush(G.T0);
     }
 
+    public void genReg(int r) {
+        G.generate("li", G.REGS[r], G.FALSE);
+    }
+
     public void genJumpCode(String trueLabel, String falseLabel) {
         G.generate("b", falseLabel);
     }
@@ -2171,7 +2902,14 @@ class IdNode extends ExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
+    public void typeCheck() {
+        Walk.push(type());
+    }
+
+    /**
+     * Return the type of this ID (typeCheck, for its parent)
+     */
+    public Type type() {
         if (mySym != null) {
             return mySym.getType();
         } else {
@@ -2181,6 +2919,47 @@ class IdNode extends ExpNode implements Condition {
         return null;
     }
 
+    /**
+     * fold Replace a local whose value is known by a literal
+     */
+    public void fold(Constants consts) {
+        Integer value = consts.get(mySym);
+        if (value == null)
+            Walk.push(this);
+        else
+            Walk.push(mySym.getType().isBoolType() ? boolLit(value != 0)
+                    : intLit(value));
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.push(lowerLoad(b));
+    }
+
+    /**
+     * lower, for its parent: a local is its own operand; a global is loaded
+     * into a temporary
+     * 
+     * @return the operand holding the value of this identifier
+     */
+    public Tac.Operand lowerLoad(Tac.Builder b) {
+        Tac.Operand variable = b.variable(mySym, myStrVal);
+        if (variable.isVariable()) return variable;
+        Tac.Operand value = b.temp();
+        b.emit(new Tac.Instr(Tac.Op.COPY, value, variable, null));
+        return value;
+    }
+
+    /**
+     * lower an assignment of value to this identifier
+     * 
+     * @return the operand holding the value assigned
+     */
+    public Tac.Operand lowerStore(Tac.Builder b, Tac.Operand value) {
+        Tac.Operand variable = b.variable(mySym, myStrVal);
+        b.assign(variable, value);
+        return variable.isVariable() ? variable : value;
+    }
+
     public void unparse(PrintWriter p, int indent) {
         p.print(myStrVal);
         if (mySym != null) {
@@ -2217,10 +2996,33 @@ class IdNode extends ExpNode implements Condition {
         G.genPush(G.T0); // push value onto stack
     }
 
-    public void genJumpCode(String trueLabel, String falseLabel) {
-        assert mySym.getType()
-                .isBoolType() : "unexpected variable type for condition";
-
+    // fetch identifier's value into G.REGS[r]
+    public void genReg(int r) {
+        if (mySym.isGlobal())
+            G.generate("lw", G.REGS[r], "_" + this.name());
+        else
+            G.generateIndexed("lw", G.REGS[r], G.FP, mySym.getOffset(),
+                    "variable: " + name());
+    }
+
+    // store the given register into the identifier
+    public void genStore(String reg) {
+        if (mySym.isGlobal())
+            G.generate("sw", reg, "_" + this.name());
+        else
+            G.generateIndexed("sw", reg, G.FP, mySym.getOffset(),
+                    "variable: " + name());
+    }
+
+    public void genJumpCode(String trueLabel, String falseLabel) {
+        assert mySym.getType()
+                .isBoolType() : "unexpected variable type for condition";
+
+        if (G.registers()) {
+            genRegJumpCode(trueLabel, falseLabel);
+            return;
+        }
+
         // retrieve variable value
         genAddr(); // get address onto stack
         G.genPop(G.T0);
@@ -2276,12 +3078,16 @@ class DotAccessExpNode extends ExpNode {
      * definition
      */
     public void nameAnalysis(SymTable symTab) {
+        Walk.then(() -> myLoc.nameAnalysis(symTab)); // do name analysis on LHS
+        Walk.then(this::nameAnalysisField);
+    }
+
+    // the rest of nameAnalysis, after the LHS
+    private void nameAnalysisField() {
         badAccess = false;
         SymTable structSymTab = null; // to lookup RHS of dot-access
         TSym sym = null;
 
-        myLoc.nameAnalysis(symTab); // do name analysis on LHS
-
         // if myLoc is really an ID, then sym will be a link to the ID's symbol
         if (myLoc instanceof IdNode) {
             IdNode id = (IdNode) myLoc;
@@ -2367,14 +3173,23 @@ class DotAccessExpNode extends ExpNode {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        return myId.typeCheck();
+    public void typeCheck() {
+        Walk.push(myId.type());
+    }
+
+    /**
+     * lower Structs are not supported, as by codeGen
+     */
+    public void lower(Tac.Builder b) {
+        Walk.push(Tac.Operand.constant(0));
     }
 
     public void unparse(PrintWriter p, int indent) {
-        myLoc.unparse(p, 0);
-        p.print(".");
-        myId.unparse(p, 0);
+        Walk.then(() -> myLoc.unparse(p, 0));
+        Walk.then(() -> {
+            p.print(".");
+            myId.unparse(p, 0);
+        });
     }
 
     public void codeGen() {
@@ -2393,6 +3208,7 @@ class AssignNode extends ExpNode implements Condition {
     public AssignNode(ExpNode lhs, ExpNode exp) {
         myLhs = lhs;
         myExp = exp;
+        myRegisters = exp.registersNeeded();
     }
 
     /**
@@ -2416,80 +3232,138 @@ class AssignNode extends ExpNode implements Condition {
      * node's two children
      */
     public void nameAnalysis(SymTable symTab) {
-        myLhs.nameAnalysis(symTab);
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myLhs.nameAnalysis(symTab));
+        Walk.then(() -> myExp.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type typeLhs = myLhs.typeCheck();
-        Type typeExp = myExp.typeCheck();
+    public void typeCheck() {
+        Walk.then(myLhs::typeCheck);
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> {
+            Type typeExp = Walk.pop();
+            Type typeLhs = Walk.pop();
+            Walk.push(typeCheck(typeLhs, typeExp));
+        });
+    }
+
+    // typeCheck, given the types of the two sides
+    private Type typeCheck(Type typeLhs, Type typeExp) {
         Type retType = typeLhs;
 
         if (typeLhs.isFnType() && typeExp.isFnType()) {
             ErrMsg.fatal(lineNum(), charNum(), "Function assignment");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (typeLhs.isStructDefType() && typeExp.isStructDefType()) {
             ErrMsg.fatal(lineNum(), charNum(), "Struct name assignment");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (typeLhs.isStructType() && typeExp.isStructType()) {
             ErrMsg.fatal(lineNum(), charNum(), "Struct variable assignment");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (!typeLhs.equals(typeExp) && !typeLhs.isErrorType()
                 && !typeExp.isErrorType()) {
             ErrMsg.fatal(lineNum(), charNum(), "Type mismatch");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (typeLhs.isErrorType() || typeExp.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
     }
 
+    /**
+     * fold The left side is not folded: it is assigned, not read
+     */
+    public void fold(Constants consts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            myRegisters = myExp.registersNeeded();
+            if (myLhs instanceof IdNode)
+                consts.set(((IdNode) myLhs).sym(), myExp.constValue());
+            Walk.push(this);
+        });
+    }
+
+    public void lower(Tac.Builder b) {
+        assert myLhs instanceof IdNode : "expected LHS to be of type IdNode";
+        Walk.then(() -> myExp.lower(b));
+        Walk.then(() -> Walk.push(((IdNode) myLhs).lowerStore(b, Walk.pop())));
+    }
+
     public void unparse(PrintWriter p, int indent) {
         if (indent != -1) p.print("(");
-        myLhs.unparse(p, 0);
-        p.print(" = ");
-        myExp.unparse(p, 0);
-        if (indent != -1) p.print(")");
+        Walk.then(() -> myLhs.unparse(p, 0));
+        Walk.then(() -> {
+            p.print(" = ");
+            myExp.unparse(p, 0);
+        });
+        if (indent != -1) Walk.then(() -> p.print(")"));
     }
 
     public void codeGen() {
         assert myLhs instanceof IdNode : "expected LHS to be of type IdNode";
         IdNode myLhs = (IdNode) this.myLhs;
 
-        myExp.codeGen(); // evaluate RHS value onto stack
-        myLhs.genAddr(); // push LHS address onto stack
+        Walk.then(myExp::codeGen); // evaluate RHS value onto stack
+        Walk.then(() -> {
+            myLhs.genAddr(); // push LHS address onto stack
+
+            // Store the value into the address
+            G.genPop(G.T0); // address`
+            G.genPop(G.T1); // value
+            G.generateIndexed("sw", G.T1, G.T0, 0, "assign to address");
+
+            G.genPush(G.T1); // keep a copy of value onto stack
+        });
+    }
+
+    public int registersNeeded() {
+        return myRegisters;
+    }
 
-        // Store the value into the address
-        G.genPop(G.T0); // address`
-        G.genPop(G.T1); // value
-        G.generateIndexed("sw", G.T1, G.T0, 0, "assign to address");
+    public boolean hasSideEffects() {
+        return true;
+    }
 
-        G.genPush(G.T1); // keep a copy of value onto stack
+    public void genReg(int r) {
+        assert myLhs instanceof IdNode : "expected LHS to be of type IdNode";
+
+        Walk.then(() -> myExp.genReg(r));
+        // value stays in G.REGS[r]
+        Walk.then(() -> ((IdNode) myLhs).genStore(G.REGS[r]));
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
-        this.codeGen(); // evaluate expression onto stack
+        if (G.registers()) {
+            genRegJumpCode(trueLabel, falseLabel);
+            return;
+        }
 
-        G.genPop(G.T0);
-        G.generate("beq", G.T0, G.FALSE, falseLabel);
-        G.generate("b", trueLabel);
+        Walk.then(this::codeGen); // evaluate expression onto stack
+
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generate("beq", G.T0, G.FALSE, falseLabel);
+            G.generate("b", trueLabel);
+        });
     }
 
     // 2 kids
     private ExpNode myLhs;
     private ExpNode myExp;
+
+    private int myRegisters; // registersNeeded of myExp
 }
 
 
@@ -2526,17 +3400,18 @@ class CallExpNode extends ExpNode implements Condition {
      */
     public void nameAnalysis(SymTable symTab) {
         myId.nameAnalysis(symTab);
-        myExpList.nameAnalysis(symTab);
+        Walk.then(() -> myExpList.nameAnalysis(symTab));
     }
 
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        if (!myId.typeCheck().isFnType()) {
+    public void typeCheck() {
+        if (!myId.type().isFnType()) {
             ErrMsg.fatal(myId.lineNum(), myId.charNum(),
                     "Attempt to call a non-function");
-            return new ErrorType();
+            Walk.push(ErrorType.INSTANCE);
+            return;
         }
 
         FnSym fnSym = (FnSym) (myId.sym());
@@ -2549,11 +3424,35 @@ class CallExpNode extends ExpNode implements Condition {
         if (myExpList.size() != fnSym.getNumParams()) {
             ErrMsg.fatal(myId.lineNum(), myId.charNum(),
                     "Function call with wrong number of args");
-            return fnSym.getReturnType();
+            Walk.push(fnSym.getReturnType());
+            return;
         }
 
-        myExpList.typeCheck(fnSym.getParamTypes());
-        return fnSym.getReturnType();
+        Walk.then(() -> myExpList.typeCheck(fnSym.getParamTypes()));
+        Walk.then(() -> Walk.push(fnSym.getReturnType()));
+    }
+
+    /**
+     * fold Calls do not change the locals of the caller
+     */
+    public void fold(Constants consts) {
+        if (myExpList != null) Walk.then(() -> myExpList.fold(consts));
+        Walk.then(() -> Walk.push(this));
+    }
+
+    public void lower(Tac.Builder b) {
+        lowerCall(b, true);
+    }
+
+    /**
+     * lower the call, pushing the temporary holding the value returned (if
+     * value is true, otherwise null)
+     */
+    public void lowerCall(Tac.Builder b, boolean value) {
+        Walk.then(() -> myExpList.lower(b));
+        Walk.then(() -> Walk.push(b.call(
+                (myId.name().equals("main") ? "" : "_") + myId.name(),
+                Walk.pop(), value)));
     }
 
     // ** unparse **
@@ -2561,9 +3460,9 @@ class CallExpNode extends ExpNode implements Condition {
         myId.unparse(p, 0);
         p.print("(");
         if (myExpList != null) {
-            myExpList.unparse(p, 0);
+            Walk.then(() -> myExpList.unparse(p, 0));
         }
-        p.print(")");
+        Walk.then(() -> p.print(")"));
     }
 
     public void codeGen() {
@@ -2571,19 +3470,69 @@ class CallExpNode extends ExpNode implements Condition {
                 (myId.name().equals("main") ? "" : "_") + myId.name();
 
         // evaluate arguments & push to stack
-        if (myExpList != null) myExpList.codeGen();
-        // jump-and-link using appropriate label for target function
-        G.generateWithComment("jal", functionLabel, "call");
-        // handle return value (pushing value will not cause issue for void)
-        G.genPush(G.V0);
+        if (myExpList != null) Walk.then(myExpList::codeGen);
+        Walk.then(() -> {
+            // jump-and-link using appropriate label for target function
+            G.generateWithComment("jal", functionLabel, "call");
+            // handle return value (pushing value will not cause issue for void)
+            G.genPush(G.V0);
+        });
+    }
+
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    public boolean calls(TSym sym) {
+        return myId.sym() == sym;
+    }
+
+    /**
+     * genTailCall Generate the call as a tail call from the function itself:
+     * the arguments are evaluated (all of them, before any formal changes),
+     * then popped into the formals (the last pushed into the last formal),
+     * and the code jumps to bodyLabel, the start of the function's body,
+     * reusing its activation record
+     */
+    public void genTailCall(String bodyLabel) {
+        if (myExpList != null) Walk.then(myExpList::codeGen);
+        Walk.then(() -> {
+            for (int i = myExpList.size() - 1; i >= 0; i--) {
+                G.genPop(G.T0);
+                G.generateIndexed("sw", G.T0, G.FP, -4 * i, "formal");
+            }
+            G.generateWithComment("b", bodyLabel, "tail call");
+        });
+    }
+
+    // the callee may use any register: save those below r around the call
+    public void genReg(int r) {
+        for (int i = 0; i < r; i++)
+            G.genPush(G.REGS[i]);
+        if (myExpList != null) Walk.then(myExpList::codeGen);
+        Walk.then(() -> {
+            G.generateWithComment("jal",
+                    (myId.name().equals("main") ? "" : "_") + myId.name(),
+                    "call");
+            G.generate("move", G.REGS[r], G.V0);
+            for (int i = r - 1; i >= 0; i--)
+                G.genPop(G.REGS[i]);
+        });
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
-        this.codeGen(); // evaluate expression onto stack
+        if (G.registers()) {
+            genRegJumpCode(trueLabel, falseLabel);
+            return;
+        }
 
-        G.genPop(G.T0);
-        G.generate("beq", G.T0, G.FALSE, falseLabel);
-        G.generate("b", trueLabel);
+        Walk.then(this::codeGen); // evaluate expression onto stack
+
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generate("beq", G.T0, G.FALSE, falseLabel);
+            G.generate("b", trueLabel);
+        });
     }
 
     // 2 kids
@@ -2595,6 +3544,20 @@ class CallExpNode extends ExpNode implements Condition {
 abstract class UnaryExpNode extends ExpNode {
     public UnaryExpNode(ExpNode exp) {
         myExp = exp;
+        measure();
+    }
+
+    /**
+     * Take the position, registers needed, side effects and traps of the
+     * operand, when it is set (they are kept, so as not to walk down the
+     * operand)
+     */
+    protected void measure() {
+        myLineNum = myExp.lineNum();
+        myCharNum = myExp.charNum();
+        myRegisters = myExp.registersNeeded();
+        mySideEffects = myExp.hasSideEffects();
+        myTraps = myExp.canTrap();
     }
 
     /**
@@ -2602,7 +3565,7 @@ abstract class UnaryExpNode extends ExpNode {
      * the one corresponding to the operand.
      */
     public int lineNum() {
-        return myExp.lineNum();
+        return myLineNum;
     }
 
     /**
@@ -2610,7 +3573,7 @@ abstract class UnaryExpNode extends ExpNode {
      * the one corresponding to the operand.
      */
     public int charNum() {
-        return myExp.charNum();
+        return myCharNum;
     }
 
     /**
@@ -2618,11 +3581,41 @@ abstract class UnaryExpNode extends ExpNode {
      * node's child
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp.nameAnalysis(symTab);
+        Walk.then(() -> myExp.nameAnalysis(symTab));
+    }
+
+    /**
+     * typeCheck
+     */
+    public void typeCheck() {
+        Walk.then(myExp::typeCheck);
+        Walk.then(() -> Walk.push(typeCheck((Type) Walk.pop())));
+    }
+
+    // typeCheck, given the type of the operand
+    abstract protected Type typeCheck(Type type);
+
+    public int registersNeeded() {
+        return myRegisters;
+    }
+
+    public boolean hasSideEffects() {
+        return mySideEffects;
+    }
+
+    public boolean canTrap() {
+        return myTraps;
     }
 
     // one child
     protected ExpNode myExp;
+
+    // kept from the child (measure)
+    private int myLineNum;
+    private int myCharNum;
+    private int myRegisters;
+    private boolean mySideEffects;
+    private boolean myTraps;
 }
 
 
@@ -2630,6 +3623,21 @@ abstract class BinaryExpNode extends ExpNode {
     public BinaryExpNode(ExpNode exp1, ExpNode exp2) {
         myExp1 = exp1;
         myExp2 = exp2;
+        measure();
+    }
+
+    /**
+     * Take the position, registers needed, side effects and traps of the
+     * operands, when they are set (they are kept, so as not to walk down the
+     * operands)
+     */
+    protected void measure() {
+        myLineNum = myExp1.lineNum();
+        myCharNum = myExp1.charNum();
+        myRegisters = registersNeeded(myExp1.registersNeeded(),
+                myExp2.registersNeeded());
+        mySideEffects = myExp1.hasSideEffects() || myExp2.hasSideEffects();
+        myTraps = myExp1.canTrap() || myExp2.canTrap();
     }
 
     /**
@@ -2637,7 +3645,7 @@ abstract class BinaryExpNode extends ExpNode {
      * is the one corresponding to the left operand.
      */
     public int lineNum() {
-        return myExp1.lineNum();
+        return myLineNum;
     }
 
     /**
@@ -2645,7 +3653,7 @@ abstract class BinaryExpNode extends ExpNode {
      * is the one corresponding to the left operand.
      */
     public int charNum() {
-        return myExp1.charNum();
+        return myCharNum;
     }
 
     /**
@@ -2653,13 +3661,200 @@ abstract class BinaryExpNode extends ExpNode {
      * node's two children
      */
     public void nameAnalysis(SymTable symTab) {
-        myExp1.nameAnalysis(symTab);
-        myExp2.nameAnalysis(symTab);
+        Walk.then(() -> myExp1.nameAnalysis(symTab));
+        Walk.then(() -> myExp2.nameAnalysis(symTab));
+    }
+
+    /**
+     * typeCheck
+     */
+    public void typeCheck() {
+        Walk.then(myExp1::typeCheck);
+        Walk.then(myExp2::typeCheck);
+        Walk.then(() -> {
+            Type type2 = Walk.pop();
+            Type type1 = Walk.pop();
+            Walk.push(typeCheck(type1, type2));
+        });
+    }
+
+    // typeCheck, given the types of the operands
+    abstract protected Type typeCheck(Type type1, Type type2);
+
+    public int registersNeeded() {
+        return myRegisters;
+    }
+
+    // Sethi-Ullman number of this operator, given those of its operands
+    protected int registersNeeded(int left, int right) {
+        return left == right ? left + 1 : Math.max(left, right);
+    }
+
+    public boolean hasSideEffects() {
+        return mySideEffects;
+    }
+
+    public boolean canTrap() {
+        return myTraps;
+    }
+
+    /**
+     * fold Fold both operands, then this operator if both are constant, or
+     * else apply its algebraic identities
+     */
+    public void fold(Constants consts) {
+        Walk.then(() -> myExp1.fold(consts));
+        Walk.then(() -> myExp2.fold(consts));
+        Walk.then(() -> {
+            myExp2 = Walk.pop();
+            myExp1 = Walk.pop();
+            measure();
+            Integer left = myExp1.constValue();
+            Integer right = myExp2.constValue();
+
+            ExpNode folded = null;
+            if (left != null && right != null)
+                folded = foldValues(left, right);
+            Walk.push(folded != null ? folded : simplify(left, right));
+        });
+    }
+
+    /**
+     * The literal for this operator applied to constant operands, or null if
+     * it is left to run time (because it would trap)
+     */
+    protected ExpNode foldValues(int left, int right) {
+        return null;
+    }
+
+    /**
+     * This expression with an identity applied (x + 0 => x), given the
+     * values of the operands that are constant (null for the others).
+     * Default: none
+     */
+    protected ExpNode simplify(Integer left, Integer right) {
+        return this;
+    }
+
+    /**
+     * The three-address operator of this expression; null for && and ||,
+     * which lower to branches
+     */
+    protected Tac.Op tacOp() {
+        return null;
+    }
+
+    /**
+     * lower A local read by the left operand is copied first if the right
+     * one could assign it
+     */
+    public void lower(Tac.Builder b) {
+        lowerOperands(b);
+        Walk.then(() -> {
+            Tac.Operand right = Walk.pop();
+            Tac.Operand left = Walk.pop();
+            Walk.push(b.emit(tacOp(), left, right));
+        });
+    }
+
+    // lower both operands, pushing the operands holding their values
+    private void lowerOperands(Tac.Builder b) {
+        Walk.then(() -> myExp1.lower(b));
+        Walk.then(() -> {
+            Tac.Operand left = Walk.pop();
+            if (myExp2.hasSideEffects()) left = b.hold(left);
+            Walk.push(left);
+            myExp2.lower(b);
+        });
+    }
+
+    /**
+     * lowerJump A comparison branches on its operands directly
+     */
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        if (tacOp() == null || !tacOp().isComparison()) {
+            super.lowerJump(b, trueBlock, falseBlock);
+            return;
+        }
+        lowerOperands(b);
+        Walk.then(() -> {
+            Tac.Operand right = Walk.pop();
+            Tac.Operand left = Walk.pop();
+            b.branch(tacOp(), left, right, trueBlock, falseBlock);
+        });
+    }
+
+    /**
+     * Generate code for G.REGS[r] = left opcode right (Sethi-Ullman): the
+     * operand needing more registers is evaluated first, into G.REGS[r], and
+     * the other into G.REGS[r + 1]. The right operand only goes first if
+     * neither has side effects. With no register left for the second
+     * operand, the first is spilled to the stack while it is evaluated.
+     */
+    protected void genBinary(int r, String opcode, String comment) {
+        String dest = G.REGS[r];
+        if (r + 1 == G.REGS.length) { // spill
+            Walk.then(() -> myExp1.genReg(r));
+            Walk.then(() -> {
+                G.genPush(dest);
+                myExp2.genReg(r);
+            });
+            Walk.then(() -> {
+                G.genPop(G.V1);
+                G.generateWithComment(opcode, dest, G.V1, dest, comment);
+            });
+        } else if (myExp1.registersNeeded() < myExp2.registersNeeded()
+                && !hasSideEffects()) {
+            Walk.then(() -> myExp2.genReg(r));
+            Walk.then(() -> myExp1.genReg(r + 1));
+            Walk.then(() -> G.generateWithComment(opcode, dest, G.REGS[r + 1],
+                    dest, comment));
+        } else {
+            Walk.then(() -> myExp1.genReg(r));
+            Walk.then(() -> myExp2.genReg(r + 1));
+            Walk.then(() -> G.generateWithComment(opcode, dest, dest,
+                    G.REGS[r + 1], comment));
+        }
+    }
+
+    /**
+     * Generate code for the stack: evaluate the operands onto the stack, pop
+     * them (into T0 and T1) and push T0 opcode T1
+     */
+    protected void genStack(String opcode, String comment) {
+        // evaluate operands into stack (for 2 operands: right will be on top)
+        Walk.then(myExp1::codeGen); // push T0
+        Walk.then(myExp2::codeGen); // push T1
+        Walk.then(() -> {
+            G.genPop(G.T1);
+            G.genPop(G.T0);
+            G.generateWithComment(opcode, G.T0, G.T0, G.T1, comment);
+            G.genPush(G.T0); // push result onto stack
+        });
+    }
+
+    // unparse as (left operator right)
+    protected void unparseBinary(PrintWriter p, String operator) {
+        p.print("(");
+        Walk.then(() -> myExp1.unparse(p, 0));
+        Walk.then(() -> {
+            p.print(operator);
+            myExp2.unparse(p, 0);
+        });
+        Walk.then(() -> p.print(")"));
     }
 
     // two kids
     protected ExpNode myExp1;
     protected ExpNode myExp2;
+
+    // kept from the kids (measure)
+    private int myLineNum;
+    private int myCharNum;
+    private int myRegisters;
+    private boolean mySideEffects;
+    private boolean myTraps;
 }
 
 // **********************************************************************
@@ -2672,40 +3867,73 @@ class UnaryMinusNode extends UnaryExpNode {
         super(exp);
     }
 
+    // negating overflows on the least int
+    public boolean canTrap() {
+        return true;
+    }
+
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type = myExp.typeCheck();
-        Type retType = new IntType();
+    protected Type typeCheck(Type type) {
+        Type retType = IntType.INSTANCE;
 
         if (!type.isErrorType() && !type.isIntType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Arithmetic operator applied to non-numeric operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
     }
 
+    /**
+     * fold Not folded if negating overflows (sub traps at run time)
+     */
+    public void fold(Constants consts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            measure();
+            Integer value = myExp.constValue();
+            if (value == null || value == Integer.MIN_VALUE)
+                Walk.push(this);
+            else
+                Walk.push(intLit(-value));
+        });
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.then(() -> myExp.lower(b));
+        Walk.then(() -> Walk.push(b.emit(Tac.Op.NEG, Walk.pop(), null)));
+    }
+
     public void unparse(PrintWriter p, int indent) {
         p.print("(-");
-        myExp.unparse(p, 0);
-        p.print(")");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.print(")"));
     }
 
     public void codeGen() {
         // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp.codeGen();
+        Walk.then(myExp::codeGen);
 
         // perform operation
-        G.genPop(G.T0);
-        G.generateWithComment("sub", G.T0, G.ZERO, G.T0, "negate value");
-        G.genPush(G.T0); // push result onto stack
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generateWithComment("sub", G.T0, G.ZERO, G.T0, "negate value");
+            G.genPush(G.T0); // push result onto stack
+        });
+    }
+
+    public void genReg(int r) {
+        Walk.then(() -> myExp.genReg(r));
+        Walk.then(() -> G.generateWithComment("sub", G.REGS[r], G.ZERO,
+                G.REGS[r], "negate value"));
     }
 }
 
@@ -2718,44 +3946,79 @@ class NotNode extends UnaryExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type = myExp.typeCheck();
-        Type retType = new BoolType();
+    protected Type typeCheck(Type type) {
+        Type retType = BoolType.INSTANCE;
 
         if (!type.isErrorType() && !type.isBoolType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Logical operator applied to non-bool operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
     }
 
+    /**
+     * fold
+     */
+    public void fold(Constants consts) {
+        Walk.then(() -> myExp.fold(consts));
+        Walk.then(() -> {
+            myExp = Walk.pop();
+            measure();
+            Integer value = myExp.constValue();
+            if (value == null)
+                Walk.push(this);
+            else
+                Walk.push(boolLit(value == 0));
+        });
+    }
+
+    public void lower(Tac.Builder b) {
+        Walk.then(() -> myExp.lower(b));
+        Walk.then(() -> Walk.push(b.emit(Tac.Op.NOT, Walk.pop(), null)));
+    }
+
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        // reverse logic
+        Walk.then(() -> myExp.lowerJump(b, falseBlock, trueBlock));
+    }
+
     public void unparse(PrintWriter p, int indent) {
         p.print("(!");
-        myExp.unparse(p, 0);
-        p.print(")");
+        Walk.then(() -> myExp.unparse(p, 0));
+        Walk.then(() -> p.print(")"));
     }
 
     public void codeGen() {
         // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp.codeGen();
+        Walk.then(myExp::codeGen);
 
         // perform operation
-        G.genPop(G.T0);
-        G.generateWithComment("xori", G.T0, G.T0, 1, "flip bits");
-        G.genPush(G.T0); // push result onto stack
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generateWithComment("xori", G.T0, G.T0, 1, "flip bits");
+            G.genPush(G.T0); // push result onto stack
+        });
+    }
+
+    public void genReg(int r) {
+        Walk.then(() -> myExp.genReg(r));
+        Walk.then(() -> G.generateWithComment("xori", G.REGS[r], G.REGS[r],
+                1, "flip bits"));
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
         assert myExp instanceof Condition : "unexpected condition expression type";
         Condition myExp = (Condition) this.myExp;
 
-        myExp.genJumpCode(falseLabel, trueLabel); // reverse logic
+        // reverse logic
+        Walk.then(() -> myExp.genJumpCode(falseLabel, trueLabel));
     }
 }
 
@@ -2769,28 +4032,31 @@ abstract class ArithmeticExpNode extends BinaryExpNode {
         super(exp1, exp2);
     }
 
+    // add, sub and mulo trap on overflow, div on a zero divisor
+    public boolean canTrap() {
+        return true;
+    }
+
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type1 = myExp1.typeCheck();
-        Type type2 = myExp2.typeCheck();
-        Type retType = new IntType();
+    protected Type typeCheck(Type type1, Type type2) {
+        Type retType = IntType.INSTANCE;
 
         if (!type1.isErrorType() && !type1.isIntType()) {
             ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
                     "Arithmetic operator applied to non-numeric operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (!type2.isErrorType() && !type2.isIntType()) {
             ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
                     "Arithmetic operator applied to non-numeric operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isErrorType() || type2.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
@@ -2803,28 +4069,109 @@ abstract class LogicalExpNode extends BinaryExpNode implements Condition {
         super(exp1, exp2);
     }
 
+    // the operands are evaluated one after the other, into the same register
+    protected int registersNeeded(int left, int right) {
+        return Math.max(left, right);
+    }
+
+    // value of the left operand that decides the result (false for &&)
+    abstract protected int shortCircuitValue();
+
+    /**
+     * fold The right operand is not evaluated when the left one decides the
+     * result, so only the constants it leaves unchanged are known after it
+     */
+    public void fold(Constants consts) {
+        Walk.then(() -> myExp1.fold(consts));
+        Walk.then(() -> {
+            myExp1 = Walk.pop();
+            Integer left = myExp1.constValue();
+            if (left != null) { // (false && e) => false, (true && e) => e
+                if (left == shortCircuitValue())
+                    Walk.push(myExp1);
+                else
+                    myExp2.fold(consts);
+                return;
+            }
+
+            Constants rightConsts = consts.copy();
+            Walk.then(() -> myExp2.fold(rightConsts));
+            Walk.then(() -> {
+                myExp2 = Walk.pop();
+                measure();
+                consts.meet(rightConsts);
+                Walk.push(foldRight());
+            });
+        });
+    }
+
+    // the rest of fold, after both operands
+    private ExpNode foldRight() {
+        Integer right = myExp2.constValue();
+        if (right == null) return this;
+        if (right != shortCircuitValue()) return myExp1; // (e && true) => e
+        // (e && false) => false, unless e has to be evaluated
+        return myExp1.hasSideEffects() || myExp1.canTrap() ? this : myExp2;
+    }
+
+    /**
+     * lower The value of the left operand, replaced by that of the right
+     * one unless the left one decides the result
+     */
+    public void lower(Tac.Builder b) {
+        Tac.Operand result = b.temp();
+        Tac.Block rightBlock = b.newBlock();
+        Tac.Block doneBlock = b.newBlock();
+
+        Walk.then(() -> myExp1.lower(b));
+        Walk.then(() -> {
+            b.assign(result, Walk.pop());
+            b.branch(Tac.Op.SEQ, result,
+                    Tac.Operand.constant(shortCircuitValue()), doneBlock,
+                    rightBlock);
+            b.start(rightBlock);
+            myExp2.lower(b);
+        });
+        Walk.then(() -> {
+            b.assign(result, Walk.pop());
+            b.start(doneBlock);
+            Walk.push(result);
+        });
+    }
+
+    public void lowerJump(Tac.Builder b, Tac.Block trueBlock,
+            Tac.Block falseBlock) {
+        Tac.Block rightBlock = b.newBlock();
+        if (shortCircuitValue() == 0)
+            Walk.then(() -> myExp1.lowerJump(b, rightBlock, falseBlock));
+        else
+            Walk.then(() -> myExp1.lowerJump(b, trueBlock, rightBlock));
+        Walk.then(() -> {
+            b.start(rightBlock); // evaluate second operand
+            myExp2.lowerJump(b, trueBlock, falseBlock);
+        });
+    }
+
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type1 = myExp1.typeCheck();
-        Type type2 = myExp2.typeCheck();
-        Type retType = new BoolType();
+    protected Type typeCheck(Type type1, Type type2) {
+        Type retType = BoolType.INSTANCE;
 
         if (!type1.isErrorType() && !type1.isBoolType()) {
             ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
                     "Logical operator applied to non-bool operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (!type2.isErrorType() && !type2.isBoolType()) {
             ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
                     "Logical operator applied to non-bool operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isErrorType() || type2.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
@@ -2840,54 +4187,59 @@ abstract class EqualityExpNode extends BinaryExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type1 = myExp1.typeCheck();
-        Type type2 = myExp2.typeCheck();
-        Type retType = new BoolType();
+    protected Type typeCheck(Type type1, Type type2) {
+        Type retType = BoolType.INSTANCE;
 
         if (type1.isVoidType() && type2.isVoidType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Equality operator applied to void functions");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isFnType() && type2.isFnType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Equality operator applied to functions");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isStructDefType() && type2.isStructDefType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Equality operator applied to struct names");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isStructType() && type2.isStructType()) {
             ErrMsg.fatal(lineNum(), charNum(),
                     "Equality operator applied to struct variables");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (!type1.equals(type2) && !type1.isErrorType()
                 && !type2.isErrorType()) {
             ErrMsg.fatal(lineNum(), charNum(), "Type mismatch");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isErrorType() || type2.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
-        this.codeGen(); // evaluate expression onto stack
+        if (G.registers()) {
+            genRegJumpCode(trueLabel, falseLabel);
+            return;
+        }
 
-        G.genPop(G.T0);
-        G.generate("beq", G.T0, G.FALSE, falseLabel);
-        G.generate("b", trueLabel);
+        Walk.then(this::codeGen); // evaluate expression onto stack
+
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generate("beq", G.T0, G.FALSE, falseLabel);
+            G.generate("b", trueLabel);
+        });
     }
 }
 
@@ -2900,36 +4252,41 @@ abstract class RelationalExpNode extends BinaryExpNode implements Condition {
     /**
      * typeCheck
      */
-    public Type typeCheck() {
-        Type type1 = myExp1.typeCheck();
-        Type type2 = myExp2.typeCheck();
-        Type retType = new BoolType();
+    protected Type typeCheck(Type type1, Type type2) {
+        Type retType = BoolType.INSTANCE;
 
         if (!type1.isErrorType() && !type1.isIntType()) {
             ErrMsg.fatal(myExp1.lineNum(), myExp1.charNum(),
                     "Relational operator applied to non-numeric operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (!type2.isErrorType() && !type2.isIntType()) {
             ErrMsg.fatal(myExp2.lineNum(), myExp2.charNum(),
                     "Relational operator applied to non-numeric operand");
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         if (type1.isErrorType() || type2.isErrorType()) {
-            retType = new ErrorType();
+            retType = ErrorType.INSTANCE;
         }
 
         return retType;
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
-        this.codeGen(); // evaluate expression onto stack
+        if (G.registers()) {
+            genRegJumpCode(trueLabel, falseLabel);
+            return;
+        }
 
-        G.genPop(G.T0);
-        G.generate("beq", G.T0, G.FALSE, falseLabel);
-        G.generate("b", trueLabel);
+        Walk.then(this::codeGen); // evaluate expression onto stack
+
+        Walk.then(() -> {
+            G.genPop(G.T0);
+            G.generate("beq", G.T0, G.FALSE, falseLabel);
+            G.generate("b", trueLabel);
+        });
     }
 }
 
@@ -2944,23 +4301,33 @@ class PlusNode extends ArithmeticExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" + ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " + ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        try {
+            return intLit(Math.addExact(left, right));
+        } catch (ArithmeticException ex) {
+            return null; // add traps on overflow
+        }
+    }
+
+    protected ExpNode simplify(Integer left, Integer right) {
+        if (right != null && right == 0) return myExp1;
+        if (left != null && left == 0) return myExp2;
+        return this;
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.ADD;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("add", "arithmetic"); // T0 = T0 + T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 + T1)
-        G.generateWithComment("add", G.T0, G.T0, G.T1, "arithmetic");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "add", "arithmetic");
     }
 }
 
@@ -2971,23 +4338,32 @@ class MinusNode extends ArithmeticExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" - ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " - ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        try {
+            return intLit(Math.subtractExact(left, right));
+        } catch (ArithmeticException ex) {
+            return null; // sub traps on overflow
+        }
+    }
+
+    protected ExpNode simplify(Integer left, Integer right) {
+        if (right != null && right == 0) return myExp1;
+        return this;
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SUB;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("sub", "arithmetic"); // T0 = T0 - T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 - T1)
-        G.generateWithComment("sub", G.T0, G.T0, G.T1, "arithmetic");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "sub", "arithmetic");
     }
 }
 
@@ -2999,23 +4375,39 @@ class TimesNode extends ArithmeticExpNode {
 
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" * ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " * ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        try {
+            return intLit(Math.multiplyExact(left, right));
+        } catch (ArithmeticException ex) {
+            return null; // mulo traps on overflow
+        }
+    }
+
+    protected ExpNode simplify(Integer left, Integer right) {
+        if (right != null && right == 1) return myExp1;
+        if (left != null && left == 1) return myExp2;
+        if (right != null && right == 0 && !myExp1.hasSideEffects()
+                && !myExp1.canTrap())
+            return myExp2;
+        if (left != null && left == 0 && !myExp2.hasSideEffects()
+                && !myExp2.canTrap())
+            return myExp1;
+        return this;
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.MUL;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("mulo", "arithmetic"); // T0 = T0 * T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 * T1)
-        G.generateWithComment("mulo", G.T0, G.T0, G.T1, "arithmetic");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "mulo", "arithmetic");
     }
 }
 
@@ -3026,23 +4418,30 @@ class DivideNode extends ArithmeticExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" / ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " / ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        if (right == 0 || left == Integer.MIN_VALUE && right == -1)
+            return null; // left to fail at run time
+        return intLit(left / right);
+    }
+
+    protected ExpNode simplify(Integer left, Integer right) {
+        if (right != null && right == 1) return myExp1;
+        return this;
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.DIV;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("div", "arithmetic"); // T0 = T0 / T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 / T1)
-        G.generateWithComment("div", G.T0, G.T0, G.T1, "arithmetic");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "div", "arithmetic");
     }
 }
 
@@ -3054,25 +4453,27 @@ class AndNode extends LogicalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" && ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " && ");
+    }
+
+    protected int shortCircuitValue() {
+        return 0;
     }
 
     public void codeGen() {
         String doneLabel = G.nextLabel();
 
-        myExp1.codeGen(); // evaluate left operand
+        Walk.then(myExp1::codeGen); // evaluate left operand
 
-        // branch
-        G.generateIndexed("lw", G.T0, G.SP, 4, "LOAD");
-        G.generate("beq", G.T0, G.FALSE, doneLabel);
+        Walk.then(() -> {
+            // branch
+            G.generateIndexed("lw", G.T0, G.SP, 4, "LOAD");
+            G.generate("beq", G.T0, G.FALSE, doneLabel);
 
-        // case: true (resutl depends on right operand)
-        G.genPop(G.T0);
-        myExp2.codeGen();
+            // case: true (resutl depends on right operand)
+            G.genPop(G.T0);
+            myExp2.codeGen();
+        });
         // G.genPop(G.T1);
         // perform insrtuction (T0 = T0 && T1)
         // G.generate("and", G.T0, G.T0, G.T1);
@@ -3080,7 +4481,18 @@ class AndNode extends LogicalExpNode {
 
         // case: false
         // leave value of left operand on stack
-        G.genLabel(doneLabel);
+        Walk.then(() -> G.genLabel(doneLabel));
+    }
+
+    public void genReg(int r) {
+        String doneLabel = G.nextLabel();
+
+        Walk.then(() -> myExp1.genReg(r));
+        Walk.then(() -> {
+            G.generate("beq", G.REGS[r], G.FALSE, doneLabel);
+            myExp2.genReg(r); // case: true (result depends on right operand)
+        });
+        Walk.then(() -> G.genLabel(doneLabel));
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
@@ -3090,10 +4502,12 @@ class AndNode extends LogicalExpNode {
         Condition myExp2 = (Condition) this.myExp2;
 
         String secondEvaluationLabel = G.nextLabel();
-        myExp1.genJumpCode(secondEvaluationLabel, falseLabel);
-        // evaluate second operand
-        G.genLabel(secondEvaluationLabel);
-        myExp2.genJumpCode(trueLabel, falseLabel);
+        Walk.then(() -> myExp1.genJumpCode(secondEvaluationLabel, falseLabel));
+        Walk.then(() -> {
+            // evaluate second operand
+            G.genLabel(secondEvaluationLabel);
+            myExp2.genJumpCode(trueLabel, falseLabel);
+        });
     }
 
 }
@@ -3106,25 +4520,27 @@ class OrNode extends LogicalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" || ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " || ");
+    }
+
+    protected int shortCircuitValue() {
+        return 1;
     }
 
     public void codeGen() {
         String doneLabel = G.nextLabel();
 
-        myExp1.codeGen(); // evaluate left operand
+        Walk.then(myExp1::codeGen); // evaluate left operand
 
-        // branch
-        G.generateIndexed("lw", G.T0, G.SP, 4, "LOAD");
-        G.generate("beq", G.T0, G.TRUE, doneLabel);
+        Walk.then(() -> {
+            // branch
+            G.generateIndexed("lw", G.T0, G.SP, 4, "LOAD");
+            G.generate("beq", G.T0, G.TRUE, doneLabel);
 
-        // case: false (resutl depends on right operand)
-        G.genPop(G.T0);
-        myExp2.codeGen();
+            // case: false (resutl depends on right operand)
+            G.genPop(G.T0);
+            myExp2.codeGen();
+        });
         // G.genPop(G.T1);
         // perform insrtuction (T0 = T0 || T1)
         // G.generate("or", G.T0, G.T0, G.T1);
@@ -3132,7 +4548,18 @@ class OrNode extends LogicalExpNode {
 
         // case: true
         // leave value of left operand on stack
-        G.genLabel(doneLabel);
+        Walk.then(() -> G.genLabel(doneLabel));
+    }
+
+    public void genReg(int r) {
+        String doneLabel = G.nextLabel();
+
+        Walk.then(() -> myExp1.genReg(r));
+        Walk.then(() -> {
+            G.generate("beq", G.REGS[r], G.TRUE, doneLabel);
+            myExp2.genReg(r); // case: false (result depends on right operand)
+        });
+        Walk.then(() -> G.genLabel(doneLabel));
     }
 
     public void genJumpCode(String trueLabel, String falseLabel) {
@@ -3142,10 +4569,12 @@ class OrNode extends LogicalExpNode {
         Condition myExp2 = (Condition) this.myExp2;
 
         String secondEvaluationLabel = G.nextLabel();
-        myExp1.genJumpCode(trueLabel, secondEvaluationLabel);
-        // evaluate second operand
-        G.genLabel(secondEvaluationLabel);
-        myExp2.genJumpCode(trueLabel, falseLabel);
+        Walk.then(() -> myExp1.genJumpCode(trueLabel, secondEvaluationLabel));
+        Walk.then(() -> {
+            // evaluate second operand
+            G.genLabel(secondEvaluationLabel);
+            myExp2.genJumpCode(trueLabel, falseLabel);
+        });
     }
 
 }
@@ -3157,23 +4586,23 @@ class EqualsNode extends EqualityExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" == ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " == ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left == right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SEQ;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("seq", "equality"); // T0 = T0 == T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 == T1)
-        G.generateWithComment("seq", G.T0, G.T0, G.T1, "equality");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "seq", "equality");
     }
 }
 
@@ -3184,23 +4613,23 @@ class NotEqualsNode extends EqualityExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" != ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " != ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left != right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SNE;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("sne", "equality"); // T0 = T0 != T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 != T1)
-        G.generateWithComment("sne", G.T0, G.T0, G.T1, "equality");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "sne", "equality");
     }
 }
 
@@ -3211,23 +4640,23 @@ class LessNode extends RelationalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" < ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " < ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left < right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SLT;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("slt", "relational"); // T0 = T0 < T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 < T1)
-        G.generateWithComment("slt", G.T0, G.T0, G.T1, "relational");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "slt", "relational");
     }
 }
 
@@ -3238,23 +4667,23 @@ class GreaterNode extends RelationalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" > ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " > ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left > right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SGT;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("sgt", "relational"); // T0 = T0 > T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 > T1)
-        G.generateWithComment("sgt", G.T0, G.T0, G.T1, "relational");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "sgt", "relational");
     }
 }
 
@@ -3265,23 +4694,23 @@ class LessEqNode extends RelationalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" <= ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " <= ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left <= right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SLE;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("sle", "relational"); // T0 = T0 <= T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 <= T1)
-        G.generateWithComment("sle", G.T0, G.T0, G.T1, "relational");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "sle", "relational");
     }
 }
 
@@ -3292,23 +4721,23 @@ class GreaterEqNode extends RelationalExpNode {
     }
 
     public void unparse(PrintWriter p, int indent) {
-        p.print("(");
-        myExp1.unparse(p, 0);
-        p.print(" >= ");
-        myExp2.unparse(p, 0);
-        p.print(")");
+        unparseBinary(p, " >= ");
+    }
+
+    protected ExpNode foldValues(int left, int right) {
+        return boolLit(left >= right);
+    }
+
+    protected Tac.Op tacOp() {
+        return Tac.Op.SGE;
     }
 
     public void codeGen() {
-        // evaluate operands into stack (for 2 operands: right will be on top)
-        myExp1.codeGen(); // push T0
-        myExp2.codeGen(); // push T1
+        genStack("sge", "relational"); // T0 = T0 >= T1
+    }
 
-        G.genPop(G.T1);
-        G.genPop(G.T0);
-        // perform operation (T0 = T0 >= T1)
-        G.generateWithComment("sge", G.T0, G.T0, G.T1, "relational");
-        G.genPush(G.T0); // push result onto stack
+    public void genReg(int r) {
+        genBinary(r, "sge", "relational");
     }
 
 }
@@ -281,6 +281,9 @@ class CSpec
   /* Verbose execution flag. */
   boolean m_verbose;
 
+  /* Per-phase report flag (-time): also reports table statistics. */
+  boolean m_time;
+
   /* JLex directives flags. */
   boolean m_integer_type;
   boolean m_intwrap_type;
@@ -291,6 +294,8 @@ class CSpec
   boolean m_unix;
   boolean m_public;
   boolean m_ignorecase;
+  boolean m_switch; /* Emit direct-coded transitions, not tables. */
+  boolean m_nio; /* Emit whole-buffer constructors and yytext_view(). */
 
   char m_init_code[];
   int m_init_read;
@@ -373,9 +378,12 @@ class CSpec
         m_public = false;
 	m_yyeof = false;
 	m_ignorecase = false;
+	m_switch = false;
+	m_nio = false;
 
 	/* Initialize variables for JLex runtime options. */
 	m_verbose = true;
+	m_time = false;
 
 	m_nfa_start = null;
 	m_nfa_states = new Vector();
@@ -429,6 +437,15 @@ class CEmit
   private CSpec m_spec;
   private java.io.PrintWriter m_outstream;
 
+  /* Row-displacement packing of the transition table, filled in
+     by pack_table().  The transition of state s on column c is
+     m_next[m_base[s] + c] if m_check[m_base[s] + c] == m_base[s],
+     and CDTrans.F otherwise. */
+  private int m_base[];
+  private int m_check[];
+  private int m_next[];
+  private int m_packed_size;
+
   /***************************************************************
     Constants: Anchor Types
     **************************************************************/
@@ -442,6 +459,11 @@ class CEmit
   private final boolean EDBG = true;
   private final boolean NOT_EDBG = false;
 
+  /* %switch: rows with more character ranges than SWITCH_RANGES 
+     dispatch on characters below CASE_LIMIT with a switch. */
+  private final int SWITCH_RANGES = 4;
+  private final int CASE_LIMIT = 128;
+
   /***************************************************************
     Function: CEmit
     Description: Constructor.
@@ -463,6 +485,10 @@ class CEmit
       {
 	m_spec = null;
 	m_outstream = null;
+	m_base = null;
+	m_check = null;
+	m_next = null;
+	m_packed_size = 0;
       }
 
   /***************************************************************
@@ -753,6 +779,11 @@ class CEmit
 	  m_outstream.println("\t}");
 	  m_outstream.println();
 
+	  if (m_spec.m_nio)
+	    {
+	      emit_nio_construct();
+	    }
+
 
 	  /* Function: third, private constructor - only for internal use */
 	  m_outstream.print("\tprivate ");
@@ -804,6 +835,105 @@ class CEmit
 
 	}
 
+  /***************************************************************
+    Function: emit_nio_construct
+    Description: Emits the %nio constructors.  The whole input is
+    held in yy_buffer and yy_reader stays null, so yy_advance()
+    never refills, compacts or grows the buffer.  A CharBuffer 
+    with an accessible
+    array is scanned in place; any other is copied once.  The 
+    Path constructor maps the file and decodes it in one pass 
+    with the platform charset, as the InputStream constructor 
+    does.
+    **************************************************************/
+  private void emit_nio_construct
+    (
+     )
+      throws java.io.IOException
+	{
+	  String throws_clause;
+
+	  if (null != m_spec.m_init_throw_code)
+	    {
+	      throws_clause = "java.io.IOException, "
+		+ new String(m_spec.m_init_throw_code,0,
+			     m_spec.m_init_throw_read);
+	    }
+	  else
+	    {
+	      throws_clause = "java.io.IOException";
+	    }
+
+	  /* Function: fourth constructor (CharBuffer) */
+	  m_outstream.print("\t");
+	  if (true == m_spec.m_public) {
+	    m_outstream.print("public ");
+	  }
+          m_outstream.print(new String(m_spec.m_class_name));
+	  m_outstream.print(" (java.nio.CharBuffer input)");
+	  
+	  if (null != m_spec.m_init_throw_code)
+	    {
+	      m_outstream.println(); 
+	      m_outstream.print("\t\tthrows "); 
+	      m_outstream.println(new String(m_spec.m_init_throw_code,0,
+						m_spec.m_init_throw_read));
+	      m_outstream.println("\t\t{");
+	    }
+	  else
+	    {
+	      m_outstream.println(" {");
+	    }
+
+	  m_outstream.println("\t\tthis ();");	  
+	  m_outstream.println("\t\tif (null == input) {");
+	  m_outstream.println("\t\t\tthrow (new Error(\"Error: Bad input "
+				 + "stream initializer.\"));");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tif (input.hasArray()) {");
+	  m_outstream.println("\t\t\tyy_buffer = input.array();");
+	  m_outstream.println("\t\t\tyy_buffer_start = input.arrayOffset() + input.position();");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\telse {");
+	  m_outstream.println("\t\t\tyy_buffer = new char[input.remaining()];");
+	  m_outstream.println("\t\t\tinput.duplicate().get(yy_buffer);");
+	  m_outstream.println("\t\t\tyy_buffer_start = 0;");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tyy_buffer_index = yy_buffer_start;");
+	  m_outstream.println("\t\tyy_buffer_end = yy_buffer_start;");
+	  m_outstream.println("\t\tyy_buffer_read = yy_buffer_start + input.remaining();");
+	  m_outstream.println("\t}");
+	  m_outstream.println();
+
+	  /* Function: fifth constructor (mapped file) */
+	  m_outstream.print("\t");
+	  if (true == m_spec.m_public) {
+	    m_outstream.print("public ");
+	  }
+          m_outstream.print(new String(m_spec.m_class_name));
+	  m_outstream.println(" (java.nio.file.Path path)");
+	  m_outstream.println("\t\tthrows " + throws_clause);
+	  m_outstream.println("\t\t{");
+	  m_outstream.println("\t\tthis (yy_map(path));");
+	  m_outstream.println("\t}");
+	  m_outstream.println();
+
+	  m_outstream.println("\tprivate static java.nio.CharBuffer yy_map (java.nio.file.Path path)");
+	  m_outstream.println("\t\tthrows java.io.IOException {");
+	  m_outstream.println("\t\tjava.nio.channels.FileChannel channel "
+			      + "= java.nio.channels.FileChannel.open(path);");
+	  m_outstream.println("\t\ttry {");
+	  m_outstream.println("\t\t\treturn java.nio.charset.Charset.defaultCharset().decode(");
+	  m_outstream.println("\t\t\t\tchannel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY,");
+	  m_outstream.println("\t\t\t\t\t0, channel.size()));");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t\tfinally {");
+	  m_outstream.println("\t\t\tchannel.close();");
+	  m_outstream.println("\t\t}");
+	  m_outstream.println("\t}");
+	  m_outstream.println();
+	}
+
   /***************************************************************
     Function: emit_states
     Description: Emits constants that serve as lexical states,
@@ -923,6 +1053,15 @@ class CEmit
 	m_outstream.println("\t\t}");
 	m_outstream.println();
 
+	if (m_spec.m_nio)
+	  {
+	    /* Whole input already in yy_buffer. */
+	    m_outstream.println("\t\tif (null == yy_reader) {");
+	    m_outstream.println("\t\t\treturn YY_EOF;");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println();
+	  }
+
 	m_outstream.println("\t\tif (0 != yy_buffer_start) {");
 	m_outstream.println("\t\t\ti = yy_buffer_start;");
 	m_outstream.println("\t\t\tj = 0;");
@@ -1026,6 +1165,53 @@ class CEmit
 	m_outstream.println("\t\t\tyy_buffer_end - yy_buffer_start));");
 	m_outstream.println("\t}");
 
+	/* Function: yytext_view */
+	/* A fresh view of the current token's offset and length in
+	   the buffer, without copying its characters.  The buffer of
+	   a whole-buffer scanner never changes, so its views stay
+	   valid for the life of the scanner; a Reader's buffer is
+	   refilled in place, so its views last only until the next
+	   match. */
+	if (m_spec.m_nio)
+	  {
+	    m_outstream.println("\tprivate static class yy_text_view implements java.lang.CharSequence {");
+	    m_outstream.println("\t\tprivate final char yy_chars[];");
+	    m_outstream.println("\t\tprivate final int yy_offset;");
+	    m_outstream.println("\t\tprivate final int yy_length;");
+	    m_outstream.println("\t\tyy_text_view (char chars[], int offset, int length) {");
+	    m_outstream.println("\t\t\tyy_chars = chars;");
+	    m_outstream.println("\t\t\tyy_offset = offset;");
+	    m_outstream.println("\t\t\tyy_length = length;");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\tpublic int length () {");
+	    m_outstream.println("\t\t\treturn yy_length;");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\tpublic char charAt (int index) {");
+	    m_outstream.println("\t\t\tif (index < 0 || index >= yy_length) {");
+	    m_outstream.println("\t\t\t\tthrow new java.lang.IndexOutOfBoundsException();");
+	    m_outstream.println("\t\t\t}");
+	    m_outstream.println("\t\t\treturn yy_chars[yy_offset + index];");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\tpublic java.lang.CharSequence subSequence (int start, int end) {");
+	    m_outstream.println("\t\t\tif (start < 0 || end > yy_length || start > end) {");
+	    m_outstream.println("\t\t\t\tthrow new java.lang.IndexOutOfBoundsException();");
+	    m_outstream.println("\t\t\t}");
+	    m_outstream.println("\t\t\treturn new yy_text_view(yy_chars,yy_offset + start,end - start);");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t\tpublic java.lang.String toString () {");
+	    m_outstream.println("\t\t\treturn new java.lang.String(yy_chars,yy_offset,yy_length);");
+	    m_outstream.println("\t\t}");
+	    m_outstream.println("\t}");
+	    m_outstream.println("\t/* The current token, without copying it: valid for the life");
+	    m_outstream.println("\t   of the scanner when it scans a whole buffer, and only until");
+	    m_outstream.println("\t   the next match when it reads from a Reader. */");
+	    m_outstream.println("\tjava.lang.CharSequence yytext_view () {");
+	    m_outstream.println("\t\treturn new yy_text_view(yy_buffer,");
+	    m_outstream.println("\t\t\tyy_buffer_start,");
+	    m_outstream.println("\t\t\tyy_buffer_end - yy_buffer_start);");
+	    m_outstream.println("\t}");
+	  }
+
 	/* Function: yylength */
 	m_outstream.println("\tprivate int yylength () {");
 	m_outstream.println("\t\treturn yy_buffer_end - yy_buffer_start;");
@@ -1070,43 +1256,43 @@ class CEmit
 
 	// Function: private int [][] unpackFromString(int size1, int size2, String st)
 	// Added 6/24/98 Raimondas Lencevicius
-	// May be made more efficient by replacing String operations
+	// Scans the string in place rather than splitting off
+	// substrings, so decoding is linear in the table size.
 	// Assumes correctly formed input String. Performs no error checking
-	m_outstream.println("\tprivate int[][] unpackFromString"+
+	m_outstream.println("\tprivate static int[][] unpackFromString"+
 			    "(int size1, int size2, String st) {");
-	m_outstream.println("\t\tint colonIndex = -1;");
-	m_outstream.println("\t\tString lengthString;");
+	m_outstream.println("\t\tint length = st.length();");
+	m_outstream.println("\t\tint index = 0;");
 	m_outstream.println("\t\tint sequenceLength = 0;");
 	m_outstream.println("\t\tint sequenceInteger = 0;");
-	m_outstream.println();
-	m_outstream.println("\t\tint commaIndex;");
-	m_outstream.println("\t\tString workString;");
+	m_outstream.println("\t\tboolean negative;");
+	m_outstream.println("\t\tchar c;");
 	m_outstream.println();
 	m_outstream.println("\t\tint res[][] = new int[size1][size2];");
 	m_outstream.println("\t\tfor (int i= 0; i < size1; i++) {");
 	m_outstream.println("\t\t\tfor (int j= 0; j < size2; j++) {");
-	m_outstream.println("\t\t\t\tif (sequenceLength != 0) {");
-	m_outstream.println("\t\t\t\t\tres[i][j] = sequenceInteger;");
-	m_outstream.println("\t\t\t\t\tsequenceLength--;");
-	m_outstream.println("\t\t\t\t\tcontinue;");
-	m_outstream.println("\t\t\t\t}");
-	m_outstream.println("\t\t\t\tcommaIndex = st.indexOf(',');");
-	m_outstream.println("\t\t\t\tworkString = (commaIndex==-1) ? st :");
-	m_outstream.println("\t\t\t\t\tst.substring(0, commaIndex);");
-	m_outstream.println("\t\t\t\tst = st.substring(commaIndex+1);");  
-	m_outstream.println("\t\t\t\tcolonIndex = workString.indexOf(':');");
-	m_outstream.println("\t\t\t\tif (colonIndex == -1) {");
-	m_outstream.println("\t\t\t\t\tres[i][j]=Integer.parseInt(workString);");
-	m_outstream.println("\t\t\t\t\tcontinue;");
+	m_outstream.println("\t\t\t\tif (sequenceLength == 0) {");
+	m_outstream.println("\t\t\t\t\tnegative = (st.charAt(index) == '-');");
+	m_outstream.println("\t\t\t\t\tif (negative) index++;");
+	m_outstream.println("\t\t\t\t\tsequenceInteger = 0;");
+	m_outstream.println("\t\t\t\t\twhile (index < length");
+	m_outstream.println("\t\t\t\t\t       && (c = st.charAt(index)) >= '0' && c <= '9') {");
+	m_outstream.println("\t\t\t\t\t\tsequenceInteger = 10 * sequenceInteger + (c - '0');");
+	m_outstream.println("\t\t\t\t\t\tindex++;");
+	m_outstream.println("\t\t\t\t\t}");
+	m_outstream.println("\t\t\t\t\tif (negative) sequenceInteger = -sequenceInteger;");
+	m_outstream.println("\t\t\t\t\tsequenceLength = 1;");
+	m_outstream.println("\t\t\t\t\tif (index < length && st.charAt(index) == ':') {");
+	m_outstream.println("\t\t\t\t\t\tindex++;");
+	m_outstream.println("\t\t\t\t\t\tsequenceLength = 0;");
+	m_outstream.println("\t\t\t\t\t\twhile (index < length");
+	m_outstream.println("\t\t\t\t\t\t       && (c = st.charAt(index)) >= '0' && c <= '9') {");
+	m_outstream.println("\t\t\t\t\t\t\tsequenceLength = 10 * sequenceLength + (c - '0');");
+	m_outstream.println("\t\t\t\t\t\t\tindex++;");
+	m_outstream.println("\t\t\t\t\t\t}");
+	m_outstream.println("\t\t\t\t\t}");
+	m_outstream.println("\t\t\t\t\tindex++; // skip ','");
 	m_outstream.println("\t\t\t\t}");
-	m_outstream.println("\t\t\t\tlengthString =");
-	m_outstream.println("\t\t\t\t\tworkString.substring(colonIndex+1);");
-	m_outstream.println("\t\t\t\tsequenceLength="+
-			    "Integer.parseInt(lengthString);");
-	m_outstream.println("\t\t\t\tworkString="+
-			    "workString.substring(0,colonIndex);");
-	m_outstream.println("\t\t\t\tsequenceInteger="+
-			    "Integer.parseInt(workString);");
 	m_outstream.println("\t\t\t\tres[i][j] = sequenceInteger;");
 	m_outstream.println("\t\t\t\tsequenceLength--;");
 	m_outstream.println("\t\t\t}");
@@ -1158,7 +1344,6 @@ class CEmit
 	int i;
 	int elem;
 	int size;
-	CDTrans dtrans;
 	boolean is_start;
 	boolean is_end;
 	CAccept accept;
@@ -1212,36 +1397,510 @@ class CEmit
 	  }
 	m_outstream.println("\t};");
 
+	if (m_spec.m_switch)
+	  {
+	    emit_direct();
+	    return;
+	  }
+
 	// CSA: modified yy_cmap to use string packing 9-Aug-1999
 	int[] yy_cmap = new int[m_spec.m_ccls_map.length];
 	for (i = 0; i < m_spec.m_ccls_map.length; ++i)
 	    yy_cmap[i] = m_spec.m_col_map[m_spec.m_ccls_map[i]];
-	m_outstream.print("\tprivate int yy_cmap[] = unpackFromString(");
+	m_outstream.print("\tprivate static final int yy_cmap[] = unpackFromString(");
 	emit_table_as_string(new int[][] { yy_cmap });
 	m_outstream.println(")[0];");
 	m_outstream.println();
 
-	// CSA: modified yy_rmap to use string packing 9-Aug-1999
-	m_outstream.print("\tprivate int yy_rmap[] = unpackFromString(");
-	emit_table_as_string(new int[][] { m_spec.m_row_map });
+	// yy_rmap is folded into yy_base, which is indexed by state;
+	// the reduced rows are packed by row displacement into
+	// yy_chk and yy_nxt.  See pack_table().  The tables are
+	// static, so they are decoded once per class rather than
+	// once per lexer instance.
+	pack_table();
+
+	int[] yy_base = new int[m_spec.m_row_map.length];
+	for (i = 0; i < m_spec.m_row_map.length; ++i)
+	    yy_base[i] = m_base[m_spec.m_row_map[i]];
+	m_outstream.print("\tprivate static final int yy_base[] = unpackFromString(");
+	emit_table_as_string(new int[][] { yy_base });
+	m_outstream.println(")[0];");
+	m_outstream.println();
+
+	m_outstream.print("\tprivate static final int yy_chk[] = unpackFromString(");
+	emit_table_as_string(new int[][] { m_check });
 	m_outstream.println(")[0];");
 	m_outstream.println();
 
 	// 6/24/98 Raimondas Lencevicius
 	// modified to use
 	//    int[][] unpackFromString(int size1, int size2, String st)
-	size = m_spec.m_dtrans_vector.size();
-	int[][] yy_nxt = new int[size][];
-	for (elem=0; elem<size; elem++) {
-	    dtrans = (CDTrans) m_spec.m_dtrans_vector.elementAt(elem);
-	    CUtility.ASSERT(dtrans.m_dtrans.length==m_spec.m_dtrans_ncols);
-	    yy_nxt[elem] = dtrans.m_dtrans;
-	}
 	m_outstream.print
-	  ("\tprivate int yy_nxt[][] = unpackFromString(");
-	emit_table_as_string(yy_nxt);
-	m_outstream.println(");");
+	  ("\tprivate static final int yy_nxt[] = unpackFromString(");
+	emit_table_as_string(new int[][] { m_next });
+	m_outstream.println(")[0];");
+	m_outstream.println();
+      }
+
+  /***************************************************************
+    Function: pack_table
+    Description: Packs the reduced transition table (the rows of 
+    m_dtrans_vector over the m_dtrans_ncols reduced columns) by 
+    row displacement.  Only transitions other than CDTrans.F
+    are stored.  Rows are placed densest first, each at the 
+    lowest base where its entries fall into unused slots.  Bases
+    are distinct, so a slot's check entry (the base of the row 
+    owning it) identifies the row; unused slots hold -1.  The 
+    arrays extend m_dtrans_ncols past the highest base, so the
+    generated lookup needs no bounds test.
+    **************************************************************/
+  private void pack_table
+    (
+     )
+      {
+	int nrows;
+	int ncols;
+	int row;
+	int col;
+	int i;
+	int j;
+	int count[];
+	int order[];
+	int trans[];
+	boolean used_base[];
+	int base;
+	int low;
+	int high;
+	int tmp;
+	CDTrans dtrans;
+
+	nrows = m_spec.m_dtrans_vector.size();
+	ncols = m_spec.m_dtrans_ncols;
+
+	/* Order rows by decreasing number of stored entries. */
+	count = new int[nrows];
+	order = new int[nrows];
+	for (row = 0; row < nrows; ++row)
+	  {
+	    dtrans = (CDTrans) m_spec.m_dtrans_vector.elementAt(row);
+	    CUtility.ASSERT(dtrans.m_dtrans.length == ncols);
+
+	    for (col = 0; col < ncols; ++col)
+	      {
+		if (CDTrans.F != dtrans.m_dtrans[col])
+		  {
+		    ++count[row];
+		  }
+	      }
+	    order[row] = row;
+	  }
+	for (i = 1; i < nrows; ++i)
+	  {
+	    tmp = order[i];
+	    for (j = i; j > 0 && count[order[j - 1]] < count[tmp]; --j)
+	      {
+		order[j] = order[j - 1];
+	      }
+	    order[j] = tmp;
+	  }
+
+	/* Place rows, first fit. */
+	m_base = new int[nrows];
+	m_check = new int[nrows + ncols];
+	m_next = new int[nrows + ncols];
+	java.util.Arrays.fill(m_check,-1);
+	java.util.Arrays.fill(m_next,CDTrans.F);
+	used_base = new boolean[nrows + ncols];
+	low = 0;
+	high = 0;
+	for (i = 0; i < nrows; ++i)
+	  {
+	    row = order[i];
+	    trans = ((CDTrans) m_spec.m_dtrans_vector.elementAt(row)).m_dtrans;
+
+	    /* Slots below low are all taken, so no base that puts
+	       a whole row below low can fit. */
+	    while (low < m_check.length && -1 != m_check[low])
+	      {
+		++low;
+	      }
+
+	    for (base = Math.max(0,low - ncols + 1); ; ++base)
+	      {
+		if (base + ncols > m_check.length)
+		  {
+		    grow_packed(base + ncols);
+		    used_base = grow(used_base,m_check.length);
+		  }
+		if (used_base[base])
+		  {
+		    continue;
+		  }
+		for (col = 0; col < ncols; ++col)
+		  {
+		    if (CDTrans.F != trans[col] && -1 != m_check[base + col])
+		      {
+			break;
+		      }
+		  }
+		if (ncols == col)
+		  {
+		    break;
+		  }
+	      }
+
+	    used_base[base] = true;
+	    m_base[row] = base;
+	    for (col = 0; col < ncols; ++col)
+	      {
+		if (CDTrans.F != trans[col])
+		  {
+		    m_check[base + col] = base;
+		    m_next[base + col] = trans[col];
+		  }
+	      }
+	    if (base > high)
+	      {
+		high = base;
+	      }
+	  }
+
+	/* Trim to the highest base plus one full row. */
+	m_packed_size = high + ncols;
+	m_check = copy(m_check,m_packed_size);
+	m_next = copy(m_next,m_packed_size);
+
+	if (CUtility.DEBUG)
+	  {
+	    for (row = 0; row < nrows; ++row)
+	      {
+		trans = ((CDTrans) m_spec.m_dtrans_vector.elementAt(row)).m_dtrans;
+		base = m_base[row];
+		for (col = 0; col < ncols; ++col)
+		  {
+		    CUtility.ASSERT(trans[col] 
+				    == ((base == m_check[base + col])
+					? m_next[base + col] : CDTrans.F));
+		  }
+	      }
+	  }
+
+	if (m_spec.m_time)
+	  {
+	    System.out.println(nrows * ncols + " transition entries packed into "
+			       + m_packed_size + ".");
+	  }
+      }
+
+  /***************************************************************
+    Function: emit_direct
+    Description: Emits the transition function as code rather 
+    than tables (the %switch directive).  yy_next() switches on 
+    the state, with states sharing a reduced row sharing a case, 
+    then finds the next state by a balanced tree of comparisons
+    over the character ranges on which the row is constant.
+    A very large machine may exceed the JVM's 64K limit on 
+    method size; use the table-driven scanner for those.
+    **************************************************************/
+  private void emit_direct
+    (
+     )
+      throws java.io.IOException
+      {
+	int nchars;
+	int nrows;
+	int nsegs;
+	int seg_start[];
+	int seg_col[];
+	int range_start[];
+	int range_next[];
+	int nranges;
+	int row;
+	int state;
+	int c;
+	int col;
+	int trans[];
+
+	if (CUtility.DEBUG)
+	  {
+	    CUtility.ASSERT(null != m_spec);
+	    CUtility.ASSERT(null != m_outstream);
+	  }
+
+	/* Split the input alphabet, including YY_BOL and YY_EOF,
+	   into runs of characters in the same reduced column. */
+	nchars = m_spec.m_ccls_map.length;
+	seg_start = new int[nchars];
+	seg_col = new int[nchars];
+	nsegs = 0;
+	for (c = 0; c < nchars; ++c)
+	  {
+	    col = m_spec.m_col_map[m_spec.m_ccls_map[c]];
+	    if (0 == nsegs || seg_col[nsegs - 1] != col)
+	      {
+		seg_start[nsegs] = c;
+		seg_col[nsegs] = col;
+		++nsegs;
+	      }
+	  }
+
+	range_start = new int[nsegs];
+	range_next = new int[nsegs];
+
+	/* Dispatch on state to one method per reduced row, so each
+	   stays small enough for the JIT to compile and inline. */
+	nrows = m_spec.m_dtrans_vector.size();
+	m_outstream.println("\tprivate int yy_next (int yy_state, int yy_lookahead) {");
+	m_outstream.println("\t\tswitch (yy_state) {");
+	for (row = 0; row < nrows; ++row)
+	  {
+	    trans = ((CDTrans) m_spec.m_dtrans_vector.elementAt(row)).m_dtrans;
+	    nranges = row_ranges(trans,seg_start,seg_col,nsegs,
+				 range_start,range_next);
+
+	    /* A row that always fails is left to the default case. */
+	    if (1 == nranges && CDTrans.F == range_next[0])
+	      {
+		continue;
+	      }
+
+	    for (state = 0; state < m_spec.m_row_map.length; ++state)
+	      {
+		if (row == m_spec.m_row_map[state])
+		  {
+		    m_outstream.println("\t\tcase " + state + ":");
+		  }
+	      }
+	    m_outstream.println("\t\t\treturn yy_next_" + row + "(yy_lookahead);");
+	  }
+	m_outstream.println("\t\tdefault:");
+	m_outstream.println("\t\t\treturn YY_F;");
+	m_outstream.println("\t\t}");
+	m_outstream.println("\t}");
 	m_outstream.println();
+
+	for (row = 0; row < nrows; ++row)
+	  {
+	    trans = ((CDTrans) m_spec.m_dtrans_vector.elementAt(row)).m_dtrans;
+	    nranges = row_ranges(trans,seg_start,seg_col,nsegs,
+				 range_start,range_next);
+
+	    if (1 == nranges && CDTrans.F == range_next[0])
+	      {
+		continue;
+	      }
+
+	    m_outstream.println("\tprivate int yy_next_" + row 
+				+ " (int yy_lookahead) {");
+	    if (SWITCH_RANGES < nranges)
+	      {
+		emit_case_ranges(range_start,range_next,nranges,nchars);
+	      }
+	    else
+	      {
+		emit_ranges(range_start,range_next,0,nranges - 1,"\t\t");
+	      }
+	    m_outstream.println("\t}");
+	    m_outstream.println();
+	  }
+      }
+
+  /***************************************************************
+    Function: row_ranges
+    Description: Fills range_start and range_next with the ranges
+    of characters on which a row of the reduced transition table
+    is constant, merging adjacent runs of seg_start with the same
+    next state.  Returns the number of ranges.
+    **************************************************************/
+  private int row_ranges
+    (
+     int trans[],
+     int seg_start[],
+     int seg_col[],
+     int nsegs,
+     int range_start[],
+     int range_next[]
+     )
+      {
+	int i;
+	int next;
+	int nranges;
+
+	nranges = 0;
+	for (i = 0; i < nsegs; ++i)
+	  {
+	    next = trans[seg_col[i]];
+	    if (0 == nranges || range_next[nranges - 1] != next)
+	      {
+		range_start[nranges] = seg_start[i];
+		range_next[nranges] = next;
+		++nranges;
+	      }
+	  }
+	return nranges;
+      }
+
+  /***************************************************************
+    Function: emit_case_ranges
+    Description: Emits a switch on yy_lookahead with a case label
+    for each character below CASE_LIMIT that does not fail, which
+    javac compiles to a jump table.  The default case fails the
+    rest of those and leaves characters from CASE_LIMIT up to a 
+    binary search.
+    **************************************************************/
+  private void emit_case_ranges
+    (
+     int range_start[],
+     int range_next[],
+     int nranges,
+     int nchars
+     )
+      throws java.io.IOException
+      {
+	int i;
+	int c;
+	int end;
+	int first_high;
+
+	m_outstream.println("\t\tswitch (yy_lookahead) {");
+	first_high = nranges;
+	for (i = 0; i < nranges; ++i)
+	  {
+	    if (range_start[i] >= CASE_LIMIT)
+	      {
+		first_high = i;
+		break;
+	      }
+	    if (CDTrans.F == range_next[i])
+	      {
+		continue;
+	      }
+
+	    end = (i + 1 < nranges) ? range_start[i + 1] : nchars;
+	    end = Math.min(end,CASE_LIMIT);
+	    for (c = range_start[i]; c < end; ++c)
+	      {
+		m_outstream.print(((c - range_start[i]) % 8 == 0) ? "\t\tcase " : " case ");
+		m_outstream.print(c + ":");
+		if ((c - range_start[i]) % 8 == 7 || c == end - 1)
+		  {
+		    m_outstream.println();
+		  }
+	      }
+	    m_outstream.println("\t\t\treturn " + range_next[i] + ";");
+	  }
+	m_outstream.println("\t\tdefault:");
+	if (nchars > CASE_LIMIT)
+	  {
+	    /* Characters below CASE_LIMIT without a case fail; the
+	       range straddling CASE_LIMIT continues above it. */
+	    m_outstream.println("\t\t\tif (yy_lookahead < " + CASE_LIMIT + ") {");
+	    m_outstream.println("\t\t\t\treturn YY_F;");
+	    m_outstream.println("\t\t\t}");
+	    if (first_high == nranges || range_start[first_high] > CASE_LIMIT)
+	      {
+		--first_high;
+	      }
+	    emit_ranges(range_start,range_next,first_high,nranges - 1,"\t\t\t");
+	  }
+	else
+	  {
+	    m_outstream.println("\t\t\treturn YY_F;");
+	  }
+	m_outstream.println("\t\t}");
+      }
+
+  /***************************************************************
+    Function: emit_ranges
+    Description: Emits a binary search of ranges first through 
+    last for yy_lookahead, returning the next state of the range
+    it falls in.  Range i covers range_start[i] up to, but not
+    including, range_start[i + 1].
+    **************************************************************/
+  private void emit_ranges
+    (
+     int range_start[],
+     int range_next[],
+     int first,
+     int last,
+     String tabs
+     )
+      throws java.io.IOException
+      {
+	int mid;
+
+	if (first == last)
+	  {
+	    if (CDTrans.F == range_next[first])
+	      {
+		m_outstream.println(tabs + "return YY_F;");
+	      }
+	    else
+	      {
+		m_outstream.println(tabs + "return " + range_next[first] + ";");
+	      }
+	    return;
+	  }
+
+	mid = (first + last + 1) / 2;
+	m_outstream.println(tabs + "if (yy_lookahead < " + range_start[mid] + ") {");
+	emit_ranges(range_start,range_next,first,mid - 1,tabs + "\t");
+	m_outstream.println(tabs + "}");
+	emit_ranges(range_start,range_next,mid,last,tabs);
+      }
+
+  /***************************************************************
+    Function: grow_packed
+    Description: Enlarges m_check and m_next to at least size
+    slots, filling new slots as unused.
+    **************************************************************/
+  private void grow_packed
+    (
+     int size
+     )
+      {
+	int old;
+
+	old = m_check.length;
+	size = Math.max(size,2 * old);
+	m_check = copy(m_check,size);
+	m_next = copy(m_next,size);
+	java.util.Arrays.fill(m_check,old,size,-1);
+	java.util.Arrays.fill(m_next,old,size,CDTrans.F);
+      }
+
+  /***************************************************************
+    Function: copy
+    Description: Returns the first size elements of array,
+    padded with zeros.
+    **************************************************************/
+  private int[] copy
+    (
+     int array[],
+     int size
+     )
+      {
+	int result[];
+
+	result = new int[size];
+	System.arraycopy(array,0,result,0,Math.min(size,array.length));
+	return result;
+      }
+
+  /***************************************************************
+    Function: grow
+    **************************************************************/
+  private boolean[] grow
+    (
+     boolean array[],
+     int size
+     )
+      {
+	boolean result[];
+
+	result = new boolean[size];
+	System.arraycopy(array,0,result,0,array.length);
+	return result;
       }
 
   /***************************************************************
@@ -1384,6 +2043,10 @@ class CEmit
 	    }
 
 	  m_outstream.println("\t\tint yy_lookahead;");
+	  if (false == m_spec.m_switch)
+	    {
+	      m_outstream.println("\t\tint yy_index;");
+	    }
 	  m_outstream.println("\t\tint yy_anchor = YY_NO_ANCHOR;");
 	  /*m_outstream.println("\t\tint yy_state "
 	    + "= yy_initial_dtrans(yy_lexical_state);");*/
@@ -1417,8 +2080,17 @@ class CEmit
 	  m_outstream.println("\t\t\tyy_next_state = YY_F;");
 	  /*m_outstream.println("\t\t\t\tyy_next_state = "
 				 + "yy_next(yy_state,yy_lookahead);");*/
-	  m_outstream.println("\t\t\tyy_next_state = "
- 	   + "yy_nxt[yy_rmap[yy_state]][yy_cmap[yy_lookahead]];");
+	  if (m_spec.m_switch)
+	    {
+	      m_outstream.println("\t\t\tyy_next_state = "
+				  + "yy_next(yy_state,yy_lookahead);");
+	    }
+	  else
+	    {
+	      m_outstream.println("\t\t\tyy_index = yy_base[yy_state] + yy_cmap[yy_lookahead];");
+	      m_outstream.println("\t\t\tif (yy_chk[yy_index] == yy_base[yy_state]) "
+				  + "yy_next_state = yy_nxt[yy_index];");
+	    }
 
 	  if (NOT_EDBG)
 	    {
@@ -1615,7 +2287,8 @@ class CBunch
   /***************************************************************
     Member Variables
     **************************************************************/
-  Vector m_nfa_set; /* Vector of CNfa states in dfa state. */
+  int m_nfa_set[]; /* Labels of CNfa states in dfa state. */
+  int m_nfa_size; /* Number of labels in use in m_nfa_set. */
   SparseBitSet m_nfa_bit; /* BitSet representation of CNfa labels. */
   CAccept m_accept; /* Accepting actions, or null if nonaccepting state. */
   int m_anchor; /* Anchors on regular expression. */
@@ -1630,6 +2303,7 @@ class CBunch
      )
       {
 	m_nfa_set = null;
+	m_nfa_size = 0;
 	m_nfa_bit = null;
 	m_accept = null;
 	m_anchor = CSpec.NONE;
@@ -2405,8 +3079,36 @@ class CMinimize
     Member Variables
     **************************************************************/
   CSpec m_spec;
-  Vector m_group;
-  int m_ingroup[];
+  int m_ingroup[]; /* Group index of each DFA state, by label. */
+  int m_group_count;
+
+  /* Refinable partition of DFA states used by Hopcroft's
+     algorithm.  States of block b occupy m_elem[m_first[b]]
+     through m_elem[m_end[b] - 1]; states already marked while
+     splitting are kept in front of m_mid[b]. */
+  int m_elem[];
+  int m_loc[];
+  int m_block[];
+  int m_first[];
+  int m_mid[];
+  int m_end[];
+  int m_block_count;
+
+  /* Inverse transitions: predecessors of state t on column c are
+     m_inv[m_inv_start[c * n + t]] through 
+     m_inv[m_inv_start[c * n + t + 1] - 1], n counting the sink. */
+  int m_inv_start[];
+  int m_inv[];
+
+  /* Work list of splitter blocks. */
+  int m_work[];
+  int m_work_count;
+  boolean m_in_work[];
+
+  /***************************************************************
+    Constants
+    **************************************************************/
+  private static final int NO_GROUP = -1;
 
   /***************************************************************
     Function: CMinimize
@@ -2428,8 +3130,9 @@ class CMinimize
      )
       {
 	m_spec = null;
-	m_group = null;
 	m_ingroup = null;
+	m_group_count = 0;
+	free_groups();
       }
 
   /***************************************************************
@@ -2447,8 +3150,9 @@ class CMinimize
 	  }
 
 	m_spec = spec;
-	m_group = null;
 	m_ingroup = null;
+	m_group_count = 0;
+	free_groups();
       }
 
   /***************************************************************
@@ -2793,15 +3497,17 @@ class CMinimize
     Function: fix_dtrans
     Description: Updates CDTrans table after minimization 
     using groups, removing redundant transition table states.
+    Each group is represented by its lowest-labelled state, 
+    whose label is given by rep[].
     **************************************************************/
   private void fix_dtrans
     (
+     int rep[]
      )
       {
 	Vector new_vector;
 	int i;
 	int size;
-	Vector dtrans_group;
 	CDTrans first;
 	int c;
 
@@ -2816,11 +3522,9 @@ class CMinimize
 	      }
 	  }
 
-	size = m_group.size();
-	for (i = 0; i < size; ++i)
+	for (i = 0; i < m_group_count; ++i)
 	  {
-	    dtrans_group = (Vector) m_group.elementAt(i);
-	    first = (CDTrans) dtrans_group.elementAt(0);
+	    first = (CDTrans) m_spec.m_dtrans_vector.elementAt(rep[i]);
 	    new_vector.addElement(first);
 
 	    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
@@ -2832,119 +3536,110 @@ class CMinimize
 	      }
 	  }
 
-	m_group = null;
 	m_spec.m_dtrans_vector = new_vector;
       }
 
   /***************************************************************
     Function: minimize
-    Description: Removes redundant transition table states.
+    Description: Removes redundant transition table states
+    using Hopcroft's partition refinement, in O(n k log n) time 
+    for n states and k character classes.  Groups are numbered 
+    in order of their lowest-labelled state.
     **************************************************************/
   private void minimize
     (
      )
       {
-	Vector dtrans_group;
-	Vector new_group;
-	int i;
-	int j;
-	int old_group_count;
-	int group_count;
-	CDTrans next;
-	CDTrans first;
-	int goto_first;
-	int goto_next;
+	int splitter[];
+	int splitter_size;
+	int touched[];
+	int touched_count;
+	int group_of_block[];
+	int rep[];
+	int nstates;
+	int size;
+	int base;
+	int a;
+	int b;
 	int c;
-	int group_size;
-	boolean added;
+	int i;
+	int k;
+	int s;
 
 	init_groups();
 
-	group_count = m_group.size();
-	old_group_count = group_count - 1;
+	nstates = m_elem.length;
+	splitter = new int[nstates];
+	touched = new int[nstates];
 
-	while (old_group_count != group_count)
+	while (0 < m_work_count)
 	  {
-	    old_group_count = group_count;
+	    --m_work_count;
+	    a = m_work[m_work_count];
+	    m_in_work[a] = false;
 
-	    if (CUtility.DEBUG)
-	      {
-		CUtility.ASSERT(m_group.size() == group_count);
-	      }
+	    /* Copy splitter, since it may be split while in use. */
+	    splitter_size = m_end[a] - m_first[a];
+	    System.arraycopy(m_elem,m_first[a],splitter,0,splitter_size);
 
-	    for (i = 0; i < group_count; ++i)
+	    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
 	      {
-		dtrans_group = (Vector) m_group.elementAt(i);
-
-		group_size = dtrans_group.size();
-		if (group_size <= 1)
-		  {
-		    continue;
-		  }
+		base = c * nstates;
+		touched_count = 0;
 
-		new_group = new Vector();
-		added = false;
-		
-		first = (CDTrans) dtrans_group.elementAt(0);
-		for (j = 1; j < group_size; ++j)
+		/* Mark states entering the splitter on column c. */
+		for (i = 0; i < splitter_size; ++i)
 		  {
-		    next = (CDTrans) dtrans_group.elementAt(j);
-
-		    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
+		    s = splitter[i];
+		    for (k = m_inv_start[base + s]; 
+			 k < m_inv_start[base + s + 1]; 
+			 ++k)
 		      {
-			goto_first = first.m_dtrans[c];
-			goto_next = next.m_dtrans[c];
-
-			if (goto_first != goto_next
-			    && (goto_first == CDTrans.F
-				|| goto_next == CDTrans.F
-				|| m_ingroup[goto_next] != m_ingroup[goto_first]))
+			if (mark(m_inv[k]))
 			  {
-			    if (CUtility.DEBUG)
-			      {
-				CUtility.ASSERT(dtrans_group.elementAt(j) == next);
-			      }
-			    
-			    dtrans_group.removeElementAt(j);
-			    --j;
-			    --group_size;
-			    new_group.addElement(next);
-			    if (false == added)
-			      {
-				added = true;
-				++group_count;
-				m_group.addElement(new_group);
-			      }
-			    m_ingroup[next.m_label] = m_group.size() - 1;
-
-			    if (CUtility.DEBUG)
-			      {
-				CUtility.ASSERT(m_group.contains(new_group)
-						== true);
-				CUtility.ASSERT(m_group.contains(dtrans_group)
-						== true);
-				CUtility.ASSERT(dtrans_group.contains(first)
-						== true);
-				CUtility.ASSERT(dtrans_group.contains(next)
-						== false);
-				CUtility.ASSERT(new_group.contains(first)
-						== false);
-				CUtility.ASSERT(new_group.contains(next)
-						== true);
-				CUtility.ASSERT(dtrans_group.size() == group_size);
-				CUtility.ASSERT(i == m_ingroup[first.m_label]);
-				CUtility.ASSERT((m_group.size() - 1) 
-						== m_ingroup[next.m_label]);
-			      }
-
-			    break;
+			    touched[touched_count] = m_block[m_inv[k]];
+			    ++touched_count;
 			  }
 		      }
 		  }
+
+		for (i = 0; i < touched_count; ++i)
+		  {
+		    split(touched[i]);
+		  }
+	      }
+	  }
+
+	/* Number groups by their lowest-labelled state, 
+	   leaving out the sink. */
+	size = m_spec.m_dtrans_vector.size();
+	group_of_block = new int[m_block_count];
+	for (b = 0; b < m_block_count; ++b)
+	  {
+	    group_of_block[b] = NO_GROUP;
+	  }
+
+	rep = new int[size];
+	m_ingroup = new int[size];
+	m_group_count = 0;
+	for (s = 0; s < size; ++s)
+	  {
+	    b = m_block[s];
+	    if (NO_GROUP == group_of_block[b])
+	      {
+		group_of_block[b] = m_group_count;
+		rep[m_group_count] = s;
+		++m_group_count;
 	      }
+	    m_ingroup[s] = group_of_block[b];
+	  }
+
+	if (CUtility.DEBUG)
+	  {
+	    check_groups(rep);
 	  }
 
-	System.out.println(m_group.size() + " states after removal of redundant states.");
+	System.out.println(m_group_count + " states after removal of redundant states.");
 
 	if (m_spec.m_verbose
 	    && true == CUtility.OLD_DUMP_DEBUG)
@@ -2954,127 +3649,314 @@ class CMinimize
 	    pgroups();
 	  }
 
-	fix_dtrans();
+	free_groups();
+	fix_dtrans(rep);
       }
 
   /***************************************************************
     Function: init_groups
-    Description:
+    Description: Builds the initial partition, grouping states
+    by accept action, with a sink state (label equal to the
+    number of states) in a group of its own standing for 
+    CDTrans.F.  Also builds the inverse transition lists and
+    puts every group on the work list.
     **************************************************************/
   private void init_groups
     (
      )
       {
 	int i;
-	int j;
-	int group_count;
+	int c;
+	int b;
+	int s;
+	int t;
 	int size;
-	CAccept accept;
+	int nstates;
+	int ninv;
+	int nonaccept_block;
+	Integer accept_block;
+	Hashtable accept_blocks;
 	CDTrans dtrans;
-	Vector dtrans_group;
-	CDTrans first;
-	boolean group_found;
 
-	m_group = new Vector();
-	group_count = 0;
-	
 	size = m_spec.m_dtrans_vector.size();
-	m_ingroup = new int[size];
-	
-	for (i = 0; i < size; ++i)
-	  {
-	    group_found = false;
-	    dtrans = (CDTrans) m_spec.m_dtrans_vector.elementAt(i);
+	nstates = size + 1;
+
+	m_elem = new int[nstates];
+	m_loc = new int[nstates];
+	m_block = new int[nstates];
+	m_first = new int[nstates];
+	m_mid = new int[nstates];
+	m_end = new int[nstates];
+	m_work = new int[nstates];
+	m_in_work = new boolean[nstates];
+	m_work_count = 0;
+
+	/* Assign initial blocks in order of first appearance. */
+	accept_blocks = new Hashtable();
+	nonaccept_block = NO_GROUP;
+	m_block_count = 0;
+	for (s = 0; s < size; ++s)
+	  {
+	    dtrans = (CDTrans) m_spec.m_dtrans_vector.elementAt(s);
 
 	    if (CUtility.DEBUG)
 	      {
-		CUtility.ASSERT(i == dtrans.m_label);
-		CUtility.ASSERT(false == group_found);
-		CUtility.ASSERT(group_count == m_group.size());
+		CUtility.ASSERT(s == dtrans.m_label);
 	      }
-	    
-	    for (j = 0; j < group_count; ++j)
+
+	    if (null == dtrans.m_accept)
 	      {
-		dtrans_group = (Vector) m_group.elementAt(j);
-		
-		if (CUtility.DEBUG)
+		if (NO_GROUP == nonaccept_block)
 		  {
-		    CUtility.ASSERT(false == group_found);
-		    CUtility.ASSERT(0 < dtrans_group.size());
+		    nonaccept_block = m_block_count;
+		    ++m_block_count;
 		  }
-
-		first = (CDTrans) dtrans_group.elementAt(0);
-		
-		if (CUtility.SLOW_DEBUG)
+		m_block[s] = nonaccept_block;
+	      }
+	    else
+	      {
+		accept_block = (Integer) accept_blocks.get(dtrans.m_accept);
+		if (null == accept_block)
 		  {
-		    CDTrans check;
-		    int k;
-		    int s;
-
-		    s = dtrans_group.size();
-		    CUtility.ASSERT(0 < s);
-
-		    for (k = 1; k < s; ++k)
-		      {
-			check = (CDTrans) dtrans_group.elementAt(k);
-			CUtility.ASSERT(check.m_accept == first.m_accept);
-		      }
+		    accept_block = Integer.valueOf(m_block_count);
+		    accept_blocks.put(dtrans.m_accept,accept_block);
+		    ++m_block_count;
 		  }
+		m_block[s] = accept_block.intValue();
+	      }
+	  }
+	m_block[size] = m_block_count;
+	++m_block_count;
 
-		if (first.m_accept == dtrans.m_accept)
-		  {
-		    dtrans_group.addElement(dtrans);
-		    m_ingroup[i] = j;
-		    group_found = true;
-		    
-		    if (CUtility.DEBUG)
-		      {
-			CUtility.ASSERT(j == m_ingroup[dtrans.m_label]);
-		      }
+	/* Lay blocks out contiguously in m_elem. */
+	for (s = 0; s < nstates; ++s)
+	  {
+	    ++m_end[m_block[s]];
+	  }
+	for (b = 0, i = 0; b < m_block_count; ++b)
+	  {
+	    m_first[b] = i;
+	    m_mid[b] = i;
+	    i = i + m_end[b];
+	    m_end[b] = i;
+	  }
+	for (s = 0; s < nstates; ++s)
+	  {
+	    b = m_block[s];
+	    m_elem[m_mid[b]] = s;
+	    m_loc[s] = m_mid[b];
+	    ++m_mid[b];
+	  }
+	for (b = 0; b < m_block_count; ++b)
+	  {
+	    m_mid[b] = m_first[b];
+	    push_work(b);
+	  }
 
-		    break;
-		  }
+	/* Count, then fill, inverse transitions for each column. */
+	ninv = m_spec.m_dtrans_ncols * nstates;
+	m_inv_start = new int[ninv + 1];
+	m_inv = new int[ninv];
+	for (s = 0; s < nstates; ++s)
+	  {
+	    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
+	      {
+		++m_inv_start[c * nstates + target(s,c)];
 	      }
-	    
-	    if (false == group_found)
+	  }
+	for (i = 1; i < ninv; ++i)
+	  {
+	    m_inv_start[i] = m_inv_start[i] + m_inv_start[i - 1];
+	  }
+	m_inv_start[ninv] = ninv;
+	for (s = 0; s < nstates; ++s)
+	  {
+	    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
 	      {
-		dtrans_group = new Vector();
-		dtrans_group.addElement(dtrans);
-		m_ingroup[i] = m_group.size();
-		m_group.addElement(dtrans_group);
-		++group_count;
+		t = c * nstates + target(s,c);
+		--m_inv_start[t];
+		m_inv[m_inv_start[t]] = s;
 	      }
 	  }
-	
-	if (m_spec.m_verbose
-	    && true == CUtility.OLD_DUMP_DEBUG)
+      }
+
+  /***************************************************************
+    Function: target
+    Description: Returns the transition of state s on column c,
+    mapping CDTrans.F (and the sink itself) to the sink state.
+    **************************************************************/
+  private int target
+    (
+     int s,
+     int c
+     )
+      {
+	int size;
+	int next;
+
+	size = m_spec.m_dtrans_vector.size();
+	if (size == s)
 	  {
-	    System.out.println("Initial grouping:");
-	    pgroups();
-	    System.out.println();
+	    return size;
+	  }
+
+	next = ((CDTrans) m_spec.m_dtrans_vector.elementAt(s)).m_dtrans[c];
+	if (CDTrans.F == next)
+	  {
+	    return size;
+	  }
+
+	return next;
+      }
+
+  /***************************************************************
+    Function: mark
+    Description: Moves state into the marked front part of its
+    block.  Returns true if it is the first state of the block
+    to be marked.
+    **************************************************************/
+  private boolean mark
+    (
+     int state
+     )
+      {
+	int b;
+	int i;
+	int j;
+	int other;
+
+	b = m_block[state];
+	i = m_loc[state];
+	j = m_mid[b];
+
+	if (i < j)
+	  {
+	    /* Already marked. */
+	    return false;
 	  }
+
+	other = m_elem[j];
+	m_elem[j] = state;
+	m_loc[state] = j;
+	m_elem[i] = other;
+	m_loc[other] = i;
+	++m_mid[b];
+
+	return (j == m_first[b]);
       }
 
   /***************************************************************
-    Function: pset
+    Function: split
+    Description: Splits the marked states of block b off into a
+    new block, unless all of them are marked, and updates the 
+    work list.  Clears the marks of block b.
     **************************************************************/
-  private void pset
+  private void split
     (
-     Vector dtrans_group
+     int b
      )
       {
+	int nb;
 	int i;
+
+	if (m_mid[b] == m_end[b])
+	  {
+	    m_mid[b] = m_first[b];
+	    return;
+	  }
+
+	nb = m_block_count;
+	++m_block_count;
+
+	m_first[nb] = m_first[b];
+	m_mid[nb] = m_first[b];
+	m_end[nb] = m_mid[b];
+	m_first[b] = m_mid[b];
+
+	for (i = m_first[nb]; i < m_end[nb]; ++i)
+	  {
+	    m_block[m_elem[i]] = nb;
+	  }
+
+	/* Hopcroft's rule: the smaller half suffices unless 
+	   b is already waiting to be processed. */
+	if (m_in_work[b]
+	    || m_end[nb] - m_first[nb] <= m_end[b] - m_first[b])
+	  {
+	    push_work(nb);
+	  }
+	else
+	  {
+	    push_work(b);
+	  }
+      }
+
+  /***************************************************************
+    Function: push_work
+    **************************************************************/
+  private void push_work
+    (
+     int b
+     )
+      {
+	m_work[m_work_count] = b;
+	++m_work_count;
+	m_in_work[b] = true;
+      }
+
+  /***************************************************************
+    Function: check_groups
+    Description: Debugging routine that verifies every state
+    agrees with its group representative on accept action and,
+    group-wise, on every transition.
+    **************************************************************/
+  private void check_groups
+    (
+     int rep[]
+     )
+      {
+	int s;
+	int c;
 	int size;
 	CDTrans dtrans;
+	CDTrans first;
 
-	size = dtrans_group.size();
-	for (i = 0; i < size; ++i)
+	size = m_spec.m_dtrans_vector.size();
+	for (s = 0; s < size; ++s)
 	  {
-	    dtrans = (CDTrans) dtrans_group.elementAt(i);
-	    System.out.print(dtrans.m_label + " ");
+	    dtrans = (CDTrans) m_spec.m_dtrans_vector.elementAt(s);
+	    first = (CDTrans) m_spec.m_dtrans_vector.elementAt(rep[m_ingroup[s]]);
+
+	    CUtility.ASSERT(first.m_accept == dtrans.m_accept);
+	    for (c = 0; c < m_spec.m_dtrans_ncols; ++c)
+	      {
+		CUtility.ASSERT(m_block[target(s,c)] 
+				== m_block[target(first.m_label,c)]);
+	      }
 	  }
       }
-  
+
+  /***************************************************************
+    Function: free_groups
+    **************************************************************/
+  private void free_groups
+    (
+     )
+      {
+	m_elem = null;
+	m_loc = null;
+	m_block = null;
+	m_first = null;
+	m_mid = null;
+	m_end = null;
+	m_inv_start = null;
+	m_inv = null;
+	m_work = null;
+	m_in_work = null;
+	m_work_count = 0;
+	m_block_count = 0;
+      }
+
   /***************************************************************
     Function: pgroups
     **************************************************************/
@@ -3083,20 +3965,25 @@ class CMinimize
      )
       {
 	int i;
+	int s;
 	int dtrans_size;
-	int group_size;
-	
-	group_size = m_group.size();
-	for (i = 0; i < group_size; ++i)
+
+	dtrans_size = m_spec.m_dtrans_vector.size();
+	for (i = 0; i < m_group_count; ++i)
 	  {
 	    System.out.print("\tGroup " + i + " {");
-	    pset((Vector) m_group.elementAt(i));
+	    for (s = 0; s < dtrans_size; ++s)
+	      {
+		if (i == m_ingroup[s])
+		  {
+		    System.out.print(s + " ");
+		  }
+	      }
 	    System.out.println("}");
 	    System.out.println();
 	  }
-	
+
 	System.out.println();
-	dtrans_size = m_spec.m_dtrans_vector.size();
 	for (i = 0; i < dtrans_size; ++i)
 	  {
 	    System.out.println("\tstate " + i 
@@ -3118,6 +4005,15 @@ class CNfa2Dfa
   private int m_unmarked_dfa;
   private CLexGen m_lexGen;
 
+  /* NFA states indexed by label, and work space reused by every
+     e-closure and move, so building a candidate DFA state 
+     allocates nothing. */
+  private CNfa m_nfa[];
+  private int m_stack[]; /* Labels awaiting e-closure. */
+  private int m_mark[]; /* m_mark[label] == m_mark_stamp exactly 
+			   when label is in the set being built. */
+  private int m_mark_stamp;
+
   /***************************************************************
     Constants
     **************************************************************/
@@ -3159,6 +4055,10 @@ class CNfa2Dfa
 	m_lexGen = null;
 	m_spec = null;
 	m_unmarked_dfa = 0;
+	m_nfa = null;
+	m_stack = null;
+	m_mark = null;
+	m_mark_stamp = 0;
       }
 
   /***************************************************************
@@ -3200,6 +4100,7 @@ class CNfa2Dfa
 	CDfa next;
 	CDfa dfa;
 	CBunch bunch;
+	Vector rules;
 	int i;
 	int nextstate;
 	int size;
@@ -3210,8 +4111,26 @@ class CNfa2Dfa
 	
 	System.out.print("Working on DFA states.");
 
+	/* Index NFA states by label and allocate work space. */
+	size = m_spec.m_nfa_states.size();
+	m_nfa = new CNfa[size];
+	for (i = 0; i < size; ++i)
+	  {
+	    m_nfa[i] = (CNfa) m_spec.m_nfa_states.elementAt(i);
+
+	    if (CUtility.DEBUG)
+	      {
+		CUtility.ASSERT(i == m_nfa[i].m_label);
+	      }
+	  }
+	m_stack = new int[size];
+	m_mark = new int[size];
+	m_mark_stamp = 0;
+
 	/* Reference passing type and initializations. */
 	bunch = new CBunch();
+	bunch.m_nfa_set = new int[size];
+	bunch.m_nfa_bit = new SparseBitSet();
 	m_unmarked_dfa = 0;
 
 	/* Allocate mapping array. */
@@ -3232,23 +4151,15 @@ class CNfa2Dfa
 	    */
 		
 	    /* Create start state and initialize fields. */
-	    bunch.m_nfa_set = (Vector) m_spec.m_state_rules[istate].clone();
-	    sortStates(bunch.m_nfa_set);
-	    
-	    bunch.m_nfa_bit = new SparseBitSet();
-	    
-	    /* Initialize bit set. */
-	    size = bunch.m_nfa_set.size();
+	    begin_set(bunch);
+	    rules = m_spec.m_state_rules[istate];
+	    size = rules.size();
 	    for (i = 0; size > i; ++i)
 	      {
-		nfa = (CNfa) bunch.m_nfa_set.elementAt(i);
-		bunch.m_nfa_bit.set(nfa.m_label);
+		nfa = (CNfa) rules.elementAt(i);
+		add_state(bunch,nfa.m_label);
 	      }
 	    
-	    bunch.m_accept = null;
-	    bunch.m_anchor = CSpec.NONE;
-	    bunch.m_accept_index = CUtility.INT_MAX;
-	    
 	    e_closure(bunch);
 	    add_to_dstates(bunch);
 	    
@@ -3283,27 +4194,16 @@ class CNfa2Dfa
 		      }
 		    
 		    /* Create new dfa set by attempting character transition. */
-		    move(dfa.m_nfa_set,dfa.m_nfa_bit,i,bunch);
-		    if (null != bunch.m_nfa_set)
-		      {
-			e_closure(bunch);
-		      }
-		    
-		    if (CUtility.DEBUG)
-		      {
-			CUtility.ASSERT((null == bunch.m_nfa_set 
-					 && null == bunch.m_nfa_bit)
-					|| (null != bunch.m_nfa_set 
-					    && null != bunch.m_nfa_bit));
-		      }
+		    move(dfa.m_nfa_set,i,bunch);
 		    
 		    /* Create new state or set state to empty. */
-		    if (null == bunch.m_nfa_set)
+		    if (0 == bunch.m_nfa_size)
 		      {
 			nextstate = CDTrans.F;
 		      }
 		    else 
 		      {
+			e_closure(bunch);
 			nextstate = in_dstates(bunch);
 			
 			if (NOT_IN_DSTATES == nextstate)
@@ -3356,19 +4256,65 @@ class CNfa2Dfa
 	m_spec.m_nfa_states = null;
 	m_spec.m_nfa_start = null;
 	m_spec.m_state_rules = null;
+
+	m_nfa = null;
+	m_stack = null;
+	m_mark = null;
+      }
+
+  /***************************************************************
+    Function: begin_set
+    Description: Empties the set held in bunch, ready for 
+    add_state().
+    **************************************************************/
+  private void begin_set
+    (
+     CBunch bunch
+     )
+      {
+	if (CUtility.INT_MAX == m_mark_stamp)
+	  {
+	    java.util.Arrays.fill(m_mark,0);
+	    m_mark_stamp = 0;
+	  }
+	++m_mark_stamp;
+
+	bunch.m_nfa_size = 0;
+      }
+
+  /***************************************************************
+    Function: add_state
+    Description: Adds NFA state label to the set held in bunch.
+    Returns false if it was already there.
+    **************************************************************/
+  private boolean add_state
+    (
+     CBunch bunch,
+     int label
+     )
+      {
+	if (m_mark_stamp == m_mark[label])
+	  {
+	    return false;
+	  }
+
+	m_mark[label] = m_mark_stamp;
+	bunch.m_nfa_set[bunch.m_nfa_size] = label;
+	++bunch.m_nfa_size;
+	return true;
       }
 
   /***************************************************************
     Function: e_closure
-    Description: Alters and returns input set.
+    Description: Alters input set, adding every state reachable
+    over epsilon edges, then sorts it and fills in its bit set.
     **************************************************************/
   private void e_closure
     (
      CBunch bunch
      )
       {
-	Stack nfa_stack;
-	int size;
+	int top;
 	int i;
 	CNfa state;
 
@@ -3385,24 +4331,23 @@ class CNfa2Dfa
 	bunch.m_accept_index = CUtility.INT_MAX;
 	
 	/* Create initial stack. */
-	nfa_stack = new Stack();
-	size = bunch.m_nfa_set.size();
-	for (i = 0; i < size; ++i)
+	top = 0;
+	for (i = 0; i < bunch.m_nfa_size; ++i)
 	  {
-	    state = (CNfa) bunch.m_nfa_set.elementAt(i);
-	    
 	    if (CUtility.DEBUG)
 	      {
-		CUtility.ASSERT(bunch.m_nfa_bit.get(state.m_label));
+		CUtility.ASSERT(m_mark_stamp == m_mark[bunch.m_nfa_set[i]]);
 	      }
 
-	    nfa_stack.push(state);
+	    m_stack[top] = bunch.m_nfa_set[i];
+	    ++top;
 	  }
 
 	/* Main loop. */
-	while (false == nfa_stack.empty())
+	while (0 < top)
 	  {
-	    state = (CNfa) nfa_stack.pop();
+	    --top;
+	    state = m_nfa[m_stack[top]];
 	    
 	    if (CUtility.OLD_DUMP_DEBUG)
 	      {
@@ -3443,103 +4388,55 @@ class CNfa2Dfa
 
 	    if (CNfa.EPSILON == state.m_edge)
 	      {
-		if (null != state.m_next)
+		if (null != state.m_next
+		    && add_state(bunch,state.m_next.m_label))
 		  {
-		    if (false == bunch.m_nfa_set.contains(state.m_next))
-		      {
-			if (CUtility.DEBUG)
-			  {
-			    CUtility.ASSERT(false == bunch.m_nfa_bit.get(state.m_next.m_label));
-			  }
-			
-			bunch.m_nfa_bit.set(state.m_next.m_label);
-			bunch.m_nfa_set.addElement(state.m_next);
-			nfa_stack.push(state.m_next);
-		      }
+		    m_stack[top] = state.m_next.m_label;
+		    ++top;
 		  }
 
-		if (null != state.m_next2)
+		if (null != state.m_next2
+		    && add_state(bunch,state.m_next2.m_label))
 		  {
-		    if (false == bunch.m_nfa_set.contains(state.m_next2))
-		      {
-			if (CUtility.DEBUG)
-			  {
-			    CUtility.ASSERT(false == bunch.m_nfa_bit.get(state.m_next2.m_label));
-			  }
-			
-			bunch.m_nfa_bit.set(state.m_next2.m_label);
-			bunch.m_nfa_set.addElement(state.m_next2);
-			nfa_stack.push(state.m_next2);
-		      }
+		    m_stack[top] = state.m_next2.m_label;
+		    ++top;
 		  }
 	      }
 	  }
 
-	if (null != bunch.m_nfa_set)
-	  {
-	    sortStates(bunch.m_nfa_set);
-	  }
+	sortStates(bunch);
 
 	return;
       }
 
   /***************************************************************
     Function: move
-    Description: Returns null if resulting NFA set is empty.
+    Description: Leaves the set in bunch empty (size 0) if 
+    resulting NFA set is empty.  The set is not yet closed
+    or sorted.
     **************************************************************/
   void move
     (
-     Vector nfa_set,
-     SparseBitSet nfa_bit,
+     int nfa_set[],
      int b,
      CBunch bunch
      )
       {
-	int size;
 	int index;
 	CNfa state;
 	
-	bunch.m_nfa_set = null;
-	bunch.m_nfa_bit = null;
+	begin_set(bunch);
 
-	size = nfa_set.size();
-	for (index = 0; index < size; ++index)
+	for (index = 0; index < nfa_set.length; ++index)
 	  {
-	    state = (CNfa) nfa_set.elementAt(index);
+	    state = m_nfa[nfa_set[index]];
 	    
 	    if (b == state.m_edge
 		|| (CNfa.CCL == state.m_edge
 		    && true == state.m_set.contains(b)))
 	      {
-		if (null == bunch.m_nfa_set)
-		  {
-		    if (CUtility.DEBUG)
-		      {
-			CUtility.ASSERT(null == bunch.m_nfa_bit);
-		      }
-		    
-		    bunch.m_nfa_set = new Vector();
-		    /*bunch.m_nfa_bit 
-			= new SparseBitSet(m_spec.m_nfa_states.size());*/
-		    bunch.m_nfa_bit = new SparseBitSet();
-		  }
-
-		bunch.m_nfa_set.addElement(state.m_next);
-		/*System.out.println("Size of bitset: " + bunch.m_nfa_bit.size());
-		System.out.println("Reference index: " + state.m_next.m_label);
-		System.out.flush();*/
-		bunch.m_nfa_bit.set(state.m_next.m_label);
-	      }
-	  }
-	
-	if (null != bunch.m_nfa_set)
-	  {
-	    if (CUtility.DEBUG)
-	      {
-		CUtility.ASSERT(null != bunch.m_nfa_bit);
+		add_state(bunch,state.m_next.m_label);
 	      }
-	    
-	    sortStates(bunch.m_nfa_set);
 	  }
 
 	return;
@@ -3547,44 +4444,30 @@ class CNfa2Dfa
 
   /***************************************************************
     Function: sortStates
+    Description: Rebuilds the bit set of bunch from its labels,
+    then reads the labels back in increasing order.  This is 
+    linear in the size of the set and the number of bit set 
+    blocks, and gives the canonical order of the set.
     **************************************************************/
   private void sortStates
     (
-     Vector nfa_set
+     CBunch bunch
      )
       {
-	CNfa elem;
-	int begin;
-	int size;
 	int index;
-	int value;
-	int smallest_index;
-	int smallest_value;
-	CNfa begin_elem;
+	int size;
 
-	size = nfa_set.size();
-	for (begin = 0; begin < size; ++begin)
+	bunch.m_nfa_bit.clearAll();
+	for (index = 0; index < bunch.m_nfa_size; ++index)
 	  {
-	    elem = (CNfa) nfa_set.elementAt(begin);
-	    smallest_value = elem.m_label;
-	    smallest_index = begin;
-
-	    for (index = begin + 1; index < size; ++index)
-	      {
-		elem = (CNfa) nfa_set.elementAt(index);
-		value = elem.m_label;
+	    bunch.m_nfa_bit.set(bunch.m_nfa_set[index]);
+	  }
 
-		if (value < smallest_value)
-		  {
-		    smallest_index = index;
-		    smallest_value = value;
-		  }
-	      }
+	size = bunch.m_nfa_bit.toArray(bunch.m_nfa_set);
 
-	    begin_elem = (CNfa) nfa_set.elementAt(begin);
-	    elem = (CNfa) nfa_set.elementAt(smallest_index);
-	    nfa_set.setElementAt(elem,begin);
-	    nfa_set.setElementAt(begin_elem,smallest_index);
+	if (CUtility.DEBUG)
+	  {
+	    CUtility.ASSERT(size == bunch.m_nfa_size);
 	  }
 
 	if (CUtility.OLD_DEBUG)
@@ -3593,11 +4476,10 @@ class CNfa2Dfa
 	    
 	    for (index = 0; index < size; ++index)
 	      {
-		elem = (CNfa) nfa_set.elementAt(index);
-		System.out.print(elem.m_label + " ");
+		System.out.print(bunch.m_nfa_set[index] + " ");
 	      }
 	    System.out.println();
-	  }	
+	  }        
 
 	return;
       }
@@ -3632,7 +4514,7 @@ class CNfa2Dfa
 		    System.out.print("working on DFA state " 
 				     + m_unmarked_dfa
 				     + " = NFA states: ");
-		    m_lexGen.print_set(dfa.m_nfa_set);
+		    m_lexGen.print_set(dfa.m_nfa_set,dfa.m_nfa_set.length);
 		    System.out.println();
 		  }
 
@@ -3664,7 +4546,7 @@ class CNfa2Dfa
 	
 	if (CUtility.DEBUG)
 	  {
-	    CUtility.ASSERT(null != bunch.m_nfa_set);
+	    CUtility.ASSERT(0 < bunch.m_nfa_size);
 	    CUtility.ASSERT(null != bunch.m_nfa_bit);
 	    CUtility.ASSERT(null != bunch.m_accept 
 			    || CSpec.NONE == bunch.m_anchor);
@@ -3674,7 +4556,8 @@ class CNfa2Dfa
 	dfa = CAlloc.newCDfa(m_spec);
 	
 	/* Initialize fields, including the mark field. */
-	dfa.m_nfa_set = (Vector) bunch.m_nfa_set.clone();
+	dfa.m_nfa_set = new int[bunch.m_nfa_size];
+	System.arraycopy(bunch.m_nfa_set,0,dfa.m_nfa_set,0,bunch.m_nfa_size);
 	dfa.m_nfa_bit = (SparseBitSet) bunch.m_nfa_bit.clone();
 	dfa.m_accept = bunch.m_accept;
 	dfa.m_anchor = bunch.m_anchor;
@@ -3687,7 +4570,7 @@ class CNfa2Dfa
 	if (CUtility.OLD_DUMP_DEBUG)
 	  {
 	    System.out.print("Registering set : ");
-	    m_lexGen.print_set(dfa.m_nfa_set);
+	    m_lexGen.print_set(dfa.m_nfa_set,dfa.m_nfa_set.length);
 	    System.out.println();
 	  }
 
@@ -3707,7 +4590,7 @@ class CNfa2Dfa
 	if (CUtility.OLD_DEBUG)
 	  {
 	    System.out.print("Looking for set : ");
-	    m_lexGen.print_set(bunch.m_nfa_set);
+	    m_lexGen.print_set(bunch.m_nfa_set,bunch.m_nfa_size);
 	  }
 
 	dfa = (CDfa) m_spec.m_dfa_sets.get(bunch.m_nfa_bit);
@@ -3816,6 +4699,261 @@ class CAlloc
       }
 }
 
+/***************************************************************
+  Class: CTimer
+  Description: Per-phase measurements for the -time option:
+  wall clock time, CPU time and bytes allocated by the
+  generating thread.  Does nothing unless enabled.
+  **************************************************************/
+class CTimer
+{
+  /***************************************************************
+    Member Variables
+    **************************************************************/
+  private boolean m_enabled;
+  private Vector m_names; /* Phase names, in order. */
+  private long m_wall[]; /* Nanoseconds per phase. */
+  private long m_cpu[]; /* CPU nanoseconds per phase, or -1. */
+  private long m_alloc[]; /* Bytes allocated per phase, or -1. */
+
+  private java.lang.management.ThreadMXBean m_bean;
+  private String m_phase; /* Phase being timed, or null. */
+  private long m_start_wall;
+  private long m_start_cpu;
+  private long m_start_alloc;
+
+  /***************************************************************
+    Function: CTimer
+    **************************************************************/
+  CTimer
+    (
+     boolean enabled
+     )
+      {
+	m_enabled = enabled;
+	m_names = new Vector();
+	m_wall = new long[8];
+	m_cpu = new long[8];
+	m_alloc = new long[8];
+	m_phase = null;
+
+	if (m_enabled)
+	  {
+	    m_bean = java.lang.management.ManagementFactory.getThreadMXBean();
+	  }
+      }
+
+  /***************************************************************
+    Function: start
+    Description: Starts timing the named phase.
+    **************************************************************/
+  void start
+    (
+     String phase
+     )
+      {
+	if (false == m_enabled)
+	  {
+	    return;
+	  }
+
+	if (CUtility.DEBUG)
+	  {
+	    CUtility.ASSERT(null == m_phase);
+	  }
+
+	m_phase = phase;
+	m_start_alloc = allocated();
+	m_start_cpu = cpu();
+	m_start_wall = System.nanoTime();
+      }
+
+  /***************************************************************
+    Function: stop
+    Description: Stops timing the current phase, adding the
+    measurements to those of earlier phases of the same name.
+    **************************************************************/
+  void stop
+    (
+     )
+      {
+	long wall;
+	long cpu;
+	long alloc;
+	int i;
+
+	if (false == m_enabled)
+	  {
+	    return;
+	  }
+
+	wall = System.nanoTime() - m_start_wall;
+	cpu = cpu();
+	alloc = allocated();
+
+	if (CUtility.DEBUG)
+	  {
+	    CUtility.ASSERT(null != m_phase);
+	  }
+
+	i = m_names.indexOf(m_phase);
+	if (-1 == i)
+	  {
+	    i = m_names.size();
+	    m_names.addElement(m_phase);
+	    if (i == m_wall.length)
+	      {
+		m_wall = grow(m_wall);
+		m_cpu = grow(m_cpu);
+		m_alloc = grow(m_alloc);
+	      }
+	  }
+
+	m_wall[i] += wall;
+	m_cpu[i] = (-1 == cpu) ? -1 : m_cpu[i] + cpu - m_start_cpu;
+	m_alloc[i] = (-1 == alloc) ? -1 : m_alloc[i] + alloc - m_start_alloc;
+	m_phase = null;
+      }
+
+  /***************************************************************
+    Function: report
+    Description: Prints a line per phase, and totals.
+    **************************************************************/
+  void report
+    (
+     java.io.PrintStream out
+     )
+      {
+	int i;
+	long wall = 0;
+	long cpu = 0;
+	long alloc = 0;
+
+	if (false == m_enabled)
+	  {
+	    return;
+	  }
+
+	out.println(pad("phase",-26) + pad("wall ms",10) 
+		    + pad("cpu ms",10) + pad("alloc KB",12));
+	for (i = 0; i < m_names.size(); ++i)
+	  {
+	    out.println(line((String) m_names.elementAt(i),
+			     m_wall[i],m_cpu[i],m_alloc[i]));
+	    wall += m_wall[i];
+	    cpu = (-1 == m_cpu[i] || -1 == cpu) ? -1 : cpu + m_cpu[i];
+	    alloc = (-1 == m_alloc[i] || -1 == alloc) ? -1 : alloc + m_alloc[i];
+	  }
+	out.println(line("total",wall,cpu,alloc));
+      }
+
+  /***************************************************************
+    Function: line
+    **************************************************************/
+  private String line
+    (
+     String name,
+     long wall,
+     long cpu,
+     long alloc
+     )
+      {
+	return pad(name,-26)
+	  + pad(millis(wall),10)
+	  + pad((-1 == cpu) ? "n/a" : millis(cpu),10)
+	  + pad((-1 == alloc) ? "n/a" : Long.toString(alloc / 1024),12);
+      }
+
+  /***************************************************************
+    Function: millis
+    **************************************************************/
+  private static String millis
+    (
+     long nanos
+     )
+      {
+	long tenths = (nanos + 50000) / 100000;
+
+	return (tenths / 10) + "." + (tenths % 10);
+      }
+
+  /***************************************************************
+    Function: pad
+    Description: Pads s to width columns; on the right for a
+    negative width, on the left otherwise.
+    **************************************************************/
+  private static String pad
+    (
+     String s,
+     int width
+     )
+      {
+	StringBuffer b = new StringBuffer();
+	int n = (width < 0) ? -width : width;
+
+	if (width < 0)
+	  {
+	    b.append(s);
+	  }
+	while (b.length() + ((width < 0) ? 0 : s.length()) < n)
+	  {
+	    b.append(' ');
+	  }
+	if (width >= 0)
+	  {
+	    b.append(s);
+	  }
+	return b.toString();
+      }
+
+  /***************************************************************
+    Function: cpu
+    Description: CPU time of the current thread, or -1 if
+    the JVM does not measure it.
+    **************************************************************/
+  private long cpu
+    (
+     )
+      {
+	if (false == m_bean.isCurrentThreadCpuTimeSupported())
+	  {
+	    return -1;
+	  }
+	return m_bean.getCurrentThreadCpuTime();
+      }
+
+  /***************************************************************
+    Function: allocated
+    Description: Bytes allocated by the current thread so far,
+    or -1 if the JVM does not measure it.
+    **************************************************************/
+  private long allocated
+    (
+     )
+      {
+	if (false == (m_bean instanceof com.sun.management.ThreadMXBean))
+	  {
+	    return -1;
+	  }
+	return ((com.sun.management.ThreadMXBean) m_bean)
+	  .getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+
+  /***************************************************************
+    Function: grow
+    **************************************************************/
+  private static long[] grow
+    (
+     long a[]
+     )
+      {
+	long b[] = new long[2 * a.length];
+
+	System.arraycopy(a,0,b,0,a.length);
+	return b;
+      }
+}
+
 /***************************************************************
   Class: Main
   Description: Top-level lexical analyzer generator function.
@@ -3832,10 +4970,19 @@ public class Main
     throws java.io.IOException
       {
 	CLexGen lg;
+	boolean time = false;
+	int i = 0;
+
+	if (arg.length > 0 && arg[0].equals("-time"))
+	  {
+	    /* Report per-phase times and allocation. */
+	    time = true;
+	    ++i;
+	  }
 
-	if (arg.length < 1)
+	if (arg.length <= i)
 	  {
-	    System.out.println("Usage: JLex.Main <filename>");
+	    System.out.println("Usage: JLex.Main [-time] <filename>");
 	    return;
 	  }
 
@@ -3844,7 +4991,7 @@ public class Main
 	   This gives more information. */
 	try 
 	  {	
-	    lg = new CLexGen(arg[0]);
+	    lg = new CLexGen(arg[i],time);
 	    lg.generate();
 	  }
 	catch (Error e)
@@ -3900,7 +5047,7 @@ class CDfa
   boolean m_mark;
   CAccept m_accept;
   int m_anchor;
-  Vector m_nfa_set;
+  int m_nfa_set[]; /* Sorted labels of CNfa states. */
   SparseBitSet m_nfa_bit;
   int m_label;
 
@@ -4056,7 +5203,9 @@ class CInput
   /***************************************************************
     Member Variables
     **************************************************************/
-  private java.io.BufferedReader m_input; /* JLex specification file. */
+  private char m_text[]; /* Whole JLex specification file. */
+  private int m_text_read; /* Number of chars read into m_text. */
+  private int m_text_index; /* Start of the next line in m_text. */
 
   boolean m_eof_reached; /* Whether EOF has been encountered. */
   boolean m_pushback_line; 
@@ -4072,23 +5221,51 @@ class CInput
     **************************************************************/
   static final boolean EOF = true;
   static final boolean NOT_EOF = false;
+  private static final int BUFFER_SIZE = 8192;
   
   /***************************************************************
     Function: CInput
-    Description: 
+    Description: Reads the whole specification up front, so
+    lines are then split off by index rather than read one at
+    a time through a BufferedReader.
     **************************************************************/
   CInput
     (
-     java.io.Reader input
+     java.io.Reader input,
+     long size
      )
+      throws java.io.IOException
       {
+	int next_read;
+
 	if (CUtility.DEBUG)
 	  {
 	    CUtility.ASSERT(null != input);
 	  }
 
-	/* Initialize input stream. */
-	m_input = new java.io.BufferedReader(input);
+	/* Read input stream, into a buffer big enough for
+	   all of it if size (in bytes, so at least the
+	   number of chars) is known. */
+	m_text = new char[(int) Math.min(Integer.MAX_VALUE - 8,
+					 Math.max(BUFFER_SIZE, size + 1))];
+	m_text_read = 0;
+	try
+	  {
+	    while (-1 != (next_read = input.read(m_text,m_text_read,
+						 m_text.length - m_text_read)))
+	      {
+		m_text_read = m_text_read + next_read;
+		if (m_text_read == m_text.length)
+		  {
+		    m_text = java.util.Arrays.copyOf(m_text,2 * m_text.length);
+		  }
+	      }
+	  }
+	finally
+	  {
+	    input.close();
+	  }
+	m_text_index = 0;
 
 	/* Initialize buffers and index counters. */
 	m_line = null;
@@ -4105,15 +5282,18 @@ class CInput
     Function: getLine
     Description: Returns true on EOF, false otherwise.
     Guarantees not to return a blank line, or a line
-    of zero length.
+    of zero length.  Lines end with '\n', '\r' or "\r\n",
+    as for BufferedReader.readLine, and are returned
+    with a single '\n'.
     **************************************************************/
   boolean getLine 
     (
      )
       throws java.io.IOException
       {
-	String lineStr;
 	int elem;
+	int start;
+	int end;
 	
 	/* Has EOF already been reached? */
 	if (m_eof_reached)
@@ -4145,33 +5325,52 @@ class CInput
 
 	while (true)
 	  {
-	    if (null == (lineStr = m_input.readLine()))
+	    if (m_text_index >= m_text_read)
 	      {
 		m_eof_reached = true;
 		m_line_index = 0;
 		return EOF;
 	      }
-	    m_line = (lineStr + "\n").toCharArray();
-	    m_line_read=m_line.length;
-	    ++m_line_number;
-	    
-	    /* Check for empty lines and discard them. */
-	    elem = 0;
-	    while (CUtility.isspace(m_line[elem])) 
+
+	    /* Find end of line. */
+	    start = m_text_index;
+	    end = start;
+	    while (end < m_text_read
+		   && '\n' != m_text[end] 
+		   && '\r' != m_text[end])
+	      {
+		++end;
+	      }
+
+	    /* Skip leading white space, to check for an empty line. */
+	    elem = start;
+	    while (elem < end && CUtility.isspace(m_text[elem]))
 	      {
 		++elem;
-		if (elem == m_line_read)
-		  {
-		    break;
-		  }
 	      }
+
+	    m_text_index = end + 1;
+	    if (end < m_text_read
+		&& '\r' == m_text[end]
+		&& end + 1 < m_text_read
+		&& '\n' == m_text[end + 1])
+	      {
+		++m_text_index;
+	      }
+	    ++m_line_number;
 	    
-	    if (elem < m_line_read)
+	    /* Discard empty lines. */
+	    if (elem < end)
 	      {
 		break;
 	      }
 	  }
 
+	m_line = new char[end - start + 1];
+	System.arraycopy(m_text,start,m_line,0,end - start);
+	m_line[end - start] = '\n';
+	m_line_read = m_line.length;
+
 	m_line_index = 0;
 	return NOT_EOF;
       }
@@ -4817,6 +6016,7 @@ class CLexGen
   private CSimplifyNfa m_simplifyNfa; /* NFA simplifier using char classes */
   private CEmit m_emit; /* Output module that emits source code
 			   into the generated lexer file. */
+  private CTimer m_timer; /* Per-phase measurements (-time). */
 
 
   /********************************************************
@@ -4852,12 +6052,15 @@ class CLexGen
     **************************************************************/
   CLexGen 
     (
-     String filename
+     String filename,
+     boolean time
      )
       throws java.io.FileNotFoundException, java.io.IOException
       {
 	/* Successful initialization flag. */
 	m_init_flag = false;
+
+	m_timer = new CTimer(time);
 	
 	/* Open input stream. */
 	m_instream = new java.io.FileReader(filename);
@@ -4879,8 +6082,10 @@ class CLexGen
 	    return;
 	  }
 
-	/* Create input buffer class. */
-	m_input = new CInput(m_instream);
+	/* Create input buffer class, reading the whole file. */
+	m_timer.start("read spec");
+	m_input = new CInput(m_instream,new java.io.File(filename).length());
+	m_timer.stop();
 
 	/* Initialize character hash table. */
 	m_tokens = new Hashtable();
@@ -4901,6 +6106,7 @@ class CLexGen
       
 	/* Initialize spec structure. */
 	m_spec = new CSpec(this);
+	m_spec.m_time = time;
 	
 	/* Nfa to dfa converter. */
 	m_nfa2dfa = new CNfa2Dfa();
@@ -4944,6 +6150,7 @@ class CLexGen
 	  {
 	    System.out.println("Processing first section -- user code.");
 	  }
+	m_timer.start("user code, declarations");
 	userCode();
 	if (m_input.m_eof_reached)
 	  {
@@ -4956,6 +6163,7 @@ class CLexGen
 			       + "JLex declarations.");
 	  }
 	userDeclare();
+	m_timer.stop();
 	if (m_input.m_eof_reached)
 	  {
 	    CError.parse_error(CError.E_EOF,m_input.m_line_number);
@@ -4975,14 +6183,20 @@ class CLexGen
 	  {
 	    System.out.println("Outputting lexical analyzer code.");
 	  }
+	m_timer.start("emit");
 	m_emit.emit(m_spec,m_outstream);
+	m_timer.stop();
 
 	if (m_spec.m_verbose && true == CUtility.OLD_DUMP_DEBUG)
 	  {
 	    details();
 	  }
 	
+	m_timer.start("emit");
 	m_outstream.close();
+	m_timer.stop();
+
+	m_timer.report(System.out);
       }
 
   /***************************************************************
@@ -5302,6 +6516,11 @@ class CLexGen
     '\0'
     };
 
+  private char m_nio_dir[] = { 
+    '%', 'n', 'i',
+    'o', '\0'
+    };
+
   private char m_init_code_dir[] = { 
     '%', 'i', 'n', 
     'i', 't', '{',
@@ -5410,6 +6629,12 @@ class CLexGen
     'c', '\0'
     };
   
+  private char m_switch_dir[] = { 
+    '%', 's', 'w',
+    'i', 't', 'c', 
+    'h', '\0'
+    };
+  
   /***************************************************************
     Function: userDeclare
     Description:
@@ -5723,6 +6948,17 @@ class CLexGen
 			  m_spec.m_unix = false;
 			  break;
 			}
+		      else if (0 == CUtility.charncmp(m_input.m_line,
+						      0,
+						      m_nio_dir,
+						      0,
+						      m_nio_dir.length - 1))
+			{
+			  /* Set whole-buffer input to ON. */
+			  m_input.m_line_index = m_nio_dir.length;
+			  m_spec.m_nio = true;
+			  break;
+			}
 
 		      /* Bad directive. */
 		      CError.parse_error(CError.E_DIRECT,
@@ -5759,6 +6995,17 @@ class CLexGen
 			  saveStates();
 			  break;
 			}
+		      else if (0 == CUtility.charncmp(m_input.m_line,
+						      0,
+						      m_switch_dir,
+						      0,
+						      m_switch_dir.length - 1))
+			{
+			  /* Set direct-coded scanner flag. */
+			  m_input.m_line_index = m_switch_dir.length;
+			  m_spec.m_switch = true;
+			  break;
+			}
 
 		      /* Undefined directive. */
 		      CError.parse_error(CError.E_DIRECT,
@@ -5886,10 +7133,16 @@ class CLexGen
 	  {
 	    System.out.println("Creating NFA machine representation.");
 	  }
+	/* Rules are parsed as the NFA is built, so both are
+	   timed as one phase. */
+	m_timer.start("rules, NFA construction");
 	m_makeNfa.allocate_BOL_EOF(m_spec);
 	m_makeNfa.thompson(this,m_spec,m_input);
+	m_timer.stop();
 	
+	m_timer.start("NFA simplification");
 	m_simplifyNfa.simplify(m_spec);
+	m_timer.stop();
 
 	/*print_nfa();*/
 
@@ -5902,7 +7155,9 @@ class CLexGen
 	  {
 	    System.out.println("Creating DFA transition table.");
 	  }
+	m_timer.start("NFA to DFA");
 	m_nfa2dfa.make_dfa(this,m_spec);
+	m_timer.stop();
 
 	if (CUtility.FOODEBUG) {
 	  print_header();
@@ -5912,7 +7167,9 @@ class CLexGen
 	  {
 	    System.out.println("Minimizing DFA transition table.");
 	  }
+	m_timer.start("DFA minimization");
 	m_minimize.min_dfa(m_spec);
+	m_timer.stop();
       }
 
   /***************************************************************
@@ -7276,14 +8533,11 @@ class CLexGen
     **************************************************************/
   void print_set
     (
-     Vector nfa_set
+     int nfa_set[],
+     int size
      )
       {
-	int size; 
 	int elem;
-	CNfa nfa;
-
-	size = nfa_set.size();
 
 	if (0 == size)
 	  {
@@ -7292,9 +8546,7 @@ class CLexGen
 	
 	for (elem = 0; elem < size; ++elem)
 	  {
-	    nfa = (CNfa) nfa_set.elementAt(elem);
-	    /*System.out.print(m_spec.m_nfa_states.indexOf(nfa) + " ");*/
-	    System.out.print(nfa.m_label + " ");
+	    System.out.print(nfa_set[elem] + " ");
 	  }
       }
 
@@ -7559,6 +8811,25 @@ final class SparseBitSet implements Cloneable {
 	size = 0;
     }
 
+    /**
+     * Copies the indices of the set bits, in increasing order,
+     * into an array.
+     * @param dest array large enough to hold every set bit
+     * @return the number of indices copied
+     */
+    public int toArray(int[] dest) {
+	int n = 0;
+	for (int i=0; i<size; i++) {
+	    long b = bits[i];
+	    int base = offs[i] << LG_BITS;
+	    while (0 != b) {
+		dest[n++] = base + Long.numberOfTrailingZeros(b);
+		b &= b - 1;
+	    }
+	}
+	return n;
+    }
+
     /**
      * Gets a bit.
      * @param bit the bit to be gotten